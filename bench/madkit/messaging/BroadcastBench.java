@@ -0,0 +1,98 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.messaging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.JunitMadkit;
+import madkit.kernel.Madkit.LevelOption;
+import madkit.kernel.Message;
+import madkit.message.SharedMessage;
+
+import org.junit.Test;
+
+/**
+ * Time and allocation per broadcast, with copies or with a
+ * {@link SharedMessage}. The allocation is measured on the sender's thread,
+ * so it is exact below the parallel threshold of the kernel and only shows
+ * the sender's part above it.
+ * 
+ * @since MaDKit 5.2
+ */
+public class BroadcastBench extends JunitMadkit {
+
+	static class SharedTick extends Message implements SharedMessage {
+		private static final long	serialVersionUID	= 1L;
+	}
+
+	@Test
+	public void broadcastAllocation() {
+		addMadkitArgs(LevelOption.agentLogLevel.toString(), "OFF");
+		launchTest(new AbstractAgent() {
+			final List<AbstractAgent> receivers = new ArrayList<>();
+
+			protected void activate() {
+				setLogLevel(Level.OFF);
+				createGroup(COMMUNITY, GROUP);
+				requestRole(COMMUNITY, GROUP, ROLE2);
+				for (int nbOfReceivers : new int[] { 1_000, 5_000, 100_000, 1_000_000 }) {
+					receivers.addAll(launchAgentBucket(AbstractAgent.class.getName(), nbOfReceivers - receivers.size(), COMMUNITY + "," + GROUP + "," + ROLE));
+					for (int i = 0; i < 10; i++) {
+						bench(nbOfReceivers, new Message(), "copies ");
+						bench(nbOfReceivers, new SharedTick(), "shared ");
+					}
+				}
+			}
+
+			private void bench(int nbOfReceivers, Message m, String name) {
+				final long before = allocatedBytes();
+				startTimer();
+				broadcastMessage(COMMUNITY, GROUP, ROLE, m);
+				stopTimer(name + nbOfReceivers + " receivers, time = ");
+				System.err.println(name + nbOfReceivers + " receivers, bytes per receiver = " + (allocatedBytes() - before) / nbOfReceivers);
+				// the mailboxes are emptied so that they do not grow between rounds
+				for (AbstractAgent a : receivers) {
+					a.purgeMailbox();
+				}
+			}
+		});
+	}
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.messaging;
+
+import static madkit.kernel.JunitMadkit.allocatedBytes;
+import static madkit.kernel.JunitMadkit.startTimer;
+import static madkit.kernel.JunitMadkit.stopTimer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import madkit.kernel.ArrayMailbox;
+import madkit.kernel.DequeMailbox;
+import madkit.kernel.Mailbox;
+import madkit.kernel.Message;
+
+import org.junit.Test;
+
+/**
+ * Compares the default {@link ArrayMailbox} with the former
+ * {@link DequeMailbox}. JMH is not part of the build, so this follows the
+ * other benches: warm up rounds are run before the timed ones.
+ * 
+ * @since MaDKit 5.2
+ */
+public class MailboxBench {
+
+	private static final int	ROUNDS	= 10;
+	private static final int	NB_OF_MESSAGES	= 5_000_000;
+
+	interface MailboxFactory {
+		Mailbox newMailbox();
+	}
+
+	private static final MailboxFactory	ARRAY	= new MailboxFactory() {
+																@Override
+																public Mailbox newMailbox() {
+																	return new ArrayMailbox();
+																}
+															};
+	private static final MailboxFactory	DEQUE	= new MailboxFactory() {
+																@Override
+																public Mailbox newMailbox() {
+																	return new DequeMailbox();
+																}
+															};
+
+	@Test
+	public void singleSender() {
+		for (int i = 0; i < ROUNDS; i++) {
+			singleSender(DEQUE, "deque ");
+			singleSender(ARRAY, "array ");
+		}
+	}
+
+	private static void singleSender(MailboxFactory f, String name) {
+		final Mailbox mb = f.newMailbox();
+		final Message m = new Message();
+		final long before = allocatedBytes();
+		startTimer();
+		for (int j = 0; j < NB_OF_MESSAGES; j++) {
+			mb.offer(m);
+		}
+		while (mb.poll() != null)
+			;
+		stopTimer(name + NB_OF_MESSAGES + " offer then poll: ");
+		System.err.println(name + "bytes per message: " + (allocatedBytes() - before) / NB_OF_MESSAGES);
+	}
+
+	@Test
+	public void concurrentSenders() throws InterruptedException {
+		final int senders = Math.max(2, Runtime.getRuntime().availableProcessors() - 1);
+		for (int i = 0; i < ROUNDS; i++) {
+			concurrentSenders(DEQUE, "deque ", senders);
+			concurrentSenders(ARRAY, "array ", senders);
+		}
+	}
+
+	private static void concurrentSenders(MailboxFactory f, String name, int senders) throws InterruptedException {
+		final Mailbox mb = f.newMailbox();
+		final Message m = new Message();
+		final int perSender = NB_OF_MESSAGES / senders;
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < senders; i++) {
+			final Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int j = 0; j < perSender; j++) {
+						mb.offer(m);
+					}
+				}
+			});
+			threads.add(t);
+			t.start();
+		}
+		startTimer();
+		start.countDown();
+		for (int i = perSender * senders; i > 0; i--) {
+			mb.take();
+		}
+		stopTimer(name + senders + " senders, 1 receiver: ");
+		for (Thread thread : threads) {
+			thread.join();
+		}
+	}
+
+	/**
+	 * What a broadcast to many agents costs in the mailboxes: one message per
+	 * mailbox, then one read per mailbox.
+	 */
+	@Test
+	public void manyMailboxes() {
+		final int nbOfAgents = 1_000_000;
+		for (int i = 0; i < ROUNDS; i++) {
+			manyMailboxes(DEQUE, "deque ", nbOfAgents);
+			manyMailboxes(ARRAY, "array ", nbOfAgents);
+		}
+	}
+
+	private static void manyMailboxes(MailboxFactory f, String name, int nbOfAgents) {
+		long before = allocatedBytes();
+		final Mailbox[] boxes = new Mailbox[nbOfAgents];
+		for (int j = 0; j < nbOfAgents; j++) {
+			boxes[j] = f.newMailbox();
+		}
+		System.err.println(name + "bytes per empty mailbox: " + (allocatedBytes() - before) / nbOfAgents);
+		final Message m = new Message();
+		before = allocatedBytes();
+		startTimer();
+		for (Mailbox mb : boxes) {
+			mb.offer(m);
+		}
+		for (Mailbox mb : boxes) {
+			mb.poll();
+		}
+		stopTimer(name + nbOfAgents + " mailboxes, one message each: ");
+		System.err.println(name + "bytes per delivered message: " + (allocatedBytes() - before) / nbOfAgents);
+	}
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.networking;
+
+import java.util.logging.Level;
+
+import madkit.kernel.Agent;
+import madkit.kernel.AgentAddress;
+import madkit.kernel.JunitMadkit;
+import madkit.kernel.Madkit.BooleanOption;
+import madkit.kernel.Madkit.LevelOption;
+import madkit.kernel.Message;
+import madkit.message.ObjectMessage;
+import madkit.message.StringMessage;
+import madkit.testing.util.agent.NormalAgent;
+
+import org.junit.Test;
+
+/**
+ * Throughput of the kernel connections between two kernels over loopback.
+ * Messages are streamed to a sink agent which acknowledges each window,
+ * so that the sender does not fill the socket buffers. The last kind of
+ * message is not registered in the wire protocol and is thus serialized.
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class WireProtocolBench extends JunitMadkit {
+
+	private static final int		ROUNDS			= 5;
+	private static final int		NB_OF_MESSAGES	= 100_000;
+	private static final int		WINDOW			= 1_000;
+	private static final String	SINK				= "sink";
+
+	interface MessageFactory {
+		Message newMessage(int i);
+	}
+
+	private static final MessageFactory	EMPTY		= new MessageFactory() {
+																@Override
+																public Message newMessage(int i) {
+																	return new Message();
+																}
+															};
+	private static final MessageFactory	STRING	= new MessageFactory() {
+																@Override
+																public Message newMessage(int i) {
+																	return new StringMessage("a short text content #" + i);
+																}
+															};
+	private static final MessageFactory	INTEGER	= new MessageFactory() {
+																@Override
+																public Message newMessage(int i) {
+																	return new ObjectMessage<>(i);
+																}
+															};
+	private static final MessageFactory	USER		= new MessageFactory() {
+																@Override
+																public Message newMessage(int i) {
+																	return new UserMessage(i);
+																}
+															};
+
+	@Test
+	public void streamToDistantKernel() {
+		addMadkitArgs(BooleanOption.network.toString(), LevelOption.networkLogLevel.toString(), Level.OFF.toString());
+		stream();
+	}
+
+	/**
+	 * Same with the sending kernel using {@link BooleanOption#nioNetwork}
+	 */
+	@Test
+	public void streamFromSelectorToDistantKernel() {
+		addMadkitArgs(BooleanOption.network.toString(), BooleanOption.nioNetwork.toString(), LevelOption.networkLogLevel.toString(),
+				Level.OFF.toString());
+		stream();
+	}
+
+	private void stream() {
+		launchTest(new NormalAgent() {
+
+			@Override
+			protected void activate() {
+				setLogLevel(Level.OFF);
+				createGroup(COMMUNITY, GROUP, true);
+				requestRole(COMMUNITY, GROUP, ROLE);
+				launchCustomNetworkInstance(Level.OFF, Sink.class);
+				AgentAddress sink;
+				while ((sink = getAgentWithRole(COMMUNITY, GROUP, SINK)) == null) {
+					pause(100);
+				}
+				for (int i = 0; i < ROUNDS; i++) {
+					stream(sink, EMPTY, "Message ");
+					stream(sink, STRING, "StringMessage ");
+					stream(sink, INTEGER, "ObjectMessage<Integer> ");
+					stream(sink, USER, "serialized user message ");
+				}
+			}
+
+			private void stream(AgentAddress sink, MessageFactory f, String name) {
+				startTimer();
+				for (int i = 0; i < NB_OF_MESSAGES; i++) {
+					sendMessage(sink, f.newMessage(i));
+					if ((i + 1) % WINDOW == 0) {
+						waitNextMessage();
+					}
+				}
+				final long ms = stopTimer(name + NB_OF_MESSAGES + " messages: ");
+				System.err.println(name + "messages per second: " + NB_OF_MESSAGES * 1000L / Math.max(1, ms));
+			}
+		});
+		cleanHelperMDKs();
+	}
+
+	/**
+	 * Acknowledges every {@link WireProtocolBench#WINDOW} received messages
+	 */
+	public static class Sink extends Agent {
+
+		@Override
+		protected void activate() {
+			setLogLevel(Level.OFF);
+			createGroup(COMMUNITY, GROUP, true);
+			requestRole(COMMUNITY, GROUP, SINK);
+		}
+
+		@Override
+		protected void live() {
+			for (int i = 1;; i++) {
+				final Message m = waitNextMessage();
+				if (i % WINDOW == 0) {
+					sendReply(m, new Message());
+				}
+			}
+		}
+	}
+
+	public static class UserMessage extends Message {
+
+		private static final long	serialVersionUID	= 1L;
+		private final int				value;
+
+		public UserMessage(int value) {
+			this.value = value;
+		}
+
+		public int getValue() {
+			return value;
+		}
+	}
+
+}
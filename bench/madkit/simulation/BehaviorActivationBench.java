@@ -0,0 +1,95 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.logging.Level;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.JunitMadkit;
+import madkit.kernel.Madkit.LevelOption;
+import madkit.kernel.Scheduler;
+import madkit.simulation.activator.GenericBehaviorActivator;
+
+import org.junit.Test;
+
+/**
+ * Step time of a {@link GenericBehaviorActivator} on a million agents,
+ * with the behavior invoked using reflection or compiled.
+ * 
+ * @since MaDKit 5.2
+ */
+public class BehaviorActivationBench extends JunitMadkit {
+
+	public static class SimpleAgent extends AbstractAgent {
+		int	steps;
+
+		@SuppressWarnings("unused")
+		private void doIt() {
+			steps++;
+		}
+	}
+
+	@Test
+	public void reflectiveVersusCompiled() {
+		addMadkitArgs(LevelOption.agentLogLevel.toString(), "OFF");
+		launchTest(new Scheduler() {
+
+			protected void activate() {
+				setLogLevel(Level.OFF);
+				createGroup(COMMUNITY, GROUP);
+				final SimpleAgent first = (SimpleAgent) launchAgentBucket(SimpleAgent.class.getName(), 1_000_000, COMMUNITY + "," + GROUP + "," + ROLE).get(0);
+				final GenericBehaviorActivator<AbstractAgent> activator = new GenericBehaviorActivator<>(COMMUNITY, GROUP, ROLE, "doIt");
+				addActivator(activator);
+				for (int run = 0; run < 5; run++) {
+					for (boolean compiled : new boolean[] { false, true }) {
+						activator.useCompiledMode(compiled);
+						startTimer();
+						for (int i = 0; i < 10; i++) {
+							activator.execute();
+						}
+						stopTimer((compiled ? "compiled" : "reflective") + ", 10 steps : ");
+					}
+				}
+				assertEquals(100, first.steps);
+				removeActivator(activator);
+			}
+		});
+	}
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.logging.Level;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.Activator;
+import madkit.kernel.JunitMadkit;
+import madkit.kernel.Madkit.LevelOption;
+import madkit.kernel.Scheduler;
+
+import org.junit.Test;
+
+/**
+ * Simulation steps on a million agents where a few of them leave
+ * and rejoin the activated role before each activation.
+ * The time of a step should depend on the churn, not on the population.
+ * 
+ * @since MaDKit 5.2
+ */
+public class ChurnActivationBench extends JunitMadkit {
+
+	static final int	POPULATION	= 1_000_000;
+
+	static class CountingActivator extends Activator<AbstractAgent> {
+
+		long	count;
+
+		CountingActivator() {
+			super(COMMUNITY, GROUP, ROLE);
+		}
+
+		@Override
+		public void execute(List<AbstractAgent> agentsList, Object... args) {
+			for (final AbstractAgent a : agentsList) {
+				if (a != null)
+					count++;
+			}
+		}
+	}
+
+	@Test
+	public void churnAndActivate() {
+		addMadkitArgs(LevelOption.agentLogLevel.toString(), "OFF");
+		launchTest(new Scheduler() {
+
+			protected void activate() {
+				setLogLevel(Level.OFF);
+				createGroup(COMMUNITY, GROUP);
+				final List<AbstractAgent> agents = launchAgentBucket(AbstractAgent.class.getName(), POPULATION, COMMUNITY + "," + GROUP + "," + ROLE);
+				final CountingActivator activator = new CountingActivator();
+				addActivator(activator);
+				final Random random = new Random(0);
+				startTimer();
+				new ArrayList<>(activator.getCurrentAgentsList());
+				stopTimer("full copy of " + POPULATION + " agents : ");
+				for (int churn : new int[] { 0, 1, 10, 100, 1_000 }) {
+					for (int run = 0; run < 3; run++) {
+						long snapshotTime = 0;
+						startTimer();
+						for (int step = 0; step < 100; step++) {
+							for (int i = 0; i < churn; i++) {
+								final AbstractAgent a = agents.get(random.nextInt(POPULATION));
+								a.leaveRole(COMMUNITY, GROUP, ROLE);
+								a.requestRole(COMMUNITY, GROUP, ROLE);
+							}
+							final long t = System.nanoTime();
+							activator.getCurrentAgentsList();
+							snapshotTime += System.nanoTime() - t;
+							activator.execute();
+						}
+						stopTimer("churn " + churn + " per step, 100 steps : ");
+						System.err.println("\tsnapshots : " + snapshotTime / 100_000 + " us per step");
+					}
+				}
+				removeActivator(activator);
+			}
+		});
+	}
+
+}
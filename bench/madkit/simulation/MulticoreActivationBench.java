@@ -0,0 +1,112 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.Activator;
+import madkit.kernel.JunitMadkit;
+
+import org.junit.Test;
+
+/**
+ * Multicore activation when the first agents of the list
+ * are much more costly than the others, as when a few agents
+ * have a lot of neighbors.
+ * 
+ * @since MaDKit 5.2
+ */
+public class MulticoreActivationBench extends JunitMadkit {
+
+	static volatile long	sink;
+
+	static class UnevenActivator extends Activator<AbstractAgent> {
+
+		final List<AbstractAgent>	agents	= new ArrayList<>();
+
+		UnevenActivator(int nbOfAgents) {
+			super(COMMUNITY, GROUP, ROLE);
+			for (int i = 0; i < nbOfAgents; i++) {
+				agents.add(new AbstractAgent());
+			}
+		}
+
+		@Override
+		public List<AbstractAgent> getCurrentAgentsList() {
+			return agents;
+		}
+
+		@Override
+		public void execute(List<AbstractAgent> agentsList, Object... args) {
+			long s = 0;
+			for (final AbstractAgent a : agentsList) {
+				final int cost = a.hashCode() - agents.get(0).hashCode() < agents.size() / 8 ? 20_000 : 200;
+				for (int i = 0; i < cost; i++) {
+					s += i ^ a.hashCode();
+				}
+			}
+			sink += s;
+		}
+	}
+
+	@Test
+	public void unevenCosts() {
+		final UnevenActivator activator = new UnevenActivator(100_000);
+		final int cores = Math.max(4, Runtime.getRuntime().availableProcessors());
+		for (int run = 0; run < 3; run++) {
+			activator.useMulticore(1);
+			startTimer();
+			for (int i = 0; i < 10; i++) {
+				activator.execute();
+			}
+			stopTimer("sequential, 10 steps : ");
+			for (boolean dedicated : new boolean[] { false, true }) {
+				activator.useMulticore(cores);
+				activator.useDedicatedPool(dedicated);
+				startTimer();
+				for (int i = 0; i < 10; i++) {
+					activator.execute();
+				}
+				stopTimer(cores + " tasks" + (dedicated ? " on a dedicated pool" : "") + ", 10 steps : ");
+			}
+		}
+		activator.useDedicatedPool(false);
+	}
+
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation;
+
+import java.util.List;
+import java.util.logging.Level;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.JunitMadkit;
+import madkit.kernel.Madkit.LevelOption;
+import madkit.kernel.Watcher;
+import madkit.simulation.probe.DoublePropertyProbe;
+import madkit.simulation.probe.PropertyProbe;
+import madkit.testing.util.agent.SimulatedAgent;
+
+import org.junit.Test;
+
+/**
+ * Aggregation of a <code>double</code> field over a million agents, 
+ * using a {@link PropertyProbe} or a {@link DoublePropertyProbe}.
+ * 
+ * @since MaDKit 5.2
+ */
+public class PropertyProbeBench extends JunitMadkit {
+
+	static volatile double	sink;
+
+	@Test
+	public void boxedVersusPrimitive() {
+		addMadkitArgs(LevelOption.agentLogLevel.toString(), "OFF");
+		launchTest(new Watcher() {
+
+			protected void activate() {
+				setLogLevel(Level.OFF);
+				final List<AbstractAgent> agents = launchAgentBucket(SimulatedAgent.class.getName(), 1_000_000);
+				for (int i = 0; i < agents.size(); i++) {
+					((SimulatedAgent) agents.get(i)).publicPrimitiveField = i % 100;
+				}
+				final PropertyProbe<AbstractAgent, Double> boxed = new PropertyProbe<>(COMMUNITY, GROUP, ROLE, "publicPrimitiveField");
+				final DoublePropertyProbe<AbstractAgent> primitive = new DoublePropertyProbe<>(COMMUNITY, GROUP, ROLE, "publicPrimitiveField");
+				addProbe(boxed);
+				addProbe(primitive);
+				for (int run = 0; run < 5; run++) {
+					startTimer();
+					sink = boxed.getMinValue() + boxed.getMaxValue() + boxed.getAverageValue();
+					stopTimer("PropertyProbe min, max and average : ");
+					primitive.useParallelAggregation(false);
+					startTimer();
+					sink = primitive.getStatistics().getVariance();
+					stopTimer("DoublePropertyProbe statistics : ");
+					primitive.useParallelAggregation(true);
+					startTimer();
+					sink = primitive.getStatistics().getVariance();
+					stopTimer("DoublePropertyProbe parallel statistics : ");
+					startTimer();
+					sink = primitive.getHistogram(0, 100, 10)[0];
+					stopTimer("DoublePropertyProbe parallel histogram : ");
+				}
+			}
+		});
+	}
+
+}
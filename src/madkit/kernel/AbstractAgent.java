@@ -45,6 +45,8 @@ import static madkit.kernel.AbstractAgent.State.LIVING;
 import static madkit.kernel.AbstractAgent.State.TERMINATED;
 
 import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -52,18 +54,14 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.ResourceBundle;
 import java.util.Set;
 import java.util.TreeSet;
-import java.util.concurrent.BlockingDeque;
-import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -161,20 +159,49 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	static final transient MadkitKernel				FAKE_KERNEL			= new FakeKernel();
 	private static final transient MadkitKernel	TERMINATED_KERNEL	= new TerminatedKernel();
 
-	final AtomicReference<State>						state					= new AtomicReference<>(State.NOT_LAUNCHED);
+	private static final State[]						STATES				= State.values();
+	/**
+	 * set in {@link #life} when the agent is alive, below are the ordinals of
+	 * the states
+	 */
+	private static final int							ALIVE					= 1 << 8;
+	private static final int							STATE_MASK			= ALIVE - 1;
+	private static final VarHandle					LIFE;
+	private static final VarHandle					MAILBOX;
+	static {
+		try {
+			final MethodHandles.Lookup l = MethodHandles.lookup();
+			LIFE = l.findVarHandle(AbstractAgent.class, "life", int.class);
+			MAILBOX = l.findVarHandle(AbstractAgent.class, "messageBox", Mailbox.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	/**
+	 * the ordinal of the agent's {@link State}, plus {@link #ALIVE} if it is
+	 * alive: 0 is {@link State#NOT_LAUNCHED} and not alive
+	 */
+	private volatile int									life;
 	transient MadkitKernel								kernel				= FAKE_KERNEL;
 
-	final private int									_hashCode;
+	/**
+	 * not final: a recycled agent gets a new one
+	 */
+	private int												_hashCode;
 
-	private boolean										hasGUI;
 	/**
-	 * name is lazily created to save memory
+	 * the GUI flag and the name, which most agents do not use
+	 */
+	private Extras											extras;
+	/**
+	 * created when the first message is received
 	 */
-	private String											name;
-	final AtomicBoolean									alive					= new AtomicBoolean();						//default false
-	final BlockingDeque<Message>						messageBox			= new LinkedBlockingDeque<>();		// TODO
-																																				// lazy
-																																				// creation
+	private volatile Mailbox							messageBox;
+	/**
+	 * the roles this agent plays, updated by {@link Role}
+	 */
+	final Memberships										memberships			= new Memberships();
 
 	/**
 	 * <code>logger</code> should be used to print messages and trace the agent's life cycle. 
@@ -202,6 +229,17 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 */
 	protected AgentLogger								logger;
 
+	/**
+	 * The rarely used fields, attached on first use. The logger is not one of
+	 * them: subclasses read the protected field directly, a <code>null</code>
+	 * value meaning that logging is off, and an agent which does not
+	 * customize it only refers to the shared default logger.
+	 */
+	private static final class Extras {
+		boolean	hasGUI;
+		String	name;
+	}
+
 	public AbstractAgent() {
 		_hashCode = agentCounter.getAndIncrement();// TODO bench outside
 		logger = AgentLogger.DEFAULT_AGENT_LOGGER;
@@ -215,6 +253,44 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 		_hashCode = -1;
 	}
 	
+	/**
+	 * Gives a terminated agent a new identity so that it can be launched again
+	 * as if it had just been built.
+	 * 
+	 * @return <code>false</code> if the agent is not terminated
+	 * @see AgentPool
+	 */
+	boolean renew() {
+		if (! compareAndSetState(TERMINATED, State.NOT_LAUNCHED)) {
+			return false;
+		}
+		_hashCode = agentCounter.getAndIncrement();
+		if (extras != null) {
+			extras.name = null;
+		}
+		final Mailbox mailbox = messageBox;
+		if (mailbox != null) {
+			mailbox.purge();
+		}
+		logger = AgentLogger.DEFAULT_AGENT_LOGGER;
+		kernel = FAKE_KERNEL;
+		recycle();
+		return true;
+	}
+
+	/**
+	 * Called when this agent, which has been terminated, is given back to an
+	 * {@link AgentPool} to be launched again later. Overriding it is the way to
+	 * reset the fields of the agent to the values they have after construction,
+	 * as {@link #activate()} will be called once more. The agent has no kernel
+	 * at this point: the MaDKit API should not be used here. By default, it
+	 * does nothing.
+	 * 
+	 * @since MaDKit 5.2
+	 */
+	protected void recycle() {
+	}
+
 	/**
 	 * @return the real kernel
 	 */
@@ -232,9 +308,16 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 * 
 	 */
 	public void createGUIOnStartUp() {
-		if (state.get().compareTo(ACTIVATED) < 0) {
-			hasGUI = true;
+		if (getState().compareTo(ACTIVATED) < 0) {
+			getExtras().hasGUI = true;
+		}
+	}
+
+	private Extras getExtras() {
+		if (extras == null) {
+			extras = new Extras();
 		}
+		return extras;
 	}
 
 	/**
@@ -242,7 +325,47 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 * @return <code>true</code> if this agent has a GUI built by the kernel
 	 */
 	public boolean hasGUI() {
-		return hasGUI;
+		return extras != null && extras.hasGUI;
+	}
+
+	/**
+	 * Replaces the mailbox of the agent, e.g. with a bounded one. 
+	 * As for {@link #createGUIOnStartUp()}, this should be used in the constructor
+	 * of the agent: It has no effect once the agent has been launched.
+	 * 
+	 * <pre>
+	 * public MyAgent() {
+	 * 	setMailbox(new ArrayMailbox(1000, OverflowPolicy.DROP_OLDEST));
+	 * }
+	 * </pre>
+	 * 
+	 * @param mailbox
+	 *           the new mailbox
+	 * @see Mailbox
+	 * @since MaDKit 5.2
+	 */
+	public void setMailbox(final Mailbox mailbox) {
+		if (getState() == State.NOT_LAUNCHED) {
+			final Mailbox old = messageBox;
+			if (old != null) {
+				mailbox.addAllFirst(old.removeAll(null));
+			}
+			messageBox = mailbox;
+		}
+	}
+
+	/**
+	 * @return the mailbox, which is created if the agent has never received
+	 *         any message
+	 */
+	final Mailbox getMailbox() {
+		final Mailbox mailbox = messageBox;
+		if (mailbox != null) {
+			return mailbox;
+		}
+		final Mailbox created = new ArrayMailbox();
+		final Mailbox witness = (Mailbox) MAILBOX.compareAndExchange(this, null, created);
+		return witness == null ? created : witness;
 	}
 
 	/**
@@ -281,16 +404,61 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 		return _hashCode + getKernelAddress().toString();
 	}
 
-	final AtomicBoolean getAlive() {
-		return alive;
-	}
-
 	/**
 	 * Returns <code>true</code> if the agent has been launched and is not ended nor killed.
 	 * 
 	 */
 	public boolean isAlive() {
-		return alive.get();
+		return (life & ALIVE) != 0;
+	}
+
+	final void setAlive(final boolean alive) {
+		int v;
+		do {
+			v = life;
+		}
+		while (! LIFE.compareAndSet(this, v, alive ? v | ALIVE : v & ~ALIVE));
+	}
+
+	final boolean compareAndSetAlive(final boolean expected, final boolean alive) {
+		for (;;) {
+			final int v = life;
+			if (((v & ALIVE) != 0) != expected) {
+				return false;
+			}
+			if (LIFE.compareAndSet(this, v, alive ? v | ALIVE : v & ~ALIVE)) {
+				return true;
+			}
+		}
+	}
+
+	final void setState(final State s) {
+		int v;
+		do {
+			v = life;
+		}
+		while (! LIFE.compareAndSet(this, v, (v & ALIVE) | s.ordinal()));
+	}
+
+	final boolean compareAndSetState(final State expected, final State s) {
+		for (;;) {
+			final int v = life;
+			if ((v & STATE_MASK) != expected.ordinal()) {
+				return false;
+			}
+			if (LIFE.compareAndSet(this, v, (v & ALIVE) | s.ordinal())) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * @return the monitor on which the life cycle of the agent synchronizes
+	 *         with the kills. This is the memberships index, which is always
+	 *         there and never exposed.
+	 */
+	final Object lifeLock() {
+		return memberships;
 	}
 
 	// //////////////////////////////////////////// LIFE CYCLE
@@ -304,16 +472,16 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	// }
 
 	private final void activationFirstStage() {
-		if (!state.compareAndSet(INITIALIZING, ACTIVATED))// TODO remove it when
+		if (!compareAndSetState(INITIALIZING, ACTIVATED))// TODO remove it when
 																			// OK
 			throw new AssertionError("not init in activation");
 		// that only when state is set to ACTIVATED
 		setMyThread(Thread.currentThread());
 		// can be killed from now on
-		if (!alive.compareAndSet(false, true)) {// can be killed from now on
+		if (!compareAndSetAlive(false, true)) {// can be killed from now on
 			throw new AssertionError("already alive in launch");
 		}
-		if (hasGUI) {
+		if (hasGUI()) {
 			if (logger != null) {
 				logger.finer("** setting up  GUI **");
 			}
@@ -323,7 +491,7 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 					Organization.GROUP_MANAGER_ROLE, 
 					new GUIMessage(GUIManagerAction.SETUP_AGENT_GUI, AbstractAgent.this));
 			try {//wait answer using a big hack
-				messageBox.take();//works because the agent cannot be joined in anyway
+				getMailbox().take();//works because the agent cannot be joined in anyway
 			} catch (InterruptedException e) {
 				e.printStackTrace();
 			}
@@ -355,14 +523,14 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 			try {
 				activationFirstStage();// the activated flag must be in the try
 				activate();
-				synchronized (state) {
+				synchronized (lifeLock()) {
 					Thread.currentThread().setName(getAgentThreadName(State.LIVING));
 				}// cannot be hard killed after that
 				result = SUCCESS;
 			} catch (SelfKillException e) {
 				logLifeException(e);
 				logMethod(false);
-				state.set(LIVING);// for the following kill to work
+				setState(LIVING);// for the following kill to work
 				suicide(e);
 				return SUCCESS;
 			} catch (Throwable e) {
@@ -417,37 +585,37 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	}
 
 	final boolean ending() { // TODO boolean need ? NO
-		state.set(ENDING);
+		setState(ENDING);
 		Thread.currentThread().setName(getAgentThreadName(ENDING));
 		logMethod(true);
 		try {
-			synchronized (state) {// can be hard killed from now on
-				state.notify();
+			synchronized (lifeLock()) {// can be hard killed from now on
+				lifeLock().notifyAll();
 			}
 			try {
 				end();
 			} catch (Throwable e) {
 				validateDeathOnException(e, TERMINATED);
 			}
-			synchronized (state) {
-				alive.set(false);
+			synchronized (lifeLock()) {
+				setAlive(false);
 				Thread.currentThread().setName(getAgentThreadName(TERMINATED));
 			}
 		} catch (ThreadDeath e) {
 			logLifeException(e);
 		}
 		logMethod(false);
-		synchronized (state) {// notifying for AA
-			state.notify();
+		synchronized (lifeLock()) {// notifying for AA
+			lifeLock().notifyAll();
 		}
 		return true;
 	}
 
 	private void validateDeathOnException(Throwable e, State threadNewState) {
-		synchronized (state) {
+		synchronized (lifeLock()) {
 			logLifeException(e);
 			Thread.currentThread().setName(getAgentThreadName(threadNewState));
-			if (!alive.compareAndSet(true, false)) {
+			if (!compareAndSetAlive(true, false)) {
 				try {
 					Thread.sleep(1);
 				} catch (InterruptedException e1) {
@@ -462,12 +630,12 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	// not final because of Scheduler and Watcher
 	void terminate() {
 		Thread.currentThread().setName(getAgentThreadName(TERMINATED));
-		synchronized (state) {
-			state.set(TERMINATED);
-			state.notify();
+		synchronized (lifeLock()) {
+			setState(TERMINATED);
+			lifeLock().notifyAll();
 		}
 		kernel = getMadkitKernel();
-		if (hasGUI) {
+		if (hasGUI()) {
 			kernel.broadcastMessageWithRole(this, LocalCommunity.NAME, Groups.GUI, Organization.GROUP_MANAGER_ROLE, new GUIMessage(
 					GUIManagerAction.DISPOSE_AGENT_GUI, this), null);
 		}
@@ -476,6 +644,10 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 		} catch (Throwable e) {
 			logLifeException(e);
 		}
+		final PendingReplies replies = kernel.pendingReplies;
+		if (replies != null) {// null if already terminated
+			replies.cancel(this);
+		}
 		if (logger != null) {
 			logger.finest("** TERMINATED **");
 			// TODO This should be done anyway but this would slow down kills
@@ -483,7 +655,7 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 			// But that should not be a problem because such a practice is usually not used
 			logger.close();
 		}
-		if(hasGUI){
+		if(hasGUI()){
 			AgentLogLevelMenu.remove(this);
 			AgentStatusPanel.remove(this);
 		}
@@ -928,7 +1100,7 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 		if (target == this && Thread.currentThread().getName().equals(getAgentThreadName(getState()))) {
 			if (isFinestLogOn())
 				logger.log(Level.FINEST, Influence.KILL_AGENT + " (" + timeOutSeconds + ")" + target.getName() + "...");
-			if (alive.compareAndSet(true, false)) {
+			if (compareAndSetAlive(true, false)) {
 				throw new SelfKillException(timeOutSeconds);
 			}
 		}
@@ -958,9 +1130,10 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 * 
 	 */
 	public String getName() {
-		if (name == null)
-			name = getClass().getSimpleName() + "-" + _hashCode;
-		return name;
+		final Extras e = extras;
+		if (e != null && e.name != null)
+			return e.name;
+		return getClass().getSimpleName() + "-" + _hashCode;
 	}
 
 	/**
@@ -970,7 +1143,7 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 *           is "class name + internal ID"
 	 */
 	public void setName(final String name) {// TODO trigger gui changes and so on need AgentModel
-			this.name = name;
+			getExtras().name = name;
 	}
 
 	/**
@@ -1551,12 +1724,12 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 * @return The next message or <code>null</code> if the message box is empty.
 	 */
 	public Message nextMessage() {
+		final Mailbox mailbox = messageBox;
+		final Message m = mailbox == null ? null : mailbox.poll();
 		if (logger != null) {
-			final Message m = messageBox.poll();
 			logger.finest("nextMessage = " + m);
-			return m;
 		}
-		return messageBox.poll();
+		return m;
 	}
 
 	/**
@@ -1566,16 +1739,8 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 * @return The next acceptable message or <code>null</code> if such message has not been found.
 	 */
 	public Message nextMessage(final MessageFilter filter) {
-		synchronized (messageBox) {
-			for (final Iterator<Message> iterator = messageBox.iterator(); iterator.hasNext();) {
-				final Message m = iterator.next();
-				if(filter.accept(m)){
-					iterator.remove();
-					return m;
-				}
-			}
-		}
-		return null;
+		final Mailbox mailbox = messageBox;
+		return mailbox == null ? null : mailbox.removeFirst(filter);
 	}
 
 	/**
@@ -1586,24 +1751,8 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 * @return the ordered list of matching messages, or an empty list if none has been found.
 	 */
 	public List<Message> nextMessages(final MessageFilter filter) {
-		if(filter == null){
-			synchronized (messageBox) {
-				final List<Message> match = new ArrayList<>(messageBox);
-				messageBox.clear();
-				return match;
-			}
-		}
-		final List<Message> match = new ArrayList<>();
-		synchronized (messageBox) {
-			for (Iterator<Message> iterator = messageBox.iterator(); iterator.hasNext();) {
-				final Message m = iterator.next();
-				if(filter.accept(m)){
-					iterator.remove();
-					match.add(m);
-				}
-			}
-		}
-		return match;
+		final Mailbox mailbox = messageBox;
+		return mailbox == null ? new ArrayList<>() : mailbox.removeAll(filter);
 	}
 	
 	/**
@@ -1613,7 +1762,8 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 * if the mailbox is empty.
 	 */
 	public Message getLastReceivedMessage(){
-		return messageBox.pollLast();
+		final Mailbox mailbox = messageBox;
+		return mailbox == null ? null : mailbox.pollLast();
 	}
 
 	/**
@@ -1625,14 +1775,8 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 * or <code>null</code> if such message has not been found.
 	 */
 	public Message getLastReceivedMessage(final MessageFilter filter){
-		for (final Iterator<Message> iterator = messageBox.descendingIterator(); iterator.hasNext();) {
-			final Message message = iterator.next();
-			if(filter.accept(message)){
-				iterator.remove();
-				return message;
-			}
-		}
-		return null;
+		final Mailbox mailbox = messageBox;
+		return mailbox == null ? null : mailbox.removeLast(filter);
 	}
 	
 	/**
@@ -1643,11 +1787,8 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 *         mailbox is already empty.
 	 */
 	public Message purgeMailbox() { 
-		synchronized (messageBox) {
-			final Message m = messageBox.pollLast();
-			messageBox.clear();		
-			return m;
-		}
+		final Mailbox mailbox = messageBox;
+		return mailbox == null ? null : mailbox.purge();
 	}
 
 	/**
@@ -1656,7 +1797,8 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 *         the mailbox.
 	 */
 	public boolean isMessageBoxEmpty() { 
-		return messageBox.isEmpty();
+		final Mailbox mailbox = messageBox;
+		return mailbox == null || mailbox.isEmpty();
 	}
 
 	/**
@@ -1795,6 +1937,10 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 * Broadcasts a message to every agent having a role in a group in a
 	 * community, but not to the sender.
 	 * 
+	 * Each receiver gets its own copy of the message, unless it is a
+	 * {@link madkit.message.SharedMessage}: The same instance is then
+	 * delivered to all the local receivers.
+	 * 
 	 * @param community
 	 *           the community name
 	 * @param group
@@ -1816,6 +1962,9 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 *         having this role.</li>
 	 *         <li><code>{@link ReturnCode#NOT_IN_GROUP}</code>: If this agent is
 	 *         not a member of the targeted group.</li>
+	 *         <li><code>{@link ReturnCode#MAILBOX_FULL}</code>: If the mailbox
+	 *         of at least one local receiver refused the message. The other
+	 *         receivers got it.</li>
 	 *         </ul>
 	 * @see ReturnCode
 	 * 
@@ -1829,6 +1978,10 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 * community using a specific role for the sender. The sender is excluded
 	 * from the search.
 	 * 
+	 * Each receiver gets its own copy of the message, unless it is a
+	 * {@link madkit.message.SharedMessage}: The same instance is then
+	 * delivered to all the local receivers.
+	 * 
 	 * @param community
 	 *           the community name
 	 * @param group
@@ -1851,6 +2004,9 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 *         <li><code>{@link ReturnCode#NO_RECIPIENT_FOUND}</code>: If no
 	 *         agent was found as recipient, i.e. the sender was the only agent
 	 *         having this role.</li>
+	 *         <li><code>{@link ReturnCode#MAILBOX_FULL}</code>: If the mailbox
+	 *         of at least one local receiver refused the message. The other
+	 *         receivers got it.</li>
 	 *         </ul>
 	 * @see ReturnCode
 	 * 
@@ -1860,6 +2016,227 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 		return getKernel().broadcastMessageWithRole(this, community, group, role, messageToSend, senderRole);
 	}
 
+	/**
+	 * Returns a handle on a CGR location which speeds up
+	 * sending messages to it repeatedly: Using
+	 * {@link RoleHandle#sendMessage(Message)} or
+	 * {@link RoleHandle#broadcastMessage(Message)} has the
+	 * same effect as {@link #sendMessage(String, String, String, Message)} or
+	 * {@link #broadcastMessage(String, String, String, Message)}, but the
+	 * location is not looked up for each message.
+	 * <p>
+	 * The location does not have to exist when the handle is created, and the
+	 * handle remains usable whatever happens to it afterward.
+	 * 
+	 * @param community
+	 *           the community name
+	 * @param group
+	 *           the group name
+	 * @param role
+	 *           the role name
+	 * @return a handle on this CGR location for this agent
+	 * @see RoleHandle
+	 * @since MaDKit 5.2
+	 */
+	public RoleHandle getRoleHandle(final String community, final String group, final String role) {
+		return getRoleHandle(community, group, role, null);
+	}
+
+	/**
+	 * Same as {@link #getRoleHandle(String, String, String)}, 
+	 * using a specific role for sending the messages, as
+	 * {@link #sendMessageWithRole(String, String, String, Message, String)} does.
+	 * 
+	 * @param community
+	 *           the community name
+	 * @param group
+	 *           the group name
+	 * @param role
+	 *           the role name
+	 * @param senderRole the agent's role with which the messages should be sent
+	 * @return a handle on this CGR location for this agent
+	 * @see RoleHandle
+	 * @since MaDKit 5.2
+	 */
+	public RoleHandle getRoleHandle(final String community, final String group, final String role, final String senderRole) {
+		return new RoleHandle(this, community, group, role, senderRole);
+	}
+
+	/**
+	 * Sends a message and returns a future of the reply to it, so that an
+	 * agent can wait for a reply without blocking its thread, or without owning
+	 * one. The reply completes the future when it is delivered: it is not put
+	 * in the mailbox and cannot be obtained by {@link #nextMessage()} or the
+	 * like. The dependent actions of the future are executed by the thread
+	 * which delivers the reply, unless an asynchronous variant such as
+	 * {@link CompletableFuture#thenAcceptAsync(java.util.function.Consumer)} is
+	 * used.
+	 * <p>
+	 * This has the same effect as
+	 * <code>sendMessageWithRoleAsync(receiver, messageToSend, null, timeOutMilliSeconds)</code>
+	 * 
+	 * @param receiver
+	 *           the targeted agent
+	 * @param messageToSend
+	 *           the message to send
+	 * @param timeOutMilliSeconds
+	 *           the maximum time to wait. If <code>null</code> the reply is
+	 *           waited for indefinitely.
+	 * @return a future which is completed with the reply, or with
+	 *         <code>null</code> if the time out has elapsed, if there was an
+	 *         error when sending the message or if this agent has been
+	 *         terminated in the meantime.
+	 * @see #sendMessageWithRoleAsync(AgentAddress, Message, String, Integer)
+	 * @since MaDKit 5.2
+	 */
+	public CompletableFuture<Message> sendMessageAsync(final AgentAddress receiver, final Message messageToSend,
+			final Integer timeOutMilliSeconds) {
+		return sendMessageWithRoleAsync(receiver, messageToSend, null, timeOutMilliSeconds);
+	}
+
+	/**
+	 * Sends a message using a specific role for the sender and returns a future
+	 * of the reply to it.
+	 * 
+	 * @param receiver
+	 *           the targeted agent
+	 * @param messageToSend
+	 *           the message to send
+	 * @param senderRole
+	 *           the agent's role with which the message should be sent
+	 * @param timeOutMilliSeconds
+	 *           the maximum time to wait. If <code>null</code> the reply is
+	 *           waited for indefinitely.
+	 * @return a future which is completed with the reply, or with
+	 *         <code>null</code> if the time out has elapsed, if there was an
+	 *         error when sending the message, that is any {@link ReturnCode}
+	 *         different from {@link ReturnCode#SUCCESS} (see
+	 *         {@link #sendMessageWithRole(AgentAddress, Message, String)}), or
+	 *         if this agent has been terminated in the meantime.
+	 * @see #sendMessageAsync(AgentAddress, Message, Integer)
+	 * @since MaDKit 5.2
+	 */
+	public CompletableFuture<Message> sendMessageWithRoleAsync(final AgentAddress receiver, final Message messageToSend,
+			final String senderRole, final Integer timeOutMilliSeconds) {
+		return getKernel().sendMessageAsync(this, receiver, messageToSend, senderRole, timeOutMilliSeconds);
+	}
+
+	/**
+	 * Sends a message to an agent having this position in the organization and
+	 * returns a future of the reply to it. This has the same effect as
+	 * <code>sendMessageWithRoleAsync(community, group, role, messageToSend, null, timeOutMilliSeconds)</code>
+	 * 
+	 * @param community
+	 *           the community name
+	 * @param group
+	 *           the group name
+	 * @param role
+	 *           the role name
+	 * @param messageToSend
+	 *           the message to send
+	 * @param timeOutMilliSeconds
+	 *           the maximum time to wait. If <code>null</code> the reply is
+	 *           waited for indefinitely.
+	 * @return a future which is completed with the reply, or with
+	 *         <code>null</code> if the time out has elapsed, if there was an
+	 *         error when sending the message or if this agent has been
+	 *         terminated in the meantime.
+	 * @see #sendMessageAsync(AgentAddress, Message, Integer)
+	 * @since MaDKit 5.2
+	 */
+	public CompletableFuture<Message> sendMessageAsync(final String community, final String group, final String role,
+			final Message messageToSend, final Integer timeOutMilliSeconds) {
+		return sendMessageWithRoleAsync(community, group, role, messageToSend, null, timeOutMilliSeconds);
+	}
+
+	/**
+	 * Sends a message to an agent having this position in the organization,
+	 * using a specific role for the sender, and returns a future of the reply
+	 * to it. The targeted agent is selected randomly among matched agents. The
+	 * sender is excluded from this search.
+	 * 
+	 * @param community
+	 *           the community name
+	 * @param group
+	 *           the group name
+	 * @param role
+	 *           the role name
+	 * @param messageToSend
+	 *           the message to send
+	 * @param senderRole
+	 *           the agent's role with which the message should be sent
+	 * @param timeOutMilliSeconds
+	 *           the maximum time to wait. If <code>null</code> the reply is
+	 *           waited for indefinitely.
+	 * @return a future which is completed with the reply, or with
+	 *         <code>null</code> if the time out has elapsed, if there was an
+	 *         error when sending the message or if this agent has been
+	 *         terminated in the meantime.
+	 * @see #sendMessageAsync(AgentAddress, Message, Integer)
+	 * @since MaDKit 5.2
+	 */
+	public CompletableFuture<Message> sendMessageWithRoleAsync(final String community, final String group, final String role,
+			final Message messageToSend, final String senderRole, final Integer timeOutMilliSeconds) {
+		return getKernel().sendMessageAsync(this, community, group, role, messageToSend, senderRole, timeOutMilliSeconds);
+	}
+
+	/**
+	 * Broadcasts a message to every agent having a role in a group and returns
+	 * a future of the replies to it. This has the same effect as
+	 * <code>broadcastMessageWithRoleAsync(community, group, role, messageToSend, null, timeOutMilliSeconds)</code>
+	 * 
+	 * @param community
+	 *           the community name
+	 * @param group
+	 *           the group name
+	 * @param role
+	 *           the role name
+	 * @param messageToSend
+	 *           the message to broadcast
+	 * @param timeOutMilliSeconds
+	 *           the maximum time to wait. If <code>null</code> the replies are
+	 *           waited for indefinitely.
+	 * @return a future which is completed with the replies once every receiver
+	 *         has replied, or with the replies received so far when the time
+	 *         out has elapsed. It is completed with <code>null</code> if no
+	 *         reply has been received or if the broadcast has failed.
+	 * @see #sendMessageAsync(AgentAddress, Message, Integer)
+	 * @since MaDKit 5.2
+	 */
+	public CompletableFuture<List<Message>> broadcastMessageAsync(final String community, final String group,
+			final String role, final Message messageToSend, final Integer timeOutMilliSeconds) {
+		return broadcastMessageWithRoleAsync(community, group, role, messageToSend, null, timeOutMilliSeconds);
+	}
+
+	/**
+	 * Broadcasts a message to every agent having a role in a group, using a
+	 * specific role for the sender, and returns a future of the replies to it.
+	 * 
+	 * @param community
+	 *           the community name
+	 * @param group
+	 *           the group name
+	 * @param role
+	 *           the role name
+	 * @param messageToSend
+	 *           the message to broadcast
+	 * @param senderRole
+	 *           the agent's role with which the message should be sent
+	 * @param timeOutMilliSeconds
+	 *           the maximum time to wait. If <code>null</code> the replies are
+	 *           waited for indefinitely.
+	 * @return a future which is completed with the replies once every receiver
+	 *         has replied, or with the replies received so far when the time
+	 *         out has elapsed. It is completed with <code>null</code> if no
+	 *         reply has been received or if the broadcast has failed.
+	 * @see #broadcastMessageAsync(String, String, String, Message, Integer)
+	 * @since MaDKit 5.2
+	 */
+	public CompletableFuture<List<Message>> broadcastMessageWithRoleAsync(final String community, final String group,
+			final String role, final Message messageToSend, final String senderRole, final Integer timeOutMilliSeconds) {
+		return getKernel().broadcastMessageAsync(this, community, group, role, messageToSend, senderRole, timeOutMilliSeconds);
+	}
+
 	/**
 	 * Sends a message by replying to a previously received message. The sender
 	 * is excluded from this search.
@@ -1939,10 +2316,23 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 * @param m
 	 */
 	public void receiveMessage(final Message m) {
-		messageBox.offer(m); // TODO test vs. arraylist and synchronized
-		// if(messageBox == null)
-		// messageBox = new LinkedBlockingDeque<Message>();
-		// messageBox.offer(m); // TODO test vs. arraylist and synchronized
+		deliverMessage(m);
+	}
+
+	/**
+	 * Puts the message in the mailbox
+	 * 
+	 * @return <code>false</code> if the mailbox is full and refuses the message
+	 */
+	boolean deliverMessage(final Message m) {
+		return getMailbox().offer(m);
+	}
+
+	/**
+	 * Called by the kernel once {@link #activate()} has successfully returned,
+	 * including when the agent is launched in a bucket
+	 */
+	void activated() {
 	}
 
 	/**
@@ -2332,12 +2722,12 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	// /////////////////////////////////////////////////////////////////////////////
 
 	final boolean logLifeException(final Throwable e) {
-		if (e instanceof ThreadDeath || e instanceof IllegalMonitorStateException) {
+		if (e instanceof ThreadDeath || e instanceof KilledException || e instanceof IllegalMonitorStateException) {
 			if (logger != null)
 				logger.finer("-*-GET KILLED in " + getState().lifeCycleMethod() + "-*-");
 		}
 		else {
-			if (alive.get() || state.get() == ENDING) {
+			if (isAlive() || getState() == ENDING) {
 				getLogger().severeLog("-*-" + getState().lifeCycleMethod() + " BUG*-*", e);
 			}
 		}
@@ -2354,7 +2744,7 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 */
 	Message waitingNextMessage(final long timeout, final TimeUnit unit) {
 		try {
-			return messageBox.poll(timeout, unit);
+			return getMailbox().poll(timeout, unit);
 		} catch (InterruptedException e) {
 			handleInterruptedException();
 			return null;
@@ -2413,7 +2803,7 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 		final long endTime = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeOutMilliSeconds);
 		final ConversationID conversationID = message.getConversationID();
 		int missing = size;
-		final List<Message> receptions = new ArrayList<>(messageBox.size());
+		final List<Message> receptions = new ArrayList<>();
 		final List<Message> answers = new ArrayList<>(size);
 		while (missing > 0 && System.nanoTime() < endTime) {
 			Message answer = waitingNextMessage(endTime - System.nanoTime(), TimeUnit.NANOSECONDS);
@@ -2436,8 +2826,8 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 * @param receptions
 	 */
 	void addAllToMessageBox(final List<Message> receptions) {
-		synchronized (messageBox) {
-			messageBox.addAll(receptions);
+		if (! receptions.isEmpty()) {
+			getMailbox().addAllFirst(receptions);
 		}
 	}
 
@@ -2486,8 +2876,12 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 * @since MaDKit 5.0.0.12
 	 */
 	final void handleInterruptedException() {// TODO
-		if (Thread.currentThread().getName().equals(getAgentThreadName(getState())) && alive.compareAndSet(true, false))
-			throw new SelfKillException(0);// TODO why 0 ?
+		if (Thread.currentThread().getName().equals(getAgentThreadName(getState()))) {
+			if (compareAndSetAlive(true, false))
+				throw new SelfKillException(0);// TODO why 0 ?
+			if (getState() != TERMINATED)// killed but the thread could not be stopped
+				throw new KilledException();
+		}
 		Thread.currentThread().interrupt();
 	}
 	
@@ -2827,7 +3221,7 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 	 * 
 	 */
 	public State getState() {
-		return state.get();
+		return STATES[life & STATE_MASK];
 	}
 
 	/**
@@ -3086,6 +3480,14 @@ public class AbstractAgent implements Comparable<AbstractAgent> {
 		 * an object using {@link AbstractAgent#receiveMessage(Message)}.
 		 */
 		CANT_REPLY,
+		/**
+		 * Returned by send primitives when the mailbox of the
+		 * receiver is full and refuses the message. 
+		 * See {@link Mailbox.OverflowPolicy#REJECT}
+		 * 
+		 * @since MaDKit 5.2
+		 */
+		MAILBOX_FULL,
 		/**
 		 * Returned on special errors. This should not
 		 * be encountered
@@ -0,0 +1,275 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.AbstractList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The fork-join engine used by {@link Activator#multicoreExecute(Object...)}.
+ * <p>
+ * A step is done by a fixed set of worker tasks which are reused from one step
+ * to another. Workers claim chunks of the agents list from a shared cursor:
+ * chunks are large at the beginning of the step and get smaller as the
+ * remaining agents decrease, so that a worker which got costly agents does not
+ * delay the others. Each chunk is given to {@link Activator#execute(List, Object...)}
+ * through a range view which is also reused, so that no task nor list is
+ * allocated per step.
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+final class ActivationEngine<A extends AbstractAgent> {
+
+	private final Activator<A>			activator;
+	/**
+	 * <code>null</code> if the parallel pool of the kernel is used
+	 */
+	private final ForkJoinPool			dedicatedPool;
+	private final Worker[]				workers;
+	private final AtomicInteger		cursor	= new AtomicInteger();
+
+	private List<A>						agents;
+	private Object[]						args;
+	private int								size;
+	private int								nbOfWorkers;
+
+	/**
+	 * @param activator the activator to execute
+	 * @param parallelism the number of worker tasks
+	 * @param dedicatedPool if <code>true</code>, a pool is created for this engine. 
+	 * Otherwise the parallel pool of the kernel is used, which is looked up
+	 * on each execution as the activator may run before being added.
+	 */
+	@SuppressWarnings({ "unchecked", "rawtypes" })// no generic array of the inner class
+	ActivationEngine(final Activator<A> activator, final int parallelism, final boolean dedicatedPool) {
+		this.activator = activator;
+		this.dedicatedPool = dedicatedPool ? newPool(parallelism, "MK_ACTIVATOR-" + activator.getClass().getSimpleName() + "-") : null;
+		workers = new ActivationEngine.Worker[parallelism];
+		for (int i = 0; i < parallelism; i++) {
+			workers[i] = new Worker(i);
+		}
+	}
+
+	private static ForkJoinPool newPool(final int parallelism, final String threadNamePrefix) {
+		return new ForkJoinPool(parallelism, pool -> {
+			final ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+			t.setName(threadNamePrefix + t.getPoolIndex());
+			return t;
+		}, null, false);
+	}
+
+	int getParallelism() {
+		return workers.length;
+	}
+
+	boolean hasDedicatedPool() {
+		return dedicatedPool != null;
+	}
+
+	/**
+	 * Executes the activator on all the agents of the list, 
+	 * returning when all of them have been processed.
+	 * 
+	 * @param list
+	 * @param arguments
+	 */
+	synchronized void execute(final List<A> list, final Object... arguments) {
+		size = list.size();
+		if (size == 0)
+			return;
+		agents = list;
+		args = arguments;
+		nbOfWorkers = Math.min(workers.length, size);
+		cursor.set(0);
+		final Worker root = workers[0];
+		root.reinitialize();
+		try {
+			(dedicatedPool != null ? dedicatedPool : activator.parallelPool()).invoke(root);
+		}
+		finally {
+			agents = null;
+			args = null;
+		}
+	}
+
+	/**
+	 * Shuts down the pool if it is dedicated to this engine
+	 */
+	void shutdown() {
+		if (dedicatedPool != null) {
+			dedicatedPool.shutdown();
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private final class Worker extends RecursiveAction {
+
+		private final int					index;
+		private final AgentsRange<A>	range					= new AgentsRange<>();
+		private final AgentsRange<A>	randomAccessRange	= new RandomAccessRange<>();
+
+		Worker(int index) {
+			this.index = index;
+		}
+
+		@Override
+		protected void compute() {
+			if (index != 0) {
+				work();
+				return;
+			}
+			for (int i = 1; i < nbOfWorkers; i++) {
+				workers[i].reinitialize();
+				workers[i].fork();
+			}
+			try {
+				work();
+			}
+			finally {
+				for (int i = nbOfWorkers - 1; i > 0; i--) {
+					workers[i].quietlyJoin();
+				}
+			}
+			for (int i = 1; i < nbOfWorkers; i++) {
+				workers[i].join();// rethrows a failure, if any
+			}
+		}
+
+		private void work() {
+			final int total = size;
+			final int minChunk = Math.max(1, total / (nbOfWorkers << 8));
+			try {
+				for (;;) {
+					final int from = cursor.get();
+					if (from >= total)
+						return;
+					final int chunk = Math.max(minChunk, (total - from) / (nbOfWorkers << 1));
+					final int to = Math.min(total, from + chunk);
+					if (cursor.compareAndSet(from, to)) {
+						final AgentsRange<A> r = agents instanceof RandomAccess ? randomAccessRange : range;
+						r.reset(agents, from, to);
+						try {
+							activator.execute(r, args);
+						}
+						finally {
+							r.reset(null, 0, 0);
+						}
+					}
+				}
+			}
+			catch (Throwable e) {
+				cursor.set(total);// the other workers stop as soon as possible
+				throw e;
+			}
+		}
+	}
+
+	/**
+	 * A reusable view of a portion of the agents list, which is iterated
+	 * using the iterator of the list
+	 */
+	static class AgentsRange<A> extends AbstractList<A> {
+
+		private List<A>	list;
+		private int			from;
+		private int			size;
+
+		void reset(final List<A> l, final int fromIndex, final int toIndex) {
+			list = l;
+			from = fromIndex;
+			size = toIndex - fromIndex;
+		}
+
+		@Override
+		public A get(int index) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			return list.get(from + index);
+		}
+
+		@Override
+		public A set(int index, A element) {
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+			return list.set(from + index, element);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		@Override
+		public Iterator<A> iterator() {
+			return new Iterator<A>() {
+
+				private final ListIterator<A>	it			= list.listIterator(from);
+				private int							remaining	= size;
+
+				@Override
+				public boolean hasNext() {
+					return remaining > 0;
+				}
+
+				@Override
+				public A next() {
+					if (remaining <= 0)
+						throw new NoSuchElementException();
+					remaining--;
+					return it.next();
+				}
+			};
+		}
+	}
+
+	/**
+	 * A range over a list which has a constant time {@link List#get(int)}
+	 */
+	static final class RandomAccessRange<A> extends AgentsRange<A> implements RandomAccess {
+	}
+
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.Arrays;
+
+/**
+ * The events of a {@link Scheduler} in the discrete-event mode, ordered by
+ * activation time. An event is the activation of an activator, or the
+ * activation of a single agent by an activator. Events having the same time
+ * are polled in the order they have been added.
+ * <p>
+ * This is a binary heap stored in parallel arrays, so that adding and polling
+ * events allocate nothing once the arrays are large enough. Events are never
+ * removed: an activator event whose version is not the current one of its
+ * activator is obsolete and should be ignored when it is polled.
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+final class ActivationQueue {
+
+	private double[]				times			= new double[16];
+	private long[]					orders		= new long[16];
+	private Activator<?>[]		activators	= new Activator<?>[16];
+	private AbstractAgent[]		agents		= new AbstractAgent[16];
+	private int[]					versions		= new int[16];
+	private int						size;
+	private long					counter;
+
+	private AbstractAgent		polledAgent;
+	private int						polledVersion;
+
+	/**
+	 * Adds an event.
+	 * 
+	 * @param time
+	 *           the activation time
+	 * @param activator
+	 *           the activator to execute
+	 * @param agent
+	 *           the agent to activate, or <code>null</code> if the whole
+	 *           activator is executed
+	 * @param version
+	 *           the version of the activator's next activation time
+	 */
+	synchronized void add(final double time, final Activator<?> activator, final AbstractAgent agent, final int version) {
+		if (size == times.length) {
+			final int capacity = size * 2;
+			times = Arrays.copyOf(times, capacity);
+			orders = Arrays.copyOf(orders, capacity);
+			activators = Arrays.copyOf(activators, capacity);
+			agents = Arrays.copyOf(agents, capacity);
+			versions = Arrays.copyOf(versions, capacity);
+		}
+		final long order = counter++;
+		int i = size++;
+		while (i > 0) {// sift up
+			final int parent = (i - 1) >>> 1;
+			if (! before(time, order, parent))
+				break;
+			move(parent, i);
+			i = parent;
+		}
+		set(i, time, order, activator, agent, version);
+	}
+
+	/**
+	 * @return the time of the next event, or {@link Double#POSITIVE_INFINITY} if
+	 *         there is none
+	 */
+	synchronized double nextTime() {
+		return size == 0 ? Double.POSITIVE_INFINITY : times[0];
+	}
+
+	/**
+	 * Removes the next event. Its agent and version are then given by
+	 * {@link #polledAgent()} and {@link #polledVersion()}.
+	 * 
+	 * @return the activator of the next event, or <code>null</code> if there is
+	 *         none
+	 */
+	synchronized Activator<?> poll() {
+		if (size == 0)
+			return null;
+		final Activator<?> activator = activators[0];
+		polledAgent = agents[0];
+		polledVersion = versions[0];
+		final int last = --size;
+		final double time = times[last];
+		final long order = orders[last];
+		final Activator<?> a = activators[last];
+		final AbstractAgent agent = agents[last];
+		final int version = versions[last];
+		activators[last] = null;
+		agents[last] = null;
+		int i = 0;
+		for (;;) {// sift down
+			int child = 2 * i + 1;
+			if (child >= last)
+				break;
+			if (child + 1 < last && before(times[child + 1], orders[child + 1], child))
+				child++;
+			if (! before(times[child], orders[child], time, order))
+				break;
+			move(child, i);
+			i = child;
+		}
+		if (last > 0)
+			set(i, time, order, a, agent, version);
+		return activator;
+	}
+
+	AbstractAgent polledAgent() {
+		return polledAgent;
+	}
+
+	int polledVersion() {
+		return polledVersion;
+	}
+
+	synchronized int size() {
+		return size;
+	}
+
+	synchronized void clear() {
+		Arrays.fill(activators, 0, size, null);
+		Arrays.fill(agents, 0, size, null);
+		size = 0;
+	}
+
+	private boolean before(final double time, final long order, final int i) {
+		return before(time, order, times[i], orders[i]);
+	}
+
+	private static boolean before(final double time, final long order, final double otherTime, final long otherOrder) {
+		return time < otherTime || (time == otherTime && order < otherOrder);
+	}
+
+	private void move(final int from, final int to) {
+		set(to, times[from], orders[from], activators[from], agents[from], versions[from]);
+	}
+
+	private void set(final int i, final double time, final long order, final Activator<?> activator, final AbstractAgent agent,
+			final int version) {
+		times[i] = time;
+		orders[i] = order;
+		activators[i] = activator;
+		agents[i] = agent;
+		versions[i] = version;
+	}
+
+}
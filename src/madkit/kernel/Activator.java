@@ -37,10 +37,8 @@ knowledge of the CeCILL-C license and that you accept its terms.
 package madkit.kernel;
 
 import java.lang.reflect.Method;
-import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
 import java.util.List;
-import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 
 import madkit.simulation.activator.GenericBehaviorActivator;
@@ -66,6 +64,18 @@ import madkit.simulation.activator.GenericBehaviorActivator;
 public abstract class Activator<A extends AbstractAgent> extends Overlooker<A>{
 
 	private int nbOfsimultaneousTasks = 1;
+	private boolean dedicatedPool = false;
+	private volatile ActivationEngine<A> engine;
+	private double nextActivationTime;
+	/**
+	 * the scheduler to which this activator has been added
+	 */
+	Scheduler scheduler;
+	/**
+	 * incremented each time the next activation time is set,
+	 * so that obsolete events can be recognized
+	 */
+	int eventVersion;
 	/**
 	 * Builds a new Activator on the given CGR location of the
 	 * artificial society with multicore mode set to <code>false</code>.
@@ -93,7 +103,7 @@ public abstract class Activator<A extends AbstractAgent> extends Overlooker<A>{
 	 */
 	public void execute(Object... args) {
 		if (isMulticoreModeOn()) {
-			multicoreExecute();
+			multicoreExecute(args);
 		}
 		else{
 			execute(getCurrentAgentsList(), args);
@@ -110,6 +120,8 @@ public abstract class Activator<A extends AbstractAgent> extends Overlooker<A>{
 	 * this method will automatically be distributed over several threads.
 	 * So, one has to take care about how the activator's fields are used
 	 * here to avoid a {@link ConcurrentModificationException} for instance.
+	 * Also, in this mode, the list is a view which is reused by the next calls: 
+	 * it should not be kept once this method returns.
 	 * 
 	 * @param agentsList
 	 */
@@ -117,44 +129,91 @@ public abstract class Activator<A extends AbstractAgent> extends Overlooker<A>{
 
 	/**
 	 * Executes the behavior on all the agents in a concurrent way, using several processor cores if available.
-	 * This call decomposes the execution of the activator in {@link #nbOfParallelTasks()} tasks so that
+	 * This call decomposes the execution of the activator in {@link #nbOfParallelTasks()} fork-join tasks so that
 	 * there are independently performed by the available core of the host.
 	 * <p>
-	 * Default implementation 
+	 * Default implementation does not split the list in equal parts: the tasks take 
+	 * portions of the list, which get smaller as the step progresses, until all the agents have been processed.
+	 * So a task which got costly agents does not make the others wait for it.
+	 * The tasks run on the parallel pool of the kernel, or on a pool dedicated to
+	 * this activator, see {@link #useDedicatedPool(boolean)}.
+	 * <p>
 	 * Beware that using this call will produce different outputs for each run unless a concurrent simulation
 	 * model is used. That is to say, a model supporting concurrent phases in the simulation execution such as the
 	 * <a href="http://www.aamas-conference.org/Proceedings/aamas07/html/pdf/AAMAS07_0179_07a7765250ef7c3551a9eb0f13b75a58.pdf">IRM4S model<a/>
 	 * 
 	 */
 	protected void multicoreExecute(final Object... args) {
-		final int cpuCoreNb = nbOfParallelTasks();
-		final ArrayList<Callable<Void>> workers = new ArrayList<>(cpuCoreNb);
-		final List<A> list = getCurrentAgentsList();
-		int bucketSize = list.size();
-		final int nbOfAgentsPerTask = bucketSize / cpuCoreNb;
-		for (int i = 0; i < cpuCoreNb; i++) {
-			final int index = i;
-			workers.add(new Callable<Void>() {
-				public Void call() throws Exception {
-					int firstIndex = nbOfAgentsPerTask*index;//TODO check that using junit
-					execute(list.subList(firstIndex, firstIndex+nbOfAgentsPerTask), args);
-					return null;
+		ActivationEngine<A> e = engine;
+		if (e == null) {
+			synchronized (this) {
+				e = engine;
+				if (e == null) {
+					engine = e = new ActivationEngine<>(this, nbOfsimultaneousTasks, dedicatedPool);
 				}
-			});
-		}
-		workers.add(new Callable<Void>() {
-			public Void call() throws Exception {
-				execute(list.subList(nbOfAgentsPerTask*cpuCoreNb, list.size()), args);
-				return null;
 			}
-		});
-		try {
-			Activator.getMadkitServiceExecutor().invokeAll(workers);
-		} catch (InterruptedException e) {
-			Thread.currentThread().interrupt();//do not swallow it !
+		}
+		e.execute(getCurrentAgentsList(), args);
+	}
+
+	/**
+	 * Returns the time at which this activator should be executed next when
+	 * its scheduler is in the discrete-event mode. Default is 0.
+	 * 
+	 * @return the next activation time of this activator
+	 * @see Scheduler#useDiscreteEvents(boolean)
+	 * @since MaDKit 5.2
+	 */
+	public double getNextActivationTime() {
+		return nextActivationTime;
+	}
+
+	/**
+	 * Sets the time at which this activator should be executed next when
+	 * its scheduler is in the discrete-event mode. It can be called at any
+	 * time, especially in {@link #execute(List, Object...)}: if it is not
+	 * called by an execution, the activator is executed again one time unit later.
+	 * {@link Double#POSITIVE_INFINITY} means that the activator should not be 
+	 * executed anymore. A time which is before the current GVT of the scheduler
+	 * stands for the current GVT.
+	 * 
+	 * @param time the next activation time
+	 * @see Scheduler#useDiscreteEvents(boolean)
+	 * @since MaDKit 5.2
+	 */
+	public void setNextActivationTime(final double time) {
+		nextActivationTime = time;
+		eventVersion++;
+		final Scheduler s = scheduler;
+		if (s != null) {
+			s.schedule(this, null, time, eventVersion);
 		}
 	}
 
+	/**
+	 * Schedules the activation of a single agent by this activator at a given time, 
+	 * when its scheduler is in the discrete-event mode: {@link #execute(List, Object...)} 
+	 * will then be called with a list only containing this agent. 
+	 * So agents can be activated at their own pace, without
+	 * activating all the agents of this activator. An agent can be scheduled
+	 * several times. The activation is ignored if the agent is not alive anymore.
+	 * 
+	 * @param agent the agent to activate
+	 * @param time its activation time. A time which is before the current GVT of the scheduler
+	 * stands for the current GVT.
+	 * @throws IllegalStateException if this activator has not been added to a scheduler 
+	 * which is in the discrete-event mode
+	 * @see Scheduler#useDiscreteEvents(boolean)
+	 * @since MaDKit 5.2
+	 */
+	public void scheduleAgent(final A agent, final double time) {
+		final Scheduler s = scheduler;
+		if (s == null || ! s.isDiscreteEventModeOn()) {
+			throw new IllegalStateException(this + " is not used by a discrete-event scheduler");
+		}
+		s.schedule(this, agent, time, 0);
+	}
+
 	@Override
 	public String toString() {
 		return super.toString()+ (isMulticoreModeOn() ? " multicore mode ": "");
@@ -186,7 +245,52 @@ public abstract class Activator<A extends AbstractAgent> extends Overlooker<A>{
 	 * {@link #isMulticoreModeOn()} returns <code>false</code>.
 	 */
 	public void useMulticore(int nbOfParallelTasks) {
-		nbOfsimultaneousTasks = nbOfParallelTasks < 2 ? 1 : nbOfParallelTasks;
+		final int nb = nbOfParallelTasks < 2 ? 1 : nbOfParallelTasks;
+		if (nb != nbOfsimultaneousTasks) {
+			nbOfsimultaneousTasks = nb;
+			shutdownEngine();
+		}
+	}
+
+	/**
+	 * Sets if the multicore mode of this activator should use 
+	 * its own thread pool, rather than the parallel pool of the kernel, 
+	 * which is shared by all the activators and shut down with the kernel.
+	 * A dedicated pool has {@link #nbOfParallelTasks()} threads, so that 
+	 * this activator does not compete with the others for processor cores.
+	 * It is released when the activator is removed from its scheduler.
+	 * Default is <code>false</code>.
+	 * 
+	 * @param dedicated <code>true</code> to use a dedicated pool
+	 * @see #useMulticore(int)
+	 * @since MaDKit 5.2
+	 */
+	public void useDedicatedPool(boolean dedicated) {
+		if (dedicated != dedicatedPool) {
+			dedicatedPool = dedicated;
+			shutdownEngine();
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the multicore mode of this activator
+	 * uses its own thread pool
+	 * @see #useDedicatedPool(boolean)
+	 * @since MaDKit 5.2
+	 */
+	public boolean isDedicatedPoolUsed() {
+		return dedicatedPool;
+	}
+
+	/**
+	 * Releases the multicore engine, and its pool if dedicated to this activator.
+	 * A new one is built on the next multicore execution.
+	 */
+	synchronized final void shutdownEngine() {
+		if (engine != null) {
+			engine.shutdown();
+			engine = null;
+		}
 	}
 
 	/**
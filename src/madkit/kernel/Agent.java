@@ -159,7 +159,7 @@ public class Agent extends AbstractAgent{
 
 	final boolean living() {
 		try {
-			state.set(State.LIVING);
+			setState(State.LIVING);
 			setMyThread(Thread.currentThread());
 			logMethod(true);
 			try {
@@ -167,12 +167,12 @@ public class Agent extends AbstractAgent{
 			} catch (SelfKillException e) {
 				suicide(e);
 			} catch (Throwable e) {
-				synchronized (state) {
+				synchronized (lifeLock()) {
 					logLifeException(e);
-					alive.set(false);
+					setAlive(false);
 				}
 			}
-			if(! alive.get()){
+			if(! isAlive()){
 				try {
 					Thread.sleep(1);
 				} catch (InterruptedException e) {
@@ -219,7 +219,7 @@ public class Agent extends AbstractAgent{
 	@Override
 	public ReturnCode killAgent(AbstractAgent target, int timeOutSeconds) {
 		//if this is a self kill done by the agent itself, not an object which has access to the agent
-		if(target == this && myThread == Thread.currentThread() && alive.compareAndSet(true, false)){
+		if(target == this && myThread == Thread.currentThread() && compareAndSetAlive(true, false)){
 			throw new SelfKillException(timeOutSeconds);
 		}
 		return super.killAgent(target, timeOutSeconds);
@@ -604,7 +604,7 @@ public class Agent extends AbstractAgent{
 	 */
 	private Message waitingNextMessageForEver() {
 		try {
-			return messageBox.take();
+			return getMailbox().take();
 		} catch (InterruptedException e) {
 			handleInterruptedException();
 			//		} catch (IllegalMonitorStateException e) {
@@ -70,7 +70,7 @@ public class AgentAddress implements java.io.Serializable{
 	final private int _hashCode;
 	private Role roleObject;
 
-	private String cgr;//This is necessary to keep info in agent addresses that do not exist anymore
+	private Role location;//This is necessary to keep info in agent addresses that do not exist anymore
 
 
 	/**
@@ -85,6 +85,22 @@ public class AgentAddress implements java.io.Serializable{
 		_hashCode = agt.hashCode();
 	}
 
+	/**
+	 * Rebuilds an address which has been received from the network.
+	 * 
+	 * @param hashCode the hash code of the agent which owns the address
+	 * @param role the role object, i.e. an empty shell naming the CGR location,
+	 * or <code>null</code> if the address was no longer valid when sent
+	 * @param location the empty shell naming the CGR location of an address which was no longer valid when sent
+	 * @param ka the kernel address corresponding to the kernel in which this AA has been created
+	 */
+	AgentAddress(final int hashCode, final Role role, final Role location, final KernelAddress ka) {
+		roleObject = role;
+		this.location = location;
+		kernelAddress = ka;
+		_hashCode = hashCode;
+	}
+
 	final AbstractAgent getAgent() {
 		return agent;
 	}
@@ -93,8 +109,8 @@ public class AgentAddress implements java.io.Serializable{
 	 * @param roleObject the roleObject to set
 	 */
 	final void setRoleObject(Role newRole) {
-		if (newRole == null && cgr == null) {
-				cgr = roleObject.getCommunityName() + ";;" + roleObject.getGroupName() + ";;" + roleObject.getRoleName();
+		if (newRole == null && location == null) {
+			location = roleObject.getLocation();
 		}
 		roleObject = newRole;
 	}
@@ -106,6 +122,22 @@ public class AgentAddress implements java.io.Serializable{
 		return roleObject ;
 	}
 
+	/**
+	 * @return the CGR location kept when this address has been invalidated, or 
+	 * <code>null</code> if it has never been
+	 */
+	final Role getLocation() {
+		return location;
+	}
+
+	/**
+	 * @return the role object if this address is valid, its CGR location otherwise
+	 */
+	private Role cgr() {
+		final Role r = roleObject;
+		return r != null ? r : location;
+	}
+
 	/**
 	 * @return the platform's kernelAddress to which this agent address comes from
 	 */
@@ -119,9 +151,7 @@ public class AgentAddress implements java.io.Serializable{
 	 * @since MaDKit 5
 	 */
 	public String getCommunity() {
-		return roleObject != null ? 
-				roleObject.getCommunityName() : 
-					cgr.split(";;")[0];
+		return cgr().getCommunityName();
 	}
 
 	/**
@@ -130,7 +160,7 @@ public class AgentAddress implements java.io.Serializable{
 	 * @since MaDKit 5
 	 */
 	public String getGroup() {
-		return roleObject != null ? roleObject.getGroupName() : cgr.split(";;")[1];
+		return cgr().getGroupName();
 	}
 
 	/**
@@ -139,7 +169,7 @@ public class AgentAddress implements java.io.Serializable{
 	 * @since MaDKit 5
 	 */
 	public String getRole() {
-		return roleObject != null ? roleObject.getRoleName() : cgr.split(";;")[2];
+		return cgr().getRoleName();
 	}
 
 	/**
@@ -246,6 +276,10 @@ final class CandidateAgentAddress extends AgentAddress{
 		super(agt, role, ka);
 	}
 
+	CandidateAgentAddress(int hashCode, Role role, Role location, KernelAddress ka) {
+		super(hashCode, role, location, ka);
+	}
+
 	/**q
 	 * @see madkit.kernel.AgentAddress#getRole()
 	 */
@@ -268,6 +302,11 @@ final class GroupManagerAddress extends AgentAddress{
 		super(agt, role, ka);
 		this.securedGroup = securedGroup;
 	}
+
+	GroupManagerAddress(int hashCode, Role role, Role location, KernelAddress ka, boolean securedGroup) {
+		super(hashCode, role, location, ka);
+		this.securedGroup = securedGroup;
+	}
 	
 	boolean isGroupSecured(){
 		return securedGroup;
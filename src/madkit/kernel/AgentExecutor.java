@@ -36,39 +36,37 @@ knowledge of the CeCILL-C license and that you accept its terms.
  */
 package madkit.kernel;
 
-import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
-import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 
 import madkit.kernel.AbstractAgent.ReturnCode;
 import madkit.kernel.AbstractAgent.State;
 
 /**
+ * Drives the life cycle of a threaded agent: activate, live and end 
+ * are run one after the other by a single thread, which is built by 
+ * the thread factory given by the kernel, i.e. a platform or a virtual thread.
+ * 
  * @author Fabien Michel
  * @since MaDKit 5.0.0.9
- * @version 0.91
+ * @version 0.92
  * 
  */
-final class AgentExecutor extends ThreadPoolExecutor {
+final class AgentExecutor implements Runnable {
 
 	//	private boolean started = false;
 	final private Agent myAgent;
 	final private FutureTask<ReturnCode> activate;
 	final private FutureTask<Void> live;
 	final private FutureTask<Void> end;
+	final private CountDownLatch terminated = new CountDownLatch(1);
+	private ThreadFactory threadFactory;
 
-//	public AgentExecutor(Agent a, ThreadFactory threadFactory) {
-//		super(1, Integer.MAX_VALUE, 0, TimeUnit.NANOSECONDS, new ArrayBlockingQueue<Runnable>(4, false), threadFactory);
-//		myAgent = a;
-////		myAgent.setAgentExecutor(this);
-//		setThreadFactory(threadFactory);
-//	}
-	
 	public AgentExecutor(Agent a) {
-		super(1, 1, 0, TimeUnit.NANOSECONDS, new ArrayBlockingQueue<Runnable>(4, false));
 		myAgent = a;
 		activate = new FutureTask<>(new Callable<ReturnCode>() {
 			public ReturnCode call() {
@@ -77,8 +75,8 @@ final class AgentExecutor extends ThreadPoolExecutor {
 				if (r != ReturnCode.SUCCESS) {//alive is false && not a suicide
 					live.cancel(false);
 					if(end.isCancelled())//TO was 0 in the MK
-						synchronized (myAgent.state) {
-							myAgent.state.notify();
+						synchronized (myAgent.lifeLock()) {
+							myAgent.lifeLock().notifyAll();
 						}
 				}
 				return r;
@@ -86,12 +84,12 @@ final class AgentExecutor extends ThreadPoolExecutor {
 		});
 		live = new FutureTask<>(new Runnable() {
 			public void run() {
-				if(myAgent.getAlive().get()){
+				if(myAgent.isAlive()){
 					myAgent.living();
 				}
 				if(end.isCancelled()){//it is a kill with to == 0
-					synchronized (myAgent.state) {
-						myAgent.state.notify();
+					synchronized (myAgent.lifeLock()) {
+						myAgent.lifeLock().notifyAll();
 					}
 				}
 			}},null);
@@ -101,23 +99,30 @@ final class AgentExecutor extends ThreadPoolExecutor {
 					
 			}},null);
 	}
+
+	void setThreadFactory(final ThreadFactory threadFactory) {
+		this.threadFactory = threadFactory;
+	}
 	
 	Future<ReturnCode> start(){
-		execute(activate);
-		execute(live);
-		execute(end);
-		execute(new Runnable() {
-			@Override
-			public void run() {
-				shutdown();
-			}
-		});
+		threadFactory.newThread(this).start();
 		return activate;
 	}
 
 	@Override
-	protected void terminated() {
-		myAgent.state.set(State.TERMINATED);
+	public void run() {
+		try {
+			activate.run();
+			live.run();
+			end.run();
+		} finally {
+			terminated();
+			terminated.countDown();
+		}
+	}
+
+	private void terminated() {
+		myAgent.setState(State.TERMINATED);
 		//this is always done, even if the AE has not been started !
 		if (! (myAgent.getKernel() instanceof FakeKernel)) {
 			try {
@@ -130,6 +135,15 @@ final class AgentExecutor extends ThreadPoolExecutor {
 			}
 		}
 	}
+
+	/**
+	 * Waits until the life cycle is over.
+	 * 
+	 * @return <code>false</code> if the time out elapsed before
+	 */
+	boolean awaitTermination(final long timeout, final TimeUnit unit) throws InterruptedException {
+		return terminated.await(timeout, unit);
+	}
 	
 	Future<?> getEndProcess() {
 		return end;
@@ -151,7 +165,7 @@ final class AgentExecutor extends ThreadPoolExecutor {
 //	@Override
 //	protected void afterExecute(Runnable r, Throwable t) {
 ////		if(t != null){
-////			myAgent.getAlive().set(false);
+////			myAgent.setAlive(false);
 ////			if(t instanceof ThreadDeath){
 ////				if(myAgent.logger != null){
 ////					myAgent.logger.finer( "-*-GET KILLED in "+methodName()+"-*- : "+t.getMessage());
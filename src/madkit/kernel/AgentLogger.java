@@ -93,6 +93,11 @@ final public class AgentLogger extends Logger {
 	final static private Map<AbstractAgent, AgentLogger>	AGENT_LOGGERS			= new ConcurrentHashMap<>();	// TODO evaluate foot print
 	
 	private FileHandler	fh;
+	/**
+	 * used instead of the console and file handlers when {@link BooleanOption#asyncLogging} is activated
+	 */
+	private AsyncLogWriter	asyncWriter;
+	private Handler			asyncHandler;
 
 	final private AbstractAgent									myAgent;
 
@@ -159,7 +164,14 @@ final public class AgentLogger extends Logger {
 		final Level l = myAgent.logger == null ? Level.OFF : LevelOption.agentLogLevel.getValue(madkitConfig);
 		super.setLevel(l);
 		setWarningLogLevel(LevelOption.warningLogLevel.getValue(madkitConfig));
-		if (! BooleanOption.noAgentConsoleLog.isActivated(madkitConfig)) {
+		if (BooleanOption.asyncLogging.isActivated(madkitConfig)) {
+			asyncWriter = agent.getMadkitKernel().getAsyncLogWriter();
+			asyncHandler = asyncWriter.getHandler(! BooleanOption.noAgentConsoleLog.isActivated(madkitConfig), false);
+			if (asyncHandler != null) {
+				addHandler(asyncHandler);
+			}
+		}
+		else if (! BooleanOption.noAgentConsoleLog.isActivated(madkitConfig)) {
 			ConsoleHandler ch = new ConsoleHandler();
 			addHandler(ch);
 			ch.setFormatter(AGENT_FORMATTER);
@@ -174,9 +186,21 @@ final public class AgentLogger extends Logger {
 	 * This file will be located in the directory specified by
 	 * the MaDKit property {@link Option#logDirectory}, 
 	 * which is set to "logs" by default.
+	 * If {@link BooleanOption#asyncLogging} is activated, the records
+	 * of this logger are written in the file shared by all the agents instead.
 	 */
 	public void createLogFile() {
-		if (fh == null) {
+		if (asyncWriter != null) {
+			final Handler h = asyncWriter.withFile(asyncHandler);
+			if (h != asyncHandler) {
+				if (asyncHandler != null) {
+					removeHandler(asyncHandler);
+				}
+				asyncHandler = h;
+				addHandler(h);
+			}
+		}
+		else if (fh == null) {
 			final String logDir = myAgent.getMadkitConfig().getProperty(Option.logDirectory.name());
 			new File(logDir).mkdirs();
 			final String logFileName = logDir + File.separator + getName();
@@ -219,7 +243,9 @@ final public class AgentLogger extends Logger {
 	public synchronized void addHandler(final Handler handler)
 			throws SecurityException {
 		super.addHandler(handler);
-		handler.setLevel(getLevel());
+		if (handler != asyncHandler) {// shared by all the agents
+			handler.setLevel(getLevel());
+		}
 	}
 	
 
@@ -254,7 +280,9 @@ final public class AgentLogger extends Logger {
 	public void setLevel(final Level newLevel) throws SecurityException {
 		super.setLevel(Objects.requireNonNull(newLevel));
 		for (Handler h : getHandlers()) {
-			h.setLevel(newLevel);
+			if (h != asyncHandler) {
+				h.setLevel(newLevel);
+			}
 		}
 		if (myAgent.hasGUI()) {
 			AgentLogLevelMenu.update(myAgent);
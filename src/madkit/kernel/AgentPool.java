@@ -0,0 +1,198 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+
+import madkit.kernel.AbstractAgent.ReturnCode;
+
+/**
+ * A pool of agents of the same kind, so that simulations which launch and
+ * kill a lot of short-lived agents can reuse the terminated ones instead of
+ * building new ones.
+ * <p>
+ * An agent given back to the pool, using {@link #release(AbstractAgent)} or
+ * {@link #killAgent(AbstractAgent, AbstractAgent)}, gets a new identity: it
+ * has a new {@link AbstractAgent#hashCode()} and an empty mailbox, so that
+ * the addresses of its previous life remain invalid. Its
+ * {@link AbstractAgent#recycle()} method is then called to reset its own
+ * fields, and it can be launched again as if it had just been built.
+ * <p>
+ * Pools are meant for agents launched in buckets, e.g. using
+ * {@link #launchAgentBucket(AbstractAgent, int, String...)}: agents which
+ * have been launched with their own thread are not pooled.
+ * 
+ * <pre>
+ * final AgentPool&lt;Bird&gt; birds = new AgentPool&lt;&gt;(Bird::new);
+ * ...
+ * birds.launchAgentBucket(this, 1000, &quot;sky,flock,bird&quot;);
+ * ...
+ * birds.killAgent(this, deadBird);
+ * </pre>
+ * 
+ * @param <A> the type of the pooled agents
+ * 
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public final class AgentPool<A extends AbstractAgent> {
+
+	private final Supplier<? extends A>	factory;
+	private final int							capacity;
+	private final List<A>					agents	= new ArrayList<>();
+
+	/**
+	 * Builds a pool without capacity limit.
+	 * 
+	 * @param factory
+	 *           builds the agents when the pool is empty
+	 */
+	public AgentPool(final Supplier<? extends A> factory) {
+		this(factory, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * @param factory
+	 *           builds the agents when the pool is empty
+	 * @param capacity
+	 *           the maximum number of agents kept by the pool
+	 */
+	public AgentPool(final Supplier<? extends A> factory, final int capacity) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("capacity " + capacity);
+		this.factory = Objects.requireNonNull(factory);
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Takes agents from the pool, building new ones if the pool does not
+	 * contain enough agents.
+	 * 
+	 * @param size
+	 *           the number of agents to take
+	 * @return a list of agents which have never been launched or which have
+	 *         been recycled
+	 */
+	public List<A> take(final int size) {
+		if (size < 0)
+			throw new IllegalArgumentException("size " + size);
+		final List<A> bucket = new ArrayList<>(size);
+		synchronized (agents) {
+			final int from = Math.max(0, agents.size() - size);
+			final List<A> recycled = agents.subList(from, agents.size());
+			bucket.addAll(recycled);
+			recycled.clear();
+		}
+		while (bucket.size() < size) {
+			bucket.add(factory.get());
+		}
+		return bucket;
+	}
+
+	/**
+	 * Takes agents from the pool and launches them as
+	 * {@link AbstractAgent#launchAgentBucket(List, String...)} does.
+	 * 
+	 * @param launcher
+	 *           the agent doing the launch
+	 * @param size
+	 *           the number of agents to launch
+	 * @param roles
+	 *           default locations in the artificial society for the launched
+	 *           agents, formatted as <code>"community,group,role"</code>
+	 * @return the launched agents
+	 */
+	public List<A> launchAgentBucket(final AbstractAgent launcher, final int size, final String... roles) {
+		final List<A> bucket = take(size);
+		launcher.launchAgentBucket(bucket, roles);
+		return bucket;
+	}
+
+	/**
+	 * Kills an agent as {@link AbstractAgent#killAgent(AbstractAgent)} does
+	 * and gives it back to the pool once it is terminated.
+	 * 
+	 * @param killer
+	 *           the agent doing the kill
+	 * @param target
+	 *           the agent to kill
+	 * @return the result of the kill
+	 */
+	public ReturnCode killAgent(final AbstractAgent killer, final A target) {
+		final ReturnCode r = killer.killAgent(target);
+		release(target);
+		return r;
+	}
+
+	/**
+	 * Gives a terminated agent back to the pool.
+	 * 
+	 * @param agent
+	 *           the agent to recycle
+	 * @return <code>true</code> if the agent has been recycled,
+	 *         <code>false</code> if it is not terminated, if it has been
+	 *         launched with its own thread, or if the pool is full. In these
+	 *         cases, the agent is left untouched.
+	 */
+	public boolean release(final A agent) {
+		if (agent instanceof Agent && ((Agent) agent).myThread != null) {
+			return false;
+		}
+		synchronized (agents) {// the place has to be kept while renewing
+			if (agents.size() >= capacity || ! agent.renew()) {
+				return false;
+			}
+			agents.add(agent);
+		}
+		return true;
+	}
+
+	/**
+	 * @return the number of agents which are ready to be taken
+	 */
+	public int size() {
+		synchronized (agents) {
+			return agents.size();
+		}
+	}
+
+}
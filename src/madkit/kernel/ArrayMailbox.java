@@ -0,0 +1,570 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import madkit.message.MessageFilter;
+
+/**
+ * The default {@link Mailbox}: a multi-producer/single-consumer queue made of
+ * linked arrays.
+ * <p>
+ * Senders never lock: A slot is claimed with one atomic increment and the
+ * message is then published into it. If the sender is stopped in between, the
+ * consumer gives the slot up after 50 ms. The arrays grow from a few slots up
+ * to {@value #MAX_CHUNK}, so that an agent which receives a few messages costs
+ * a few references, and an agent flooded with messages allocates one array
+ * every {@value #MAX_CHUNK} messages instead of one node per message.
+ * <p>
+ * The consumer side is guarded by the monitor of the mailbox, which is
+ * uncontended as long as only the owner agent reads it. Operations which
+ * need random access (filters, last message) first move the available
+ * messages into a private buffer, which is then used in priority by the
+ * other operations so that the reception order is always kept.
+ * <p>
+ * When bounded, the mailbox counts its messages and applies its
+ * {@link Mailbox.OverflowPolicy} on the sender's side: rejecting costs
+ * nothing, dropping the oldest message briefly takes the consumer monitor,
+ * and blocking parks the sender until the owner retrieves a message, so that
+ * a virtual thread does not pin its carrier meanwhile.
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * @see DequeMailbox
+ */
+public final class ArrayMailbox extends Mailbox {
+
+	/**
+	 * most agents only receive a few messages
+	 */
+	private static final int		MIN_CHUNK	= 8;
+	private static final int		MAX_CHUNK	= 1024;
+	/**
+	 * a drained mailbox does not keep a bigger array
+	 */
+	private static final int		IDLE_CHUNK	= 64;
+	/**
+	 * how long the consumer waits for a claimed slot before considering that
+	 * its sender has been stopped, in nanoseconds
+	 */
+	private static final long		ABANDONED_SLOT_TIMEOUT	= TimeUnit.MILLISECONDS.toNanos(50);
+	/**
+	 * fills the slots given up by the consumer
+	 */
+	private static final Message	ABANDONED	= new Message();
+
+	private static final VarHandle	SLOT		= MethodHandles.arrayElementVarHandle(Message[].class);
+	private static final VarHandle	CLAIMED;
+	private static final VarHandle	NEXT;
+	private static final VarHandle	HEAD;
+	private static final VarHandle	TAIL;
+	private static final VarHandle	COUNT;
+	static {
+		try {
+			final MethodHandles.Lookup l = MethodHandles.lookup();
+			CLAIMED = l.findVarHandle(Chunk.class, "claimed", int.class);
+			NEXT = l.findVarHandle(Chunk.class, "next", Chunk.class);
+			HEAD = l.findVarHandle(ArrayMailbox.class, "head", Chunk.class);
+			TAIL = l.findVarHandle(ArrayMailbox.class, "tail", Chunk.class);
+			COUNT = l.findVarHandle(ArrayMailbox.class, "count", int.class);
+		} catch (ReflectiveOperationException e) {
+			throw new ExceptionInInitializerError(e);
+		}
+	}
+
+	private static final class Chunk {
+		final Message[]			slots;
+		volatile int			claimed;
+		volatile Chunk			next;
+
+		Chunk(final int size) {
+			slots = new Message[size];
+		}
+	}
+
+	/**
+	 * set once by the first sender, then only moved forward by the consumer
+	 */
+	private volatile Chunk				head;
+	private volatile Chunk				tail;
+	private volatile int					count;
+	private volatile Thread				waiter;
+	// consumer side, guarded by this
+	private int								readIndex;
+	private ArrayDeque<Message>		buffer;
+	/**
+	 * the senders parked on a full mailbox, only used by the BLOCK policy
+	 */
+	private final Queue<Thread>			blockedSenders;
+
+	/**
+	 * Builds an unbounded mailbox
+	 */
+	public ArrayMailbox() {
+		this(UNBOUNDED, OverflowPolicy.REJECT);
+	}
+
+	/**
+	 * @param capacity
+	 *           the maximum number of messages
+	 * @param overflowPolicy
+	 *           what to do when the mailbox is full
+	 */
+	public ArrayMailbox(final int capacity, final OverflowPolicy overflowPolicy) {
+		super(capacity, overflowPolicy);
+		blockedSenders = isBounded() && overflowPolicy == OverflowPolicy.BLOCK ? new ConcurrentLinkedQueue<>() : null;
+	}
+
+	// ////////////////////////////////////////////////////////////
+	// //////////////////////// Producer side
+	// ////////////////////////////////////////////////////////////
+
+	@Override
+	public boolean offer(final Message m) {
+		if (isBounded() && !reserve()) {
+			return false;
+		}
+		enqueue(m);
+		final Thread t = waiter;
+		if (t != null) {
+			LockSupport.unpark(t);
+		}
+		return true;
+	}
+
+	private void enqueue(final Message m) {
+		Chunk c = tail;
+		if (c == null) {
+			c = firstChunk();
+		}
+		for (;;) {
+			final int i = (int) CLAIMED.getAndAdd(c, 1);
+			if (i < c.slots.length) {
+				if (SLOT.compareAndSet(c.slots, i, null, m))
+					return;
+				// given up by the consumer while I was descheduled: the message was
+				// counted as removed, so it is taken again
+				if (isBounded()) {
+					COUNT.getAndAdd(this, 1);
+				}
+				continue;
+			}
+			Chunk n = c.next;
+			if (n == null) {
+				n = new Chunk(Math.min(c.slots.length << 1, MAX_CHUNK));
+				if (!NEXT.compareAndSet(c, null, n)) {
+					n = c.next;
+				}
+			}
+			TAIL.compareAndSet(this, c, n);
+			c = n;
+		}
+	}
+
+	private Chunk firstChunk() {
+		Chunk c = head;
+		if (c == null) {
+			final Chunk n = new Chunk(MIN_CHUNK);
+			c = HEAD.compareAndSet(this, null, n) ? n : head;
+		}
+		TAIL.compareAndSet(this, null, c);
+		return c;
+	}
+
+	/**
+	 * Takes a place in a bounded mailbox according to the overflow policy
+	 * 
+	 * @return <code>false</code> if the message has to be refused
+	 */
+	private boolean reserve() {
+		for (;;) {
+			final int c = count;
+			if (c < getCapacity()) {
+				if (COUNT.compareAndSet(this, c, c + 1))
+					return true;
+				continue;
+			}
+			switch (getOverflowPolicy()) {
+			case DROP_OLDEST:
+				synchronized (this) {
+					if (count >= getCapacity() && removeOldest() == null) {
+						Thread.yield();// the places are taken by senders which are publishing
+					}
+				}
+				break;
+			case BLOCK:
+				final Thread sender = Thread.currentThread();
+				blockedSenders.add(sender);
+				try {
+					while (count >= getCapacity()) {// checked after being queued: a removal will unpark me
+						LockSupport.park(this);
+						if (Thread.interrupted()) {
+							sender.interrupt();
+							return false;
+						}
+					}
+				} finally {
+					blockedSenders.remove(sender);
+				}
+				break;
+			default:
+				return false;
+			}
+		}
+	}
+
+	// ////////////////////////////////////////////////////////////
+	// //////////////////////// Consumer side
+	// ////////////////////////////////////////////////////////////
+
+	/**
+	 * Retrieves the next published message, must be called holding the
+	 * monitor.
+	 */
+	private Message dequeue() {
+		Chunk c = head;
+		if (c == null)
+			return null;
+		for (;;) {
+			final int i = readIndex;
+			if (i < c.slots.length) {
+				Message m = (Message) SLOT.getVolatile(c.slots, i);
+				if (m == null) {
+					if (i >= c.claimed) {
+						release(c, i);
+						return null;
+					}
+					// claimed but not published yet: this is a matter of nanoseconds,
+					// unless the sender has been stopped in between
+					m = awaitPublication(c, i);
+					if (m == null) {
+						readIndex = i + 1;
+						removed(1);
+						continue;
+					}
+				}
+				c.slots[i] = null;// this array will be dropped anyway, but maybe not soon
+				readIndex = i + 1;
+				return m;
+			}
+			final Chunk n = c.next;
+			if (n == null) {
+				release(c, i);
+				return null;
+			}
+			head = c = n;
+			readIndex = 0;
+		}
+	}
+
+	/**
+	 * Waits for a claimed slot to be published, at most
+	 * {@link #ABANDONED_SLOT_TIMEOUT}: the slot is then marked as abandoned so
+	 * that a late sender takes another one.
+	 * 
+	 * @return the published message or <code>null</code> if the slot has been
+	 *         abandoned
+	 */
+	private static Message awaitPublication(final Chunk c, final int i) {
+		long deadline = 0;
+		for (int spins = 0;; spins++) {
+			final Message m = (Message) SLOT.getVolatile(c.slots, i);
+			if (m != null)
+				return m;
+			if (spins < 100) {
+				Thread.onSpinWait();
+			}
+			else if (deadline == 0) {
+				deadline = System.nanoTime() + ABANDONED_SLOT_TIMEOUT;
+			}
+			else if (System.nanoTime() - deadline < 0) {
+				Thread.yield();
+			}
+			else if (SLOT.compareAndSet(c.slots, i, null, ABANDONED)) {
+				return null;
+			}
+		}
+	}
+
+	/**
+	 * Called when all the messages of the tail chunk have been read: if it is
+	 * big, it is closed and the senders are redirected to a new
+	 * {@value #MIN_CHUNK} slots chunk, so that an idle agent does not keep the
+	 * memory used by a past flood.
+	 * 
+	 * @param c
+	 *           the drained chunk
+	 * @param i
+	 *           the read index in it
+	 */
+	private void release(final Chunk c, final int i) {
+		if (c.slots.length <= IDLE_CHUNK)
+			return;
+		// full slots make the senders move on: give up if one just came in
+		if (i < c.slots.length && !CLAIMED.compareAndSet(c, i, c.slots.length))
+			return;
+		Chunk n = new Chunk(MIN_CHUNK);
+		if (!NEXT.compareAndSet(c, null, n)) {// a sender found it full first
+			n = c.next;
+		}
+		TAIL.compareAndSet(this, c, n);
+		head = n;
+		readIndex = 0;
+	}
+
+	private ArrayDeque<Message> getBuffer() {
+		if (buffer == null) {
+			buffer = new ArrayDeque<>();
+		}
+		return buffer;
+	}
+
+	/**
+	 * moves all the published messages into the buffer
+	 */
+	private ArrayDeque<Message> drain() {
+		final ArrayDeque<Message> b = getBuffer();
+		for (Message m; (m = dequeue()) != null;) {
+			b.addLast(m);
+		}
+		return b;
+	}
+
+	private Message removeOldest() {
+		Message m = null;
+		if (buffer != null) {
+			m = buffer.pollFirst();
+			if (buffer.isEmpty()) {// it may have been grown by a flood
+				buffer = null;
+			}
+		}
+		if (m == null) {
+			m = dequeue();
+		}
+		if (m != null) {
+			removed(1);
+		}
+		return m;
+	}
+
+	private void removed(final int n) {
+		if (isBounded() && n > 0) {
+			COUNT.getAndAdd(this, -n);
+			if (blockedSenders != null) {
+				for (final Thread sender : blockedSenders) {
+					LockSupport.unpark(sender);
+				}
+			}
+		}
+	}
+
+	@Override
+	public synchronized Message poll() {
+		return removeOldest();
+	}
+
+	@Override
+	public Message poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+		long nanos = unit.toNanos(timeout);
+		final long deadline = System.nanoTime() + nanos;
+		for (;;) {
+			Message m = poll();
+			if (m != null)
+				return m;
+			if (Thread.interrupted())
+				throw new InterruptedException();
+			if (nanos <= 0)
+				return null;
+			waiter = Thread.currentThread();
+			try {
+				if ((m = poll()) != null)// checking again now that senders can see me
+					return m;
+				LockSupport.parkNanos(this, nanos);
+			} finally {
+				waiter = null;
+			}
+			nanos = deadline - System.nanoTime();
+		}
+	}
+
+	@Override
+	public Message take() throws InterruptedException {
+		for (;;) {
+			Message m = poll();
+			if (m != null)
+				return m;
+			if (Thread.interrupted())
+				throw new InterruptedException();
+			waiter = Thread.currentThread();
+			try {
+				if ((m = poll()) != null)
+					return m;
+				LockSupport.park(this);
+			} finally {
+				waiter = null;
+			}
+		}
+	}
+
+	@Override
+	public synchronized Message pollLast() {
+		final Message m = drain().pollLast();
+		if (buffer.isEmpty()) {
+			buffer = null;
+		}
+		if (m != null) {
+			removed(1);
+		}
+		return m;
+	}
+
+	@Override
+	public synchronized Message removeFirst(final MessageFilter filter) {
+		if (buffer != null) {
+			for (final Iterator<Message> iterator = buffer.iterator(); iterator.hasNext();) {
+				final Message m = iterator.next();
+				if (filter.accept(m)) {
+					iterator.remove();
+					removed(1);
+					return m;
+				}
+			}
+		}
+		// only what is needed is moved into the buffer
+		for (Message m; (m = dequeue()) != null;) {
+			if (filter.accept(m)) {
+				removed(1);
+				return m;
+			}
+			getBuffer().addLast(m);
+		}
+		return null;
+	}
+
+	@Override
+	public synchronized Message removeLast(final MessageFilter filter) {
+		for (final Iterator<Message> iterator = drain().descendingIterator(); iterator.hasNext();) {
+			final Message m = iterator.next();
+			if (filter.accept(m)) {
+				iterator.remove();
+				removed(1);
+				return m;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public synchronized List<Message> removeAll(final MessageFilter filter) {
+		final ArrayDeque<Message> b = drain();
+		if (b.isEmpty()) {
+			buffer = null;
+			return new ArrayList<>(0);
+		}
+		final List<Message> match;
+		if (filter == null) {
+			match = new ArrayList<>(b);
+			buffer = null;
+		}
+		else {
+			match = new ArrayList<>();
+			for (final Iterator<Message> iterator = b.iterator(); iterator.hasNext();) {
+				final Message m = iterator.next();
+				if (filter.accept(m)) {
+					iterator.remove();
+					match.add(m);
+				}
+			}
+			if (b.isEmpty()) {
+				buffer = null;
+			}
+		}
+		removed(match.size());
+		return match;
+	}
+
+	@Override
+	public synchronized Message purge() {
+		final ArrayDeque<Message> b = drain();
+		final int size = b.size();
+		final Message m = b.pollLast();
+		buffer = null;
+		removed(size);
+		return m;
+	}
+
+	@Override
+	public synchronized void addAllFirst(final List<Message> messages) {
+		if (messages.isEmpty())
+			return;
+		if (isBounded()) {
+			COUNT.getAndAdd(this, messages.size());
+		}
+		final ArrayDeque<Message> b = getBuffer();
+		for (final ListIterator<Message> iterator = messages.listIterator(messages.size()); iterator.hasPrevious();) {
+			b.addFirst(iterator.previous());
+		}
+	}
+
+	@Override
+	public synchronized boolean isEmpty() {
+		if (buffer != null && !buffer.isEmpty())
+			return false;
+		final Message m = dequeue();
+		if (m == null)
+			return true;
+		getBuffer().addFirst(m);
+		return false;
+	}
+
+	@Override
+	public synchronized int size() {
+		return drain().size();
+	}
+
+}
@@ -0,0 +1,361 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Formatter;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import madkit.kernel.Madkit.BooleanOption;
+
+/**
+ * The single writer used by the agents' loggers of a kernel when
+ * {@link BooleanOption#asyncLogging} is activated.
+ * <p>
+ * Agents only put their log records into a bounded lock-free ring buffer, so
+ * that logging never blocks them on I/O nor on a lock. A daemon thread drains
+ * the buffer and writes the records in batches, flushing once per batch, to
+ * the console and to one shared file of the log directory which is rotated
+ * when it reaches a size limit. Each line is tagged with the name of its agent,
+ * instead of having one file per agent. When the buffer is full, records are
+ * dropped and the number of lost records is logged as soon as possible.
+ * 
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+final class AsyncLogWriter {
+
+	static final String		LOG_FILE_NAME	= "agents.log";
+	static final int			CAPACITY			= 1 << 13;
+	static final long			FILE_LIMIT		= 10 * 1024 * 1024;
+	static final int			FILE_COUNT		= 5;
+
+	private static final int	TO_CONSOLE	= 1;
+	private static final int	TO_FILE		= 2;
+
+	private final int				mask;
+	private final AtomicLongArray	sequences;
+	private final LogRecord[]		records;
+	private final byte[]				targets;
+	private final AtomicLong		tail			= new AtomicLong();
+	private long						head;
+	private final LongAdder			dropped		= new LongAdder();
+
+	private final Formatter			formatter	= AgentLogger.AGENT_FORMATTER;
+	private final Writer				console;
+	private final File				logDir;
+	private final long				fileLimit;
+	private final int					fileCount;
+	private Writer						file;
+	private long						fileSize;
+
+	private final Thread				writer;
+	private volatile boolean		parked;
+	private volatile boolean		closed;
+
+	private final Handler[]			views			= new Handler[TO_CONSOLE | TO_FILE];
+
+	/**
+	 * @param name
+	 *           the name of the writer thread
+	 * @param logDir
+	 *           the directory of the shared log file, created if required
+	 * @param console
+	 *           the console stream
+	 * @param capacity
+	 *           the size of the buffer, rounded up to a power of two
+	 * @param fileLimit
+	 *           the size in bytes above which the log file is rotated
+	 * @param fileCount
+	 *           the number of files kept, the current one included
+	 */
+	AsyncLogWriter(final String name, final File logDir, final OutputStream console, final int capacity, final long fileLimit,
+			final int fileCount) {
+		final int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+		mask = size - 1;
+		sequences = new AtomicLongArray(size);
+		for (int i = 0; i < size; i++) {
+			sequences.set(i, i);
+		}
+		records = new LogRecord[size];
+		targets = new byte[size];
+		this.console = new BufferedWriter(new OutputStreamWriter(console));
+		this.logDir = logDir;
+		this.fileLimit = fileLimit;
+		this.fileCount = Math.max(1, fileCount);
+		for (int i = 0; i < views.length; i++) {
+			views[i] = new View(i + 1);
+		}
+		writer = new Thread(this::run, name);
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	AsyncLogWriter(final String name, final File logDir) {
+		this(name, logDir, System.err, CAPACITY, FILE_LIMIT, FILE_COUNT);
+	}
+
+	/**
+	 * Returns the handler which agents' loggers use to log through this writer.
+	 * The same instances are shared by all the loggers: their level is not used
+	 * and closing them has no effect.
+	 * 
+	 * @param toConsole
+	 *           if records should be printed on the console
+	 * @param toFile
+	 *           if records should be written in the shared log file
+	 * @return the corresponding handler, or <code>null</code> if there is no
+	 *         output at all
+	 */
+	Handler getHandler(final boolean toConsole, final boolean toFile) {
+		final int target = (toConsole ? TO_CONSOLE : 0) | (toFile ? TO_FILE : 0);
+		return target == 0 ? null : views[target - 1];
+	}
+
+	/**
+	 * Returns the handler which does the same as the given one and also writes
+	 * in the shared log file.
+	 */
+	Handler withFile(final Handler h) {
+		return views[(h == null ? TO_FILE : ((View) h).target | TO_FILE) - 1];
+	}
+
+	/**
+	 * @return the number of records which have been dropped because the buffer
+	 *         was full
+	 */
+	long getDroppedCount() {
+		return dropped.sum();
+	}
+
+	/**
+	 * Enqueues a record without blocking.
+	 * 
+	 * @return <code>false</code> if the buffer is full or if the writer is closed
+	 */
+	boolean offer(final LogRecord record, final int target) {
+		if (closed) {
+			return false;
+		}
+		long pos = tail.get();
+		for (;;) {
+			final int i = (int) pos & mask;
+			final long diff = sequences.get(i) - pos;
+			if (diff == 0) {
+				if (tail.compareAndSet(pos, pos + 1)) {
+					records[i] = record;
+					targets[i] = (byte) target;
+					sequences.set(i, pos + 1);// publishes the slot
+					if (parked) {
+						LockSupport.unpark(writer);
+					}
+					return true;
+				}
+				pos = tail.get();
+			}
+			else if (diff < 0) {
+				dropped.increment();
+				return false;
+			}
+			else {
+				pos = tail.get();
+			}
+		}
+	}
+
+	private boolean isEmpty() {
+		return sequences.get((int) head & mask) != head + 1;
+	}
+
+	private void run() {
+		long reported = 0;
+		for (;;) {
+			int written = 0;
+			while (! isEmpty()) {
+				final int i = (int) head & mask;
+				final LogRecord record = records[i];
+				final int target = targets[i];
+				records[i] = null;
+				sequences.set(i, head + mask + 1);
+				head++;
+				write(record, target);
+				written++;
+			}
+			final long lost = dropped.sum();
+			if (lost != reported) {
+				write(new LogRecord(Level.WARNING, (lost - reported) + " log records dropped: logging is too fast"), TO_CONSOLE | TO_FILE);
+				reported = lost;
+				written++;
+			}
+			if (written > 0) {
+				flush();
+				continue;
+			}
+			if (closed) {
+				break;
+			}
+			parked = true;
+			if (isEmpty()) {
+				LockSupport.parkNanos(this, 100_000_000L);
+			}
+			parked = false;
+		}
+		try {
+			if (file != null) {
+				file.close();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void write(final LogRecord record, final int target) {
+		final String line;
+		try {
+			line = formatter.format(record);
+		} catch (RuntimeException e) {
+			e.printStackTrace();
+			return;
+		}
+		try {
+			if ((target & TO_CONSOLE) != 0) {
+				console.write(line);
+			}
+			if ((target & TO_FILE) != 0) {
+				if (file == null || fileSize > fileLimit) {
+					rotate();
+				}
+				file.write(line);
+				fileSize += line.length();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	private void flush() {
+		try {
+			console.flush();
+			if (file != null) {
+				file.flush();
+			}
+		} catch (IOException e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Opens the log file, shifting the existing ones when it is full:
+	 * agents.log becomes agents.log.1, agents.log.1 becomes agents.log.2 and so
+	 * on. The oldest one is deleted.
+	 */
+	private void rotate() throws IOException {
+		logDir.mkdirs();
+		final File current = new File(logDir, LOG_FILE_NAME);
+		if (file != null) {
+			file.close();
+			for (int i = fileCount - 1; i > 0; i--) {
+				final File older = new File(logDir, LOG_FILE_NAME + "." + i);
+				older.delete();
+				final File newer = i == 1 ? current : new File(logDir, LOG_FILE_NAME + "." + (i - 1));
+				newer.renameTo(older);
+			}
+			if (fileCount == 1) {
+				current.delete();
+			}
+		}
+		fileSize = current.length();
+		file = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(current, true), StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Writes what remains in the buffer and stops the writer thread. Records
+	 * logged afterwards are ignored.
+	 */
+	void close() {
+		closed = true;
+		LockSupport.unpark(writer);
+		try {
+			writer.join(5000);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * The handler shared by the loggers: it only enqueues records.
+	 */
+	private final class View extends Handler {
+
+		private final int	target;
+
+		View(final int target) {
+			this.target = target;
+		}
+
+		@Override
+		public void publish(final LogRecord record) {
+			offer(record, target);
+		}
+
+		@Override
+		public void flush() {
+			// the writer flushes after each batch
+		}
+
+		@Override
+		public void close() {
+			// shared by all the loggers
+		}
+	}
+
+}
@@ -0,0 +1,481 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import madkit.util.XMLUtilities;
+
+/**
+ * Finds the agent classes, the agent classes having a <code>main</code>
+ * method, the MDK xml configurations and the mdk files of the directories which
+ * are on the class path.
+ * <p>
+ * Classes are not loaded: their headers are read directly from the bytecode,
+ * i.e. their access flags, their super class and their constructors and
+ * methods signatures. The super class chain is followed using the class files
+ * found by the class loader, until {@link AbstractAgent} or a
+ * <code>java</code> class is reached. Only the root element of xml files is
+ * read.
+ * <p>
+ * The results are kept in an index file located in java.io.tmpdir, so that a
+ * directory is only scanned again when one of its files or sub directories has
+ * been modified, added or removed since the last scan.
+ * 
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+final class ClassPathScanner {
+
+	static final File							INDEX_FILE			= new File(System.getProperty("java.io.tmpdir"), "MDK_CLASSPATH_INDEX");
+	/**
+	 * To be increased when the index format or what is found changes
+	 */
+	private static final String			INDEX_VERSION		= "1";
+
+	private static final int				ACC_PUBLIC			= 0x0001;
+	private static final int				ACC_INTERFACE		= 0x0200;
+	private static final int				ACC_ABSTRACT		= 0x0400;
+	private static final String			AGENT_CLASS			= AbstractAgent.class.getName().replace('.', '/');
+	private static final String			MAIN_DESCRIPTOR	= "([Ljava/lang/String;)V";
+	private static final ClassHeader		NOT_FOUND			= new ClassHeader(null, 0, false, false);
+
+	private static final XMLInputFactory	XML_INPUT			= XMLInputFactory.newInstance();
+	static {
+		XML_INPUT.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		XML_INPUT.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
+	private final ClassLoader					loader;
+	private final Map<String, ClassHeader>	headers				= new HashMap<>();
+	private Properties							index;
+	private boolean								indexModified;
+
+	/**
+	 * @param loader
+	 *           the loader used to find the class files of the super classes
+	 */
+	ClassPathScanner(final ClassLoader loader) {
+		this.loader = loader;
+	}
+
+	/**
+	 * Adds what a directory of the class path contains to the given sets, using
+	 * the index if the directory has not been modified since it has been indexed.
+	 * 
+	 * @param dir
+	 *           the directory
+	 * @param urlPath
+	 *           the path of the directory's URL, which is removed from the path
+	 *           of xml and mdk files
+	 */
+	void scanDirectory(final File dir, final String urlPath, final Set<String> agentClasses, final Set<String> mains,
+			final Set<String> mdkFiles, final Set<String> xmlFiles) {
+		final String key = dir.getAbsolutePath();
+		final String stamp = stamp(dir);
+		final Properties p = getIndex();
+		if (stamp.equals(p.getProperty(key))) {
+			agentClasses.addAll(split(p.getProperty(key + ".agents")));
+			mains.addAll(split(p.getProperty(key + ".mains")));
+			mdkFiles.addAll(split(p.getProperty(key + ".mdk")));
+			xmlFiles.addAll(split(p.getProperty(key + ".xml")));
+			return;
+		}
+		final Set<String> agents = new TreeSet<>();
+		final Set<String> dirMains = new TreeSet<>();
+		final Set<String> mdk = new TreeSet<>();
+		final Set<String> xml = new TreeSet<>();
+		scanFolder(dir, null, urlPath, agents, dirMains, mdk, xml);
+		agentClasses.addAll(agents);
+		mains.addAll(dirMains);
+		mdkFiles.addAll(mdk);
+		xmlFiles.addAll(xml);
+		p.setProperty(key, stamp);
+		p.setProperty(key + ".agents", join(agents));
+		p.setProperty(key + ".mains", join(dirMains));
+		p.setProperty(key + ".mdk", join(mdk));
+		p.setProperty(key + ".xml", join(xml));
+		indexModified = true;
+	}
+
+	private void scanFolder(final File file, final String pckName, final String urlPath, final Set<String> agentClasses,
+			final Set<String> mains, final Set<String> mdkFiles, final Set<String> xmlFiles) {
+		final File[] files = file.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				final String fileName = f.getName();
+				if (f.isDirectory()) {
+					scanFolder(f, pckName == null ? fileName : pckName + "." + fileName, urlPath, agentClasses, mains, mdkFiles,
+							xmlFiles);
+				}
+				else if (fileName.endsWith(".class")) {
+					final String className = (pckName == null ? "" : pckName + ".") + fileName.substring(0, fileName.length() - 6);
+					final ClassHeader h;
+					try (InputStream is = new FileInputStream(f)) {
+						h = readHeader(is);
+					} catch (IOException e) {
+						continue;
+					}
+					final String internalName = className.replace('.', '/');
+					headers.put(internalName, h);
+					if (isAgentClass(internalName, h)) {
+						agentClasses.add(className);
+						if (h.main) {
+							mains.add(className);
+						}
+					}
+				}
+				else if (fileName.endsWith(".mdk")) {
+					mdkFiles.add(f.getPath().substring(urlPath.length()));
+				}
+				else if (fileName.endsWith(".xml") && isMDKConfiguration(f)) {
+					xmlFiles.add(f.getPath().substring(urlPath.length()));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Same as for a loaded class: a public and concrete subclass of
+	 * {@link AbstractAgent} having a public no-arg constructor.
+	 */
+	private boolean isAgentClass(final String internalName, final ClassHeader h) {
+		if ((h.access & (ACC_PUBLIC | ACC_ABSTRACT | ACC_INTERFACE)) != ACC_PUBLIC || ! h.publicConstructor) {
+			return false;
+		}
+		String className = internalName;
+		for (int depth = 0; className != null && depth < 100; depth++) {
+			if (className.equals(AGENT_CLASS)) {
+				return true;
+			}
+			if (className.startsWith("java/")) {
+				return false;
+			}
+			className = getHeader(className).superName;
+		}
+		return false;
+	}
+
+
+	private ClassHeader getHeader(final String internalName) {
+		ClassHeader h = headers.get(internalName);
+		if (h == null) {
+			h = NOT_FOUND;
+			try (InputStream is = loader.getResourceAsStream(internalName + ".class")) {
+				if (is != null) {
+					h = readHeader(is);
+				}
+			} catch (IOException e) {
+				// not a valid class file
+			}
+			headers.put(internalName, h);
+		}
+		return h;
+	}
+
+	/**
+	 * What is needed from a class file to tell if it is an agent class.
+	 */
+	static final class ClassHeader {
+
+		/**
+		 * the internal name of the super class, <code>null</code> for
+		 * {@link Object}
+		 */
+		final String	superName;
+		/**
+		 * the class modifiers, as given by {@link Class#getModifiers()}
+		 */
+		final int		access;
+		final boolean	publicConstructor;
+		final boolean	main;
+
+		ClassHeader(final String superName, final int access, final boolean publicConstructor, final boolean main) {
+			this.superName = superName;
+			this.access = access;
+			this.publicConstructor = publicConstructor;
+			this.main = main;
+		}
+	}
+
+	/**
+	 * Reads the header of a class file.
+	 * 
+	 * @param classFile
+	 *           the class file content
+	 * @return the header of the class
+	 * @throws IOException
+	 *            if this is not a valid class file
+	 */
+	static ClassHeader readHeader(final InputStream classFile) throws IOException {
+		final DataInputStream in = new DataInputStream(new ByteArrayInputStream(classFile.readAllBytes()));
+		if (in.readInt() != 0xCAFEBABE) {
+			throw new IOException("not a class file");
+		}
+		in.readInt();// version
+		final int poolSize = in.readUnsignedShort();
+		final String[] utf8 = new String[poolSize];
+		final int[] classes = new int[poolSize];
+		for (int i = 1; i < poolSize; i++) {
+			final int tag = in.readUnsignedByte();
+			switch (tag) {
+			case 1:// Utf8
+				utf8[i] = in.readUTF();
+				break;
+			case 7:// Class
+				classes[i] = in.readUnsignedShort();
+				break;
+			case 8:// String
+			case 16:// MethodType
+			case 19:// Module
+			case 20:// Package
+				in.skipBytes(2);
+				break;
+			case 15:// MethodHandle
+				in.skipBytes(3);
+				break;
+			case 3:// Integer
+			case 4:// Float
+			case 9:// Fieldref
+			case 10:// Methodref
+			case 11:// InterfaceMethodref
+			case 12:// NameAndType
+			case 17:// Dynamic
+			case 18:// InvokeDynamic
+				in.skipBytes(4);
+				break;
+			case 5:// Long
+			case 6:// Double
+				in.skipBytes(8);
+				i++;
+				break;
+			default:
+				throw new IOException("unknown constant pool tag " + tag);
+			}
+		}
+		int access = in.readUnsignedShort();
+		final int thisClass = in.readUnsignedShort();
+		final int superClass = in.readUnsignedShort();
+		in.skipBytes(2 * in.readUnsignedShort());// interfaces
+		skipMembers(in);// fields
+		boolean publicConstructor = false;
+		boolean main = false;
+		for (int n = in.readUnsignedShort(); n > 0; n--) {
+			final int flags = in.readUnsignedShort();
+			final String name = utf8[in.readUnsignedShort()];
+			final String descriptor = utf8[in.readUnsignedShort()];
+			skipAttributes(in);
+			if ((flags & ACC_PUBLIC) != 0 && "<init>".equals(name) && "()V".equals(descriptor)) {
+				publicConstructor = true;
+			}
+			else if ("main".equals(name) && MAIN_DESCRIPTOR.equals(descriptor)) {
+				main = true;
+			}
+		}
+		for (int n = in.readUnsignedShort(); n > 0; n--) {
+			final String name = utf8[in.readUnsignedShort()];
+			final int length = in.readInt();
+			if ("InnerClasses".equals(name)) {// the modifiers of a nested class are there
+				for (int c = in.readUnsignedShort(); c > 0; c--) {
+					final int innerClass = in.readUnsignedShort();
+					in.skipBytes(4);
+					final int flags = in.readUnsignedShort();
+					if (innerClass == thisClass) {
+						access = flags;
+					}
+				}
+			}
+			else {
+				in.skipBytes(length);
+			}
+		}
+		return new ClassHeader(superClass == 0 ? null : utf8[classes[superClass]], access, publicConstructor, main);
+	}
+
+	private static void skipMembers(final DataInputStream in) throws IOException {
+		for (int n = in.readUnsignedShort(); n > 0; n--) {
+			in.skipBytes(6);
+			skipAttributes(in);
+		}
+	}
+
+	private static void skipAttributes(final DataInputStream in) throws IOException {
+		for (int n = in.readUnsignedShort(); n > 0; n--) {
+			in.skipBytes(2);
+			in.skipBytes(in.readInt());
+		}
+	}
+
+	/**
+	 * Tells if an xml file is a MDK configuration by only reading its root
+	 * element.
+	 * 
+	 * @param xmlFile
+	 *           the file to check
+	 * @return <code>true</code> if the root element is {@link XMLUtilities#MDK}
+	 */
+	static boolean isMDKConfiguration(final File xmlFile) {
+		try (InputStream is = new BufferedInputStream(new FileInputStream(xmlFile))) {
+			final XMLStreamReader reader = XML_INPUT.createXMLStreamReader(is);
+			try {
+				while (reader.hasNext()) {
+					if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+						final String prefix = reader.getPrefix();
+						final String name = prefix == null || prefix.isEmpty() ? reader.getLocalName() : prefix + ":"
+								+ reader.getLocalName();
+						return XMLUtilities.MDK.equals(name);
+					}
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (IOException | XMLStreamException e) {
+			// not a valid xml file
+		}
+		return false;
+	}
+
+	/**
+	 * Computes what identifies the state of a directory: the number of files
+	 * and sub directories it contains and their last modification time.
+	 */
+	static String stamp(final File dir) {
+		final long[] stamp = new long[2];
+		stamp(dir, stamp);
+		return stamp[0] + ":" + stamp[1];
+	}
+
+	private static void stamp(final File dir, final long[] stamp) {
+		stamp[0]++;
+		stamp[1] = Math.max(stamp[1], dir.lastModified());
+		final File[] files = dir.listFiles();
+		if (files != null) {
+			for (File f : files) {
+				if (f.isDirectory()) {
+					stamp(f, stamp);
+				}
+				else {
+					stamp[0]++;
+					stamp[1] = Math.max(stamp[1], f.lastModified());
+				}
+			}
+		}
+	}
+
+	private Properties getIndex() {
+		if (index == null) {
+			index = new Properties();
+			try (InputStream is = new FileInputStream(INDEX_FILE)) {
+				index.load(is);
+			} catch (IOException | IllegalArgumentException e) {
+				// first run or corrupted: everything is scanned
+			}
+			if (! INDEX_VERSION.equals(index.getProperty("version"))) {
+				index.clear();
+				index.setProperty("version", INDEX_VERSION);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * Writes the index file if new directories have been scanned. Entries of
+	 * directories which do not exist anymore are removed.
+	 */
+	void saveIndex() {
+		if (! indexModified) {
+			return;
+		}
+		indexModified = false;
+		for (final String key : index.stringPropertyNames()) {
+			if (key.endsWith(".agents")) {
+				final String dir = key.substring(0, key.length() - 7);
+				if (! new File(dir).isDirectory()) {
+					for (final String suffix : Arrays.asList("", ".agents", ".mains", ".mdk", ".xml")) {
+						index.remove(dir + suffix);
+					}
+				}
+			}
+		}
+		File tmp = null;
+		try {
+			tmp = File.createTempFile("MDK_CLASSPATH_INDEX", null, INDEX_FILE.getParentFile());
+			try (OutputStream out = new FileOutputStream(tmp)) {
+				index.store(out, "MaDKit class path index");
+			}
+			Files.move(tmp.toPath(), INDEX_FILE.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} catch (IOException e) {
+			// the index is only an optimization
+			if (tmp != null) {
+				tmp.delete();
+			}
+		}
+	}
+
+	private static Collection<String> split(final String values) {
+		return values == null || values.isEmpty() ? Arrays.<String> asList() : Arrays.asList(values.split(","));
+	}
+
+	private static String join(final Set<String> values) {
+		return String.join(",", values);
+	}
+
+}
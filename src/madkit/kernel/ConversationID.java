@@ -66,6 +66,17 @@ final public class ConversationID implements Serializable{
 	ConversationID() {
 		id = ID_COUNTER.getAndIncrement();
 	}
+
+	/**
+	 * Rebuilds an ID which has been received from the network.
+	 * 
+	 * @param id the ID number
+	 * @param origin the kernel in which the conversation started
+	 */
+	ConversationID(final int id, final KernelAddress origin) {
+		this.id = id;
+		this.origin = origin;
+	}
 	
 	@Override
 	public String toString() {
@@ -83,6 +94,21 @@ final public class ConversationID implements Serializable{
 		return false;
 	}
 
+	/**
+	 * @return the ID number
+	 */
+	int getID() {
+		return id;
+	}
+
+	/**
+	 * @return the kernel in which the conversation started, or <code>null</code>
+	 * if the ID has never traveled
+	 */
+	KernelAddress getOrigin() {
+		return origin;
+	}
+
 	void setOrigin(KernelAddress origin) {
 		if (this.origin == null) {
 			this.origin = origin;
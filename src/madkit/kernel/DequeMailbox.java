@@ -0,0 +1,189 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+
+import madkit.message.MessageFilter;
+
+/**
+ * A {@link Mailbox} backed by a {@link LinkedBlockingDeque}. This is how
+ * MaDKit mailboxes used to be built. Every operation relies on the lock of
+ * the deque, and every received message allocates a node.
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * @see ArrayMailbox
+ */
+public final class DequeMailbox extends Mailbox {
+
+	private final LinkedBlockingDeque<Message>	deque;
+
+	/**
+	 * Builds an unbounded mailbox
+	 */
+	public DequeMailbox() {
+		this(UNBOUNDED, OverflowPolicy.REJECT);
+	}
+
+	/**
+	 * @param capacity
+	 *           the maximum number of messages
+	 * @param overflowPolicy
+	 *           what to do when the mailbox is full
+	 */
+	public DequeMailbox(final int capacity, final OverflowPolicy overflowPolicy) {
+		super(capacity, overflowPolicy);
+		deque = new LinkedBlockingDeque<>(capacity);
+	}
+
+	@Override
+	public boolean offer(final Message m) {
+		if (deque.offerLast(m))
+			return true;
+		switch (getOverflowPolicy()) {
+		case DROP_OLDEST:
+			do {
+				deque.pollFirst();
+			}
+			while (!deque.offerLast(m));
+			return true;
+		case BLOCK:
+			try {
+				deque.putLast(m);
+				return true;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return false;
+			}
+		default:
+			return false;
+		}
+	}
+
+	@Override
+	public Message poll() {
+		return deque.pollFirst();
+	}
+
+	@Override
+	public Message poll(final long timeout, final TimeUnit unit) throws InterruptedException {
+		return deque.pollFirst(timeout, unit);
+	}
+
+	@Override
+	public Message take() throws InterruptedException {
+		return deque.takeFirst();
+	}
+
+	@Override
+	public Message pollLast() {
+		return deque.pollLast();
+	}
+
+	@Override
+	public Message removeFirst(final MessageFilter filter) {
+		return remove(deque.iterator(), filter);
+	}
+
+	@Override
+	public Message removeLast(final MessageFilter filter) {
+		return remove(deque.descendingIterator(), filter);
+	}
+
+	private static Message remove(final Iterator<Message> iterator, final MessageFilter filter) {
+		while (iterator.hasNext()) {
+			final Message m = iterator.next();
+			if (filter.accept(m)) {
+				iterator.remove();
+				return m;
+			}
+		}
+		return null;
+	}
+
+	@Override
+	public List<Message> removeAll(final MessageFilter filter) {
+		final List<Message> match = new ArrayList<>();
+		if (filter == null) {
+			deque.drainTo(match);
+			return match;
+		}
+		for (final Iterator<Message> iterator = deque.iterator(); iterator.hasNext();) {
+			final Message m = iterator.next();
+			if (filter.accept(m)) {
+				iterator.remove();
+				match.add(m);
+			}
+		}
+		return match;
+	}
+
+	@Override
+	public Message purge() {
+		final Message m = deque.pollLast();
+		deque.clear();
+		return m;
+	}
+
+	@Override
+	public void addAllFirst(final List<Message> messages) {
+		for (final ListIterator<Message> iterator = messages.listIterator(messages.size()); iterator.hasPrevious();) {
+			final Message m = iterator.previous();
+			if (!deque.offerFirst(m)) {// full: the most recent one has to go
+				deque.pollLast();
+				deque.offerFirst(m);
+			}
+		}
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return deque.isEmpty();
+	}
+
+	@Override
+	public int size() {
+		return deque.size();
+	}
+
+}
@@ -0,0 +1,459 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import madkit.action.KernelAction;
+import madkit.action.SchedulingAction;
+import madkit.kernel.AbstractAgent.ReturnCode;
+import madkit.kernel.AbstractAgent.State;
+import madkit.kernel.Madkit.BooleanOption;
+import madkit.kernel.Madkit.LevelOption;
+import madkit.message.SchedulingMessage;
+import madkit.simulation.SimulationException;
+
+/**
+ * Runs the replications of a simulation for each combination of the values
+ * of its parameters, several runs being done at the same time.
+ * <p>
+ * Each run has its own kernel, so that runs are isolated from each other,
+ * and its own {@link Scheduler}, which is built by the factory given to the
+ * experiment and is expected to set up the simulation in its
+ * {@link Scheduler#activate()} method. The factory gets the {@link Run}, which
+ * gives the parameter values and the seed of the run. The parameters are also
+ * options of the kernel of the run, so that any agent can get them using
+ * {@link AbstractAgent#getMadkitProperty(String)}.
+ * <p>
+ * The scheduler of a run is launched in the turbo mode and runs until it
+ * ends, e.g. when its simulation duration is reached. The measures of the
+ * experiment are then taken on the scheduler, before the kernel of the run
+ * is shut down, and the results can be written as a table using
+ * {@link #writeCSV(Appendable)}.
+ * 
+ * <pre>
+ * final Experiment&lt;MyScheduler&gt; e = new Experiment&lt;&gt;(MyScheduler::new);
+ * e.addParameter(&quot;population&quot;, 100, 1000, 10000);
+ * e.addParameter(&quot;speed&quot;, 0.5, 1.0);
+ * e.addMeasure(&quot;meanEnergy&quot;, s -&gt; s.getEnergyProbe().getMean());
+ * e.setReplications(10);
+ * e.run();
+ * e.writeCSV(System.out);
+ * </pre>
+ * 
+ * @param <S> the type of the schedulers of the runs
+ * 
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public final class Experiment<S extends Scheduler> {
+
+	private final Function<? super Run, ? extends S>			factory;
+	private final Map<String, List<Object>>						parameters		= new LinkedHashMap<>();
+	private final Map<String, Function<? super S, ?>>			measures			= new LinkedHashMap<>();
+	private final List<String>											madkitOptions	= new ArrayList<>();
+	private int																replications	= 1;
+	private long															seed;
+	private int																parallelism		= Runtime.getRuntime().availableProcessors();
+	private List<Run>														runs				= Collections.emptyList();
+
+	/**
+	 * @param factory
+	 *           builds the scheduler of each run
+	 */
+	public Experiment(final Function<? super Run, ? extends S> factory) {
+		this.factory = Objects.requireNonNull(factory);
+	}
+
+	/**
+	 * Adds a parameter to the sweep: a run is done for each combination of the
+	 * values of the parameters.
+	 * 
+	 * @param name
+	 *           the name of the parameter
+	 * @param values
+	 *           its values
+	 */
+	public void addParameter(final String name, final Object... values) {
+		if (values.length == 0)
+			throw new IllegalArgumentException("no value for " + name);
+		parameters.put(Objects.requireNonNull(name), Arrays.asList(values));
+	}
+
+	/**
+	 * Adds a measure, which is a column of the results.
+	 * 
+	 * @param name
+	 *           the name of the measure
+	 * @param measure
+	 *           computes the value of the measure using the scheduler of a
+	 *           run, once it has ended
+	 */
+	public void addMeasure(final String name, final Function<? super S, ?> measure) {
+		measures.put(Objects.requireNonNull(name), Objects.requireNonNull(measure));
+	}
+
+	/**
+	 * Adds options to the kernels of the runs. By default, the desktop is not
+	 * used and the kernels only log warnings.
+	 * 
+	 * @param options
+	 *           MaDKit options, e.g. <code>LevelOption.agentLogLevel.toString(), "INFO"</code>
+	 */
+	public void addMadkitOptions(final String... options) {
+		madkitOptions.addAll(Arrays.asList(options));
+	}
+
+	/**
+	 * @param replications
+	 *           the number of runs for each combination of parameter values.
+	 *           Default is 1.
+	 */
+	public void setReplications(final int replications) {
+		if (replications < 1)
+			throw new IllegalArgumentException("replications " + replications);
+		this.replications = replications;
+	}
+
+	/**
+	 * Sets the seed from which the seeds of the runs are derived, so that an
+	 * experiment can be done again with the same seeds. Default is 0.
+	 * 
+	 * @param seed
+	 *           the seed of the experiment
+	 */
+	public void setSeed(final long seed) {
+		this.seed = seed;
+	}
+
+	/**
+	 * @param parallelism
+	 *           the maximum number of runs done at the same time. Default is
+	 *           the number of available processors.
+	 */
+	public void setParallelism(final int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("parallelism " + parallelism);
+		this.parallelism = parallelism;
+	}
+
+	/**
+	 * Does all the runs and returns when they are done. A run which fails,
+	 * e.g. because its scheduler cannot be built or a measure throws an
+	 * exception, does not stop the experiment: see {@link Run#getFailure()}.
+	 * 
+	 * @return the runs, in the order of their index
+	 * @throws InterruptedException
+	 *            if the current thread is interrupted while waiting for the
+	 *            runs. The runs which have not started are then cancelled.
+	 */
+	public List<Run> run() throws InterruptedException {
+		final List<Run> all = buildRuns();
+		final AtomicInteger threads = new AtomicInteger();
+		final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, all.size()), r -> {
+			final Thread t = new Thread(r, "MK_EXPERIMENT-" + threads.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+		try {
+			final List<Future<?>> done = new ArrayList<>(all.size());
+			for (final Run r : all) {
+				done.add(executor.submit(() -> {
+					execute(r);
+					return null;
+				}));
+			}
+			for (int i = 0; i < all.size(); i++) {
+				try {
+					done.get(i).get();
+				} catch (ExecutionException e) {
+					all.get(i).failure = e.getCause();
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		runs = all;
+		return all;
+	}
+
+	/**
+	 * @return the runs of the last call to {@link #run()}
+	 */
+	public List<Run> getRuns() {
+		return runs;
+	}
+
+	/**
+	 * Writes the runs of the last call to {@link #run()} as comma-separated
+	 * values: one line per run, with its index, replication, seed, parameter
+	 * values and measures. If a run failed, a last column gives the reason.
+	 * 
+	 * @param out
+	 *           where to write
+	 * @throws IOException
+	 *            if <code>out</code> throws it
+	 */
+	public void writeCSV(final Appendable out) throws IOException {
+		boolean failures = false;
+		for (final Run r : runs) {
+			failures |= r.failure != null;
+		}
+		final List<Object> line = new ArrayList<>();
+		line.addAll(Arrays.asList("run", "replication", "seed"));
+		line.addAll(parameters.keySet());
+		line.addAll(measures.keySet());
+		if (failures) {
+			line.add("failure");
+		}
+		writeCSVLine(out, line);
+		for (final Run r : runs) {
+			line.clear();
+			line.addAll(Arrays.asList(r.index, r.replication, r.seed));
+			line.addAll(r.parameters.values());
+			for (final String measure : measures.keySet()) {
+				line.add(r.results.get(measure));
+			}
+			if (failures) {
+				line.add(r.failure);
+			}
+			writeCSVLine(out, line);
+		}
+	}
+
+	private static void writeCSVLine(final Appendable out, final List<Object> values) throws IOException {
+		for (int i = 0; i < values.size(); i++) {
+			if (i > 0) {
+				out.append(',');
+			}
+			final Object value = values.get(i);
+			if (value != null) {
+				final String s = value.toString();
+				if (s.indexOf(',') >= 0 || s.indexOf('"') >= 0 || s.indexOf('\n') >= 0) {
+					out.append('"').append(s.replace("\"", "\"\"")).append('"');
+				}
+				else {
+					out.append(s);
+				}
+			}
+		}
+		out.append('\n');
+	}
+
+	/**
+	 * @return one run per combination of parameter values and replication,
+	 *         the first parameter varying the slowest
+	 */
+	private List<Run> buildRuns() {
+		int combinations = 1;
+		for (final List<Object> values : parameters.values()) {
+			combinations *= values.size();
+		}
+		final List<Run> all = new ArrayList<>(combinations * replications);
+		final List<String> names = new ArrayList<>(parameters.keySet());
+		final Object[] combination = new Object[names.size()];
+		for (int c = 0; c < combinations; c++) {
+			int rest = c;
+			for (int p = names.size() - 1; p >= 0; p--) {
+				final List<Object> v = parameters.get(names.get(p));
+				combination[p] = v.get(rest % v.size());
+				rest /= v.size();
+			}
+			final Map<String, Object> values = new LinkedHashMap<>();
+			for (int p = 0; p < names.size(); p++) {
+				values.put(names.get(p), combination[p]);
+			}
+			for (int r = 0; r < replications; r++) {
+				final int index = all.size();
+				all.add(new Run(index, r, seed(seed, index), Collections.unmodifiableMap(values)));
+			}
+		}
+		return all;
+	}
+
+	/**
+	 * SplitMix64: runs having close indexes get unrelated seeds
+	 */
+	private static long seed(final long base, final int index) {
+		long z = base + (index + 1) * 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+	private void execute(final Run r) throws InterruptedException {
+		final Madkit m = new Madkit(kernelOptions(r));
+		final MadkitKernel k = m.getKernel();
+		try {
+			final S s = factory.apply(r);
+			s.setTurboMode(true);
+			final ReturnCode code = k.launchAgent(k, s, Integer.MAX_VALUE, false);
+			if (code != ReturnCode.SUCCESS) {
+				r.failure = new SimulationException("launching " + s + " failed: " + code, null);
+				return;
+			}
+			s.receiveMessage(new SchedulingMessage(SchedulingAction.RUN));
+			waitForTermination(s);
+			for (final Map.Entry<String, Function<? super S, ?>> measure : measures.entrySet()) {
+				r.results.put(measure.getKey(), measure.getValue().apply(s));
+			}
+		} catch (RuntimeException e) {
+			r.failure = e;
+		}
+		finally {
+			m.doAction(KernelAction.EXIT);
+			waitForTermination(k);
+		}
+	}
+
+	private String[] kernelOptions(final Run r) {
+		final List<String> options = new ArrayList<>(Arrays.asList(BooleanOption.desktop.toString(), "false",
+				LevelOption.madkitLogLevel.toString(), "OFF", LevelOption.kernelLogLevel.toString(), "OFF",
+				LevelOption.agentLogLevel.toString(), "WARNING"));
+		options.addAll(madkitOptions);
+		for (final Map.Entry<String, Object> p : r.parameters.entrySet()) {
+			options.add("--" + p.getKey());
+			options.add(String.valueOf(p.getValue()));
+		}
+		return options.toArray(new String[options.size()]);
+	}
+
+	private static void waitForTermination(final AbstractAgent a) throws InterruptedException {
+		final Object lock = a.lifeLock();
+		synchronized (lock) {
+			while (a.getState() != State.TERMINATED) {
+				lock.wait(1000);
+			}
+		}
+	}
+
+	/**
+	 * A run of an {@link Experiment}
+	 */
+	public static final class Run {
+
+		private final int							index;
+		private final int							replication;
+		private final long						seed;
+		private final Map<String, Object>	parameters;
+		private final Map<String, Object>	results	= new LinkedHashMap<>();
+		private Throwable							failure;
+
+		private Run(final int index, final int replication, final long seed, final Map<String, Object> parameters) {
+			this.index = index;
+			this.replication = replication;
+			this.seed = seed;
+			this.parameters = parameters;
+		}
+
+		/**
+		 * @return the index of this run in the experiment
+		 */
+		public int getIndex() {
+			return index;
+		}
+
+		/**
+		 * @return the replication number of this run for its parameter values,
+		 *         starting from 0
+		 */
+		public int getReplication() {
+			return replication;
+		}
+
+		/**
+		 * @return the seed which should be used by the random generators of
+		 *         this run
+		 */
+		public long getSeed() {
+			return seed;
+		}
+
+		/**
+		 * @return the parameter values of this run
+		 */
+		public Map<String, Object> getParameters() {
+			return parameters;
+		}
+
+		/**
+		 * @param name
+		 *           the name of a parameter
+		 * @return its value for this run
+		 */
+		@SuppressWarnings("unchecked")
+		public <T> T getParameter(final String name) {
+			return (T) parameters.get(name);
+		}
+
+		/**
+		 * @return the values of the measures, once the run is done
+		 */
+		public Map<String, Object> getResults() {
+			return Collections.unmodifiableMap(results);
+		}
+
+		/**
+		 * @return the exception which made this run fail, or <code>null</code>
+		 */
+		public Throwable getFailure() {
+			return failure;
+		}
+
+		@Override
+		public String toString() {
+			return "run " + index + " " + parameters + " #" + replication;
+		}
+	}
+
+}
@@ -37,6 +37,7 @@ knowledge of the CeCILL-C license and that you accept its terms.
 package madkit.kernel;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import madkit.i18n.ErrorMessages;
 import madkit.util.MadkitProperties;
@@ -137,6 +138,16 @@ class FakeKernel extends MadkitKernel{
 		throw buildKernelException(agent);
 	}
 
+	@Override
+	final ReturnCode sendMessage(AbstractAgent agent, RoleHandle handle, Message messageToSend) {
+		throw buildKernelException(agent);
+	}
+
+	@Override
+	final ReturnCode broadcastMessage(AbstractAgent agent, RoleHandle handle, Message messageToSend) {
+		throw buildKernelException(agent);
+	}
+
 	//////////////////////////////////////////////////////////////
 	////////////////////////// Launching and Killing
 	//////////////////////////////////////////////////////////////
@@ -197,6 +208,24 @@ class FakeKernel extends MadkitKernel{
 		throw buildKernelException(agent);
 	}
 
+	@Override
+	final CompletableFuture<Message> sendMessageAsync(AbstractAgent agent, AgentAddress receiver, Message message,
+			String senderRole, Integer timeOutMilliSeconds) {
+		throw buildKernelException(agent);
+	}
+
+	@Override
+	final CompletableFuture<Message> sendMessageAsync(AbstractAgent agent, String community, String group, String role,
+			Message message, String senderRole, Integer timeOutMilliSeconds) {
+		throw buildKernelException(agent);
+	}
+
+	@Override
+	final CompletableFuture<List<Message>> broadcastMessageAsync(AbstractAgent agent, String community, String group,
+			String role, Message message, String senderRole, Integer timeOutMilliSeconds) {
+		throw buildKernelException(agent);
+	}
+
 	@Override
 	final boolean createGroupIfAbsent(AbstractAgent agent,
 			String community, String group, Gatekeeper gatekeeper,
@@ -37,6 +37,7 @@ knowledge of the CeCILL-C license and that you accept its terms.
 package madkit.kernel;
 
 import static madkit.kernel.AbstractAgent.ReturnCode.ACCESS_DENIED;
+import static madkit.kernel.AbstractAgent.ReturnCode.NOT_GROUP;
 import static madkit.kernel.AbstractAgent.ReturnCode.ROLE_ALREADY_HANDLED;
 import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
 
@@ -76,6 +77,10 @@ final class Group extends ConcurrentHashMap<String, Role> {
 	private final boolean		isSecured;
 
 	private final boolean		distributed;
+	/**
+	 * set, while holding the lock on this group, when it has been removed from its community
+	 */
+	private volatile boolean	removed;
 
 	/**
 	 * @param creator
@@ -187,15 +192,30 @@ final class Group extends ConcurrentHashMap<String, Role> {
 				}
 		}
 		// TODO there is another RC : manager role is already handled
-		synchronized (this) {
-			final Role r = getOrCreateRole(roleName);
-			if(r.addMember(requester)){
-				// now trigger overlooker updates if needed. Note that the role always still exits here because requester is in
-				r.addToOverlookers(requester);
-				return SUCCESS;
+		Role r = get(roleName);
+		if (r == null || ! r.addMember(requester)) {
+			if (r != null && ! r.isRemoved()) {
+				return ROLE_ALREADY_HANDLED;
+			}
+			// the role has to be created: this is the only case which requires to lock the group
+			synchronized (this) {
+				if (removed) {
+					return NOT_GROUP;
+				}
+				boolean added;
+				do {
+					r = getOrCreateRole(roleName);
+					added = r.addMember(requester);
+				}
+				while (! added && r.isRemoved());
+				if (! added) {
+					return ROLE_ALREADY_HANDLED;
+				}
 			}
-			return ROLE_ALREADY_HANDLED;
 		}
+		// now trigger overlooker updates if needed. Note that the role always still exits here because requester is in
+		r.addToOverlookers(requester);
+		return SUCCESS;
 	}
 
 	
@@ -213,23 +233,38 @@ final class Group extends ConcurrentHashMap<String, Role> {
 	}
 
 	/**
-	 * @param roleName
+	 * Removes a role which has been emptied. The group is removed from its community
+	 * if it was its last role. This should not be called while holding 
+	 * the lock on a role.
+	 * 
+	 * @param r the role to remove, which could have already been replaced
 	 */
-	void removeRole(String roleName) {
+	void removeRole(final Role r) {
+		final boolean empty;
 		synchronized (this) {
-			remove(roleName);
+			if (! remove(r.getRoleName(), r)) {
+				return;
+			}
 			if (logger != null)
 				logger.finer("Removing"
 						+ I18nUtilities.getCGRString(communityName, groupName,
-								roleName));
-			checkEmptyness();
+								r.getRoleName()));
+			empty = isEmpty();
+			if (empty) {
+				removed = true;
+			}
+		}
+		if (empty) {
+			communityObject.removeGroup(this);
 		}
 	}
 
-	private void checkEmptyness() {
-		if (isEmpty()) {
-			communityObject.removeGroup(groupName);
-		}
+	/**
+	 * @return <code>true</code> if this group has been removed from its community,
+	 * so that it will never be used again
+	 */
+	boolean isRemoved() {
+		return removed;
 	}
 
 	/**
@@ -238,26 +273,18 @@ final class Group extends ConcurrentHashMap<String, Role> {
 	 */
 	List<Role> leaveGroup(final AbstractAgent requester) {
 		List<Role> affectedRoles = null;
-		synchronized (this) {
-//			values().parallelStream().filter(r -> r.removeMember(requester) == SUCCESS);//TODO lambda
-			for (final Role r : values()) {
-				if (r.removeMember(requester) == SUCCESS) {
-					if (affectedRoles == null)
-						affectedRoles = new ArrayList<>(10);
-					affectedRoles.add(r);
-				}
+		for (final Role r : requester.memberships.getRolesIn(this)) {
+			if (r.removeMember(requester) == SUCCESS) {
+				if (affectedRoles == null)
+					affectedRoles = new ArrayList<>(10);
+				affectedRoles.add(r);
 			}
 		}
 		return affectedRoles;
 	}
 
 	boolean isIn(AbstractAgent agent) {
-//		return values().parallelStream().anyMatch(r -> r.contains(agent));//TODO lambda
-		for (final Role r : values()) {
-			if (r.contains(agent))
-				return true;
-		}
-		return false;
+		return agent.memberships.isIn(this);
 	}
 
 	// /**
@@ -312,15 +339,22 @@ final class Group extends ConcurrentHashMap<String, Role> {
 
 	/**
 	 * @param hashMap
+	 * @return <code>false</code> if nothing has been done because the group has been removed
 	 */
-	void importDistantOrg(final Map<String, Set<AgentAddress>> map) {
-		for (final String roleName : map.keySet()) {
-			final Set<AgentAddress> list = map.get(roleName);
-			if (list == null)
-				continue;
-			synchronized (this) {
-				getOrCreateRole(roleName).importDistantOrg(list);
+	boolean importDistantOrg(final Map<String, Set<AgentAddress>> map) {
+		synchronized (this) {
+			if (removed) {
+				return false;
 			}
+			for (final String roleName : map.keySet()) {
+				final Set<AgentAddress> list = map.get(roleName);
+				if (list == null)
+					continue;
+				while (! getOrCreateRole(roleName).importDistantOrg(list)) {
+					// the role has just been emptied: a new one is created
+				}
+			}
+			return true;
 		}
 	}
 
@@ -329,16 +363,25 @@ final class Group extends ConcurrentHashMap<String, Role> {
 	 */
 	void addDistantMember(AgentAddress content) {
 		final String roleName = content.getRole();
-		final Role r;
 		synchronized (this) {
-			r = getOrCreateRole(roleName);
+			if (! removed) {
+				while (! getOrCreateRole(roleName).addDistantMember(content)) {
+					// the role has just been emptied: a new one is created
+				}
+			}
 		}
-		r.addDistantMember(content);
 	}
-	
+
+	/**
+	 * Should be called while holding the lock on this group
+	 * 
+	 * @param roleName
+	 * @return the role named roleName, which is created if it does not exist
+	 *         or if it is being removed
+	 */
 	Role getOrCreateRole(final String roleName){
 		Role r = get(roleName);
-		if(r == null)
+		if(r == null || r.isRemoved())
 			return createRole(roleName);
 		return r;
 	}
@@ -403,7 +446,10 @@ final class Group extends ConcurrentHashMap<String, Role> {
 		for (Role r : values()) {
 			r.destroy();
 		}
-		communityObject.removeGroup(groupName);
+		synchronized (this) {
+			removed = true;
+		}
+		communityObject.removeGroup(this);
 	}
 
 }
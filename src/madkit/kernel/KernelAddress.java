@@ -116,6 +116,31 @@ public class KernelAddress implements java.io.Serializable{
 		}
 		localID = tmp;
 	}
+
+	/**
+	 * Rebuilds an address which has been received from the network.
+	 * 
+	 * @param networkID the network part of the address
+	 * @param localID the local part of the address
+	 */
+	KernelAddress(final long networkID, final short localID){
+		this.networkID = networkID;
+		this.localID = localID;
+	}
+
+	/**
+	 * @return the network part of this address
+	 */
+	final long getNetworkPart() {
+		return networkID;
+	}
+
+	/**
+	 * @return the local part of this address
+	 */
+	final short getLocalPart() {
+		return localID;
+	}
 	
 	/**
 	 * Tells if another kernel address is the same.
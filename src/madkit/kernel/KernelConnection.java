@@ -38,23 +38,49 @@ package madkit.kernel;
 
 import java.io.EOFException;
 import java.io.IOException;
-import java.io.ObjectInputStream;
-import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.StreamCorruptedException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 
 /**
+ * The connection with a distant kernel. Messages are exchanged 
+ * using the {@link WireProtocol}.
+ * <p>
+ * The connection info is always exchanged with blocking I/O. Then, either
+ * a thread is started for reading the incoming messages, or, if the connection 
+ * has been given a {@link NetworkSelector}, the channel is switched to
+ * non blocking mode and handed to the selector: outgoing frames are then 
+ * queued in an {@link OutboundQueue} and written by the selector thread.
+ * <p>
+ * The messages could also be batched using {@link #queueMessage(Message)}
+ * so that they are sent in one frame.
+ * 
  * @author Fabien Michel
- * @version 0.9
+ * @version 0.11
  * @since MaDKit 5.0
  *
  */
-final class KernelConnection extends Thread{
+final class KernelConnection {
+
+	/**
+	 * the number of bytes which could be queued for a peer 
+	 * before the connection is considered as lost
+	 */
+	static final int	OUTBOUND_CAPACITY	= 1 << 22;
 
 	final private Socket distantKernelSocket;
 	private boolean activated = false;
@@ -72,8 +98,22 @@ final class KernelConnection extends Thread{
 		return distantKernelSocket;
 	}
 
-	private final ObjectOutputStream oos;
-	private final ObjectInputStream ois;
+	private final WireOutput out;
+	private final WireInput in;
+
+	/**
+	 * the selector handling this connection once started,
+	 * <code>null</code> if it uses blocking I/O
+	 */
+	private final NetworkSelector selector;
+	private volatile OutboundQueue outbound;
+	private SelectionKey selectionKey;
+	private ByteBuffer inbound;
+	/**
+	 * the messages of the last frame, used by the reading thread only
+	 */
+	private final List<Message> received = new ArrayList<>();
+	private final AtomicBoolean lost = new AtomicBoolean();
 
 	/**
 	 * @return the distantKernelAddress
@@ -82,16 +122,68 @@ final class KernelConnection extends Thread{
 		return distantKernelAddress;
 	}
 
+	/**
+	 * @param selector the selector to use once started, or <code>null</code> for blocking I/O
+	 */
 	@SuppressWarnings("resource")
-	public KernelConnection(NetworkAgent netAgent, InetAddress address, int port) throws UnknownHostException,IOException {
-		this(netAgent,new Socket(address, port));
+	public KernelConnection(NetworkAgent netAgent, InetAddress address, int port, NetworkSelector selector) throws UnknownHostException,IOException {
+		this(netAgent,
+				selector == null ? new Socket(address, port) : SocketChannel.open(new InetSocketAddress(address, port)).socket(),
+				selector);
 	}
 
-	public KernelConnection(NetworkAgent netAgent, Socket kernelClient) throws IOException{
+	/**
+	 * @param kernelClient a socket which has a channel if a selector is given
+	 * @param selector the selector to use once started, or <code>null</code> for blocking I/O
+	 */
+	public KernelConnection(NetworkAgent netAgent, Socket kernelClient, NetworkSelector selector) throws IOException{
 		myNetAgent = netAgent;
 		distantKernelSocket = kernelClient;
-		oos = new ObjectOutputStream(distantKernelSocket.getOutputStream());
-		ois = new ObjectInputStream(distantKernelSocket.getInputStream());
+		this.selector = selector;
+		distantKernelSocket.setTcpNoDelay(true);// frames are written in one call
+		final OutputStream socketOut = distantKernelSocket.getOutputStream();
+		out = new WireOutput(selector == null ? socketOut : new OutputStream() {
+			
+			@Override
+			public void write(int b) throws IOException {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				final OutboundQueue queue = outbound;
+				if (queue == null) {// not started yet: still blocking
+					socketOut.write(b, off, len);
+				}
+				else {
+					final boolean wasEmpty;
+					try {
+						wasEmpty = queue.offer(b, off, len);
+					} catch (ClosedChannelException e) {
+						throw e;
+					} catch (IOException e) {// the peer is too slow
+						connectionLost(e);
+						throw e;
+					}
+					if (wasEmpty) {
+						KernelConnection.this.selector.requestWrite(KernelConnection.this);
+					}
+				}
+			}
+
+			@Override
+			public void flush() throws IOException {
+				if (outbound == null) {
+					socketOut.flush();
+				}
+			}
+			
+			@Override
+			public void close() throws IOException {
+				socketOut.close();
+			}
+		});
+		in = new WireInput(distantKernelSocket.getInputStream());
 	}
 
 	/**
@@ -99,9 +191,8 @@ final class KernelConnection extends Thread{
 	 * @throws ClassNotFoundException 
 	 * @throws IOException 
 	 */
-	@SuppressWarnings("unchecked")
 	Map<String, Map<String, Map<String, Set<AgentAddress>>>> waitForDistantOrg() throws IOException, ClassNotFoundException {
-			return (Map<String, Map<String, Map<String, Set<AgentAddress>>>>) ois.readObject();
+			return in.receiveOrganization();
 	}
 	
 	/**
@@ -111,7 +202,8 @@ final class KernelConnection extends Thread{
 	 * @throws ClassNotFoundException
 	 */
 	KernelAddress waitForDistantKernelAddress() throws IOException, ClassNotFoundException{
-		return distantKernelAddress = (KernelAddress) ois.readObject();
+		in.readProtocolHeader();
+		return distantKernelAddress = in.receiveKernelAddress();
 	}
 
 
@@ -120,27 +212,146 @@ final class KernelConnection extends Thread{
 	 * @throws IOException 
 	 */
 	void sendConnectionInfo(KernelAddress myKA, Map<String, Map<String, Map<String, Set<AgentAddress>>>> map) throws IOException {
-			oos.writeObject(myKA);
-			oos.writeObject(map);
+			out.writeProtocolHeader();
+			out.sendKernelAddress(myKA);
+			out.sendOrganization(map);
 	}
 
-	@Override
-	public void run() {
+	/**
+	 * Starts receiving messages.
+	 */
+	synchronized void start() {
 		activated = true;
+		if (selector == null) {
+			final Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					receiveMessages();
+				}
+			});
+			t.setName("KC " + distantKernelAddress + " " + myNetAgent.getName());
+			t.start();
+			return;
+		}
+		try {
+			getChannel().configureBlocking(false);
+		} catch (IOException e) {
+			connectionLost(e);
+			return;
+		}
+		inbound = ByteBuffer.allocate(OutboundQueue.CHUNK_SIZE);
+		outbound = new OutboundQueue(OUTBOUND_CAPACITY);
+		selector.register(this);
+	}
+
+	private void receiveMessages() {
 		while(distantKernelSocket.isConnected()){
 			try {
-				myNetAgent.receiveMessage((Message) ois.readObject());
+				in.receiveMessages(received);
 			} catch (ClassNotFoundException e) {
 				myNetAgent.getLogger().log(Level.SEVERE,"Unable to deserialize object", e);
 			} catch (IOException e) {
 				logIOException(e);
 				break;
 			}
+			deliverReceived();
 		}
 		myNetAgent.receiveMessage(new NetworkMessage(NetCode.PEER_DECONNECTED, distantKernelAddress));
 		closeConnection();
 	}
 
+	private void deliverReceived() {
+		for (final Message m : received) {
+			myNetAgent.receiveMessage(m);
+		}
+		received.clear();
+	}
+
+	/**
+	 * @return the channel of a non blocking connection
+	 */
+	SocketChannel getChannel() {
+		return distantKernelSocket.getChannel();
+	}
+
+	SelectionKey getSelectionKey() {
+		return selectionKey;
+	}
+
+	void setSelectionKey(final SelectionKey key) {
+		selectionKey = key;
+	}
+
+	boolean hasPendingWrites() {
+		return ! outbound.isEmpty();
+	}
+
+	/**
+	 * Called by the selector thread: reads what is available
+	 * and delivers the messages which are complete.
+	 */
+	void channelReadable() {
+		try {
+			if (getChannel().read(inbound) < 0) {
+				connectionLost(new EOFException());
+				return;
+			}
+			inbound.flip();
+			while (inbound.remaining() >= 4) {
+				final int length = inbound.getInt(inbound.position());
+				if (length < 0 || inbound.remaining() - 4 < length)
+					break;
+				final int start = inbound.position() + 4;
+				inbound.position(start + length);
+				try {
+					in.decodeMessages(inbound.array(), start, length, received);
+				} catch (ClassNotFoundException e) {
+					myNetAgent.getLogger().log(Level.SEVERE,"Unable to deserialize object", e);
+				}
+				deliverReceived();
+			}
+			// the buffer is large enough for the next frame, and shrinks back afterwards
+			final int needed = inbound.remaining() < 4 ? 4 : inbound.getInt(inbound.position()) + 4;
+			if (needed < 4)
+				throw new StreamCorruptedException("negative frame length");
+			final int capacity = Math.max(OutboundQueue.CHUNK_SIZE, needed);
+			if (capacity == inbound.capacity()) {
+				inbound.compact();
+			}
+			else {
+				inbound = ByteBuffer.allocate(capacity).put(inbound);
+			}
+		} catch (IOException e) {
+			connectionLost(e);
+		}
+	}
+
+	/**
+	 * Called by the selector thread.
+	 * 
+	 * @return <code>true</code> if there is nothing more to write
+	 */
+	boolean channelWritable() {
+		try {
+			return outbound.writeTo(getChannel());
+		} catch (IOException e) {
+			connectionLost(e);
+			return true;
+		}
+	}
+
+	/**
+	 * Handles a failure of a non blocking connection, including a peer 
+	 * which is too slow to read what is queued for it.
+	 */
+	void connectionLost(final IOException e) {
+		if (lost.getAndSet(true))
+			return;
+		logIOException(e);
+		myNetAgent.receiveMessage(new NetworkMessage(NetCode.PEER_DECONNECTED, distantKernelAddress));
+		closeConnection();
+	}
+
 	/**
 	 * @param e
 	 */
@@ -154,29 +365,69 @@ final class KernelConnection extends Thread{
 	}
 
 	/**
+	 * Sends a message. With a non blocking connection, the message is only
+	 * queued, and the connection is closed if the peer is too slow to read 
+	 * the previous ones.
+	 * 
 	 * @param m
 	 */
 	synchronized void sendMessage(final Message m) {
 		try {
-			oos.writeObject(m);
+			out.sendMessage(m);
 		} catch (IOException e) {
 			logIOException(e);
 		}
-		
 	}
 
 	/**
-	 * close the connection by closing the socket and the streams
+	 * Adds a message to the batch which will be sent by {@link #flush()}, 
+	 * or by the next {@link #sendMessage(Message)}.
+	 * 
+	 * @param m
+	 * @return the number of bytes of the batch
 	 */
-	synchronized void closeConnection() {
+	synchronized int queueMessage(final Message m) {
 		try {
-			oos.close();
-			ois.close();
-			distantKernelSocket.close();
+			out.queueMessage(m);
 		} catch (IOException e) {
-			myNetAgent.getLogger().log(Level.FINE, "", e);
+			logIOException(e);
+		}
+		return out.getBatchSize();
+	}
+
+	/**
+	 * Sends the messages which have been batched.
+	 */
+	synchronized void flush() {
+		try {
+			out.flush();
+		} catch (IOException e) {
+			logIOException(e);
+		}
+	}
+
+	/**
+	 * close the connection by closing the socket and the streams
+	 */
+	void closeConnection() {
+		final OutboundQueue queue = outbound;
+		if (queue != null) {// drops what has not been sent
+			queue.close();
+		}
+		synchronized (this) {
+			try {
+				if (selectionKey != null) {
+					selectionKey.cancel();
+				}
+				if (outbound == null) {
+					out.close();
+					in.close();
+				}
+				distantKernelSocket.close();
+			} catch (IOException e) {
+				myNetAgent.getLogger().log(Level.FINE, "", e);
+			}
 		}
-		
 	}
 	
 	@Override
@@ -41,11 +41,13 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.Inet4Address;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.NetworkInterface;
 import java.net.ServerSocket;
 import java.net.SocketException;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 import java.util.Enumeration;
 
 import madkit.action.KernelAction;
@@ -132,8 +134,13 @@ final class KernelServer {
 		}
 	}
 
+	/**
+	 * @param channels if <code>true</code>, the accepted sockets have a
+	 * {@link java.nio.channels.SocketChannel}, so that they could be used by a {@link NetworkSelector}
+	 * @return a new server or <code>null</code> if no address is available
+	 */
 	@SuppressWarnings("resource")
-	final static KernelServer getNewKernelServer() {
+	final static KernelServer getNewKernelServer(final boolean channels) {
 		InetAddress ip = findInetAddress();
 		if(ip == null){
 			try {
@@ -148,7 +155,19 @@ final class KernelServer {
 		int port = startingPort;
 		while (serverSocket == null) {
 			try {
-				serverSocket = new ServerSocket(port,50,ip);
+				if (channels) {
+					final ServerSocketChannel channel = ServerSocketChannel.open();
+					try {
+						channel.socket().bind(new InetSocketAddress(ip, port), 50);
+					} catch (IOException e) {
+						channel.close();
+						throw e;
+					}
+					serverSocket = channel.socket();
+				}
+				else {
+					serverSocket = new ServerSocket(port,50,ip);
+				}
 			} catch (IOException e) {
 				port++;
 			}
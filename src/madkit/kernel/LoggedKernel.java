@@ -37,6 +37,7 @@ knowledge of the CeCILL-C license and that you accept its terms.
 package madkit.kernel;
 
 import static madkit.i18n.I18nUtilities.getCGRString;
+import static madkit.kernel.AbstractAgent.ReturnCode.MAILBOX_FULL;
 import static madkit.kernel.AbstractAgent.ReturnCode.NOT_IN_GROUP;
 import static madkit.kernel.AbstractAgent.ReturnCode.NO_RECIPIENT_FOUND;
 import static madkit.kernel.AbstractAgent.ReturnCode.ROLE_NOT_HANDLED;
@@ -45,6 +46,7 @@ import static madkit.kernel.AbstractAgent.ReturnCode.TIMEOUT;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 
 import madkit.i18n.Words;
@@ -206,7 +208,7 @@ final class LoggedKernel extends MadkitKernel {
 			return SUCCESS;
 		}
 		if (requester.isWarningOn()) {
-			if(r == NO_RECIPIENT_FOUND){
+			if(r == NO_RECIPIENT_FOUND || r == MAILBOX_FULL){
 				requester.handleException(Influence.BROADCAST_MESSAGE, new MadkitWarning(r));
 			}
 			else if(r == ROLE_NOT_HANDLED){
@@ -219,6 +221,56 @@ final class LoggedKernel extends MadkitKernel {
 		return r;
 	}
 
+	@Override
+	ReturnCode broadcastMessage(AbstractAgent requester, RoleHandle handle, Message messageToSend) {
+		final ReturnCode r = kernel.broadcastMessage(requester, handle, messageToSend);
+		if(r == SUCCESS){
+			if(requester.isFinestLogOn())
+				requester.logger.log(Level.FINEST,Influence.BROADCAST_MESSAGE + "-> "
+						+ getCGRString(handle.getCommunity(), handle.getGroup(), handle.getRole())
+						+ (handle.getSenderRole() == null ? "" : " with role "+handle.getSenderRole())
+						+ messageToSend
+						);
+			return SUCCESS;
+		}
+		if (requester.isWarningOn()) {
+			if(r == NO_RECIPIENT_FOUND || r == MAILBOX_FULL){
+				requester.handleException(Influence.BROADCAST_MESSAGE, new MadkitWarning(r));
+			}
+			else if(r == ROLE_NOT_HANDLED){
+				requester.handleException(Influence.BROADCAST_MESSAGE, new OrganizationWarning(r, handle.getCommunity(), handle.getGroup(), handle.getSenderRole()));
+			}
+			else{
+				requester.handleException(Influence.BROADCAST_MESSAGE, new OrganizationWarning(r, handle.getCommunity(), handle.getGroup(), handle.getRole()));
+			}
+		}
+		return r;
+	}
+
+	@Override
+	ReturnCode sendMessage(AbstractAgent requester, RoleHandle handle, Message messageToSend) {
+		final ReturnCode r = kernel.sendMessage(requester, handle, messageToSend);
+		if(r == SUCCESS){
+			if(requester.isFinestLogOn()){
+				requester.logger.log(Level.FINEST, (messageToSend.getReceiver().isFrom(requester.getKernelAddress()) ? Influence.SEND_MESSAGE.successString() : Influence.SEND_MESSAGE.toString()) +"->" 
+						+ getCGRString(handle.getCommunity(), handle.getGroup(), handle.getRole())+" "+messageToSend);
+			}
+			return SUCCESS;
+		}
+		if (requester.isWarningOn()) {
+			if(r == NO_RECIPIENT_FOUND || r == MAILBOX_FULL){
+				requester.handleException(Influence.SEND_MESSAGE, new MadkitWarning(r));
+			}
+			else if(r == ROLE_NOT_HANDLED){
+				requester.handleException(Influence.SEND_MESSAGE, new OrganizationWarning(r, handle.getCommunity(), handle.getGroup(), handle.getSenderRole()));
+			}
+			else{
+				requester.handleException(Influence.SEND_MESSAGE, new OrganizationWarning(r, handle.getCommunity(), handle.getGroup(), handle.getRole()));
+			}
+		}
+		return r;
+	}
+
 	@Override
 	ReturnCode sendMessage(AbstractAgent requester, AgentAddress receiver, Message messageToSend, String senderRole) {
 		final ReturnCode r = kernel.sendMessage(requester, receiver, messageToSend, senderRole);
@@ -249,7 +301,7 @@ final class LoggedKernel extends MadkitKernel {
 			return SUCCESS;
 		}
 		if (requester.isWarningOn()) {
-			if(r == NO_RECIPIENT_FOUND){
+			if(r == NO_RECIPIENT_FOUND || r == MAILBOX_FULL){
 				requester.handleException(Influence.SEND_MESSAGE, new MadkitWarning(r));
 			}
 			else if(r == ROLE_NOT_HANDLED){
@@ -273,6 +325,16 @@ final class LoggedKernel extends MadkitKernel {
 		return result;
 	}
 
+	@Override
+	//the log is done in the kernel to not deal with the catch or specify requirement in the not logged method
+	CompletableFuture<List<Message>> broadcastMessageAsync(AbstractAgent requester, String community, String group, String role,
+			Message message, String senderRole, Integer timeOutMilliSeconds) {
+		final CompletableFuture<List<Message>> result = kernel.broadcastMessageAsync(requester, community, group, role, message, senderRole, timeOutMilliSeconds);
+		if(requester.isFinestLogOn())
+			requester.logger.log(Level.FINEST,Influence.BROADCAST_MESSAGE_AND_WAIT+": "+message+" sent, replies expected");
+		return result;
+	}
+
 //	/**
 //	 * @see madkit.kernel.MadkitKernel#launchAgentBucketWithRoles(madkit.kernel.AbstractAgent, java.lang.String, int, java.util.Collection)
 //	 */
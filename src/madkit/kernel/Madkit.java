@@ -498,6 +498,25 @@ final public class Madkit {
 		 * Default value is "false".
 		 */
 		network,
+		/**
+		 * Makes the network use a few selector threads for all the
+		 * connections with other kernels, instead of one thread per connected kernel.
+		 * This is useful when connecting many kernels. It is only used if
+		 * {@link #network} is activated. A kernel which does not read what
+		 * is sent to it fast enough is then disconnected.
+		 * Default value is "false".
+		 */
+		nioNetwork,
+		/**
+		 * Runs the life cycle of the threaded agents on virtual threads instead 
+		 * of one platform thread per agent, so that a kernel could host
+		 * many more of them. This requires Java 21: otherwise, platform threads 
+		 * are used. Daemon agents always use platform threads. Since a virtual
+		 * thread cannot be stopped, an agent which is killed dies at its
+		 * next blocking call, e.g. {@link Agent#waitNextMessage()} or {@link Agent#pause(int)}.
+		 * Default value is "false".
+		 */
+		virtualThreads,
 		/**
 		 * If activated, MaDKit will create a log file for every agent which has
 		 * a log level greater than {@link Level#OFF}.
@@ -516,6 +535,20 @@ final public class Madkit {
 		 * Default value is "false".
 		 */
 		noAgentConsoleLog,
+		/**
+		 * If activated, the agents' loggers do not write by themselves but hand
+		 * their records to a single writer thread per kernel, so that logging
+		 * does not slow down agents because of I/O. Additionally, when
+		 * {@link #createLogFiles} is activated, all the agents log into one
+		 * shared file of the log directory, each line starting with the name of
+		 * its agent. This file is rotated when it becomes too big. If agents log
+		 * faster than what can be written, records are dropped and the number of
+		 * lost records is logged.
+		 * Default value is "false".
+		 * 
+		 * @see Madkit.Option#logDirectory
+		 */
+		asyncLogging,
 		/**
 		 * Launches the {@link ConsoleAgent} before any other.
 		 */
@@ -666,7 +699,22 @@ final public class Madkit {
 		 * the agent frame class which should be used by the GUI manager,
 		 * default is {@link AgentFrame}
 		 */
-		agentFrameClass;
+		agentFrameClass,
+
+		/**
+		 * The number of milliseconds during which the messages sent to 
+		 * another kernel could be retained, so that they are sent together. 
+		 * Default value is "0": the messages are retained only while the network
+		 * agent has others to send.
+		 */
+		networkBatchLinger,
+
+		/**
+		 * The number of bytes of retained messages beyond which they are sent
+		 * to the other kernel without waiting for {@link #networkBatchLinger}.
+		 * Default value is "65536".
+		 */
+		networkBatchSize;
 
 		/**
 		 * Returns the constant's name prefixed by "<code>--</code>" so that
@@ -42,7 +42,6 @@ import java.io.FileFilter;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.lang.reflect.Modifier;
 import java.net.JarURLConnection;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -52,18 +51,13 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.jar.Attributes;
 import java.util.jar.JarFile;
 
-import javax.xml.parsers.ParserConfigurationException;
-
 import madkit.gui.MASModel;
 import madkit.gui.menu.ClassPathSensitiveMenu;
 import madkit.util.MadkitProperties;
-import madkit.util.XMLUtilities;
-
-import org.w3c.dom.Document;
-import org.xml.sax.SAXException;
 
 import com.sun.javaws.jnl.JARDesc;
 import com.sun.jnlp.JNLPClassLoader;
@@ -80,7 +74,15 @@ import com.sun.jnlp.JNLPClassLoader;
  */
 final public class MadkitClassLoader extends URLClassLoader { // NO_UCD
 
-	private Collection<String>	 classesToReload;
+	/**
+	 * the classes which should be defined again by a new loader on their next loading
+	 */
+	private final Set<String>	 classesToReload = ConcurrentHashMap.newKeySet();
+	/**
+	 * held while the classes of a package are defined for a reload, 
+	 * never together with the lock of a class name
+	 */
+	private final Object			 reloadLock = new Object();
 //	final private Madkit			madkit;
 	private static Set<String>			agentClasses;
 	private static Set<String>			mdkFiles;
@@ -88,9 +90,10 @@ final public class MadkitClassLoader extends URLClassLoader { // NO_UCD
 	private static Set<String>			mains;
 	private static Set<MASModel>		demos;
 	private static Set<URL>				scannedURLs;
-	private static MadkitClassLoader currentMCL;
+	private static volatile MadkitClassLoader currentMCL;
 	
 	static{
+		registerAsParallelCapable();
 		final URL[] urls;
 		if(MadkitProperties.JAVAWS_IS_ON){
 			final JARDesc[] jars = JNLPClassLoader.getInstance().getLaunchDesc().getResources().getEagerOrAllJarDescs(true);
@@ -125,7 +128,7 @@ final public class MadkitClassLoader extends URLClassLoader { // NO_UCD
 	private MadkitClassLoader(URL[] urls, final ClassLoader parent, Collection<String> toReload) {
 		super(urls, parent);
 		if (toReload != null)
-			classesToReload = new HashSet<>(toReload);
+			classesToReload.addAll(toReload);
 		currentMCL = this;
 	}
 	
@@ -138,39 +141,38 @@ final public class MadkitClassLoader extends URLClassLoader { // NO_UCD
 		return currentMCL;
 	}
 
+	/**
+	 * This loader is parallel capable: only the loading of a class which is
+	 * scheduled for reloading is done holding the lock of this class name.
+	 * This lock is released before the classes of its package are defined,
+	 * as defining them may need the lock of other class names.
+	 */
 	@Override
-	protected synchronized Class<?> loadClass(final String name, final boolean resolve)
+	protected Class<?> loadClass(final String name, final boolean resolve)
 			throws ClassNotFoundException {
+		if (classesToReload.isEmpty() || ! classesToReload.contains(name)) {
+			return super.loadClass(name, resolve);
+		}
 		Class<?> c;
-//      synchronized (getClassLoadingLock(name)) {
-		if (classesToReload != null && classesToReload.contains(name)) {
+		synchronized (getClassLoadingLock(name)) {
+			if (! classesToReload.contains(name)) {// reloaded meanwhile
+				return super.loadClass(name, resolve);
+			}
 			c = findLoadedClass(name);
 			if (c != null) {
-//				Logger l = madkit.getKernel().logger;
-//				if (l != null) {
-//					l.log(Level.FINE, "Already defined " + name + " : NEED NEW MCL");
-//				}
 				@SuppressWarnings("resource")
 				MadkitClassLoader mcl = new MadkitClassLoader(getURLs(), this, classesToReload);
 				classesToReload.remove(name);
 				c = mcl.loadClass(name, resolve);
 			}
-			else {// Never defined nor reloaded : go for defining
-				addUrlAndloadClasses(name);
-//				findClass(name);
-				classesToReload = null;
-				return loadClass(name, resolve);// I should now find it on this next try
-			}
-		}
-		else {
-			c = findLoadedClass(name);
 		}
-		if (c == null) {
-			return super.loadClass(name, resolve);
+		if (c == null) {// Never defined nor reloaded : go for defining
+			addUrlAndloadClasses(name);
+			classesToReload.clear();// the package has just been defined
+			return loadClass(name, resolve);// I should now find it on this next try
 		}
 		if (resolve)
 			resolveClass(c);
-//      }
 		return c;
 	}
 
@@ -200,9 +202,6 @@ final public class MadkitClassLoader extends URLClassLoader { // NO_UCD
 	// System.err.println(name.replace('.', '/')+".class");
 		if (currentMCL.getResource(name.replace('.', '/') + ".class") == null)
 			throw new ClassNotFoundException(name);
-		if (currentMCL.classesToReload == null) {
-			currentMCL.classesToReload = new HashSet<>();
-		}
 		currentMCL.classesToReload.add(name);
 	}
 
@@ -247,17 +246,19 @@ final public class MadkitClassLoader extends URLClassLoader { // NO_UCD
 			packageName = packageName == null ? "" : packageName+'.';//need this to rebuild
 			final String urlPath = url.getPath();
 			final File packageDir = new File(urlPath.substring(0, urlPath.lastIndexOf('/')));
-			for (final String fileName : packageDir.list()) {
-				if (fileName.endsWith(".class")) {
-					try {
-						final String className = packageName + fileName.substring(0, fileName.length() - 6);
-						if (findLoadedClass(className) == null) {//because it could be already loaded by loading another class that depends on it
-							findClass(className);
+			synchronized (reloadLock) {
+				for (final String fileName : packageDir.list()) {
+					if (fileName.endsWith(".class")) {
+						try {
+							final String className = packageName + fileName.substring(0, fileName.length() - 6);
+							if (findLoadedClass(className) == null) {//because it could be already loaded by loading another class that depends on it
+								findClass(className);
+							}
+						} catch (ClassNotFoundException e ) {
+							e.printStackTrace();
+						} catch (LinkageError e) {// defined meanwhile by a parallel loading, or circularity: FIXME just a reminder
+//							e.printStackTrace();
 						}
-					} catch (ClassNotFoundException e ) {
-						e.printStackTrace();
-					} catch (ClassCircularityError e) {//FIXME just a reminder
-//						e.printStackTrace();
 					}
 				}
 			}
@@ -298,6 +299,7 @@ final public class MadkitClassLoader extends URLClassLoader { // NO_UCD
 			xmlFiles = new HashSet<>();
 			mains = new HashSet<>();
 		}
+		final ClassPathScanner scanner = new ClassPathScanner(getLoader());
 		for (URL dir : getLoader().getURLs()) {
 			if (!scannedURLs.add(dir))
 				continue;
@@ -311,9 +313,10 @@ final public class MadkitClassLoader extends URLClassLoader { // NO_UCD
 				}
 			}
 			else {
-				scanFolderForAgentClasses(new File(dir.getFile()), null, dir.getPath());
+				scanner.scanDirectory(new File(dir.getFile()), dir.getPath(), agentClasses, mains, mdkFiles, xmlFiles);
 			}
 		}
+		scanner.saveIndex();
 	}
 	
 	/**
@@ -445,61 +448,6 @@ final public class MadkitClassLoader extends URLClassLoader { // NO_UCD
 		return args != null && ! args.trim().isEmpty();
 	}
 
-	private static void scanFolderForAgentClasses(final File file, final String pckName, String currentUrlPath) {
-		final File[] files = file.listFiles();
-		if (files != null) {
-			for (File f : files) {
-				final String fileName = f.getName();
-				if (f.isDirectory()) {
-					scanFolderForAgentClasses(f, pckName == null ? fileName : pckName + "." + fileName, currentUrlPath);
-				}
-				else {
-					if (fileName.endsWith(".class")) {
-						String className = (pckName == null ? "" : pckName + ".") + fileName.replace(".class", "");
-						if (isAgentClass(className)) {
-							agentClasses.add(className);
-						}
-					}
-					else if (fileName.endsWith(".mdk")) {
-							mdkFiles.add(f.getPath().substring(currentUrlPath.length()));
-						}
-					else if(fileName.endsWith(".xml")){
-						final String xmlFile = f.getPath().substring(currentUrlPath.length());
-						try {
-//							System.err.println(xmlFile);
-							Document dom = XMLUtilities.getDOM(xmlFile);
-							if(dom != null && dom.getDocumentElement().getNodeName().equals(XMLUtilities.MDK)	){
-								xmlFiles.add(xmlFile);
-							}
-						} catch (SAXException | IOException | ParserConfigurationException e) {
-//							e.printStackTrace();
-							//FIXME should be logged
-						}
-					}
-				}
-			}
-		}
-	}
-	
-	private static boolean isAgentClass(final String className) {
-		try {
-			final Class<?> cl = getLoader().loadClass(className);
-			if (cl != null && AbstractAgent.class.isAssignableFrom(cl)
-					&& cl.getConstructor((Class<?>[]) null) != null
-					&& (!Modifier.isAbstract(cl.getModifiers()))
-					&& Modifier.isPublic(cl.getModifiers())) {
-				try {
-						cl.getDeclaredMethod("main", String[].class);
-						mains.add(className);// if previous line succeeded
-				} catch (NoSuchMethodException e) {
-				}
-				return true;
-			}
-		} catch (VerifyError | ClassNotFoundException | NoClassDefFoundError | SecurityException  | NoSuchMethodException e) {//FIXME just a reminder
-		}
-		return false;
-	}
-
 	/**
 	 * @param dir
 	 * @param executable the name of the program to look for
@@ -41,6 +41,7 @@ import static madkit.kernel.AbstractAgent.ReturnCode.ALREADY_GROUP;
 import static madkit.kernel.AbstractAgent.ReturnCode.ALREADY_KILLED;
 import static madkit.kernel.AbstractAgent.ReturnCode.ALREADY_LAUNCHED;
 import static madkit.kernel.AbstractAgent.ReturnCode.INVALID_AGENT_ADDRESS;
+import static madkit.kernel.AbstractAgent.ReturnCode.MAILBOX_FULL;
 import static madkit.kernel.AbstractAgent.ReturnCode.NOT_COMMUNITY;
 import static madkit.kernel.AbstractAgent.ReturnCode.NOT_GROUP;
 import static madkit.kernel.AbstractAgent.ReturnCode.NOT_IN_GROUP;
@@ -74,9 +75,9 @@ import java.net.InetAddress;
 import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collection;
 import java.util.Date;
 import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -89,12 +90,16 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionService;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorCompletionService;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
 import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
 import java.util.concurrent.SynchronousQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -121,6 +126,7 @@ import madkit.kernel.Madkit.Option;
 import madkit.message.BooleanMessage;
 import madkit.message.KernelMessage;
 import madkit.message.ObjectMessage;
+import madkit.message.SharedMessage;
 import madkit.message.hook.AgentLifeEvent;
 import madkit.message.hook.HookMessage;
 import madkit.message.hook.HookMessage.AgentActionEvent;
@@ -158,36 +164,83 @@ class MadkitKernel extends Agent {
 	// }
 	// };
 
-	final static private ThreadPoolExecutor serviceExecutor = new ThreadPoolExecutor(
-	// Runtime.getRuntime().availableProcessors() + 1,
-			2, Integer.MAX_VALUE, 2L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
-				public Thread newThread(Runnable r) {
-					final Thread t = new Thread(SYSTEM, r);
-					t.setPriority(Thread.MAX_PRIORITY);
-					t.setName(SYSTEM.getName());
-					t.setDaemon(true);
-					// t.setUncaughtExceptionHandler(new UncaughtExceptionHandler() {
-					// @Override
-					// public void uncaughtException(Thread t, Throwable e) {
-					// e.printStackTrace();
-					// e.getCause().printStackTrace();
-					// }
-					// });
-					return t;
-				}
-			});
+	static private ThreadPoolExecutor newServiceExecutor() {
+		final ThreadPoolExecutor executor = new ThreadPoolExecutor(
+		// Runtime.getRuntime().availableProcessors() + 1,
+				2, Integer.MAX_VALUE, 2L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(), new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						final Thread t = new Thread(SYSTEM, r);
+						t.setPriority(Thread.MAX_PRIORITY);
+						t.setName(SYSTEM.getName());
+						t.setDaemon(true);
+						// t.setUncaughtExceptionHandler(new UncaughtExceptionHandler() {
+						// @Override
+						// public void uncaughtException(Thread t, Throwable e) {
+						// e.printStackTrace();
+						// e.getCause().printStackTrace();
+						// }
+						// });
+						return t;
+					}
+				});
+		executor.prestartAllCoreThreads();
+		executor.allowCoreThreadTimeOut(true);
+		return executor;
+	}
+
+	/**
+	 * the executor given by {@link Activator#getMadkitServiceExecutor()}, 
+	 * only built when used
+	 */
+	static private final class SharedServiceExecutor {
+		static final ThreadPoolExecutor	INSTANCE	= newServiceExecutor();
+	}
+
+	/**
+	 * Each kernel has its own so that kernels running in the same VM, 
+	 * e.g. the runs of an {@link Experiment}, do not contend on it
+	 */
+	final private ThreadPoolExecutor serviceExecutor;
 
 	final private ThreadPoolExecutor lifeExecutor;
 
+	/**
+	 * below this number of receivers, a broadcast is done by the sender's thread
+	 */
+	static final int	PARALLEL_BROADCAST_THRESHOLD	= 10_000;
+
+	/**
+	 * How long a kill waits, in seconds, for an agent thread which cannot be
+	 * stopped before leaving the agent as a zombie.
+	 */
+	static final int	HARD_KILL_TIMEOUT	= 2;
+	private volatile ForkJoinPool	parallelPool;
+	private volatile ForkJoinPool	dispatcher;
+	/**
+	 * not the kernel itself: agents are activated holding its monitor when launched in a bucket
+	 */
+	private final Object				dispatcherLock	= new Object();
+	/**
+	 * the replies waited for by the asynchronous send methods
+	 */
+	final PendingReplies				pendingReplies;
+	/**
+	 * the writer of the agents' loggers when {@link BooleanOption#asyncLogging} is activated
+	 */
+	private volatile AsyncLogWriter	asyncLogWriter;
+	private final Object				asyncLogLock	= new Object();
+
 	final static ExecutorService getMadkitServiceExecutor() {
-		return serviceExecutor;
+		return SharedServiceExecutor.INSTANCE;
 	}
 
 	// ;// = Executors.newCachedThreadPool();
 
-	static {
-		serviceExecutor.prestartAllCoreThreads();
-		serviceExecutor.allowCoreThreadTimeOut(true);
+	/**
+	 * @return the service executor of this kernel, or the shared one for fake kernels
+	 */
+	private ExecutorService getServiceExecutor() {
+		return serviceExecutor != null ? serviceExecutor : getMadkitServiceExecutor();
 	}
 
 	final private ConcurrentHashMap<String, Organization> organizations;
@@ -199,6 +252,11 @@ class MadkitKernel extends Agent {
 	private volatile boolean shuttedDown = false;
 	final private AgentThreadFactory normalAgentThreadFactory;
 	final private AgentThreadFactory daemonAgentThreadFactory;
+	/**
+	 * the factory used for non daemon agents, which builds virtual threads
+	 * if {@link BooleanOption#virtualThreads} is activated
+	 */
+	final private ThreadFactory agentThreadFactory;
 
 	private AgentAddress netAgent;
 	// my private addresses for optimizing the message building
@@ -234,6 +292,8 @@ class MadkitKernel extends Agent {
 		
 		organizations = new ConcurrentHashMap<>();
 		operatingOverlookers = new LinkedHashSet<>();
+		pendingReplies = new PendingReplies(kernelAddress);
+		serviceExecutor = newServiceExecutor();
 		loggedKernel = new LoggedKernel(this);
 
 		getLogger(); // Bootstrapping the agentLoggers with default logger variable for global actions
@@ -244,6 +304,19 @@ class MadkitKernel extends Agent {
 		
 		normalAgentThreadFactory = new AgentThreadFactory(kernelAddress, false);
 		daemonAgentThreadFactory = new AgentThreadFactory(kernelAddress, true);
+		if (BooleanOption.virtualThreads.isActivated(madkitConfig)) {
+			if (VirtualAgentThreadFactory.isAvailable()) {
+				agentThreadFactory = new VirtualAgentThreadFactory();
+			}
+			else {
+				agentThreadFactory = normalAgentThreadFactory;
+				if (logger != null)
+					logger.warning(BooleanOption.virtualThreads + " requires Java 21: using platform threads");
+			}
+		}
+		else {
+			agentThreadFactory = normalAgentThreadFactory;
+		}
 		lifeExecutor = new ThreadPoolExecutor(2, Integer.MAX_VALUE, 1L, TimeUnit.SECONDS, new SynchronousQueue<Runnable>(),
 				new ThreadFactory() {
 					public Thread newThread(Runnable r) {
@@ -267,9 +340,12 @@ class MadkitKernel extends Agent {
 		kernelAddress = null;
 		organizations = null;
 		operatingOverlookers = null;
+		pendingReplies = null;
 		normalAgentThreadFactory = null;
 		daemonAgentThreadFactory = null;
+		agentThreadFactory = null;
 		lifeExecutor = null;
+		serviceExecutor = null;
 	}
 
 	/**
@@ -282,9 +358,12 @@ class MadkitKernel extends Agent {
 		kernelAddress = k.kernelAddress;
 		organizations = k.organizations;
 		operatingOverlookers = k.operatingOverlookers;
+		pendingReplies = k.pendingReplies;
 		normalAgentThreadFactory = null;
 		daemonAgentThreadFactory = null;
+		agentThreadFactory = null;
 		lifeExecutor = null;
+		serviceExecutor = k.serviceExecutor;
 		kernel = k;
 	}
 
@@ -659,34 +738,33 @@ class MadkitKernel extends Agent {
 
 	ReturnCode createGroup(final AbstractAgent creator, final String community, final String group, final Gatekeeper gatekeeper, final boolean isDistributed) {
 		Objects.requireNonNull(group, ErrorMessages.G_NULL.toString());
-		Organization organization = new Organization(community, this);
-		// no need to remove org: never failed
 		// will throw null pointer if community is null
-		final Organization tmpOrg = organizations.putIfAbsent(community,
-				organization);
-		if (tmpOrg != null) {
-			organization = tmpOrg;
-		}
-		synchronized (organization) {
-			if (!organization.addGroup(creator, group, gatekeeper, isDistributed)) {
-				return ALREADY_GROUP;
-			}
-			try {//TODO bof...
-				if (isDistributed) {
-					sendNetworkMessageWithRole(
-							new CGRSynchro(CREATE_GROUP, 
-									getRole(community, group, madkit.agr.Organization.GROUP_MANAGER_ROLE).getAgentAddressOf(creator)), 
-									netUpdater);
+		for (;;) {
+			final Organization organization = getOrCreateCommunity(community);
+			synchronized (organization) {
+				if (organization.isRemoved()) {
+					continue;// it has just been emptied
 				}
-				if (hooks != null) {
-					informHooks(AgentActionEvent.CREATE_GROUP, 
-							getRole(community, group, madkit.agr.Organization.GROUP_MANAGER_ROLE).getAgentAddressOf(creator));
+				if (!organization.addGroup(creator, group, gatekeeper, isDistributed)) {
+					return ALREADY_GROUP;
+				}
+				try {//TODO bof...
+					if (isDistributed) {
+						sendNetworkMessageWithRole(
+								new CGRSynchro(CREATE_GROUP, 
+										getRole(community, group, madkit.agr.Organization.GROUP_MANAGER_ROLE).getAgentAddressOf(creator)), 
+										netUpdater);
+					}
+					if (hooks != null) {
+						informHooks(AgentActionEvent.CREATE_GROUP, 
+								getRole(community, group, madkit.agr.Organization.GROUP_MANAGER_ROLE).getAgentAddressOf(creator));
+					}
+				} catch (CGRNotAvailable e) {
+					getLogger().severeLog("Please bug report", e);
 				}
-			} catch (CGRNotAvailable e) {
-				getLogger().severeLog("Please bug report", e);
 			}
+			return SUCCESS;
 		}
-		return SUCCESS;
 	}
 
 		void informHooks(AgentActionEvent action, Object parameter) {
@@ -755,15 +833,12 @@ class MadkitKernel extends Agent {
 
 	ReturnCode leaveGroup(final AbstractAgent requester, final String community, final String group) {
 		final Group g;
-		final List<Role> affectedRoles;
-		synchronized (organizations) {
-			try {
-				g = getGroup(community, group);
-			} catch (CGRNotAvailable e) {
-				return e.getCode();
-			}
-			affectedRoles = g.leaveGroup(requester);
+		try {
+			g = getGroup(community, group);
+		} catch (CGRNotAvailable e) {
+			return e.getCode();
 		}
+		final List<Role> affectedRoles = g.leaveGroup(requester);
 		if (affectedRoles != null) {//success
 			for (final Role role : affectedRoles) {
 				role.removeFromOverlookers(requester);
@@ -789,34 +864,32 @@ class MadkitKernel extends Agent {
 
 	ReturnCode leaveRole(AbstractAgent requester, String community, String group, String role) {
 		final Role r;
-		synchronized (organizations) {
-			try {
-				r = getRole(community, group, role);
-			} catch (CGRNotAvailable e) {
-				return e.getCode();
-			}
-			ReturnCode rc;
-			// this is apart because I need the address before the leave
-			if (r.getMyGroup().isDistributed()) {
-				AgentAddress leaver = r.getAgentAddressOf(requester);
-				if (leaver == null)
-					return ReturnCode.ROLE_NOT_HANDLED;
-				rc = r.removeMember(requester);
-				if (rc != SUCCESS)// TODO remove that
-					throw new AssertionError("cannot remove " + requester + " from " + r.buildAndGetAddresses());
-				sendNetworkMessageWithRole(new CGRSynchro(LEAVE_ROLE, new AgentAddress(requester, r, kernelAddress)), netUpdater);
-			}
-			else{
-				rc = r.removeMember(requester);
-			}
-			if(rc == SUCCESS){
-				r.removeFromOverlookers(requester);
-				if (hooks != null){
-					informHooks(AgentActionEvent.LEAVE_ROLE, new AgentAddress(requester, r, kernelAddress));
-				}
+		try {
+			r = getRole(community, group, role);
+		} catch (CGRNotAvailable e) {
+			return e.getCode();
+		}
+		ReturnCode rc;
+		// this is apart because I need the address before the leave
+		if (r.getMyGroup().isDistributed()) {
+			AgentAddress leaver = r.getAgentAddressOf(requester);
+			if (leaver == null)
+				return ReturnCode.ROLE_NOT_HANDLED;
+			rc = r.removeMember(requester);
+			if (rc != SUCCESS)// TODO remove that
+				throw new AssertionError("cannot remove " + requester + " from " + r.buildAndGetAddresses());
+			sendNetworkMessageWithRole(new CGRSynchro(LEAVE_ROLE, new AgentAddress(requester, r, kernelAddress)), netUpdater);
+		}
+		else{
+			rc = r.removeMember(requester);
+		}
+		if(rc == SUCCESS){
+			r.removeFromOverlookers(requester);
+			if (hooks != null){
+				informHooks(AgentActionEvent.LEAVE_ROLE, new AgentAddress(requester, r, kernelAddress));
 			}
-			return rc;
 		}
+		return rc;
 	}
 
 	// Warning never touch this without looking at the logged kernel
@@ -888,6 +961,59 @@ class MadkitKernel extends Agent {
 		}
 	}
 
+	/**
+	 * The request is registered before being sent using the kernel of the
+	 * requester, so that the send is logged as any other.
+	 */
+	CompletableFuture<Message> sendMessageAsync(final AbstractAgent requester, final AgentAddress receiver, final Message message,
+			final String senderRole, final Integer timeOutMilliSeconds) {
+		final CompletableFuture<Message> future = pendingReplies.expectReply(requester, message, timeOutMilliSeconds);
+		if (requester.getKernel().sendMessage(requester, receiver, message, senderRole) != SUCCESS) {
+			future.complete(null);
+		}
+		return future;
+	}
+
+	CompletableFuture<Message> sendMessageAsync(final AbstractAgent requester, final String community, final String group,
+			final String role, final Message message, final String senderRole, final Integer timeOutMilliSeconds) {
+		final CompletableFuture<Message> future = pendingReplies.expectReply(requester, message, timeOutMilliSeconds);
+		if (requester.getKernel().sendMessage(requester, community, group, role, message, senderRole) != SUCCESS) {
+			future.complete(null);
+		}
+		return future;
+	}
+
+	ReturnCode sendMessage(final AbstractAgent requester, final RoleHandle handle, final Message message) {
+		try {
+			final RoleHandle.Binding b = handle.bind(this);
+			final AgentAddress receiver = b.getAnotherPlayer();
+			if (receiver == null) {
+				return NO_RECIPIENT_FOUND;
+			}
+			return buildAndSendMessage(b.sender, receiver, message);
+		} catch (CGRNotAvailable e) {
+			return e.getCode();
+		}
+	}
+
+	ReturnCode broadcastMessage(final AbstractAgent requester, final RoleHandle handle, final Message messageToSend) {
+		try {
+			final RoleHandle.Binding b = handle.bind(this);
+			if (b.receivers.isEmpty())
+				return NO_RECIPIENT_FOUND;
+			messageToSend.setSender(b.sender);
+			final int refused = broadcasting(b.receivers, messageToSend);
+			if (hooks != null) {
+				final Message m = messageToSend.clone();
+				m.setReceiver(b.receivers.get(0));
+				informHooks(AgentActionEvent.BROADCAST_MESSAGE, m);
+			}
+			return refused == 0 ? SUCCESS : MAILBOX_FULL;
+		} catch (CGRNotAvailable e) {
+			return e.getCode();
+		}
+	}
+
 	final AgentAddress resolveAddress(AgentAddress receiver) {
 		final Role roleObject = receiver.getRoleObject();
 		if(roleObject != null){
@@ -913,12 +1039,13 @@ class MadkitKernel extends Agent {
 			final AgentAddress senderAgentAddress = getSenderAgentAddress(requester, receivers.get(0), senderRole);
 			messageToSend.setSender(senderAgentAddress);
 			// TODO consistency on senderRole
-			broadcasting(receivers, messageToSend);
+			final int refused = broadcasting(receivers, messageToSend);
 			if (hooks != null) {
-				messageToSend.setReceiver(receivers.get(0));
-				informHooks(AgentActionEvent.BROADCAST_MESSAGE, messageToSend.clone());
+				final Message m = messageToSend.clone();//messageToSend could be shared by the receivers
+				m.setReceiver(receivers.get(0));
+				informHooks(AgentActionEvent.BROADCAST_MESSAGE, m);
 			}
-			return SUCCESS;
+			return refused == 0 ? SUCCESS : MAILBOX_FULL;
 		} catch (CGRNotAvailable e) {
 			return e.getCode();
 		}
@@ -931,42 +1058,179 @@ class MadkitKernel extends Agent {
 			if (receivers == null)
 				return null; // the requester is the only agent in this group
 			message.setSender(getSenderAgentAddress(requester, receivers.get(0), senderRole));
-			broadcasting(receivers, message);
-			return requester.waitAnswers(message, receivers.size(), timeOutMilliSeconds);
+			final int expected = receivers.size() - broadcasting(receivers, message);
+			return expected == 0 ? null : requester.waitAnswers(message, expected, timeOutMilliSeconds);
+		} catch (CGRNotAvailable e) {
+			warnBroadcastAndWaitFailure(requester, community, group, role, senderRole, e);
+			return null;
+		}
+	}
+
+	CompletableFuture<List<Message>> broadcastMessageAsync(final AbstractAgent requester, final String community,
+			final String group, final String role, final Message message, final String senderRole, final Integer timeOutMilliSeconds) {
+		try {
+			final List<AgentAddress> receivers = getOtherRolePlayers(requester, community, group, role);
+			if (receivers == null)
+				return CompletableFuture.completedFuture(null); // the requester is the only agent in this group
+			message.setSender(getSenderAgentAddress(requester, receivers.get(0), senderRole));
+			final CompletableFuture<List<Message>> future = pendingReplies.expectReplies(requester, message, receivers.size(),
+					timeOutMilliSeconds);
+			final int refused = broadcasting(receivers, message);
+			if (refused > 0) {
+				pendingReplies.expectFewer(message, refused);
+			}
+			return future;
 		} catch (CGRNotAvailable e) {
-			if (requester.getKernel() != this && requester.isWarningOn()) {// is
-																								// loggable
-				final ReturnCode r = e.getCode();
-				if (r == NO_RECIPIENT_FOUND) {
-					requester.handleException(Influence.BROADCAST_MESSAGE_AND_WAIT, new MadkitWarning(r));
-				} else if (r == ROLE_NOT_HANDLED) {
-					requester.handleException(Influence.BROADCAST_MESSAGE_AND_WAIT, new OrganizationWarning(r, community, group,
-							senderRole));
-				} else {
-					requester
-							.handleException(Influence.BROADCAST_MESSAGE_AND_WAIT, new OrganizationWarning(r, community, group, role));
+			warnBroadcastAndWaitFailure(requester, community, group, role, senderRole, e);
+			return CompletableFuture.completedFuture(null);
+		}
+	}
+
+	private void warnBroadcastAndWaitFailure(final AbstractAgent requester, final String community, final String group,
+			final String role, final String senderRole, final CGRNotAvailable e) {
+		if (requester.getKernel() != this && requester.isWarningOn()) {// is
+																							// loggable
+			final ReturnCode r = e.getCode();
+			if (r == NO_RECIPIENT_FOUND) {
+				requester.handleException(Influence.BROADCAST_MESSAGE_AND_WAIT, new MadkitWarning(r));
+			} else if (r == ROLE_NOT_HANDLED) {
+				requester.handleException(Influence.BROADCAST_MESSAGE_AND_WAIT, new OrganizationWarning(r, community, group,
+						senderRole));
+			} else {
+				requester
+						.handleException(Influence.BROADCAST_MESSAGE_AND_WAIT, new OrganizationWarning(r, community, group, role));
+			}
+		}
+	}
+
+	/**
+	 * Delivers a copy of the message to each receiver, or the message itself
+	 * to the local receivers if it is a {@link SharedMessage}. Large broadcasts
+	 * are split over the parallel pool of the kernel.
+	 * 
+	 * @return the number of local receivers whose mailbox refused the message
+	 */
+	private int broadcasting(final List<AgentAddress> receivers, final Message m) {
+		final boolean shared = m instanceof SharedMessage;
+		if (shared) {
+			m.setReceiver(null);
+		}
+		if (receivers.size() < PARALLEL_BROADCAST_THRESHOLD) {
+			return broadcasting(receivers, 0, receivers.size(), m, shared);
+		}
+		return getParallelPool().invoke(new BroadcastTask(receivers, 0, receivers.size(), m, shared));
+	}
+
+	private int broadcasting(final List<AgentAddress> receivers, final int from, final int to, final Message m, final boolean shared) {
+		Map<KernelAddress, List<AgentAddress>> distantReceivers = null;
+		int refused = 0;
+		for (int i = from; i < to; i++) {
+			final AgentAddress agentAddress = receivers.get(i);
+			final AbstractAgent target = agentAddress.getAgent();
+			if (target == null) {// the message is sent once per distant kernel
+				if (distantReceivers == null) {
+					distantReceivers = new HashMap<>();
+				}
+				distantReceivers.computeIfAbsent(agentAddress.getKernelAddress(), k -> new ArrayList<>()).add(agentAddress);
+			}
+			else if (shared) {
+				if (!target.deliverMessage(m))
+					refused++;
+			}
+			else {
+				final Message cm = m.clone();
+				cm.setReceiver(agentAddress);
+				if (!target.deliverMessage(cm))
+					refused++;
+			}
+		}
+		if (distantReceivers != null) {
+			for (final List<AgentAddress> kernelReceivers : distantReceivers.values()) {
+				final Message cm = m.clone();
+				if (kernelReceivers.size() == 1) {
+					cm.setReceiver(kernelReceivers.get(0));
+					sendMessage(cm, null);
+				}
+				else {
+					cm.setReceiver(null);
+					cm.getConversationID().setOrigin(kernelAddress);
+					sendNetworkMessageWithRole(new DistantBroadcast(cm, kernelReceivers), netEmmiter);
 				}
 			}
-			return null;
 		}
+		return refused;
 	}
 
-	private void broadcasting(final Collection<AgentAddress> receivers, final Message m) {//TODO check lambda
-																									// optimize
-																									// without
-																									// cloning
-		receivers.parallelStream().forEach(agentAddress -> {
-			final Message cm = m.clone();
-			cm.setReceiver(agentAddress);
-			sendMessage(cm, agentAddress.getAgent());
-		});
-//		for (final AgentAddress agentAddress : receivers) {
-//			if (agentAddress != null) {// TODO this should not be possible
-//				m = m.clone();
-//				m.setReceiver(agentAddress);
-//				sendMessage(m, agentAddress.getAgent());
-//			}
-//		}
+	private final class BroadcastTask extends RecursiveTask<Integer> {
+
+		private static final long			serialVersionUID	= 1L;
+		private final List<AgentAddress>	receivers;
+		private final int						from, to;
+		private final Message				message;
+		private final boolean				shared;
+
+		BroadcastTask(final List<AgentAddress> receivers, final int from, final int to, final Message message, final boolean shared) {
+			this.receivers = receivers;
+			this.from = from;
+			this.to = to;
+			this.message = message;
+			this.shared = shared;
+		}
+
+		@Override
+		protected Integer compute() {
+			if (to - from <= PARALLEL_BROADCAST_THRESHOLD) {
+				return broadcasting(receivers, from, to, message, shared);
+			}
+			final int middle = (from + to) >>> 1;
+			final BroadcastTask right = new BroadcastTask(receivers, middle, to, message, shared);
+			right.fork();
+			final int left = new BroadcastTask(receivers, from, middle, message, shared).compute();
+			return left + right.join();
+		}
+	}
+
+	/**
+	 * @return the pool used by this kernel for data parallel jobs, so that
+	 *         they do not compete with the common pool of the JVM
+	 */
+	final ForkJoinPool getParallelPool() {
+		ForkJoinPool pool = parallelPool;
+		if (pool == null) {
+			synchronized (this) {
+				pool = parallelPool;
+				if (pool == null) {
+					parallelPool = pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), p -> {
+						final ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+						t.setName("MK_PARALLEL-" + kernelAddress);
+						return t;
+					}, null, false);
+				}
+			}
+		}
+		return pool;
+	}
+
+	/**
+	 * @return the pool on which the {@link ReactiveAgent}s of this kernel
+	 *         handle their messages. It is in FIFO mode, so that an agent which
+	 *         reschedules itself goes after the others.
+	 */
+	final ForkJoinPool getDispatcher() {
+		ForkJoinPool pool = dispatcher;
+		if (pool == null) {
+			synchronized (dispatcherLock) {
+				pool = dispatcher;
+				if (pool == null) {
+					dispatcher = pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors(), p -> {
+						final ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+						t.setName("MK_DISPATCHER-" + kernelAddress);
+						return t;
+					}, null, true);
+				}
+			}
+		}
+		return pool;
 	}
 
 	private final ReturnCode sendMessage(Message m, AbstractAgent target) {
@@ -974,8 +1238,10 @@ class MadkitKernel extends Agent {
 			m.getConversationID().setOrigin(kernelAddress);
 			return sendNetworkMessageWithRole(new ObjectMessage<>(m), netEmmiter);
 		}
-		target.receiveMessage(m);
-		return SUCCESS;
+		if (pendingReplies.offer(target, m)) {
+			return SUCCESS;
+		}
+		return target.deliverMessage(m) ? SUCCESS : MAILBOX_FULL;
 	}
 
 	final ReturnCode sendNetworkMessageWithRole(Message m, AgentAddress role) {
@@ -1000,6 +1266,40 @@ class MadkitKernel extends Agent {
 	// //////////////////////// Launching and Killing
 	// ////////////////////////////////////////////////////////////
 	
+	/**
+	 * Adds a bucket of agents to a role, creating the group and the role if required.
+	 * The group is only locked if the role has to be created.
+	 */
+	private void addMembers(final AbstractAgent requester, final List<AbstractAgent> bucket, final String community, final String group, final String role) {
+		Role r;
+		boolean roleCreated;
+		do {
+			createGroup(requester, community, group, null, false);
+			r = null;
+			roleCreated = false;
+			try {
+				final Group g = getGroup(community, group);
+				r = g.get(role);
+				if (r == null || r.isRemoved()) {
+					synchronized (g) {
+						if (g.isRemoved()) {
+							r = null;
+						}
+						else {
+							r = g.get(role);
+							roleCreated = r == null || r.isRemoved();
+							if (roleCreated) {
+								r = g.createRole(role);
+							}
+						}
+					}
+				}
+			} catch (CGRNotAvailable e) {// has just been removed
+			}
+		}
+		while (r == null || ! r.addMembers(bucket, roleCreated));
+	}
+
 	/**
 	 * @param requester
 	 * @param bucket
@@ -1015,70 +1315,55 @@ class MadkitKernel extends Agent {
 				@Override
 				void proceedAgent(final AbstractAgent a) {
 					// no need to test : I created these instances :this is not true for the list case //TODO
-					a.state.set(INITIALIZING);
+					a.setState(INITIALIZING);
 					a.setKernel(MadkitKernel.this);
-					a.getAlive().set(true);
+					a.setAlive(true);
 					a.logger = null;
 				}
 			};
 			doMulticore(init.getJobs(bucket, cpuCoreNb));
 
 //			bucket.parallelStream().forEach(a -> {
-//				a.state.set(INITIALIZING);
+//				a.setState(INITIALIZING);
 //				a.setKernel(MadkitKernel.this);
-//				a.getAlive().set(true);
+//				a.setAlive(true);
 //				a.logger = null;
 //				});
 			
-			synchronized (this) {
-				for (final String cgrLocation : cgrLocations) {
-					final String[] cgr = cgrLocation.split(",");
-					if (cgr.length != 3) {
-						throw new IllegalArgumentException("\"" + cgrLocation + "\" is incorrect. As of MDK 5.0.2, correct format is \"C,G,R\" ");
-					}
-					createGroup(requester, cgr[0], cgr[1], null, false);
-					Group g = null;
-					try {
-						g = getGroup(cgr[0], cgr[1]);
-					} catch (CGRNotAvailable e) {
-						// not possible
-						throw new AssertionError(e);
-					}
-					boolean roleCreated = false;
-					Role r = g.get(cgr[2]);
-					if (r == null) {
-						r = g.createRole(cgr[2]);
-						roleCreated = true;
-					}
-					r.addMembers(bucket, roleCreated);
-					// test vs assignment ? 
-					//-> No: cannot touch the organizational structure !!
+			for (final String cgrLocation : cgrLocations) {
+				final String[] cgr = cgrLocation.split(",");
+				if (cgr.length != 3) {
+					throw new IllegalArgumentException("\"" + cgrLocation + "\" is incorrect. As of MDK 5.0.2, correct format is \"C,G,R\" ");
 				}
-				
+				addMembers(requester, bucket, cgr[0], cgr[1], cgr[2]);
+				// test vs assignment ? 
+				//-> No: cannot touch the organizational structure !!
+			}
+			
 //				bucket.parallelStream().forEach(a -> {//TODO get the exception
 //					a.activate();
-//					a.state.set(ACTIVATED);
+//					a.setState(ACTIVATED);
 //				});
-				
-				init = new AgentsJob() {
-					@Override
-					void proceedAgent(final AbstractAgent a) {
-						try {
-							a.activate();
-							a.state.set(ACTIVATED);
-						} catch (Throwable e) {
-							requester.cannotLaunchAgent(a != null ? a.getClass().getName() : "launchAgentBucketWithRoles : list contains null", e, null);
-						}
+			
+			init = new AgentsJob() {
+				@Override
+				void proceedAgent(final AbstractAgent a) {
+					try {
+						a.activate();
+						a.setState(ACTIVATED);
+						a.activated();
+					} catch (Throwable e) {
+						requester.cannotLaunchAgent(a != null ? a.getClass().getName() : "launchAgentBucketWithRoles : list contains null", e, null);
 					}
-				};
-				doMulticore(init.getJobs(bucket, cpuCoreNb));
-			}
+				}
+			};
+			doMulticore(init.getJobs(bucket, cpuCoreNb));
 		}
 		else {
 //			bucket.parallelStream().forEach(a -> {
-//				a.state.set(ACTIVATED);
+//				a.setState(ACTIVATED);
 //				a.setKernel(MadkitKernel.this);
-//				a.getAlive().set(true);
+//				a.setAlive(true);
 //				a.logger = null;
 //				try {
 //					a.activate();
@@ -1091,12 +1376,13 @@ class MadkitKernel extends Agent {
 				@Override
 				void proceedAgent(final AbstractAgent a) {
 					// no need to test : I created these instances :this is not true for the list case //TODO
-					a.state.set(ACTIVATED);
+					a.setState(ACTIVATED);
 					a.setKernel(MadkitKernel.this);
-					a.getAlive().set(true);
+					a.setAlive(true);
 					a.logger = null;
 					try {
 						a.activate();
+						a.activated();
 					} catch (Throwable e) {
 						requester.cannotLaunchAgent("launchAgentBucketWithRoles : "+a.getClass().getName(), e, null);
 					}
@@ -1132,7 +1418,7 @@ class MadkitKernel extends Agent {
 		cpuCoreNb = cpuCoreNb > 0 ? cpuCoreNb : 1;
 		final List<AbstractAgent> result = new ArrayList<>(bucketSize);
 		final int nbOfAgentsPerTask = bucketSize / (cpuCoreNb);
-		final CompletionService<List<AbstractAgent>> ecs = new ExecutorCompletionService<>(serviceExecutor);
+		final CompletionService<List<AbstractAgent>> ecs = new ExecutorCompletionService<>(getServiceExecutor());
 		for (int i = 0; i < cpuCoreNb; i++) {
 			ecs.submit(new Callable<List<AbstractAgent>>() {
 				public List<AbstractAgent> call() throws InvocationTargetException, InstantiationException, IllegalAccessException {
@@ -1163,7 +1449,7 @@ class MadkitKernel extends Agent {
 
 	private void doMulticore(ArrayList<AgentsJob> arrayList) {
 		try {
-			serviceExecutor.invokeAll(arrayList);
+			getServiceExecutor().invokeAll(arrayList);
 		} catch (InterruptedException e1) {
 			e1.printStackTrace();
 		}
@@ -1200,7 +1486,7 @@ class MadkitKernel extends Agent {
 	private ReturnCode launchingAgent(final AbstractAgent agent, boolean defaultGUI) {
 		// All this has to be done by a system thread
 		// because if the job starts, it has to be done till the end
-		if (!agent.state.compareAndSet(NOT_LAUNCHED, INITIALIZING) || shuttedDown) {
+		if (!agent.compareAndSetState(NOT_LAUNCHED, INITIALIZING) || shuttedDown) {
 			return ALREADY_LAUNCHED;
 		}
 		// System.err.println("adding "+agent.getName()+" using "+Thread.currentThread()+
@@ -1238,13 +1524,14 @@ class MadkitKernel extends Agent {
 				bugReport(agent + " activation task failed using " + Thread.currentThread(), e);
 			}
 			if (r != SUCCESS) {
-				synchronized (agent.state) {
-					agent.state.notify();
+				synchronized (agent.lifeLock()) {
+					agent.lifeLock().notifyAll();
 				}
 				startEndBehavior(agent, 0, false);
 			} else {
 				if (agent.isAlive()) {// ! self kill -> safe to make this here
-					agent.state.set(LIVING);
+					agent.setState(LIVING);
+					agent.activated();
 				}
 			}
 			return r;
@@ -1258,7 +1545,7 @@ class MadkitKernel extends Agent {
 				// do that even if not started for cleaning properly
 				threadedAgents.add(a);
 			}
-			ae.setThreadFactory(a.isDaemon() ? daemonAgentThreadFactory : normalAgentThreadFactory);
+			ae.setThreadFactory(a.isDaemon() ? daemonAgentThreadFactory : agentThreadFactory);
 			if (!shuttedDown) {
 				return ae.start().get();
 			}
@@ -1280,7 +1567,7 @@ class MadkitKernel extends Agent {
 		if (target.getState().compareTo(ACTIVATED) < 0) {
 			return NOT_YET_LAUNCHED;
 		}
-		final Future<ReturnCode> killAttempt = serviceExecutor.submit(new Callable<ReturnCode>() {
+		final Future<ReturnCode> killAttempt = getServiceExecutor().submit(new Callable<ReturnCode>() {
 			public ReturnCode call() {
 				return killingAgent(target, timeOutSeconds);
 			}
@@ -1300,9 +1587,9 @@ class MadkitKernel extends Agent {
 	}
 
 	private final ReturnCode killingAgent(final AbstractAgent target, int timeOutSeconds) {
-		synchronized (target.state) {
+		synchronized (target.lifeLock()) {
 			// this has to be done by a system thread : the job must be done
-			if (!target.getAlive().compareAndSet(true, false)) {
+			if (!target.compareAndSetAlive(true, false)) {
 				return ALREADY_KILLED;
 			}
 		}
@@ -1335,7 +1622,7 @@ class MadkitKernel extends Agent {
 	 */
 	@SuppressWarnings("deprecation")
 	private boolean stopAgentProcess(State s, AbstractAgent target, Thread t) {
-		synchronized (target.state) {
+		synchronized (target.lifeLock()) {
 			if (target.getState() == s && t.getName().equals(target.getAgentThreadName(s))) {
 				if (logger != null) {
 					logger.finer("Hard kill on " + target + " " + t.getName());
@@ -1343,12 +1630,27 @@ class MadkitKernel extends Agent {
 					// // dumpThreadStack(t);
 					// // logger.finer("----------\n");
 				}
-				t.stop();
+				boolean stopped = true;
+				try {
+					t.stop();
+				} catch (UnsupportedOperationException e) {
+					// virtual thread or recent JVM: the agent dies at its next blocking call
+					t.interrupt();
+					stopped = false;
+				}
 				// long deb = System.currentTimeMillis();
 				if (logger != null)
 					logger.finer("now waiting for " + s + " to end on " + target);
 				try {
-					target.state.wait();// TODO really, no need to do more ??
+					if (stopped) {
+						target.lifeLock().wait();// TODO really, no need to do more ??
+					}
+					else {// a CPU bound agent may never answer the interruption
+						final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(HARD_KILL_TIMEOUT);
+						target.lifeLock().wait(TimeUnit.SECONDS.toMillis(HARD_KILL_TIMEOUT));
+						if (System.nanoTime() - deadline >= 0 && logger != null)
+							logger.warning(target + " cannot be stopped in " + s + ": left as a zombie");
+					}
 				} catch (InterruptedException e) {
 					bugReport(e);
 				}
@@ -1372,7 +1674,7 @@ class MadkitKernel extends Agent {
 	 */
 	final ReturnCode startEndBehavior(final AbstractAgent target, int timeOutSeconds, boolean asDaemon) {
 		ReturnCode r = SUCCESS;
-		final ExecutorService executor = asDaemon ? serviceExecutor : lifeExecutor;
+		final ExecutorService executor = asDaemon ? getServiceExecutor() : lifeExecutor;
 		if (timeOutSeconds != 0) {
 			final Future<Boolean> endAttempt = executor.submit(new Callable<Boolean>() {
 				public Boolean call() {
@@ -1424,7 +1726,9 @@ class MadkitKernel extends Agent {
 		}
 		stopAgentProcess(State.ENDING, target, target.myThread);
 		try {
-			ae.awaitTermination(Integer.MAX_VALUE, TimeUnit.SECONDS);
+			if (!ae.awaitTermination(HARD_KILL_TIMEOUT, TimeUnit.SECONDS)) {// zombie: its thread could not be stopped
+				result = TIMEOUT;
+			}
 		} catch (InterruptedException e) {
 			bugReport(e);
 		}
@@ -1441,6 +1745,25 @@ class MadkitKernel extends Agent {
 		return org;
 	}
 
+	/**
+	 * Organization changes are guarded by the community, the group or the role
+	 * which is modified, and never by the whole organization. Locks are always
+	 * taken in this order, and an emptied group or role is only removed from
+	 * its parent once its own lock is released: it is then marked as removed,
+	 * so that a thread which has found it before retries with a new one.
+	 * 
+	 * @param community
+	 * @return the community, which is created if it does not exist. It may
+	 *         have been removed just before the caller locks it, which has
+	 *         then to be checked using {@link Organization#isRemoved()}
+	 */
+	private final Organization getOrCreateCommunity(final String community) {
+		final Organization org = organizations.get(community);
+		if (org != null && ! org.isRemoved())
+			return org;
+		return organizations.compute(community, (name, o) -> o == null || o.isRemoved() ? new Organization(name, this) : o);
+	}
+
 	final Group getGroup(final String community, final String group) throws CGRNotAvailable {
 //		System.err.println("HHHHHHHHHHHHHHHHHHHH "+community);
 		Group g = getCommunity(community).get(group);
@@ -1468,8 +1791,7 @@ class MadkitKernel extends Agent {
 	final List<AgentAddress> getOtherRolePlayers(AbstractAgent abstractAgent, String community, String group, String role)
 			throws CGRNotAvailable {
 		// never null without throwing Ex
-		final List<AgentAddress> result = getRole(community, group, role).getAgentAddressesCopy();
-		Role.removeAgentAddressOf(abstractAgent, result);
+		final List<AgentAddress> result = getRole(community, group, role).getAgentAddressesCopy(abstractAgent);
 		if (!result.isEmpty()) {
 			return result;
 		}
@@ -1501,8 +1823,12 @@ class MadkitKernel extends Agent {
 
 	final AgentAddress getSenderAgentAddress(final AbstractAgent sender, final AgentAddress receiver, String senderRole)
 			throws CGRNotAvailable {
+		return getSenderAgentAddress(sender, receiver.getRoleObject(), senderRole);
+	}
+
+	final AgentAddress getSenderAgentAddress(final AbstractAgent sender, final Role targetedRole, String senderRole)
+			throws CGRNotAvailable {
 		AgentAddress senderAA = null;
-		final Role targetedRole = receiver.getRoleObject();
 
 		//no role given
 		if (senderRole == null) {
@@ -1570,8 +1896,8 @@ class MadkitKernel extends Agent {
 	// //////////////////////// Internal functioning
 	// /////////////////////////////////////////////////////////////////////////
 
-	void removeCommunity(String community) {
-		organizations.remove(community);
+	void removeCommunity(final Organization community) {
+		organizations.remove(community.getName(), community);
 	}
 
 	@Override
@@ -1601,9 +1927,9 @@ class MadkitKernel extends Agent {
 	 */
 
 	void removeAgentFromOrganizations(AbstractAgent theAgent) {
-		for (final Organization org : organizations.values()) {
-			for (final String groupName : org.removeAgentFromAllGroups(theAgent)) {
-				sendNetworkMessageWithRole(new CGRSynchro(LEAVE_GROUP, new AgentAddress(theAgent, new Role(org.getName(), groupName),
+		for (final Group g : theAgent.memberships.getGroups()) {
+			if (g.leaveGroup(theAgent) != null && g.isDistributed()) {
+				sendNetworkMessageWithRole(new CGRSynchro(LEAVE_GROUP, new AgentAddress(theAgent, new Role(g.getCommunityObject().getName(), g.getName()),
 						kernelAddress)), netUpdater);
 			}
 		}
@@ -1614,6 +1940,23 @@ class MadkitKernel extends Agent {
 		return platform.getConfigOption();
 	}
 
+	/**
+	 * @return the writer shared by the agents' loggers, started on first use
+	 */
+	AsyncLogWriter getAsyncLogWriter() {
+		AsyncLogWriter w = asyncLogWriter;
+		if (w == null) {
+			synchronized (asyncLogLock) {
+				w = asyncLogWriter;
+				if (w == null) {
+					asyncLogWriter = w = new AsyncLogWriter("MK_LOGGER-" + kernelAddress, new File(getMadkitConfig().getProperty(
+							Option.logDirectory.name())));
+				}
+			}
+		}
+		return w;
+	}
+
 	MadkitKernel getMadkitKernel() {
 		return this;
 	}
@@ -1668,14 +2011,15 @@ class MadkitKernel extends Agent {
 	final void importDistantOrg(final Map<String, Map<String, Map<String, Set<AgentAddress>>>> distantOrg) {
 		if (logger != null) 
 			logger.finer("Importing org..."+distantOrg);
-		synchronized (organizations) {
-			for (final String communityName : distantOrg.keySet()) {
-				Organization org = new Organization(communityName, this);
-				Organization previous = organizations.putIfAbsent(communityName, org);
-				if (previous != null) {
-					org = previous;
+		for (final String communityName : distantOrg.keySet()) {
+			for (;;) {
+				final Organization org = getOrCreateCommunity(communityName);
+				synchronized (org) {
+					if (! org.isRemoved()) {
+						org.importDistantOrg(distantOrg.get(communityName));
+						break;
+					}
 				}
-				org.importDistantOrg(distantOrg.get(communityName));
 			}
 		}
 	}
@@ -1683,12 +2027,10 @@ class MadkitKernel extends Agent {
 	@Override
 	final public Map<String, Map<String, Map<String, Set<AgentAddress>>>> getOrganizationSnapShot(boolean global) {
 		Map<String, Map<String, Map<String, Set<AgentAddress>>>> export = new TreeMap<>();
-		synchronized (organizations) {
-			for (Map.Entry<String, Organization> org : organizations.entrySet()) {
-				Map<String, Map<String, Set<AgentAddress>>> currentOrg = org.getValue().getOrgMap(global);
-				if (!currentOrg.isEmpty())
-					export.put(org.getKey(), org.getValue().getOrgMap(global));
-			}
+		for (Map.Entry<String, Organization> org : organizations.entrySet()) {
+			Map<String, Map<String, Set<AgentAddress>>> currentOrg = org.getValue().getOrgMap(global);
+			if (!currentOrg.isEmpty())
+				export.put(org.getKey(), currentOrg);
 		}
 		return export;
 	}
@@ -1720,7 +2062,29 @@ class MadkitKernel extends Agent {
 
 	final void injectMessage(final ObjectMessage<Message> m) {
 		final Message toInject = m.getContent();
-		final AgentAddress receiver = toInject.getReceiver();
+		injectMessage(toInject, toInject.getReceiver());
+	}
+
+	/**
+	 * Delivers a distant broadcast to each of its receivers: a copy for each, 
+	 * or the message itself if it is a {@link SharedMessage}.
+	 */
+	final void injectBroadcast(final DistantBroadcast m) {
+		final Message toInject = m.getContent();
+		final boolean shared = toInject instanceof SharedMessage;
+		for (final AgentAddress receiver : m.getReceivers()) {
+			if (shared) {
+				injectMessage(toInject, receiver);
+			}
+			else {
+				final Message cm = toInject.clone();
+				cm.setReceiver(receiver);
+				injectMessage(cm, receiver);
+			}
+		}
+	}
+
+	private void injectMessage(final Message toInject, final AgentAddress receiver) {
 		final AgentAddress sender = toInject.getSender();
 		try {
 			final Role receiverRole = kernel.getRole(receiver.getCommunity(), receiver.getGroup(), receiver.getRole());
@@ -1735,16 +2099,18 @@ class MadkitKernel extends Agent {
 					} catch (CGRNotAvailable e) {
 						sender.setRoleObject(null);
 					}
-					target.receiveMessage(toInject);
+					if (! pendingReplies.offer(target, toInject)) {
+						target.receiveMessage(toInject);
+					}
 					if (hooks != null) {
 						informHooks(AgentActionEvent.SEND_MESSAGE, toInject);
 					}
 				} else if (logger != null)
-					logger.finer(m + " received but the agent address is no longer valid !! Current distributed org is "
+					logger.finer(toInject + " received but the agent address is no longer valid !! Current distributed org is "
 							+ getOrganizationSnapShot(false));
 			}
 		} catch (CGRNotAvailable e) {
-			kernel.bugReport("Cannot inject " + m + "\n" + getOrganizationSnapShot(false), e);
+			kernel.bugReport("Cannot inject " + toInject + "\n" + getOrganizationSnapShot(false), e);
 		}
 	}
 
@@ -1753,51 +2119,52 @@ class MadkitKernel extends Agent {
 		final String communityName = agentAddress.getCommunity();
 		final String groupName = agentAddress.getGroup();
 		final String roleName = agentAddress.getRole();
-		synchronized (organizations) {
-			switch (m.getCode()) {
-			case CREATE_GROUP:
-				Organization organization = null;
-				try {
-					organization = getCommunity(communityName);
-				} catch (CGRNotAvailable e) {
-					organization = new Organization(communityName, this);
-					organizations.put(communityName, organization);
-				}
-				if (organization.putIfAbsent(groupName, new Group(communityName, groupName, agentAddress, organization)) == null) {
-					informHooks(AgentActionEvent.CREATE_GROUP, agentAddress);
-				}
-				break;
-			case REQUEST_ROLE:
-				try {
-					getGroup(communityName, groupName).addDistantMember(agentAddress);
-					informHooks(AgentActionEvent.REQUEST_ROLE, agentAddress);
-				} catch (CGRNotAvailable e) {
-					logInjectOperationFailure(m, agentAddress, e);
-				}
-				break;
-			case LEAVE_ROLE:
-				try {
-					getRole(communityName, groupName, roleName).removeDistantMember(agentAddress);
-					informHooks(AgentActionEvent.LEAVE_ROLE, agentAddress);
-				} catch (CGRNotAvailable e) {
-					logInjectOperationFailure(m, agentAddress, e);
-				}
-				break;
-			case LEAVE_GROUP:
-				try {
-					getGroup(communityName, groupName).removeDistantMember(agentAddress);
-					informHooks(AgentActionEvent.LEAVE_GROUP, agentAddress);
-				} catch (CGRNotAvailable e) {
-					logInjectOperationFailure(m, agentAddress, e);
+		switch (m.getCode()) {
+		case CREATE_GROUP:
+			for (;;) {
+				final Organization organization = getOrCreateCommunity(communityName);
+				synchronized (organization) {
+					if (organization.isRemoved()) {
+						continue;
+					}
+					if (organization.addGroup(groupName, agentAddress)) {
+						informHooks(AgentActionEvent.CREATE_GROUP, agentAddress);
+					}
 				}
 				break;
-			// case CGRSynchro.LEAVE_ORG://TODO to implement
-			// break;
-			default:
-				bugReport(new UnsupportedOperationException("case not treated in injectOperation"));
-				break;
 			}
+			break;
+		case REQUEST_ROLE:
+			try {
+				getGroup(communityName, groupName).addDistantMember(agentAddress);
+				informHooks(AgentActionEvent.REQUEST_ROLE, agentAddress);
+			} catch (CGRNotAvailable e) {
+				logInjectOperationFailure(m, agentAddress, e);
+			}
+			break;
+		case LEAVE_ROLE:
+			try {
+				getRole(communityName, groupName, roleName).removeDistantMember(agentAddress);
+				informHooks(AgentActionEvent.LEAVE_ROLE, agentAddress);
+			} catch (CGRNotAvailable e) {
+				logInjectOperationFailure(m, agentAddress, e);
+			}
+			break;
+		case LEAVE_GROUP:
+			try {
+				getGroup(communityName, groupName).removeDistantMember(agentAddress);
+				informHooks(AgentActionEvent.LEAVE_GROUP, agentAddress);
+			} catch (CGRNotAvailable e) {
+				logInjectOperationFailure(m, agentAddress, e);
+			}
+			break;
+		// case CGRSynchro.LEAVE_ORG://TODO to implement
+		// break;
+		default:
+			bugReport(new UnsupportedOperationException("case not treated in injectOperation"));
+			break;
 		}
+
 	}
 
 	/**
@@ -1813,6 +2180,18 @@ class MadkitKernel extends Agent {
 	void terminate() {
 //		AgentLogger.closeLoggersFrom(kernelAddress);
 		super.terminate();
+		if (parallelPool != null) {
+			parallelPool.shutdown();
+		}
+		if (dispatcher != null) {
+			dispatcher.shutdown();
+		}
+		pendingReplies.shutdown();
+		synchronized (asyncLogLock) {
+			if (asyncLogWriter != null) {
+				asyncLogWriter.close();
+			}
+		}
 		if (LevelOption.madkitLogLevel.getValue(getMadkitConfig()) != Level.OFF) {
 			System.out.println("\n\t---------------------------------------" 
 					+ "\n\t         MaDKit Kernel " + kernelAddress
@@ -1974,24 +2353,21 @@ class MadkitKernel extends Agent {
 	final TreeSet<String> getGroupsOf(AbstractAgent abstractAgent, String community) {
 		final TreeSet<String> groups = new TreeSet<>();
 		try {
-			for (final Group g : getCommunity(community).values()) {
-				if(g.isIn(abstractAgent)){
-					groups.add(g.getName());
-				}
-			}
+			getCommunity(community);
 		} catch (CGRNotAvailable e) {
 			return null;
 		}
+		for (final Role r : abstractAgent.memberships.getRolesIn(community)) {
+			groups.add(r.getGroupName());
+		}
 		return groups;
 	}
 
 	final TreeSet<String> getRolesOf(AbstractAgent abstractAgent, String community, String group) {
 		final TreeSet<String> roles = new TreeSet<>();
 		try {
-			for (final Role r : getGroup(community,group).values()) {
-				if(r.contains(abstractAgent)){
-					roles.add(r.getRoleName());
-				}
+			for (final Role r : abstractAgent.memberships.getRolesIn(getGroup(community,group))) {
+				roles.add(r.getRoleName());
 			}
 		} catch (CGRNotAvailable e) {
 			return null;
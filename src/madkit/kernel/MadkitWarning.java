@@ -127,4 +127,16 @@ final class SelfKillException extends ThreadDeath {
 		this.timeOut = timeOut;
 	}
 	
-}
\ No newline at end of file
+}
+
+/**
+ * Unwinds the code of an agent which has been killed while its thread
+ * could not be stopped, e.g. a virtual thread.
+ * 
+ * @since MaDKit 5.2
+ */
+final class KilledException extends Error {
+
+	private static final long	serialVersionUID	= 4203985512097213409L;
+
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import madkit.message.MessageFilter;
+
+/**
+ * The message box of an agent. The producer side ({@link #offer(Message)}) is
+ * used by any thread sending a message to the agent, while the consumer side
+ * (all the other methods) is used by the agent itself, i.e. by one thread at a
+ * time.
+ * <p>
+ * A mailbox could be bounded: When the capacity is reached, the
+ * {@link OverflowPolicy} of the mailbox decides what happens to the new
+ * message. A mailbox could be plugged into an agent using
+ * {@link AbstractAgent#setMailbox(Mailbox)} before it is launched.
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * @see ArrayMailbox
+ * @see DequeMailbox
+ */
+public abstract class Mailbox {
+
+	/**
+	 * The capacity value of an unbounded mailbox
+	 */
+	public static final int	UNBOUNDED	= Integer.MAX_VALUE;
+
+	/**
+	 * Defines what a bounded mailbox does with a message
+	 * which is received while it is full.
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * The oldest message of the mailbox is discarded to make room for the new one
+		 */
+		DROP_OLDEST,
+		/**
+		 * The new message is refused. In such a case, the send primitives 
+		 * return {@link AbstractAgent.ReturnCode#MAILBOX_FULL}
+		 */
+		REJECT,
+		/**
+		 * The sender is blocked until there is room for the message. 
+		 * Beware that an agent sending a message to itself 
+		 * while its mailbox is full will then block for ever. 
+		 */
+		BLOCK
+	}
+
+	private final int					capacity;
+	private final OverflowPolicy	overflowPolicy;
+
+	/**
+	 * @param capacity
+	 *           the maximum number of messages, {@link #UNBOUNDED} if there is
+	 *           no limit
+	 * @param overflowPolicy
+	 *           what to do when the mailbox is full
+	 */
+	protected Mailbox(final int capacity, final OverflowPolicy overflowPolicy) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("capacity " + capacity);
+		this.capacity = capacity;
+		this.overflowPolicy = overflowPolicy == null ? OverflowPolicy.REJECT : overflowPolicy;
+	}
+
+	/**
+	 * @return the maximum number of messages, or {@link #UNBOUNDED}
+	 */
+	public final int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the overflow policy used when the mailbox is full
+	 */
+	public final OverflowPolicy getOverflowPolicy() {
+		return overflowPolicy;
+	}
+
+	/**
+	 * @return <code>true</code> if this mailbox has a capacity limit
+	 */
+	public final boolean isBounded() {
+		return capacity != UNBOUNDED;
+	}
+
+	/**
+	 * Adds a message at the end of the mailbox. This could be called by any
+	 * thread.
+	 * 
+	 * @param m
+	 *           the received message
+	 * @return <code>false</code> if the message has been refused according to
+	 *         the {@link OverflowPolicy}
+	 */
+	public abstract boolean offer(Message m);
+
+	/**
+	 * Retrieves and removes the oldest message.
+	 * 
+	 * @return the oldest message or <code>null</code> if the mailbox is empty
+	 */
+	public abstract Message poll();
+
+	/**
+	 * Retrieves and removes the oldest message, waiting up to the specified
+	 * time if necessary.
+	 * 
+	 * @return the oldest message or <code>null</code> if the time out elapsed
+	 * @throws InterruptedException
+	 *            if interrupted while waiting
+	 */
+	public abstract Message poll(long timeout, TimeUnit unit) throws InterruptedException;
+
+	/**
+	 * Retrieves and removes the oldest message, waiting if necessary.
+	 * 
+	 * @return the oldest message
+	 * @throws InterruptedException
+	 *            if interrupted while waiting
+	 */
+	public abstract Message take() throws InterruptedException;
+
+	/**
+	 * Retrieves and removes the most recent message.
+	 * 
+	 * @return the most recent message or <code>null</code> if the mailbox is
+	 *         empty
+	 */
+	public abstract Message pollLast();
+
+	/**
+	 * Retrieves and removes the oldest message accepted by the filter.
+	 * 
+	 * @return the matching message or <code>null</code>
+	 */
+	public abstract Message removeFirst(MessageFilter filter);
+
+	/**
+	 * Retrieves and removes the most recent message accepted by the filter.
+	 * 
+	 * @return the matching message or <code>null</code>
+	 */
+	public abstract Message removeLast(MessageFilter filter);
+
+	/**
+	 * Retrieves and removes all the messages accepted by the filter.
+	 * 
+	 * @param filter
+	 *           if <code>null</code>, all the messages are returned
+	 * @return the ordered list of the matching messages, which is empty if
+	 *         none has been found
+	 */
+	public abstract List<Message> removeAll(MessageFilter filter);
+
+	/**
+	 * Empties the mailbox.
+	 * 
+	 * @return the most recent message or <code>null</code> if the mailbox was
+	 *         already empty
+	 */
+	public abstract Message purge();
+
+	/**
+	 * Inserts messages at the head of the mailbox, keeping their order. This
+	 * is used to give back messages which have been retrieved but not
+	 * processed, so that they are not reordered with respect to the others.
+	 * These messages should not be refused as they have been admitted
+	 * before.
+	 * 
+	 * @param messages
+	 *           the oldest messages first
+	 */
+	public abstract void addAllFirst(List<Message> messages);
+
+	/**
+	 * @return <code>true</code> if there is no message
+	 */
+	public abstract boolean isEmpty();
+
+	/**
+	 * @return the number of messages
+	 */
+	public abstract int size();
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + (isBounded() ? "[" + capacity + "," + overflowPolicy + "]" : "") + " size=" + size();
+	}
+
+}
@@ -40,8 +40,6 @@ package madkit.kernel;
 import static madkit.kernel.AbstractAgent.ReturnCode.ROLE_NOT_HANDLED;
 import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
 
-import java.util.HashSet;
-
 import madkit.agr.Organization;
 import madkit.kernel.AbstractAgent.ReturnCode;
 
@@ -62,9 +60,10 @@ final class ManagerRole extends Role{
 	ManagerRole(final Group groupObject, AbstractAgent requester, boolean securedGroup) {
 		super(groupObject, Organization.GROUP_MANAGER_ROLE);
 		synchronized (players) {
-			players.add(requester);
-			agentAddresses = new HashSet<>(1,1);
-			agentAddresses.add(new GroupManagerAddress(requester, this, getKernelAddress(), securedGroup));
+			players.add(requester.hashCode(), requester);
+			requester.memberships.add(this);
+			agentAddresses = new MemberIndex<>(1);
+			agentAddresses.add(requester.hashCode(), new GroupManagerAddress(requester, this, getKernelAddress(), securedGroup));
 //			System.err.println(requester.getName() + " is now playing " + getCGRString(communityName, groupName, roleName));
 //			System.err.println(this+" current players---\n"+players+"\n\n");
 			modified = true;
@@ -73,11 +72,7 @@ final class ManagerRole extends Role{
 	
 	ManagerRole(final Group groupObject, AgentAddress creator) {
 		super(groupObject, Organization.GROUP_MANAGER_ROLE);
-		synchronized (players) {
-			agentAddresses = new HashSet<>(1,1);
-			agentAddresses.add(creator);
-			creator.setRoleObject(this);//required for equals to work
-		}
+		addDistantMember(creator);
 	}
 	
 	/* (non-Javadoc)
@@ -0,0 +1,505 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.NoSuchElementException;
+import java.util.function.Consumer;
+
+/**
+ * An insertion-ordered index of values keyed by an <code>int</code>,
+ * which is the agent's hash code when used by {@link Role}.
+ * <p>
+ * Add, remove and lookup are done in constant time using an open addressing
+ * table which points into dense arrays kept in insertion order. Removed entries
+ * leave holes which are compacted lazily, so that {@link #toList()} always returns
+ * the values in the order they have been added.
+ * <p>
+ * {@link #snapshot()} builds immutable views made of chunks which are
+ * shared between successive snapshots: only the chunks which have been
+ * modified since the previous snapshot are copied, so that a snapshot taken
+ * after <i>k</i> changes costs O(<i>k</i>) instead of O(<i>n</i>).
+ * <p>
+ * This class is not thread safe: {@link Role} uses it while holding its own lock.
+ * 
+ * @param <V> the type of the indexed values
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+final class MemberIndex<V> {
+
+	private static final int	MIN_CAPACITY	= 8;
+	private static final int	CHUNK_SHIFT		= 8;
+	private static final int	CHUNK_SIZE		= 1 << CHUNK_SHIFT;
+
+	private int[]					keys;
+	private Object[]				values;
+	/**
+	 * open addressing table: position + 1 in {@link #keys}, 0 for a free slot
+	 */
+	private int[]					table;
+	private int						mask;
+	private int						end;
+	private int						size;
+
+	/**
+	 * compacted copies of the chunks of {@link #values}, shared by the snapshots
+	 */
+	private Object[][]			chunks			= new Object[0][];
+	private long[]					dirtyChunks;
+	private boolean				allDirty		= true;
+
+	MemberIndex() {
+		this(MIN_CAPACITY);
+	}
+
+	MemberIndex(int expectedSize) {
+		allocate(Math.max(MIN_CAPACITY, expectedSize));
+	}
+
+	private void allocate(int capacity) {
+		keys = new int[capacity];
+		values = new Object[capacity];
+		table = new int[Integer.highestOneBit(capacity - 1) << 2];
+		mask = table.length - 1;
+		dirtyChunks = new long[((capacity - 1) >>> CHUNK_SHIFT >>> 6) + 1];
+		allDirty = true;
+	}
+
+	private void setDirty(int pos) {
+		final int chunk = pos >>> CHUNK_SHIFT;
+		dirtyChunks[chunk >>> 6] |= 1L << chunk;
+	}
+
+	private static int spread(int key) {
+		final int h = key * 0x9E3779B9;
+		return h ^ (h >>> 16);
+	}
+
+	private int slotOf(int key) {
+		for (int i = spread(key) & mask;; i = (i + 1) & mask) {
+			final int pos = table[i];
+			if (pos == 0 || keys[pos - 1] == key)
+				return i;
+		}
+	}
+
+	/**
+	 * @return the number of indexed values
+	 */
+	int size() {
+		return size;
+	}
+
+	boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * @param key
+	 * @return the value indexed by <code>key</code>, or <code>null</code>
+	 */
+	@SuppressWarnings("unchecked")
+	V get(int key) {
+		final int pos = table[slotOf(key)];
+		return pos == 0 ? null : (V) values[pos - 1];
+	}
+
+	boolean containsKey(int key) {
+		return table[slotOf(key)] != 0;
+	}
+
+	/**
+	 * Adds a value if the key is not already indexed.
+	 * 
+	 * @param key
+	 * @param value a non <code>null</code> value
+	 * @return <code>true</code> if the value has been added
+	 */
+	boolean add(int key, V value) {
+		int slot = slotOf(key);
+		if (table[slot] != 0)
+			return false;
+		if (end == keys.length) {
+			resize(size + 1);
+			slot = slotOf(key);
+		}
+		keys[end] = key;
+		values[end] = value;
+		setDirty(end);
+		table[slot] = ++end;
+		size++;
+		return true;
+	}
+
+	/**
+	 * Makes room for <code>n</code> more values so that a bucket
+	 * is added without intermediate resizing.
+	 * 
+	 * @param n
+	 */
+	void ensureCapacity(int n) {
+		if (end + n > keys.length) {
+			resize(size + n);
+		}
+	}
+
+	/**
+	 * @param key
+	 * @return the removed value, or <code>null</code> if the key was not indexed
+	 */
+	@SuppressWarnings("unchecked")
+	V remove(int key) {
+		int slot = slotOf(key);
+		final int pos = table[slot] - 1;
+		if (pos < 0)
+			return null;
+		final V removed = (V) values[pos];
+		values[pos] = null;
+		setDirty(pos);
+		size--;
+		if (pos == end - 1) {
+			end--;
+		}
+		// backward shift deletion, so that no tombstone is required
+		for (int i = (slot + 1) & mask; table[i] != 0; i = (i + 1) & mask) {
+			final int ideal = spread(keys[table[i] - 1]) & mask;
+			if (((i - ideal) & mask) >= ((i - slot) & mask)) {
+				table[slot] = table[i];
+				slot = i;
+			}
+		}
+		table[slot] = 0;
+		if (size < end >> 2 && keys.length > MIN_CAPACITY) {
+			resize(size);
+		}
+		return removed;
+	}
+
+	/**
+	 * Compacts the values, keeping their order, in arrays
+	 * able to hold at least <code>minCapacity</code> values.
+	 */
+	private void resize(int minCapacity) {
+		final int[] oldKeys = keys;
+		final Object[] oldValues = values;
+		final int oldEnd = end;
+		int capacity = Math.max(MIN_CAPACITY, size * 2);
+		while (capacity < minCapacity) {
+			capacity <<= 1;
+		}
+		allocate(capacity);
+		end = 0;
+		for (int i = 0; i < oldEnd; i++) {
+			if (oldValues[i] != null) {
+				keys[end] = oldKeys[i];
+				values[end] = oldValues[i];
+				table[slotOf(oldKeys[i])] = ++end;
+			}
+		}
+	}
+
+	void clear() {
+		Arrays.fill(values, 0, end, null);
+		Arrays.fill(table, 0);
+		end = size = 0;
+		allDirty = true;
+	}
+
+	/**
+	 * @return a new list containing the values in insertion order
+	 */
+	@SuppressWarnings("unchecked")
+	List<V> toList() {
+		final List<V> l = new ArrayList<>(size);
+		for (int i = 0; i < end; i++) {
+			final Object v = values[i];
+			if (v != null)
+				l.add((V) v);
+		}
+		return l;
+	}
+
+	/**
+	 * Returns the values in insertion order as a list which will not change
+	 * when this index is modified afterward. The returned list is fixed-size:
+	 * {@link List#set(int, Object)} is supported, so that it can be shuffled,
+	 * and makes the list copy its chunks first.
+	 * 
+	 * @return a snapshot of the values
+	 */
+	List<V> snapshot() {
+		final int nbOfChunks = (end + CHUNK_SIZE - 1) >>> CHUNK_SHIFT;
+		if (chunks.length < nbOfChunks) {
+			chunks = Arrays.copyOf(chunks, Math.max(nbOfChunks, chunks.length * 2));
+		}
+		int nonEmpty = 0;
+		for (int c = 0; c < nbOfChunks; c++) {
+			if (allDirty || (dirtyChunks[c >>> 6] & (1L << c)) != 0) {
+				chunks[c] = compactChunk(c);
+			}
+			if (chunks[c].length > 0) {
+				nonEmpty++;
+			}
+		}
+		Arrays.fill(dirtyChunks, 0);
+		allDirty = false;
+		final Object[][] shared = new Object[nonEmpty][];
+		final int[] offsets = new int[nonEmpty + 1];
+		for (int c = 0, i = 0; i < nonEmpty; c++) {
+			if (chunks[c].length > 0) {
+				shared[i] = chunks[c];
+				offsets[i + 1] = offsets[i] + chunks[c].length;
+				i++;
+			}
+		}
+		return new Snapshot<>(shared, offsets);
+	}
+
+	private Object[] compactChunk(int c) {
+		final int from = c << CHUNK_SHIFT;
+		final int to = Math.min(end, from + CHUNK_SIZE);
+		int n = 0;
+		for (int i = from; i < to; i++) {
+			if (values[i] != null)
+				n++;
+		}
+		final Object[] chunk = new Object[n];
+		for (int i = from, j = 0; j < n; i++) {
+			if (values[i] != null)
+				chunk[j++] = values[i];
+		}
+		return chunk;
+	}
+
+	/**
+	 * A fixed-size list made of chunks which may be shared with
+	 * other snapshots until {@link #set(int, Object)} is used.
+	 */
+	static final class Snapshot<E> extends AbstractList<E> {
+
+		private Object[][]	chunks;
+		private final int[]	offsets;
+		private boolean		shared	= true;
+
+		Snapshot(Object[][] chunks, int[] offsets) {
+			this.chunks = chunks;
+			this.offsets = offsets;
+		}
+
+		private int chunkOf(int index) {
+			if (index < 0 || index >= size())
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+			int low = 0, high = chunks.length - 1;
+			while (low < high) {
+				final int mid = (low + high + 1) >>> 1;
+				if (offsets[mid] <= index)
+					low = mid;
+				else
+					high = mid - 1;
+			}
+			return low;
+		}
+
+		@Override
+		public int size() {
+			return offsets[chunks.length];
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public E get(int index) {
+			final int c = chunkOf(index);
+			return (E) chunks[c][index - offsets[c]];
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public E set(int index, E element) {
+			final int c = chunkOf(index);
+			if (shared) {
+				final Object[][] copy = new Object[chunks.length][];
+				for (int i = 0; i < copy.length; i++) {
+					copy[i] = chunks[i].clone();
+				}
+				chunks = copy;
+				shared = false;
+			}
+			final Object[] chunk = chunks[c];
+			final E old = (E) chunk[index - offsets[c]];
+			chunk[index - offsets[c]] = element;
+			return old;
+		}
+
+		@Override
+		public Object[] toArray() {
+			final Object[] a = new Object[size()];
+			for (int c = 0; c < chunks.length; c++) {
+				System.arraycopy(chunks[c], 0, a, offsets[c], chunks[c].length);
+			}
+			return a;
+		}
+
+		@Override
+		public Iterator<E> iterator() {
+			return new ChunkIterator(0);
+		}
+
+		@Override
+		public ListIterator<E> listIterator() {
+			return new ChunkIterator(0);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public void forEach(Consumer<? super E> action) {
+			for (final Object[] chunk : chunks) {
+				for (final Object o : chunk) {
+					action.accept((E) o);
+				}
+			}
+		}
+
+		@Override
+		public ListIterator<E> listIterator(final int index) {
+			if (index < 0 || index > size())
+				throw new IndexOutOfBoundsException("Index: " + index);
+			return new ChunkIterator(index);
+		}
+
+		/**
+		 * Walks the chunks directly so that iterating, also through
+		 * {@link #subList(int, int)}, costs O(1) per element
+		 */
+		private final class ChunkIterator implements ListIterator<E> {
+
+			private final int	size			= size();
+			private int			cursor;
+			private int			chunk;
+			private int			lastReturned	= -1;
+			private Object[]	current;
+			private int			chunkStart;
+			private int			chunkEnd;
+
+			ChunkIterator(int index) {
+				cursor = index;
+				moveTo(index < size ? chunkOf(index) : chunks.length - 1);
+			}
+
+			private void moveTo(int c) {
+				chunk = c;
+				if (c >= 0) {
+					current = chunks[c];
+					chunkStart = offsets[c];
+					chunkEnd = offsets[c + 1];
+				}
+			}
+
+			@Override
+			public boolean hasNext() {
+				return cursor < size;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public E next() {
+				final int i = cursor;
+				if (i >= chunkEnd) {
+					if (i >= size)
+						throw new NoSuchElementException();
+					moveTo(chunk + 1);
+				}
+				cursor = i + 1;
+				lastReturned = i;
+				return (E) current[i - chunkStart];
+			}
+
+			@Override
+			public boolean hasPrevious() {
+				return cursor > 0;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public E previous() {
+				if (cursor <= 0)
+					throw new NoSuchElementException();
+				lastReturned = --cursor;
+				if (cursor < chunkStart) {
+					moveTo(chunk - 1);
+				}
+				return (E) current[cursor - chunkStart];
+			}
+
+			@Override
+			public int nextIndex() {
+				return cursor;
+			}
+
+			@Override
+			public int previousIndex() {
+				return cursor - 1;
+			}
+
+			@Override
+			public void set(E e) {
+				if (lastReturned < 0)
+					throw new IllegalStateException();
+				Snapshot.this.set(lastReturned, e);
+				current = chunks[chunk];
+			}
+
+			@Override
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+
+			@Override
+			public void add(E e) {
+				throw new UnsupportedOperationException();
+			}
+		}
+	}
+
+}
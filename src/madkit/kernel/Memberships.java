@@ -0,0 +1,143 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The roles locally played by an agent: the reverse of {@link Role#players}.
+ * <p>
+ * It is updated by {@link Role} while holding the lock on its players, so
+ * that both sides always agree. Agents usually play a handful of roles, so that
+ * a plain array is scanned instead of hashing: this makes kill cleanup and
+ * membership queries proportional to the agent's own memberships rather than to
+ * the size of the organization.
+ * <p>
+ * Methods never call out while holding the lock on this object, 
+ * so that it can safely be taken while holding a role lock.
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+final class Memberships {
+
+	private static final Role[]	EMPTY	= new Role[0];
+
+	private Role[]						roles	= EMPTY;
+	private int							size;
+
+	synchronized void add(final Role r) {
+		for (int i = 0; i < size; i++) {
+			if (roles[i] == r)
+				return;
+		}
+		if (size == roles.length) {
+			roles = Arrays.copyOf(roles, Math.max(4, size << 1));
+		}
+		roles[size++] = r;
+	}
+
+	synchronized void remove(final Role r) {
+		for (int i = 0; i < size; i++) {
+			if (roles[i] == r) {
+				roles[i] = roles[--size];
+				roles[size] = null;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if the agent plays at least one role in this group
+	 */
+	synchronized boolean isIn(final Group g) {
+		for (int i = 0; i < size; i++) {
+			if (roles[i].getMyGroup() == g)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * @return a new list containing the roles played in this group
+	 */
+	synchronized List<Role> getRolesIn(final Group g) {
+		final List<Role> l = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			if (roles[i].getMyGroup() == g)
+				l.add(roles[i]);
+		}
+		return l;
+	}
+
+	/**
+	 * @return a new list containing the groups in which at least one role is played
+	 */
+	synchronized List<Group> getGroups() {
+		final List<Group> l = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			final Group g = roles[i].getMyGroup();
+			if (indexOf(l, g) < 0)//groups are maps: equals should not be used
+				l.add(g);
+		}
+		return l;
+	}
+
+	private static int indexOf(final List<Group> l, final Group g) {
+		for (int i = l.size() - 1; i >= 0; i--) {
+			if (l.get(i) == g)
+				return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * @return a new list containing the roles played in this community
+	 */
+	synchronized List<Role> getRolesIn(final String community) {
+		final List<Role> l = new ArrayList<>(size);
+		for (int i = 0; i < size; i++) {
+			if (roles[i].getCommunityName().equals(community))
+				l.add(roles[i]);
+		}
+		return l;
+	}
+
+}
@@ -146,6 +146,13 @@ public class Message implements Cloneable,java.io.Serializable{//TODO message al
 			conversationID = from.conversationID;
 	}
 
+	/**
+	 * @param conversationID the ID of a message received from the network
+	 */
+	final void setConversationID(final ConversationID conversationID) {
+		this.conversationID = conversationID;
+	}
+
 	/**
 	 * returns the conversation ID for this message. 
 	 * When a message is created, it is given an ID that will
@@ -0,0 +1,103 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.io.IOException;
+
+/**
+ * Encodes the content of a given message type for {@link KernelConnection}.
+ * <p>
+ * The sender, the receiver and the conversation ID of a message are
+ * written by {@link WireOutput} for all the types, so that a codec only
+ * deals with the fields which are specific to its type. Codecs are 
+ * registered in {@link WireProtocol} and are used only for the exact class 
+ * they are registered for: a subclass could hold more fields, so it is 
+ * serialized instead.
+ * 
+ * @param <M> the type of message handled by this codec
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+abstract class MessageCodec<M extends Message> {
+
+	private final byte		tag;
+	private final Class<M>	type;
+
+	/**
+	 * @param tag the byte identifying the type on the wire
+	 * @param type the exact class handled by this codec
+	 */
+	MessageCodec(final int tag, final Class<M> type) {
+		this.tag = (byte) tag;
+		this.type = type;
+	}
+
+	/**
+	 * @return the byte identifying the type on the wire
+	 */
+	final byte getTag() {
+		return tag;
+	}
+
+	/**
+	 * @return the exact class handled by this codec
+	 */
+	final Class<M> getType() {
+		return type;
+	}
+
+	/**
+	 * Writes the fields which are specific to the message type.
+	 * 
+	 * @param out the frame being written
+	 * @param m the message to encode
+	 * @throws IOException if a part of the message could not be encoded
+	 */
+	abstract void write(WireOutput out, M m) throws IOException;
+
+	/**
+	 * Builds a message from the fields written by {@link #write(WireOutput, Message)}.
+	 * 
+	 * @param in the frame being read
+	 * @return the new message, its header is set afterwards
+	 * @throws IOException if the frame is corrupted
+	 */
+	abstract M read(WireInput in) throws IOException;
+
+}
@@ -45,6 +45,7 @@ import java.net.DatagramPacket;
 import java.net.InetAddress;
 import java.net.Socket;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -57,7 +58,9 @@ import madkit.agr.LocalCommunity.Groups;
 import madkit.agr.LocalCommunity.Roles;
 import madkit.agr.Organization;
 import madkit.gui.AgentStatusPanel;
+import madkit.kernel.Madkit.BooleanOption;
 import madkit.kernel.Madkit.LevelOption;
+import madkit.kernel.Madkit.Option;
 import madkit.message.EnumMessage;
 import madkit.message.ObjectMessage;
 
@@ -72,9 +75,22 @@ final class NetworkAgent extends Agent {
 	final private ConcurrentHashMap<KernelAddress, KernelConnection> peers = new ConcurrentHashMap<>();
 
 	private KernelServer myServer;
+	/**
+	 * the selectors shared by the connections, <code>null</code> if 
+	 * each connection has its own thread
+	 */
+	private NetworkSelector[] selectors;
+	private int nextSelector;
 	private MultiCastListener multicastListener;
 	private boolean running = true;
 	private AgentAddress kernelAgent;
+	/**
+	 * the connections which have messages waiting in their batch
+	 */
+	private final Set<KernelConnection> batching = new HashSet<>();
+	private long batchDeadline;
+	private int batchLinger;
+	private int batchSize;
 
 	//	/**
 	//	 * 
@@ -118,7 +134,12 @@ final class NetworkAgent extends Agent {
 			return false;
 		}
 		requestRole(CloudCommunity.NAME, CloudCommunity.Groups.NETWORK_AGENTS, CloudCommunity.Roles.NET_AGENT);
-		myServer = KernelServer.getNewKernelServer();
+		batchLinger = getIntOption(Option.networkBatchLinger, 0);
+		batchSize = getIntOption(Option.networkBatchSize, 1 << 16);
+		if (BooleanOption.nioNetwork.isActivated(getMadkitConfig())) {
+			startSelectors();
+		}
+		myServer = KernelServer.getNewKernelServer(selectors != null);
 		if(myServer == null) {
 			if (logger != null) 
 				logger.warning("\n\t\t\t\t---- Unable to start the Madkit kernel server ------\n");
@@ -187,7 +208,39 @@ final class NetworkAgent extends Agent {
 	@Override
 	protected void live() {
 		while(isAlive() && running){
-			handleMessage(waitNextMessage());
+			final Message m;
+			if (batching.isEmpty()) {
+				m = waitNextMessage();
+			}
+			else if (batchLinger == 0) {
+				m = nextMessage();
+			}
+			else {
+				final long remaining = batchDeadline - System.currentTimeMillis();
+				m = remaining > 0 ? waitNextMessage(remaining) : null;
+			}
+			if (m == null) {
+				flushBatches();
+			}
+			else {
+				handleMessage(m);
+			}
+		}
+	}
+
+	private void flushBatches() {
+		for (final KernelConnection kc : batching) {
+			kc.flush();
+		}
+		batching.clear();
+	}
+
+	private int getIntOption(final Option option, final int defaultValue) {
+		try {
+			return Integer.parseInt(getMadkitProperty(option));
+		} catch (NumberFormatException e) {
+			getLogger().severeLog(option + " is not an integer, using " + defaultValue, null);
+			return defaultValue;
 		}
 	}
 
@@ -200,6 +253,7 @@ final class NetworkAgent extends Agent {
 	 * 
 	 */
 	private void stopNetwork() {
+		flushBatches();
 		if (logger != null){
 			logger.info("\n\t\t\t\t----- "+getKernelAddress()+" network closed ------\n");
 			logger.finer("Closing all connections : "+peers.values());
@@ -219,6 +273,12 @@ final class NetworkAgent extends Agent {
 			myServer.stop();
 			myServer = null;
 		}
+		if (selectors != null) {
+			for (final NetworkSelector selector : selectors) {
+				selector.shutdown();
+			}
+			selectors = null;
+		}
 		leaveGroup(CloudCommunity.NAME, CloudCommunity.Groups.NETWORK_AGENTS);
 		AgentStatusPanel.updateAll();
 	}
@@ -257,7 +317,12 @@ final class NetworkAgent extends Agent {
 			case Roles.EMMITER://It is a distant message to inject
 				if (logger != null) 
 					logger.finer("Injecting distant message "+getState()+" : "+m);
-				getMadkitKernel().injectMessage((ObjectMessage<Message>) m);
+				if (m instanceof DistantBroadcast) {
+					getMadkitKernel().injectBroadcast((DistantBroadcast) m);
+				}
+				else {
+					getMadkitKernel().injectMessage((ObjectMessage<Message>) m);
+				}
 				break;
 			default:
 				getLogger().severeLog("not understood :\n"+m);
@@ -276,7 +341,9 @@ final class NetworkAgent extends Agent {
 	 * @param ka
 	 */
 	private void peerDeconnected(final KernelAddress ka) {
-		if (peers.remove(ka) != null) {
+		final KernelConnection kc = peers.remove(ka);
+		if (kc != null) {
+			batching.remove(kc);
 			if (logger != null)
 				logger.info("\n\t\t\t\t----- " + getKernelAddress() + " deconnected from " + ka + "------\n");
 			getMadkitKernel().removeAgentsFromDistantKernel(ka);
@@ -292,7 +359,7 @@ final class NetworkAgent extends Agent {
 			logger.fine("Contacted by peer "+s+" -> opening kernel connection");
 		KernelConnection kc = null;
 		try {
-			kc = new KernelConnection(this,s);
+			kc = new KernelConnection(this,s,s.getChannel() == null ? null : nextSelector());
 		} catch (final IOException e) {
 			if (logger != null) logger.warning("I give up: Unable to contact peer on "+s+" because "+e.getMessage());
 			return;
@@ -308,6 +375,41 @@ final class NetworkAgent extends Agent {
 		}		
 	}
 
+	/**
+	 * Starts a few selector threads which will be shared by all the connections. 
+	 * If this fails, each connection will have its own thread. 
+	 */
+	private void startSelectors() {
+		final int nb = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+		final NetworkSelector[] tmp = new NetworkSelector[nb];
+		try {
+			for (int i = 0; i < nb; i++) {
+				tmp[i] = new NetworkSelector("MK Selector " + i + " " + getName());
+			}
+		} catch (IOException e) {
+			if (logger != null)
+				logger.warning("Unable to open selectors, using one thread per connection: " + e.getMessage());
+			return;
+		}
+		for (final NetworkSelector selector : tmp) {
+			selector.start();
+		}
+		selectors = tmp;
+		if (logger != null)
+			logger.config("\n\t\t\t\t----- " + nb + " network selectors started ------\n");
+	}
+
+	/**
+	 * @return the selector for a new connection, or <code>null</code> 
+	 * if connections have their own thread
+	 */
+	private NetworkSelector nextSelector() {
+		if (selectors == null)
+			return null;
+		nextSelector = (nextSelector + 1) % selectors.length;
+		return selectors[nextSelector];
+	}
+
 	/**
 	 * @param kc
 	 * @param startConnection start to receive message if living 
@@ -329,7 +431,7 @@ final class NetworkAgent extends Agent {
 			logger.fine("Contacting peer: "+packet.getAddress()+" port = "+packet.getPort()+"\n\t-> opening KernelConnection");
 		KernelConnection kc = null;
 		try {
-			kc = new KernelConnection(this,packet.getAddress(),packet.getPort());
+			kc = new KernelConnection(this,packet.getAddress(),packet.getPort(),nextSelector());
 			if(logger != null)
 				logger.finer("KC created "+kc);
 		} catch (final IOException e) {
@@ -446,12 +548,24 @@ final class NetworkAgent extends Agent {
 		}
 	}
 
+	/**
+	 * Adds the message to the batch of the connection, which is sent 
+	 * when it is large enough or by {@link #flushBatches()}.
+	 */
 	private void sendDistantMessage(final ObjectMessage<Message> m){
+		final KernelAddress target = m instanceof DistantBroadcast ? 
+				((DistantBroadcast) m).getReceiversKernel() : m.getContent().getReceiver().getKernelAddress();
 		if (logger != null) 
-			logger.finer("sending to "+m.getContent().getReceiver().getKernelAddress()+m);
-		final KernelConnection kc = peers.get(m.getContent().getReceiver().getKernelAddress());
+			logger.finer("sending to "+target+m);
+		final KernelConnection kc = peers.get(target);
 		if(kc != null){
-			kc.sendMessage(m);
+			if (kc.queueMessage(m) >= batchSize) {
+				kc.flush();
+				batching.remove(kc);
+			}
+			else if (batching.add(kc) && batching.size() == 1) {
+				batchDeadline = System.currentTimeMillis() + batchLinger;
+			}
 		}
 		else {
 //			if (m.getContent().getReceiver().isFrom(getKernelAddress())){//the agent address which is used has been encapsulated and is not up-to-date (agent)
@@ -0,0 +1,146 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A thread doing the I/O of many non blocking {@link KernelConnection}s. 
+ * <p>
+ * It is used when the {@link Madkit.BooleanOption#nioNetwork} option is set:
+ * the {@link NetworkAgent} then shares a few selectors between 
+ * all its connections, instead of having one reading thread per 
+ * connected kernel. Other threads never touch the selection keys: 
+ * they post requests which are processed by this thread on its next loop.
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+final class NetworkSelector extends Thread {
+
+	private final Selector						selector;
+	private final Queue<KernelConnection>	toRegister	= new ConcurrentLinkedQueue<>();
+	private final Queue<KernelConnection>	toWrite		= new ConcurrentLinkedQueue<>();
+	private volatile boolean					running		= true;
+
+	/**
+	 * @param name the name of the thread
+	 * @throws IOException if the selector cannot be opened
+	 */
+	NetworkSelector(final String name) throws IOException {
+		super(name);
+		setDaemon(true);
+		selector = Selector.open();
+	}
+
+	/**
+	 * @param kc a started connection whose channel is non blocking
+	 */
+	void register(final KernelConnection kc) {
+		toRegister.add(kc);
+		selector.wakeup();
+	}
+
+	/**
+	 * @param kc a connection which has just queued frames
+	 */
+	void requestWrite(final KernelConnection kc) {
+		toWrite.add(kc);
+		selector.wakeup();
+	}
+
+	void shutdown() {
+		running = false;
+		selector.wakeup();
+	}
+
+	@Override
+	public void run() {
+		while (running) {
+			try {
+				selector.select();
+			} catch (IOException e) {
+				break;
+			}
+			KernelConnection kc;
+			while ((kc = toRegister.poll()) != null) {
+				try {
+					kc.setSelectionKey(kc.getChannel().register(selector, SelectionKey.OP_READ, kc));
+					if (kc.hasPendingWrites()) {
+						toWrite.add(kc);
+					}
+				} catch (ClosedChannelException e) {
+					kc.connectionLost(e);
+				}
+			}
+			while ((kc = toWrite.poll()) != null) {
+				final SelectionKey key = kc.getSelectionKey();
+				if (key != null && key.isValid()) {
+					key.interestOps(key.interestOps() | SelectionKey.OP_WRITE);
+				}
+			}
+			for (final Iterator<SelectionKey> it = selector.selectedKeys().iterator(); it.hasNext();) {
+				final SelectionKey key = it.next();
+				it.remove();
+				kc = (KernelConnection) key.attachment();
+				try {
+					if (key.isReadable()) {
+						kc.channelReadable();
+					}
+					if (key.isValid() && key.isWritable() && kc.channelWritable()) {
+						key.interestOps(key.interestOps() & ~SelectionKey.OP_WRITE);
+					}
+				} catch (CancelledKeyException e) {
+					// closed meanwhile
+				}
+			}
+		}
+		try {
+			selector.close();
+		} catch (IOException e) {
+		}
+	}
+
+}
@@ -38,8 +38,6 @@ package madkit.kernel;
 
 import static madkit.i18n.I18nUtilities.getCGRString;
 
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -63,6 +61,10 @@ final class Organization extends ConcurrentHashMap <String, Group>{
 	private final Logger logger;
 	private final String communityName;
 	private final transient MadkitKernel myKernel;
+	/**
+	 * set, while holding the lock on this community, when it has been removed from the kernel
+	 */
+	private transient volatile boolean removed;
 
 	/**
 	 * @return the myKernel
@@ -101,7 +103,7 @@ final class Organization extends ConcurrentHashMap <String, Group>{
 	 */
 	boolean addGroup(final AbstractAgent creator, String group, Gatekeeper gatekeeper, boolean isDistributed) {
 		Group g = get(group);
-		if(g == null){// There was no such group
+		if(g == null || g.isRemoved()){// There was no such group
 			g = new Group(communityName,group,creator,gatekeeper,isDistributed,this);
 			put(group,g);
 			if(logger != null)
@@ -114,44 +116,50 @@ final class Organization extends ConcurrentHashMap <String, Group>{
 	}
 
 	/**
+	 * Distant group adding. Guarded by this in {@link MadkitKernel#injectOperation(CGRSynchro)}
+	 * 
 	 * @param group
+	 * @param manager the address of the distant manager
+	 * @return true if the group has been created
 	 */
-	void removeGroup(final String group) {
-		synchronized (this) {
-			if (logger != null)
-				logger.finer("Removing" + getCGRString(communityName, group));
-			remove(group);
-			checkEmptyness();
+	boolean addGroup(final String group, final AgentAddress manager) {
+		final Group g = get(group);
+		if (g == null || g.isRemoved()) {
+			put(group, new Group(communityName, group, manager, this));
+			return true;
 		}
+		return false;
 	}
 
-	private void checkEmptyness() {
-		if(isEmpty()){
+	/**
+	 * Removes a group which has been emptied, and this community if it was its last group.
+	 * This should not be called while holding the lock on a group.
+	 * 
+	 * @param group the group to remove, which could have already been replaced
+	 */
+	void removeGroup(final Group group) {
+		synchronized (this) {
+			if (! remove(group.getName(), group)) {
+				return;
+			}
+			if (logger != null)
+				logger.finer("Removing" + getCGRString(communityName, group.getName()));
+			if (! isEmpty()) {
+				return;
+			}
 			if(logger != null)
 				logger.finer("Removing"+getCGRString(communityName));
-			myKernel.removeCommunity(communityName);
+			removed = true;
 		}
+		myKernel.removeCommunity(this);
 	}
 
 	/**
-	 * @param theAgent
-	 * @return all the groups that are distributed and that contained the agent
+	 * @return <code>true</code> if this community has been removed from the kernel,
+	 * so that it will never be used again
 	 */
-	ArrayList<String> removeAgentFromAllGroups(final AbstractAgent theAgent) {
-		final ArrayList<String> groups = new ArrayList<>();
-		for (final Iterator<Map.Entry<String, Group>> e = this.entrySet().iterator();e.hasNext();) {
-			final Map.Entry<String, Group> entry = e.next();
-			final Group g = entry.getValue();
-			if(g.leaveGroup(theAgent) != null){//at least present in one group
-				if (g.isDistributed()) {
-					groups.add(entry.getKey());
-				}
-				if(g.isEmpty())
-					e.remove();
-			}
-		}
-		return groups;
-
+	boolean isRemoved() {
+		return removed;
 	}
 
 	/**
@@ -169,12 +177,14 @@ final class Organization extends ConcurrentHashMap <String, Group>{
 	}
 
 	/**
+	 * Guarded by this in {@link MadkitKernel#importDistantOrg(Map)}
+	 * 
 	 * @param hashMap
 	 */
 	void importDistantOrg(Map<String, Map<String, Set<AgentAddress>>> map) {
 		for (String groupName : map.keySet()) {
 			Group group = get(groupName);
-			if(group == null){
+			if(group == null || ! group.importDistantOrg(map.get(groupName))){
 				AgentAddress manager = null;
 				try {
 					manager = map.get(groupName).get(madkit.agr.Organization.GROUP_MANAGER_ROLE).iterator().next();
@@ -183,8 +193,8 @@ final class Organization extends ConcurrentHashMap <String, Group>{
 				}
 				group = new Group(communityName, groupName,manager, this);
 				put(groupName, group);
+				group.importDistantOrg(map.get(groupName));
 			}
-			group.importDistantOrg(map.get(groupName));
 		}		
 	}
 
@@ -208,7 +218,10 @@ final class Organization extends ConcurrentHashMap <String, Group>{
 		for(final Group g : values()){
 			g.destroy();
 		}
-		myKernel.removeCommunity(communityName);
+		synchronized (this) {
+			removed = true;
+		}
+		myKernel.removeCommunity(this);
 	}
 
 	
@@ -0,0 +1,188 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * The frames waiting to be sent to a peer by a {@link NetworkSelector}.
+ * <p>
+ * Frames are copied one after the other into chunks, so that many small 
+ * frames are sent with one write. The queued bytes are bounded: when a peer 
+ * is too slow, {@link #offer(byte[], int, int)} fails instead of buffering 
+ * without limit, so that the connection is closed. It never waits: 
+ * the sender is shared by all the peers, which should not be slowed down 
+ * by one of them.
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+final class OutboundQueue {
+
+	static final int						CHUNK_SIZE			= 1 << 16;
+	/**
+	 * the maximum number of chunks written at once
+	 */
+	private static final int			MAX_GATHERING		= 16;
+	private static final int			MAX_SPARE_CHUNKS	= 4;
+
+	private final long					capacity;
+	private final ArrayDeque<ByteBuffer>	chunks			= new ArrayDeque<>();
+	private final ArrayDeque<ByteBuffer>	spareChunks		= new ArrayDeque<>();
+	private final ByteBuffer[]			gathering			= new ByteBuffer[MAX_GATHERING];
+	/**
+	 * the last chunk, still in write mode, or <code>null</code>
+	 * if it has been flipped for being written
+	 */
+	private ByteBuffer					tail;
+	private long							queuedBytes;
+	private boolean						closed;
+
+	/**
+	 * @param capacity the number of queued bytes above which 
+	 * {@link #offer(byte[], int, int)} fails
+	 */
+	OutboundQueue(final long capacity) {
+		this.capacity = capacity;
+	}
+
+	/**
+	 * Queues a frame.
+	 * 
+	 * @return <code>true</code> if the queue was empty, so that 
+	 * the selector has to be told that there is something to write
+	 * @throws ClosedChannelException if the queue has been closed
+	 * @throws IOException if the queue is full: the peer does not read 
+	 * what is sent to it
+	 */
+	synchronized boolean offer(final byte[] frame, final int offset, final int length) throws IOException {
+		if (closed)
+			throw new ClosedChannelException();
+		if (queuedBytes >= capacity)
+			throw new IOException("peer too slow: " + queuedBytes + " bytes not sent");
+		final boolean wasEmpty = queuedBytes == 0;
+		if (length > CHUNK_SIZE) {// not coalesced
+			if (tail != null) {
+				tail.flip();
+				tail = null;
+			}
+			chunks.add(ByteBuffer.wrap(Arrays.copyOfRange(frame, offset, offset + length)));
+		}
+		else {
+			if (tail == null || tail.remaining() < length) {
+				if (tail != null) {
+					tail.flip();
+				}
+				tail = newChunk();
+				chunks.add(tail);
+			}
+			tail.put(frame, offset, length);
+		}
+		queuedBytes += length;
+		return wasEmpty;
+	}
+
+	/**
+	 * Writes as much as possible on a non blocking channel.
+	 * 
+	 * @return <code>true</code> if the queue has been drained
+	 * @throws IOException if the channel is broken
+	 */
+	synchronized boolean writeTo(final GatheringByteChannel channel) throws IOException {
+		if (tail != null) {
+			tail.flip();
+			tail = null;
+		}
+		while (!chunks.isEmpty()) {
+			int n = 0;
+			for (final ByteBuffer chunk : chunks) {
+				gathering[n++] = chunk;
+				if (n == MAX_GATHERING)
+					break;
+			}
+			final long written = channel.write(gathering, 0, n);
+			queuedBytes -= written;
+			while (!chunks.isEmpty() && !chunks.peek().hasRemaining()) {
+				recycle(chunks.poll());
+			}
+			if (n > 0 && gathering[n - 1].hasRemaining()) {// socket buffer full
+				break;
+			}
+		}
+		for (int i = 0; i < MAX_GATHERING; i++) {
+			gathering[i] = null;
+		}
+		return chunks.isEmpty();
+	}
+
+	/**
+	 * @return <code>true</code> if there is nothing to write
+	 */
+	synchronized boolean isEmpty() {
+		return queuedBytes == 0;
+	}
+
+	/**
+	 * Drops the queued frames.
+	 */
+	synchronized void close() {
+		closed = true;
+		chunks.clear();
+		spareChunks.clear();
+		tail = null;
+		queuedBytes = 0;
+	}
+
+	private ByteBuffer newChunk() {
+		final ByteBuffer chunk = spareChunks.poll();
+		return chunk != null ? chunk : ByteBuffer.allocateDirect(CHUNK_SIZE);
+	}
+
+	private void recycle(final ByteBuffer chunk) {
+		if (chunk.isDirect() && spareChunks.size() < MAX_SPARE_CHUNKS) {
+			chunk.clear();
+			spareChunks.add(chunk);
+		}
+	}
+
+}
@@ -40,6 +40,7 @@ package madkit.kernel;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
 import madkit.simulation.SimulationException;
 
@@ -91,6 +92,15 @@ abstract class Overlooker <A extends AbstractAgent>
 		return overlookedRole;
 	}
 
+	/**
+	 * @return the pool of the kernel for data parallel jobs, or the common
+	 *         pool if this overlooker has not been added yet
+	 */
+	final ForkJoinPool parallelPool() {
+		final Role r = overlookedRole;
+		return r == null ? ForkJoinPool.commonPool() : r.getMyGroup().getCommunityObject().getMyKernel().getParallelPool();
+	}
+
 
 	//	@SuppressWarnings("unchecked")
 	//	final public A getAgentNb(final int nb)
@@ -212,6 +222,9 @@ abstract class Overlooker <A extends AbstractAgent>
 
 	/** 
 	 * Returns a snapshot at moment t of the agents handling the group/role couple
+	 * The returned list does not change when agents join or leave afterwards,
+	 * and it has a fixed size: it can be reordered, e.g. shuffled, but not added to or removed from.
+	 * 
 	 * @return a list view (a snapshot at moment t) of the agents that handle the group/role couple (in proper sequence)
 	 * @since MaDKit 3.0
 	 */
@@ -0,0 +1,285 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The replies a kernel is waiting for on behalf of agents which have used the
+ * asynchronous send methods such as
+ * {@link AbstractAgent#sendMessageAsync(AgentAddress, Message, Integer)}.
+ * <p>
+ * Pending requests are indexed by {@link ConversationID}, so that a reply is
+ * given to the future of its request when it is delivered, instead of being
+ * put in the mailbox of the requester. Time outs are all handled by a single
+ * timer thread per kernel, which is only started when a time out is first
+ * requested.
+ * 
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+final class PendingReplies {
+
+	private final ConcurrentHashMap<ConversationID, Pending<?>>	table	= new ConcurrentHashMap<>();
+	private final String														timerName;
+	private volatile ScheduledThreadPoolExecutor						timer;
+
+	PendingReplies(final KernelAddress kernelAddress) {
+		timerName = "MK_TIMER-" + kernelAddress;
+	}
+
+	/**
+	 * Registers a request for which one reply is expected. This should be done
+	 * before sending the request, as the reply could be delivered before the
+	 * send returns.
+	 * 
+	 * @param requester
+	 *           the agent to which the reply will be sent
+	 * @param request
+	 *           the message which is about to be sent
+	 * @param timeOutMilliSeconds
+	 *           after which the future is completed with <code>null</code>.
+	 *           If <code>null</code>, the reply is waited for indefinitely.
+	 * @return the future of the reply
+	 */
+	CompletableFuture<Message> expectReply(final AbstractAgent requester, final Message request, final Integer timeOutMilliSeconds) {
+		return register(new SingleReply(requester, request), timeOutMilliSeconds);
+	}
+
+	/**
+	 * Registers a request for which several replies are expected.
+	 * 
+	 * @param size
+	 *           the number of replies which completes the future
+	 * @param timeOutMilliSeconds
+	 *           after which the future is completed with the replies received
+	 *           so far, or <code>null</code> if there is none.
+	 * @return the future of the replies
+	 * @see #expectReply(AbstractAgent, Message, Integer)
+	 */
+	CompletableFuture<List<Message>> expectReplies(final AbstractAgent requester, final Message request, final int size,
+			final Integer timeOutMilliSeconds) {
+		return register(new Replies(requester, request, size), timeOutMilliSeconds);
+	}
+
+	private <T> CompletableFuture<T> register(final Pending<T> pending, final Integer timeOutMilliSeconds) {
+		final ConversationID id = pending.request.getConversationID();
+		table.put(id, pending);
+		if (timeOutMilliSeconds != null) {
+			pending.timeOut = getTimer().schedule(pending::expire, timeOutMilliSeconds, TimeUnit.MILLISECONDS);
+		}
+		pending.future.whenComplete((r, e) -> {
+			table.remove(id, pending);
+			final ScheduledFuture<?> timeOut = pending.timeOut;
+			if (timeOut != null) {
+				timeOut.cancel(false);
+			}
+		});
+		return pending.future;
+	}
+
+	/**
+	 * Lowers the number of replies expected by a request, e.g. when some of
+	 * its receivers refused it.
+	 * 
+	 * @param missing
+	 *           the number of replies which will never come
+	 */
+	void expectFewer(final Message request, final int missing) {
+		final Pending<?> pending = table.get(request.getConversationID());
+		if (pending instanceof Replies) {
+			((Replies) pending).expectFewer(missing);
+		}
+	}
+
+	/**
+	 * Gives a message to the request it replies to, if any.
+	 * 
+	 * @param target
+	 *           the agent to which the message is delivered
+	 * @param m
+	 *           the delivered message
+	 * @return <code>true</code> if the message has been consumed as a reply,
+	 *         <code>false</code> if it should be put in the mailbox of the
+	 *         target
+	 */
+	boolean offer(final AbstractAgent target, final Message m) {
+		if (table.isEmpty()) {
+			return false;
+		}
+		final Pending<?> pending = table.get(m.getConversationID());
+		return pending != null && pending.requester == target && pending.request != m && pending.add(m);
+	}
+
+	/**
+	 * Completes the pending requests of an agent which is terminating, as if
+	 * they had timed out.
+	 */
+	void cancel(final AbstractAgent requester) {
+		if (table.isEmpty()) {
+			return;
+		}
+		for (final Pending<?> pending : table.values()) {
+			if (pending.requester == requester) {
+				pending.expire();
+			}
+		}
+	}
+
+	void shutdown() {
+		if (timer != null) {
+			timer.shutdownNow();
+		}
+		for (final Pending<?> pending : table.values()) {
+			pending.expire();
+		}
+	}
+
+	private ScheduledThreadPoolExecutor getTimer() {
+		ScheduledThreadPoolExecutor t = timer;
+		if (t == null) {
+			synchronized (this) {
+				t = timer;
+				if (t == null) {
+					timer = t = new ScheduledThreadPoolExecutor(1, r -> {
+						final Thread thread = new Thread(r, timerName);
+						thread.setDaemon(true);
+						return thread;
+					});
+					t.setRemoveOnCancelPolicy(true);
+				}
+			}
+		}
+		return t;
+	}
+
+	private abstract static class Pending<T> {
+
+		final AbstractAgent					requester;
+		final Message							request;
+		final CompletableFuture<T>			future	= new CompletableFuture<>();
+		volatile ScheduledFuture<?>		timeOut;
+
+		Pending(final AbstractAgent requester, final Message request) {
+			this.requester = requester;
+			this.request = request;
+		}
+
+		/**
+		 * @return <code>false</code> if the reply is not expected anymore
+		 */
+		abstract boolean add(Message reply);
+
+		abstract void expire();
+	}
+
+	private static final class SingleReply extends Pending<Message> {
+
+		SingleReply(final AbstractAgent requester, final Message request) {
+			super(requester, request);
+		}
+
+		@Override
+		boolean add(final Message reply) {
+			return future.complete(reply);
+		}
+
+		@Override
+		void expire() {
+			future.complete(null);
+		}
+	}
+
+	private static final class Replies extends Pending<List<Message>> {
+
+		private int							size;
+		private final List<Message>	replies;
+		private boolean					closed;
+
+		Replies(final AbstractAgent requester, final Message request, final int size) {
+			super(requester, request);
+			this.size = size;
+			replies = new ArrayList<>(size);
+		}
+
+		@Override
+		boolean add(final Message reply) {
+			synchronized (this) {
+				if (closed || future.isDone()) {
+					return false;
+				}
+				replies.add(reply);
+				if (replies.size() < size) {
+					return true;
+				}
+				closed = true;
+			}
+			future.complete(replies);
+			return true;
+		}
+
+		void expectFewer(final int missing) {
+			synchronized (this) {
+				size -= missing;
+				if (closed || replies.size() < size) {
+					return;
+				}
+				closed = true;
+			}
+			future.complete(replies.isEmpty() ? null : replies);
+		}
+
+		@Override
+		void expire() {
+			synchronized (this) {
+				if (closed) {
+					return;
+				}
+				closed = true;
+			}
+			future.complete(replies.isEmpty() ? null : replies);
+		}
+	}
+}
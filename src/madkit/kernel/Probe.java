@@ -37,6 +37,7 @@ knowledge of the CeCILL-C license and that you accept its terms.
 package madkit.kernel;
 
 import java.lang.reflect.Field;
+import java.util.concurrent.ForkJoinPool;
 
 import madkit.simulation.probe.PropertyProbe;
 
@@ -67,6 +68,18 @@ public class Probe<A extends AbstractAgent> extends Overlooker<A>{
 		super(communityName, groupName, roleName);
 	}
 
+	/**
+	 * Returns the pool which should be used by the probe to process the agents
+	 * in parallel: It belongs to the kernel, so that such jobs do not compete
+	 * with the common pool of the JVM, and is shut down with it.
+	 * 
+	 * @return the pool of the kernel for data parallel jobs
+	 * @since MaDKit 5.2
+	 */
+	protected final ForkJoinPool getParallelPool() {
+		return parallelPool();
+	}
+
 	/**
 	 * Returns the agent's field named <code>fieldName</code>.
 	 * This also works on <code>private</code> fields, even
@@ -0,0 +1,181 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An agent which is driven by its messages: it has no thread of its own and 
+ * its {@link #onMessage(Message)} method is called, for each received message, 
+ * by a pool of threads which is shared by all the reactive agents of the kernel.
+ * So, millions of reactive agents could share a few cores.
+ * <p>
+ * The messages of an agent are handled one at a time and in their reception
+ * order: {@link #onMessage(Message)} is never called concurrently for the same agent.
+ * Once it has handled a certain number of messages, see {@link #ReactiveAgent(int)}, 
+ * an agent gives the hand to the others even if it has more messages to handle.
+ * <p>
+ * The messages received during {@link #activate()} are handled once it has returned. 
+ * If {@link #onMessage(Message)} throws an exception, the agent is killed.
+ * Here is a typical example:
+ * 
+ * <pre>
+ * public class Echo extends ReactiveAgent {
+ * 
+ * 	<tt>@Override</tt>
+ * 	protected void activate() {
+ * 		createGroupIfAbsent("a community", "a group");
+ * 		requestRole("a community", "a group", "echo");
+ * 	}
+ * 
+ * 	<tt>@Override</tt>
+ * 	protected void onMessage(Message m) {
+ * 		sendReply(m, new Message());
+ * 	}
+ * }
+ * </pre>
+ * 
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ */
+public abstract class ReactiveAgent extends AbstractAgent {
+
+	private static final int	IDLE			= 0;
+	private static final int	SCHEDULED	= 1;
+
+	/**
+	 * the default number of messages handled in a row
+	 */
+	public static final int		DEFAULT_THROUGHPUT	= 64;
+
+	private final int				throughput;
+	/**
+	 * {@link #SCHEDULED} until the agent is activated, 
+	 * so that no message is handled before
+	 */
+	private final AtomicInteger	status	= new AtomicInteger(SCHEDULED);
+	private ForkJoinPool				dispatcher;
+	private final Runnable			handling	= new Runnable() {
+		@Override
+		public void run() {
+			handleMessages();
+		}
+	};
+
+	/**
+	 * Builds a reactive agent which handles at most
+	 * {@value #DEFAULT_THROUGHPUT} messages in a row
+	 */
+	public ReactiveAgent() {
+		this(DEFAULT_THROUGHPUT);
+	}
+
+	/**
+	 * @param throughput the maximum number of messages which are handled in a row
+	 * before giving the hand to the other agents
+	 */
+	public ReactiveAgent(final int throughput) {
+		if (throughput < 1)
+			throw new IllegalArgumentException("throughput must be positive: " + throughput);
+		this.throughput = throughput;
+	}
+
+	/**
+	 * Handles a received message. This is called by the threads of the kernel 
+	 * dispatcher, one message at a time.
+	 * 
+	 * @param m the message to handle
+	 */
+	protected abstract void onMessage(Message m);
+
+	@Override
+	boolean deliverMessage(final Message m) {
+		if (super.deliverMessage(m)) {
+			schedule();
+			return true;
+		}
+		return false;
+	}
+
+	@Override
+	void activated() {
+		dispatcher = getMadkitKernel().getDispatcher();
+		status.set(IDLE);
+		if (! isMessageBoxEmpty()) {
+			schedule();
+		}
+	}
+
+	@Override
+	boolean renew() {
+		if (super.renew()) {
+			status.set(SCHEDULED);
+			return true;
+		}
+		return false;
+	}
+
+	private void schedule() {
+		if (status.get() == IDLE && status.compareAndSet(IDLE, SCHEDULED)) {
+			dispatcher.execute(handling);
+		}
+	}
+
+	private void handleMessages() {
+		try {
+			for (int i = 0; i < throughput && isAlive(); i++) {
+				final Message m = nextMessage();
+				if (m == null)
+					break;
+				onMessage(m);
+			}
+		} catch (Throwable e) {
+			if (isAlive()) {
+				getLogger().severeLog("-*-onMessage BUG*-*", e);
+				killAgent(this);
+			}
+			return;// the agent is no longer scheduled
+		}
+		status.set(IDLE);
+		if (isAlive() && ! isMessageBoxEmpty()) {
+			schedule();
+		}
+	}
+
+}
@@ -42,11 +42,12 @@ import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
 
 import java.io.Serializable;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Logger;
 
@@ -64,10 +65,29 @@ class Role implements Serializable{//TODO test with arraylist
 
 	private static final long serialVersionUID = 4447153943733812916L;
 
-	protected final transient List<AbstractAgent> players;//TODO test copyonarraylist and linkedhashset
+	/**
+	 * the local players indexed by their hash code
+	 */
+	protected final transient MemberIndex<AbstractAgent> players;
 	private transient List<AbstractAgent> tmpReferenceableAgents;
-	protected transient Set<AgentAddress> agentAddresses;
+	/**
+	 * the addresses of the local players, lazily built
+	 */
+	protected transient MemberIndex<AgentAddress> agentAddresses;
+	/**
+	 * the addresses of the agents which are not local, 
+	 * mapped to themselves so that the reference address can be resolved
+	 */
+	private transient Map<AgentAddress, AgentAddress> distantAddresses;
 	protected transient boolean modified=true;
+	/**
+	 * all the addresses of this role, local and distant, shared until the role is modified
+	 */
+	protected transient volatile List<AgentAddress> addressesView;
+	/**
+	 * set when this role has been removed from its group
+	 */
+	private transient volatile boolean removed;
 	private final transient Set<Overlooker<? extends AbstractAgent>> overlookers;
 	protected final transient Group myGroup;
 	final transient private Logger logger;
@@ -77,6 +97,10 @@ class Role implements Serializable{//TODO test with arraylist
 	private final String communityName;
 	private final String groupName;
 	private final String roleName;
+	/**
+	 * the empty shell of this role kept by the addresses invalidated when agents leave it
+	 */
+	private final transient Role location;
 
 
 	/**
@@ -88,7 +112,7 @@ class Role implements Serializable{//TODO test with arraylist
 
 
 	Role(final Group groupObject,final String roleName){
-		players = new ArrayList<>();
+		players = new MemberIndex<>();
 		tmpReferenceableAgents = new ArrayList<>();//should not be necessary but ...
 		communityName = groupObject.getCommunityObject().getName();
 		groupName = groupObject.getName();
@@ -103,6 +127,7 @@ class Role implements Serializable{//TODO test with arraylist
 		}
 		overlookers = new LinkedHashSet<>();
 		initializeOverlookers();
+		location = new Role(communityName, groupName, roleName);
 	}
 
 	//	@Override
@@ -137,14 +162,46 @@ class Role implements Serializable{//TODO test with arraylist
 		myGroup = null;
 		logger = null;
 		kernelAddress = null;
+		location = null;
+	}
+
+	/**
+	 * Builds the empty shell of a distant role, as it would have been 
+	 * deserialized: only the CGR location is set. 
+	 * 
+	 * @param community
+	 * @param group
+	 * @param role
+	 */
+	Role(final String community, final String group, final String role){
+		communityName = community;
+		groupName = group;
+		roleName = role;
+		players = null;
+		overlookers = null;
+		myGroup = null;
+		logger = null;
+		kernelAddress = null;
+		location = this;
+	}
+
+	/**
+	 * Returns the immutable CGR location of this role, which is shared by all
+	 * the addresses invalidated when agents leave it, so that invalidating an
+	 * address allocates nothing.
+	 * 
+	 * @return the empty shell of this role, or this role if it is a shell
+	 */
+	final Role getLocation() {
+		return location != null ? location : this;
 	}
 
 
 	/**
-	 * @return the players
+	 * @return the players, in the order they have joined the role
 	 */
 	List<AbstractAgent> getPlayers() {
-		return players;
+		return getAgentsList();
 	}
 
 
@@ -202,23 +259,26 @@ class Role implements Serializable{//TODO test with arraylist
 	 * @param agent the agent
 	 * @return 
 	 * 
-	 * @return true, if the agent has been added.
+	 * @return true, if the agent has been added. If not, it
+	 * is already playing this role or the role has been removed,
+	 * which can be checked using {@link #isRemoved()}.
 	 */
 	boolean addMember(final AbstractAgent requester) {
 		synchronized (players) {
-			if (players.contains(requester)) {//TODO looks like I should use linkedhashset
+			if (removed || ! players.add(requester.hashCode(), requester)) {
 				return false;
 			}
-			players.add(requester);
+			requester.memberships.add(this);
 			if (logger != null) {
 				logger.finest(requester.getName() + " is now playing " + getCGRString(communityName, groupName, roleName));
 			}
 //			System.err.println(requester.getName() + " is now playing " + getCGRString(communityName, groupName, roleName));
 //			System.err.println(this+" current players---\n"+players+"\n\n");
 			if (agentAddresses != null) {
-				agentAddresses.add(new AgentAddress(requester, this, kernelAddress));
+				agentAddresses.add(requester.hashCode(), new AgentAddress(requester, this, kernelAddress));
 			}
 			modified = true;
+			addressesView = null;
 		}
 		// needs to be synchronized so that adding occurs prior to getAgentList
 		//	So	addToOverlookers(requester); has to be called in group 
@@ -226,19 +286,34 @@ class Role implements Serializable{//TODO test with arraylist
 		return true;
 	}
 
-	final void addMembers(final List<AbstractAgent> bucket, final boolean roleJustCreated){
+	/**
+	 * @return <code>false</code> if nothing has been done because the role has been removed
+	 */
+	final boolean addMembers(final List<AbstractAgent> bucket, final boolean roleJustCreated){
 //		System.err.println("add members "+bucket.size());
 		synchronized (players) {
-			players.addAll(bucket);//is optimized wrt size
+			if (removed) {
+				return false;
+			}
+			players.ensureCapacity(bucket.size());
 			if (agentAddresses != null) {
-				final Set<AgentAddress> addresses = new HashSet<>(bucket.size()+agentAddresses.size(),0.9f);//TODO try load factor
+				agentAddresses.ensureCapacity(bucket.size());
 				for (final AbstractAgent a : bucket) {
-					addresses.add(new AgentAddress(a, this, kernelAddress));
+					if (players.add(a.hashCode(), a)) {
+						a.memberships.add(this);
+						agentAddresses.add(a.hashCode(), new AgentAddress(a, this, kernelAddress));
+					}
+				}
+			}
+			else {
+				for (final AbstractAgent a : bucket) {
+					if (players.add(a.hashCode(), a)) {
+						a.memberships.add(this);
+					}
 				}
-				addresses.addAll(agentAddresses);//TODO test vs assignment : this because knowing the size 
-				agentAddresses = addresses;
 			}
 			modified = true;
+			addressesView = null;
 		}
 		if (roleJustCreated) {
 			initializeOverlookers();
@@ -246,55 +321,82 @@ class Role implements Serializable{//TODO test with arraylist
 		else{
 			addToOverlookers(bucket);
 		}
+		return true;
 	}
 
 	/**
 	 * @param content
+	 * @return <code>false</code> if nothing has been done because the role has been removed
 	 */
-	final void addDistantMember(final AgentAddress content) {
+	final boolean addDistantMember(final AgentAddress content) {
 		synchronized (players) {
+			if (removed) {
+				return false;
+			}
 			content.setRoleObject(this);//required for equals to work
-			buildAndGetAddresses().add(content);
+			addDistantAddress(content);
+			return true;
+		}
+	}
+
+	/**
+	 * Should be called while holding the lock on players
+	 * 
+	 * @param aa an address which has no local agent
+	 */
+	private void addDistantAddress(final AgentAddress aa) {
+		if (aa.isFrom(kernelAddress) && players.containsKey(aa.hashCode())) {
+			return;// already there as a local player
+		}
+		if (distantAddresses == null) {
+			distantAddresses = new LinkedHashMap<>();
+		}
+		if (distantAddresses.putIfAbsent(aa, aa) == null) {
+			addressesView = null;
 		}
 	}
 
 
 	ReturnCode removeMember(final AbstractAgent requester){
+		final boolean emptied;
 		synchronized (players) {
-			if (!players.remove(requester)) {
+			if (players.remove(requester.hashCode()) == null) {
 				if (myGroup.isIn(requester)) {
 					return ROLE_NOT_HANDLED;
 				}
 				return ReturnCode.NOT_IN_GROUP;
 			}
+			requester.memberships.remove(this);
 			if (agentAddresses != null) {
-				removeAgentAddressOf(requester, agentAddresses).setRoleObject(null);
+				agentAddresses.remove(requester.hashCode()).setRoleObject(null);
 			}
 			if (logger != null) {
 				logger.finest(requester.getName() + " has leaved role " + getCGRString(communityName, groupName, roleName) + "\n");
 			}
 			modified = true;
+			addressesView = null;
+			emptied = markRemovedIfEmpty();
 		}
 		removeFromOverlookers(requester);//TODO put that in the synchronized ?
-		checkEmptyness();
+		if (emptied) {
+			cleanAndRemove();
+		}
 		return SUCCESS;
 	}
 
 
 	final void removeMembers(final List<AbstractAgent> bucket){
 		synchronized (players) {
-			players.removeAll(bucket);//is optimized
-			if(agentAddresses != null){
-				for (Iterator<AgentAddress> i = agentAddresses.iterator();i.hasNext();) {
-					AgentAddress aa = i.next();
-					AbstractAgent agent = aa.getAgent();
-					if(agent != null && bucket.remove(agent)){
-						i.remove();
-						aa.setRoleObject(null);//cost is high because of string creation...
+			for (final AbstractAgent a : bucket) {
+				if (players.remove(a.hashCode()) != null) {
+					a.memberships.remove(this);
+					if (agentAddresses != null) {
+						agentAddresses.remove(a.hashCode()).setRoleObject(null);
 					}
 				}
 			}
 			modified = true;
+			addressesView = null;
 		}
 		removeFromOverlookers(bucket);
 	}
@@ -316,32 +418,58 @@ class Role implements Serializable{//TODO test with arraylist
 	 * @param content
 	 */
 	void removeDistantMember(final AgentAddress content) {
-		if (agentAddresses != null) {
+		if (distantAddresses != null) {
+			final boolean emptied;
 			synchronized (players) {
 				removeAgentAddress(content);
-				checkEmptyness();
+				emptied = markRemovedIfEmpty();
+			}
+			if (emptied) {
+				cleanAndRemove();
 			}
 		}
 	}
 
 
-	final Set<AgentAddress> buildAndGetAddresses(){//TODO lambda
-		if(agentAddresses == null){
-			agentAddresses = new HashSet<>(players.size(),0.8f);
-			synchronized (players) {
-				for (final AbstractAgent a : players) {
-					agentAddresses.add(new AgentAddress(a, this, kernelAddress));
-				}
+	/**
+	 * @return a new set containing all the addresses of this role, local and distant
+	 */
+	final Set<AgentAddress> buildAndGetAddresses(){
+		synchronized (players) {
+			final MemberIndex<AgentAddress> local = buildLocalAddresses();
+			final Set<AgentAddress> addresses = new HashSet<>(local.toList());
+			if (distantAddresses != null) {
+				addresses.addAll(distantAddresses.keySet());
+			}
+			return addresses;
+		}
+	}
+
+	/**
+	 * Should be called while holding the lock on players
+	 * 
+	 * @return the addresses of the local players
+	 */
+	private MemberIndex<AgentAddress> buildLocalAddresses() {
+		if (agentAddresses == null) {
+			agentAddresses = new MemberIndex<>(players.size());
+			for (final AbstractAgent a : players.toList()) {
+				agentAddresses.add(a.hashCode(), new AgentAddress(a, this, kernelAddress));
 			}
 		}
 		return agentAddresses;
 	}
 	
 	final private void removeAgentAddress(AgentAddress aa){
-		if (agentAddresses.remove(aa)) {
+		final AgentAddress removed = distantAddresses.remove(aa);
+		if (removed != null) {
+			addressesView = null;
 			if (logger != null) {
 				logger.finest(aa + " has leaved role " + getCGRString(communityName, groupName, roleName) + "\n");
 			}
+			if (removed != aa) {
+				removed.setRoleObject(null);
+			}
 			aa.setRoleObject(null);
 		}
 	}
@@ -351,41 +479,68 @@ class Role implements Serializable{//TODO test with arraylist
 	 * @param kernelAddress2
 	 */
 	void removeAgentsFromDistantKernel(final KernelAddress kernelAddress2) {
-		if (agentAddresses != null){
+		if (distantAddresses != null){
 			if(logger != null)
 				logger.finest("Removing all agents from distant kernel "+kernelAddress2+" in"+this);
+			final boolean emptied;
 			synchronized (players) {
-				for (Iterator<AgentAddress> iterator = buildAndGetAddresses().iterator(); iterator.hasNext();) {//TODO return if no agent addresses
+				for (Iterator<AgentAddress> iterator = distantAddresses.keySet().iterator(); iterator.hasNext();) {
 					AgentAddress aa = iterator.next();
 					if (aa.getKernelAddress().equals(kernelAddress2)){
 						iterator.remove();
 						aa.setRoleObject(null);
+						addressesView = null;
 					}
 				}
-				checkEmptyness();
+				emptied = markRemovedIfEmpty();
+			}
+			if (emptied) {
+				cleanAndRemove();
 			}
 		}
 	}
 
-	void checkEmptyness(){
-		if( (players == null || players.isEmpty()) && (agentAddresses == null || agentAddresses.isEmpty()) ){
-			cleanAndRemove();
+	/**
+	 * Should be called while holding the lock on players, so that no agent
+	 * can take a role which is being removed. {@link #cleanAndRemove()}
+	 * has then to be called once the lock is released, 
+	 * because the group has to be locked to remove the role from it.
+	 * 
+	 * @return <code>true</code> if the role is now empty and has been marked as removed
+	 */
+	private boolean markRemovedIfEmpty(){
+		if(! removed && (players == null || players.isEmpty()) && (distantAddresses == null || distantAddresses.isEmpty()) ){
+			removed = true;
+			return true;
 		}
+		return false;
 	}
 
 
 	/**
-	 * 
+	 * Removes this role from its group: it should have been marked as removed
 	 */
 	private void cleanAndRemove() {
 		for (final Overlooker<? extends AbstractAgent> o : overlookers) {
 			o.setOverlookedRole(null);
 		}
-		myGroup.removeRole(roleName);
+		myGroup.removeRole(this);
 //		overlookers = null;
-		tmpReferenceableAgents = null;
-//		players = null;
-		agentAddresses = null;
+		synchronized (players) {
+			tmpReferenceableAgents = null;
+//			players = null;
+			agentAddresses = null;
+			distantAddresses = null;
+			addressesView = null;
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if this role has been removed from its group,
+	 * so that it will never be played again
+	 */
+	final boolean isRemoved() {
+		return removed;
 	}
 
 
@@ -402,9 +557,24 @@ class Role implements Serializable{//TODO test with arraylist
 
 
 	final void destroy() {
-		if (agentAddresses != null) {
-			for (AgentAddress aa : agentAddresses) {
-				aa.setRoleObject(null);//TODO optimize
+		synchronized (players) {
+			if (removed) {
+				return;
+			}
+			removed = true;
+			for (final AbstractAgent a : players.toList()) {
+				a.memberships.remove(this);
+			}
+			players.clear();
+			if (agentAddresses != null) {
+				for (AgentAddress aa : agentAddresses.toList()) {
+					aa.setRoleObject(null);//TODO optimize
+				}
+			}
+			if (distantAddresses != null) {
+				for (AgentAddress aa : distantAddresses.keySet()) {
+					aa.setRoleObject(null);
+				}
 			}
 		}
 		cleanAndRemove();
@@ -412,30 +582,57 @@ class Role implements Serializable{//TODO test with arraylist
 
 
 	final List<AgentAddress> getAgentAddressesCopy(){
+		return getAgentAddressesCopy(null);
+	}
+
+	/**
+	 * @param excluded an agent whose address should not be part of the result, 
+	 * may be <code>null</code>
+	 * @return a new list containing the addresses of this role
+	 */
+	final List<AgentAddress> getAgentAddressesCopy(final AbstractAgent excluded){
 		synchronized (players) {
-			return new ArrayList<>(buildAndGetAddresses());
+			final MemberIndex<AgentAddress> local = buildLocalAddresses();
+			final List<AgentAddress> l = new ArrayList<>(local.size() + (distantAddresses == null ? 0 : distantAddresses.size()));
+			if (excluded == null || local.get(excluded.hashCode()) == null) {
+				l.addAll(local.toList());
+			}
+			else{
+				final AgentAddress toExclude = local.get(excluded.hashCode());
+				for (final AgentAddress aa : local.toList()) {
+					if (aa != toExclude)
+						l.add(aa);
+				}
+			}
+			if (distantAddresses != null) {
+				l.addAll(distantAddresses.keySet());
+			}
+			return l;
 		}
 	}
 
-
 	/**
-	 * @param requester
+	 * @return all the addresses of this role, local and distant. The same
+	 * list is returned until the role is modified, so it must not be changed.
 	 */
-	static AgentAddress removeAgentAddressOf(final AbstractAgent requester,final Collection<AgentAddress> agentAddresses2) {
-		//		if(requester == null)
-		//			throw new AssertionError("Wrong use ^^");
-		for (final Iterator<AgentAddress> iterator = agentAddresses2.iterator();iterator.hasNext();){
-			try {
-				final AgentAddress aa = iterator.next();
-				if (aa.getAgent() == requester) {//TODO test speed with hashcode test
-					iterator.remove();
-					return aa;		
+	final List<AgentAddress> getAddressesView(){
+		List<AgentAddress> view = addressesView;
+		if (view == null) {
+			synchronized (players) {
+				view = addressesView;
+				if (view == null) {
+					view = buildLocalAddresses().snapshot();
+					if (distantAddresses != null && ! distantAddresses.isEmpty()) {
+						final List<AgentAddress> l = new ArrayList<>(view.size() + distantAddresses.size());
+						l.addAll(view);
+						l.addAll(distantAddresses.keySet());
+						view = l;
+					}
+					addressesView = view;
 				}
-			} catch (NullPointerException e) {
-				e.printStackTrace();
 			}
 		}
-		return null;
+		return view;
 	}
 
 	//	boolean empty() {
@@ -468,7 +665,7 @@ class Role implements Serializable{//TODO test with arraylist
 			synchronized (players) {
 				modified = false;//TODO do a bench : new seems a little bit better
 				//long startTime = System.nanoTime();
-				tmpReferenceableAgents = new ArrayList<>(players);
+				tmpReferenceableAgents = players.snapshot();
 				//tmpReferenceableAgents = (ArrayList<AbstractAgent>)referenceableAgents.clone();
 				//long estimatedTime = System.nanoTime() - startTime;	   System.err.println(estimatedTime);
 			}
@@ -509,13 +706,16 @@ class Role implements Serializable{//TODO test with arraylist
 	/**
 	 * importation when connecting to other kernel
 	 * @param list
+	 * @return <code>false</code> if nothing has been done because the role has been removed
 	 */
-	void importDistantOrg(Set<AgentAddress> list) {
+	boolean importDistantOrg(Set<AgentAddress> list) {
 		synchronized (players) {
-			buildAndGetAddresses();
+			if (removed) {
+				return false;
+			}
 			for (final AgentAddress aa : list) {
 				aa.setRoleObject(this);
-				agentAddresses.add(aa);
+				addDistantAddress(aa);
 //				if (agentAddresses.add(aa)) {
 //				}
 //				else{
@@ -526,20 +726,13 @@ class Role implements Serializable{//TODO test with arraylist
 //				}
 			}
 		}
-
-
+		return true;
 	}
 
 	AgentAddress getAgentAddressOf(final AbstractAgent a){
-		final int hash = a.hashCode();
-//		final KernelAddress ka = a.getKernelAddress();
 		synchronized (players) {
-			for (final AgentAddress aa : buildAndGetAddresses()) {//TODO when offline second part is useless
-					if (aa.hashCode() == hash && aa.getAgent() != null)// && ka.equals(aa.getKernelAddress()))
-						return aa;
-			}
+			return buildLocalAddresses().get(a.hashCode());
 		}
-		return null;
 	}
 
 
@@ -549,19 +742,17 @@ class Role implements Serializable{//TODO test with arraylist
 	 */
 	AbstractAgent getAbstractAgentWithAddress(AgentAddress aa) {
 		if (players != null) {
-			final int hash = aa.hashCode();
 			synchronized (players) {
-				for (final AbstractAgent agent : players) {
-					if (agent.hashCode() == hash)
-						return agent;
-				}
+				return players.get(aa.hashCode());
 			}
 		}
 		return null;
 	}
 
 	final boolean contains(AbstractAgent agent) {
-		return players.contains(agent);
+		synchronized (players) {
+			return players.get(agent.hashCode()) == agent;
+		}
 	}
 
 
@@ -572,12 +763,15 @@ class Role implements Serializable{//TODO test with arraylist
 	 * @return <code>null</code> if it is not contained in this role anymore
 	 */
 	final AgentAddress resolveAgentAddress(AgentAddress anAA) {
-		for (final AgentAddress aa : buildAndGetAddresses()) {
-			if(aa.equals(anAA)){
-				return aa;
+		synchronized (players) {
+			if (anAA.isFrom(kernelAddress)) {
+				final AgentAddress aa = buildLocalAddresses().get(anAA.hashCode());
+				if (aa != null && aa.equals(anAA)) {
+					return aa;
+				}
 			}
+			return distantAddresses == null ? null : distantAddresses.get(anAA);
 		}
-		return null;
 	}
 
 
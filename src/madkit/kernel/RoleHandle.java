@@ -0,0 +1,225 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+import madkit.i18n.ErrorMessages;
+import madkit.i18n.I18nUtilities;
+import madkit.kernel.AbstractAgent.ReturnCode;
+
+/**
+ * A CGR location (community;group;role) resolved once for an agent which
+ * repeatedly sends messages to the same role.
+ * <p>
+ * A handle keeps references to the targeted role, to the addresses of its
+ * players and to the address used by its owner to send, so that sending with a
+ * handle neither looks up the organization nor copies the receivers list.
+ * These references are updated when the players of the role change, and the
+ * handle resolves the location again if the role has been removed from the
+ * organization, so that it can be kept for the whole life of its owner: It is
+ * never invalid, and gives the same results as sending with the CGR names.
+ * <p>
+ * A handle is obtained using
+ * {@link AbstractAgent#getRoleHandle(String, String, String)} and
+ * sends on behalf of the agent which created it.
+ * 
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public final class RoleHandle {
+
+	private final AbstractAgent	owner;
+	private final String				community;
+	private final String				group;
+	private final String				role;
+	private final String				senderRole;
+	private volatile Binding		binding;
+
+	RoleHandle(final AbstractAgent owner, final String community, final String group, final String role, final String senderRole) {
+		this.owner = owner;
+		this.community = Objects.requireNonNull(community, ErrorMessages.C_NULL.toString());
+		this.group = Objects.requireNonNull(group, ErrorMessages.G_NULL.toString());
+		this.role = Objects.requireNonNull(role, ErrorMessages.R_NULL.toString());
+		this.senderRole = senderRole;
+	}
+
+	/**
+	 * @return the community name
+	 */
+	public String getCommunity() {
+		return community;
+	}
+
+	/**
+	 * @return the group name
+	 */
+	public String getGroup() {
+		return group;
+	}
+
+	/**
+	 * @return the role name
+	 */
+	public String getRole() {
+		return role;
+	}
+
+	/**
+	 * @return the role used to send the messages, or <code>null</code> if
+	 *         any role of the owner in the group is used
+	 */
+	public String getSenderRole() {
+		return senderRole;
+	}
+
+	/**
+	 * Sends a message to an agent having the targeted role. This has the same
+	 * effect as
+	 * {@link AbstractAgent#sendMessageWithRole(String, String, String, Message, String)}
+	 * used by the owner of this handle with its names.
+	 * 
+	 * @param message
+	 *           the message to send
+	 * @return the same codes as
+	 *         {@link AbstractAgent#sendMessageWithRole(String, String, String, Message, String)}
+	 */
+	public ReturnCode sendMessage(final Message message) {
+		return owner.getKernel().sendMessage(owner, this, message);
+	}
+
+	/**
+	 * Broadcasts a message to every agent having the targeted role, but not to
+	 * the owner of this handle. This has the same effect as
+	 * {@link AbstractAgent#broadcastMessageWithRole(String, String, String, Message, String)}
+	 * used by the owner with the names of this handle: The receivers are only
+	 * computed again when the players of the role have changed.
+	 * 
+	 * @param message
+	 *           the message to broadcast
+	 * @return the same codes as
+	 *         {@link AbstractAgent#broadcastMessageWithRole(String, String, String, Message, String)}
+	 */
+	public ReturnCode broadcastMessage(final Message message) {
+		return owner.getKernel().broadcastMessage(owner, this, message);
+	}
+
+	/**
+	 * Returns the current binding of this handle, resolving the role again if
+	 * it has been removed and refreshing the receivers if they have changed.
+	 * 
+	 * @param kernel the kernel of the owner
+	 * @return the binding corresponding to the current players of the role
+	 * @throws CGRNotAvailable if the role does not exist or if the owner cannot
+	 *            send in this group
+	 */
+	final Binding bind(final MadkitKernel kernel) throws CGRNotAvailable {
+		Binding b = binding;
+		Role r = b == null ? null : b.role;
+		if (r == null || r.isRemoved()) {
+			r = kernel.getRole(community, group, role);
+			b = null;
+		}
+		final List<AgentAddress> view = r.getAddressesView();
+		if (b == null || b.view != view || ! b.isSenderValid()) {
+			final List<AgentAddress> receivers = excludeOwner(r, view);
+			b = new Binding(r, view, receivers, receivers.isEmpty() ? null : kernel.getSenderAgentAddress(owner, r, senderRole));
+			if (! (b.sender instanceof CandidateAgentAddress)) {// candidate addresses are not kept
+				binding = b;
+			}
+		}
+		return b;
+	}
+
+	private List<AgentAddress> excludeOwner(final Role r, final List<AgentAddress> view) {
+		final AgentAddress self = r.getAgentAddressOf(owner);
+		if (self == null) {
+			return view;
+		}
+		final List<AgentAddress> others = new ArrayList<>(view.size());
+		for (final AgentAddress aa : view) {
+			if (aa != self)
+				others.add(aa);
+		}
+		return others;
+	}
+
+	@Override
+	public String toString() {
+		return "handle on " + I18nUtilities.getCGRString(community, group, role);
+	}
+
+	/**
+	 * An immutable state of a handle
+	 */
+	static final class Binding {
+
+		final Role						role;
+		final List<AgentAddress>	view;
+		/**
+		 * the addresses of the role without the owner's one: Must not be changed
+		 */
+		final List<AgentAddress>	receivers;
+		final AgentAddress			sender;
+
+		private Binding(final Role role, final List<AgentAddress> view, final List<AgentAddress> receivers, final AgentAddress sender) {
+			this.role = role;
+			this.view = view;
+			this.receivers = receivers;
+			this.sender = sender;
+		}
+
+		private boolean isSenderValid() {
+			return sender == null || sender.getRoleObject() != null;
+		}
+
+		/**
+		 * @return a receiver chosen randomly, or <code>null</code> if the owner
+		 *         is the only player of the role
+		 */
+		final AgentAddress getAnotherPlayer() {
+			if (receivers.isEmpty())
+				return null;
+			return receivers.get((int) (Math.random() * receivers.size()));
+		}
+	}
+
+}
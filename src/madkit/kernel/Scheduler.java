@@ -42,6 +42,7 @@ import java.awt.BorderLayout;
 import java.awt.event.KeyEvent;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
+import java.util.Collections;
 import java.util.LinkedHashSet;
 import java.util.Observable;
 import java.util.Observer;
@@ -71,6 +72,10 @@ import madkit.message.SchedulingMessage;
  * This class defines a generic threaded scheduler agent. It holds a collection
  * of activators. The default state of a scheduler is {@link SimulationState#PAUSED}. The
  * default delay between two steps is 0 ms (max speed).
+ * <p>
+ * By default, a simulation step executes all the activators and the GVT increases by one.
+ * In the discrete-event mode, see {@link #useDiscreteEvents(boolean)}, a step only executes
+ * what is scheduled at the next activation time, and the GVT directly jumps to this time.
  * 
  * @author Fabien Michel
  * @since MaDKit 2.0
@@ -120,26 +125,42 @@ public class Scheduler extends Agent {
 	}
 
 	private SimulationState											simulationState = SimulationState.PAUSED;
+	/**
+	 * not <code>null</code> in the discrete-event mode
+	 */
+	private ActivationQueue											events;
 
 	final private Set<Activator<? extends AbstractAgent>>	activators			= new LinkedHashSet<>();
 
-	private Action														run, step, speedUp, speedDown;
+	/**
+	 * GUI models are only built when a GUI is set up
+	 */
+	private Action														step, speedUp, speedDown;
+	private volatile Action											run;
 
 	// private JLabel timer;
 	private int															delay;
 
+	private static final int										MAX_DELAY			= 400;
+
 	/**
 	 * specify the delay between 2 steps
 	 */
-	@SuppressWarnings("serial")
-	private final DefaultBoundedRangeModel						speedModel			= new DefaultBoundedRangeModel(400, 0, 0, 400) {
+	private volatile DefaultBoundedRangeModel					speedModel;
+
+	private boolean													turboMode;
 
-																										public void setValue(int n) {
-																											super.setValue(n);
-																											delay = 400 - getValue();
-																											SwingUtil.UI_PREFERENCES.putInt(getName()+"speed",getValue());
-																											}
-																									};
+	/**
+	 * set when a message is delivered, so that the turbo mode only
+	 * looks at the mailbox when there is something new
+	 */
+	private volatile boolean										newMail;
+
+	/**
+	 * minimum time between two GVT notifications while running, in nanoseconds
+	 */
+	private static final long										GVT_DISPLAY_PERIOD	= 40_000_000L;
+	private long														lastGVTDisplay;
 
 	/**
 	 * Returns the delay between two simulation steps
@@ -159,7 +180,53 @@ public class Scheduler extends Agent {
 	 *           the pause between two steps in milliseconds, an integer between 0 and 400: O is max speed.
 	 */
 	public void setDelay(final int delay) {
-		speedModel.setValue(speedModel.getMaximum() - delay);
+		final DefaultBoundedRangeModel model = speedModel;
+		if (model != null) {
+			model.setValue(MAX_DELAY - delay);
+		}
+		else {
+			this.delay = delay < 0 ? 0 : (delay > MAX_DELAY ? MAX_DELAY : delay);
+		}
+	}
+
+	@SuppressWarnings("serial")
+	private synchronized DefaultBoundedRangeModel getSpeedModel() {
+		if (speedModel == null) {
+			speedModel = new DefaultBoundedRangeModel(MAX_DELAY - delay, 0, 0, MAX_DELAY) {
+
+				public void setValue(int n) {
+					super.setValue(n);
+					delay = MAX_DELAY - getValue();
+					SwingUtil.UI_PREFERENCES.putInt(getName() + "speed", getValue());
+				}
+			};
+		}
+		return speedModel;
+	}
+
+	/**
+	 * Sets the turbo mode of this scheduler, which is intended for batch
+	 * experiments. In this mode, while the simulation is running,
+	 * {@link #live()} does the simulation steps in a tight loop: the delay is
+	 * ignored and the mailbox is only looked at when a message has been
+	 * received, so that the simulation can still be paused or stopped using
+	 * {@link SchedulingMessage}. Default is <code>false</code>.
+	 * 
+	 * @param on
+	 *           <code>true</code> to use the turbo mode
+	 * @since MaDKit 5.2
+	 */
+	public void setTurboMode(final boolean on) {
+		turboMode = on;
+	}
+
+	/**
+	 * @return <code>true</code> if this scheduler is in the turbo mode
+	 * @see #setTurboMode(boolean)
+	 * @since MaDKit 5.2
+	 */
+	public boolean isTurboModeOn() {
+		return turboMode;
 	}
 
 	private double GVT	= 0;	// simulation global virtual time
@@ -174,14 +241,26 @@ public class Scheduler extends Agent {
 	}
 
 	/**
-	 * Sets the simulation global virtual time.
+	 * Sets the simulation global virtual time. While the simulation is running,
+	 * the GUI displaying the GVT is updated at most 25 times per second.
 	 * 
 	 * @param GVT
 	 *           the actual simulation time
 	 */
 	public void setGVT(final double GVT) {
 		this.GVT = GVT;
-		if (gvtModel != null){
+		if (gvtModel != null) {
+			final long now = System.nanoTime();
+			if (simulationState != SimulationState.RUNNING || now - lastGVTDisplay >= GVT_DISPLAY_PERIOD) {
+				lastGVTDisplay = now;
+				gvtModel.notifyObservers((int) GVT);
+			}
+		}
+	}
+
+	private void displayGVT() {
+		if (gvtModel != null) {
+			lastGVTDisplay = System.nanoTime();
 			gvtModel.notifyObservers((int) GVT);
 		}
 	}
@@ -208,7 +287,6 @@ public class Scheduler extends Agent {
 	 *           the GVT at which the simulation will automatically stop
 	 */
 	public Scheduler(final double endTime) {
-		buildActions();
 		setSimulationDuration(endTime);
 	}
 
@@ -225,9 +303,9 @@ public class Scheduler extends Agent {
 		super.setupFrame(frame);
 		frame.add(getSchedulerToolBar(), BorderLayout.PAGE_START);
 		frame.add(getSchedulerStatusLabel(), BorderLayout.PAGE_END);
-		setGVT(GVT);
+		displayGVT();
 		frame.getJMenuBar().add(getSchedulerMenu(),2);
-		speedModel.setValue(SwingUtil.UI_PREFERENCES.getInt(getName()+"speed",speedModel.getValue()));
+		getSpeedModel().setValue(SwingUtil.UI_PREFERENCES.getInt(getName()+"speed",getSpeedModel().getValue()));
 		setSimulationState(SwingUtil.UI_PREFERENCES.getBoolean(getName()+"autostart", false) ? SimulationState.RUNNING : SimulationState.PAUSED);
 	}
 	
@@ -242,9 +320,9 @@ public class Scheduler extends Agent {
 		super.setupFrame(frame);
 		frame.add(getSchedulerToolBar(), BorderLayout.PAGE_START);
 		frame.add(getSchedulerStatusLabel(), BorderLayout.PAGE_END);
-		setGVT(GVT);
+		displayGVT();
 		frame.getJMenuBar().add(getSchedulerMenu(),2);
-		speedModel.setValue(SwingUtil.UI_PREFERENCES.getInt(getName()+"speed",speedModel.getValue()));
+		getSpeedModel().setValue(SwingUtil.UI_PREFERENCES.getInt(getName()+"speed",getSpeedModel().getValue()));
 		setSimulationState(SwingUtil.UI_PREFERENCES.getBoolean(getName()+"autostart", false) ? SimulationState.RUNNING : SimulationState.PAUSED);
 	}
 
@@ -257,8 +335,11 @@ public class Scheduler extends Agent {
 	 * @since MaDKit 5.0.0.8
 	 */
 	public void addActivator(final Activator<? extends AbstractAgent> activator) {
-		if (kernel.addOverlooker(this, activator))
+		if (kernel.addOverlooker(this, activator)) {
 			activators.add(activator);
+			activator.scheduler = this;
+			schedule(activator, null, activator.getNextActivationTime(), activator.eventVersion);
+		}
 		if (logger != null)
 			logger.fine("Activator added: " + activator);
 	}
@@ -271,7 +352,10 @@ public class Scheduler extends Agent {
 	 */
 	public void removeActivator(final Activator<? extends AbstractAgent> activator) {
 		kernel.removeOverlooker(this, activator);
-		activators.remove(activator);
+		if (activators.remove(activator)) {
+			activator.scheduler = null;
+		}
+		activator.shutdownEngine();
 		if (logger != null)
 			logger.fine("Activator removed: " + activator);
 	}
@@ -299,6 +383,10 @@ public class Scheduler extends Agent {
 	 * </pre>
 	 */
 	public void doSimulationStep() {
+		if (events != null) {
+			doDiscreteEventStep();
+			return;
+		}
 		if (logger != null) {
 			logger.finer("Doing simulation step " + GVT);
 		}
@@ -315,6 +403,112 @@ public class Scheduler extends Agent {
 		setGVT(GVT + 1);
 	}
 
+	/**
+	 * Sets the discrete-event mode of this scheduler. In this mode, each activator
+	 * is executed at its own pace, according to its 
+	 * {@link Activator#getNextActivationTime()}, and agents can also be 
+	 * activated individually using {@link Activator#scheduleAgent(AbstractAgent, double)}. 
+	 * So a simulation step executes, in the order they have been scheduled, 
+	 * all the activations which have the lowest time, after setting the GVT to this time. 
+	 * This avoids steps during which nothing happens when activators work at very different rates.
+	 * <p>
+	 * When nothing is scheduled anymore, the scheduler is paused. 
+	 * Default is <code>false</code>.
+	 * 
+	 * @param on <code>true</code> to use the discrete-event mode
+	 * @since MaDKit 5.2
+	 */
+	public void useDiscreteEvents(final boolean on) {
+		if (on != (events != null)) {
+			if (on) {
+				events = new ActivationQueue();
+				for (final Activator<? extends AbstractAgent> a : activators) {
+					schedule(a, null, a.getNextActivationTime(), a.eventVersion);
+				}
+			}
+			else {
+				events = null;
+			}
+		}
+	}
+
+	/**
+	 * @return <code>true</code> if this scheduler is in the discrete-event mode
+	 * @see #useDiscreteEvents(boolean)
+	 * @since MaDKit 5.2
+	 */
+	public boolean isDiscreteEventModeOn() {
+		return events != null;
+	}
+
+	/**
+	 * Adds an event if the discrete-event mode is on
+	 */
+	final void schedule(final Activator<?> activator, final AbstractAgent agent, final double time, final int version) {
+		final ActivationQueue q = events;
+		if (q != null && time != Double.POSITIVE_INFINITY) {
+			q.add(time < GVT ? GVT : time, activator, agent, version);
+		}
+	}
+
+	/**
+	 * A simulation step in the discrete-event mode
+	 */
+	@SuppressWarnings("rawtypes")
+	private void doDiscreteEventStep() {
+		final ActivationQueue q = events;
+		double time;
+		Activator activator;
+		do {// the GVT should not go to the time of an obsolete event
+			time = q.nextTime();
+			if (time == Double.POSITIVE_INFINITY) {
+				if (logger != null)
+					logger.fine("Nothing scheduled: pausing at " + GVT);
+				setSimulationState(PAUSED);
+				return;
+			}
+			activator = q.poll();
+		}
+		while (isObsolete(activator, q.polledAgent(), q.polledVersion()));
+		setGVT(time);
+		if (time > simulationDuration) {// kept for a longer simulation
+			q.add(time, activator, q.polledAgent(), q.polledVersion());
+			return;
+		}
+		if (logger != null) {
+			logger.finer("Doing simulation step " + GVT);
+		}
+		for (;;) {
+			if (!isObsolete(activator, q.polledAgent(), q.polledVersion())) {
+				activate(activator, q.polledAgent(), q.polledVersion(), time);
+			}
+			if (q.nextTime() != time || events != q)
+				return;
+			activator = q.poll();
+		}
+	}
+
+	private boolean isObsolete(final Activator<?> activator, final AbstractAgent agent, final int version) {
+		return activator.scheduler != this || (agent == null && version != activator.eventVersion);
+	}
+
+	@SuppressWarnings({ "unchecked", "rawtypes" })
+	private void activate(final Activator activator, final AbstractAgent agent, final int version, final double time) {
+		if (agent != null) {
+			if (agent.isAlive()) {
+				activator.execute(Collections.singletonList(agent));
+			}
+		}
+		else {
+			if (logger != null)
+				logger.finer("Activating --------> " + activator);
+			activator.execute();
+			if (version == activator.eventVersion) {// not set by the execution
+				activator.setNextActivationTime(time + 1);
+			}
+		}
+	}
+
 	@Override
 	protected void end() {
 		simulationState = PAUSED;
@@ -341,22 +535,11 @@ public class Scheduler extends Agent {
 	protected void setSimulationState(final SimulationState newState) {//TODO proceedEnumMessage
 		if (simulationState != newState) {
 			simulationState = newState;
-			switch (simulationState) {
-			case STEP:
-				run.setEnabled(true);
-				break;
-			case PAUSED:
-				run.setEnabled(true);
-				break;
-			case RUNNING:
-				run.setEnabled(false);
-				break;
-			case SHUTDOWN:
-				run.setEnabled(false);
-				break;
-			default:// impossible
-				logLifeException(new Exception("state not handle : " + newState.toString()));
+			final Action runAction = run;
+			if (runAction != null) {
+				runAction.setEnabled(isRunEnabled());
 			}
+			displayGVT();
 		}
 	}
 
@@ -372,11 +555,12 @@ public class Scheduler extends Agent {
 	 * 			logger.info(&quot;Quitting: Simulation has reached end time &quot; + getSimulationDuration());
 	 * 		return;
 	 * 	}
-	 * 	pause(getDelay());
+	 * 	if (! isTurboModeOn())
+	 * 		pause(getDelay());
 	 * 	checkMail(nextMessage());
 	 * 	switch (getSimulationState()) {
 	 * 	case RUNNING:
-	 * 		doSimulationStep();
+	 * 		doSimulationStep(); // in the turbo mode: repeated until a message is received
 	 * 		break;
 	 * 	case PAUSED:
 	 * 		paused();
@@ -398,15 +582,26 @@ public class Scheduler extends Agent {
 	protected void live() {
 		while (isAlive()) {
 			if (GVT > simulationDuration) {
+				displayGVT();
 				if (logger != null)
 					logger.info("Quitting: Simulation has reached end time " + simulationDuration);
 				return;
 			}
-			pause(delay);
+			if (turboMode) {
+				newMail = false;
+			}
+			else {
+				pause(delay);
+			}
 			checkMail(nextMessage());
 			switch (simulationState) {
 			case RUNNING:
-				doSimulationStep();
+				if (turboMode) {
+					doTurboSteps();
+				}
+				else {
+					doSimulationStep();
+				}
 				break;
 			case PAUSED:
 				paused();
@@ -423,6 +618,26 @@ public class Scheduler extends Agent {
 		}
 	}
 	
+	/**
+	 * Does simulation steps until a message is received, the simulation is not
+	 * running anymore or has reached its end time
+	 */
+	private void doTurboSteps() {
+		if (! isMessageBoxEmpty())
+			return;
+		do {
+			doSimulationStep();
+		}
+		while (! newMail && simulationState == SimulationState.RUNNING && GVT <= simulationDuration && isAlive());
+	}
+
+	@Override
+	boolean deliverMessage(final Message m) {
+		final boolean delivered = super.deliverMessage(m);
+		newMail = true;
+		return delivered;
+	}
+
 	/**
 	 * Changes my state according to a {@link SchedulingMessage} and sends
 	 * a reply to the sender as acknowledgment.
@@ -447,10 +662,10 @@ public class Scheduler extends Agent {
 					setSimulationState(SimulationState.SHUTDOWN);
 					break;
 				case SPEED_UP:
-					speedModel.setValue(speedModel.getValue() - 50);
+					setDelay(delay + 50);
 					break;
 				case SPEED_DOWN:
-					speedModel.setValue(speedModel.getValue() + 50);
+					setDelay(delay - 50);
 					break;
 				}
 				if (m.getSender() != null) {
@@ -485,8 +700,13 @@ public class Scheduler extends Agent {
 	public void removeAllActivators() {
 		for (final Activator<? extends AbstractAgent> a : activators) {
 			kernel.removeOverlooker(this, a);
+			a.scheduler = null;
+			a.shutdownEngine();
 		}
 		activators.clear();
+		if (events != null) {
+			events.clear();
+		}
 	}
 
 	/**
@@ -506,11 +726,19 @@ public class Scheduler extends Agent {
 		return simulationDuration;
 	}
 
-	private void buildActions() {
-		run = SchedulingAction.RUN.getActionFor(this);
-		step = SchedulingAction.STEP.getActionFor(this);
-		speedUp = SchedulingAction.SPEED_UP.getActionFor(this);
-		speedDown = SchedulingAction.SPEED_DOWN.getActionFor(this);
+	private synchronized void buildActions() {
+		if (run == null) {
+			step = SchedulingAction.STEP.getActionFor(this);
+			speedUp = SchedulingAction.SPEED_UP.getActionFor(this);
+			speedDown = SchedulingAction.SPEED_DOWN.getActionFor(this);
+			final Action runAction = SchedulingAction.RUN.getActionFor(this);
+			runAction.setEnabled(isRunEnabled());
+			run = runAction;
+		}
+	}
+
+	private boolean isRunEnabled() {
+		return simulationState == SimulationState.PAUSED || simulationState == SimulationState.STEP;
 	}
 
 	/**
@@ -519,13 +747,14 @@ public class Scheduler extends Agent {
 	 * @return a toolBar controlling the scheduler's actions
 	 */
 	public JToolBar getSchedulerToolBar() {
+		buildActions();
 		final JToolBar toolBar = new JToolBar("scheduler toolbar");
 		toolBar.add(run);
 		toolBar.add(step);
 		final JPanel p = new JPanel();
 		p.setLayout(new BoxLayout(p, BoxLayout.Y_AXIS));
 		p.setBorder(new TitledBorder("speed"));
-		final JSlider sp = new JSlider(speedModel);
+		final JSlider sp = new JSlider(getSpeedModel());
 		sp.addMouseWheelListener(new MouseWheelListener() {
 			@Override
 			public void mouseWheelMoved(MouseWheelEvent e) {
@@ -572,6 +801,7 @@ public class Scheduler extends Agent {
 	 * @return a menu controlling the scheduler's actions
 	 */
 	public JMenu getSchedulerMenu() {
+		buildActions();
 		JMenu myMenu = new JMenu("Scheduling");
 		myMenu.setMnemonic(KeyEvent.VK_S);
 		myMenu.add(run);
@@ -609,7 +839,7 @@ public class Scheduler extends Agent {
 		gvtModel.addObserver(timer);
 		timer.setBorder(new EmptyBorder(4, 4, 4, 4));
 		timer.setHorizontalAlignment(JLabel.LEADING);
-		setGVT(getGVT());
+		displayGVT();
 		return timer;
 	}
 
@@ -627,7 +857,7 @@ public class Scheduler extends Agent {
 		gvtModel.addObserver(timer);
 		timer.setBorder(new EmptyBorder(4, 4, 4, 4));
 		timer.setHorizontalAlignment(JLabel.LEADING);
-		setGVT(getGVT());
+		displayGVT();
 		return timer;
 	}
 
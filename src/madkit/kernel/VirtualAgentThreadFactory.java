@@ -0,0 +1,131 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Builds the virtual threads of the agents when 
+ * {@link Madkit.BooleanOption#virtualThreads} is activated.
+ * <p>
+ * Virtual threads are always daemon threads, so that this factory also 
+ * keeps a platform thread alive while some of its agents are living, 
+ * just as their own threads would do.
+ * 
+ * @author Fabien Michel
+ * @version 0.9
+ * @since MaDKit 5.2
+ * 
+ */
+final class VirtualAgentThreadFactory implements ThreadFactory {
+
+	/**
+	 * <code>null</code> if the JVM has no virtual threads
+	 */
+	private static final ThreadFactory	VIRTUAL_THREADS	= virtualThreads();
+
+	private static final Object			lock					= new Object();
+	private static int						livingAgents;
+	private static Thread					keeper;
+
+	/**
+	 * @return <code>true</code> if this JVM provides virtual threads
+	 */
+	static boolean isAvailable() {
+		return VIRTUAL_THREADS != null;
+	}
+
+	/**
+	 * <code>Thread.ofVirtual().factory()</code>, which is only available 
+	 * since Java 21.
+	 */
+	private static ThreadFactory virtualThreads() {
+		try {
+			final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+		} catch (ReflectiveOperationException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	@Override
+	public Thread newThread(final Runnable r) {
+		agentStarted();
+		return VIRTUAL_THREADS.newThread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					r.run();
+				} finally {
+					agentEnded();
+				}
+			}
+		});
+	}
+
+	private static void agentStarted() {
+		synchronized (lock) {
+			if (livingAgents++ == 0 && keeper == null) {
+				keeper = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						synchronized (lock) {
+							try {
+								while (livingAgents > 0) {
+									lock.wait();
+								}
+							} catch (InterruptedException e) {
+							} finally {
+								keeper = null;
+							}
+						}
+					}
+				}, "MK_VIRTUAL_AGENTS");
+				keeper.start();
+			}
+		}
+	}
+
+	private static void agentEnded() {
+		synchronized (lock) {
+			if (--livingAgents == 0) {
+				lock.notifyAll();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,439 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import static madkit.kernel.WireProtocol.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.StreamCorruptedException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * The receiving side of the {@link WireProtocol}. 
+ * <p>
+ * A frame is entirely read before being decoded. So, when a serialized 
+ * object cannot be loaded because its class is missing, the rest of the frame 
+ * is still decoded, keeping the kernel addresses and names indexes in sync,
+ * and the {@link ClassNotFoundException} is thrown afterwards:
+ * the connection can go on with the next frame. A frame may contain a batch
+ * of messages: only those which could not be entirely deserialized are lost.
+ * This class is not thread safe.
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+final class WireInput {
+
+	private final DataInputStream			in;
+	private byte[]								buffer	= new byte[256];
+	private int									position;
+	private int									limit;
+
+	private final List<KernelAddress>	kernels	= new ArrayList<>();
+	private final List<String>				names		= new ArrayList<>();
+	private ClassNotFoundException		failure;
+
+	/**
+	 * @param in the stream of the socket
+	 */
+	WireInput(final InputStream in) {
+		this.in = new DataInputStream(in);
+	}
+
+	/**
+	 * Reads the magic number and the version of the protocol.
+	 * 
+	 * @throws IOException if the distant kernel does not use the same protocol
+	 */
+	void readProtocolHeader() throws IOException {
+		final int magic = in.readInt();
+		if (magic != MAGIC)
+			throw new StreamCorruptedException("not a MaDKit kernel connection: " + Integer.toHexString(magic));
+		final byte version = in.readByte();
+		if (version != VERSION)
+			throw new StreamCorruptedException("incompatible wire protocol version " + version + ", expected " + VERSION);
+	}
+
+	/**
+	 * @return the address of the distant kernel
+	 * @throws IOException
+	 */
+	KernelAddress receiveKernelAddress() throws IOException {
+		readFrame();
+		final KernelAddress ka = readKernelAddress();
+		endFrame();
+		return ka;
+	}
+
+	/**
+	 * @return the organization snapshot of the distant kernel
+	 * @throws IOException
+	 */
+	Map<String, Map<String, Map<String, Set<AgentAddress>>>> receiveOrganization() throws IOException {
+		readFrame();
+		Map<String, Map<String, Map<String, Set<AgentAddress>>>> org = null;
+		int communities = readVarInt() - 1;
+		if (communities >= 0) {
+			org = new TreeMap<>();
+			for (; communities > 0; communities--) {
+				final String communityName = readName();
+				Map<String, Map<String, Set<AgentAddress>>> community = null;
+				int groups = readVarInt() - 1;
+				if (groups >= 0) {
+					community = new TreeMap<>();
+					for (; groups > 0; groups--) {
+						final String groupName = readName();
+						Map<String, Set<AgentAddress>> group = null;
+						int roles = readVarInt() - 1;
+						if (roles >= 0) {
+							group = new TreeMap<>();
+							for (; roles > 0; roles--) {
+								final String roleName = readName();
+								Set<AgentAddress> addresses = null;
+								int size = readVarInt() - 1;
+								if (size >= 0) {
+									addresses = new HashSet<>();
+									for (; size > 0; size--) {
+										addresses.add(readAgentAddress());
+									}
+								}
+								group.put(roleName, addresses);
+							}
+						}
+						community.put(groupName, group);
+					}
+				}
+				org.put(communityName, community);
+			}
+		}
+		endFrame();
+		return org;
+	}
+
+	/**
+	 * Reads the next frame, which contains one message or a batch of messages.
+	 * 
+	 * @param messages the list to which the messages are added
+	 * @throws IOException if the connection is broken or the frame corrupted
+	 * @throws ClassNotFoundException if a message could not be
+	 * deserialized. The other messages of the frame are added to the list
+	 * anyway and the next frame could be read.
+	 */
+	void receiveMessages(final List<Message> messages) throws IOException, ClassNotFoundException {
+		readFrame();
+		readMessages(messages);
+	}
+
+	/**
+	 * Decodes a frame which has been received by other means, 
+	 * i.e. a {@link NetworkSelector}.
+	 * 
+	 * @param frame the array containing the frame, without its length
+	 * @param offset the start of the frame in the array
+	 * @param length the length of the frame
+	 * @param messages the list to which the messages are added
+	 * @throws IOException if the frame is corrupted
+	 * @throws ClassNotFoundException if a message could not be
+	 * deserialized. The other messages of the frame are added to the list
+	 * anyway and the next frame could be decoded.
+	 */
+	void decodeMessages(final byte[] frame, final int offset, final int length, final List<Message> messages) throws IOException, ClassNotFoundException {
+		final byte[] own = buffer;
+		buffer = frame;
+		position = offset;
+		limit = offset + length;
+		failure = null;
+		try {
+			readMessages(messages);
+		} finally {
+			buffer = own;
+		}
+	}
+
+	private void readMessages(final List<Message> messages) throws IOException, ClassNotFoundException {
+		do {
+			final ClassNotFoundException previous = failure;
+			final Message m = readMessage();
+			if (failure == previous) {
+				messages.add(m);
+			}
+		} while (position < limit);
+		endFrame();
+		if (failure != null) {
+			final ClassNotFoundException e = failure;
+			failure = null;
+			throw e;
+		}
+	}
+
+	void close() throws IOException {
+		in.close();
+	}
+
+	private void readFrame() throws IOException {
+		final int length = in.readInt();
+		if (length < 0)
+			throw new StreamCorruptedException("negative frame length " + length);
+		if (length > buffer.length) {
+			buffer = new byte[Math.max(buffer.length << 1, length)];
+		}
+		in.readFully(buffer, 0, length);
+		position = 0;
+		limit = length;
+		failure = null;
+	}
+
+	private void endFrame() throws StreamCorruptedException {
+		if (position != limit)
+			throw new StreamCorruptedException((limit - position) + " bytes not read in frame");
+	}
+
+	final Message readMessage() throws IOException {
+		final int tag = readByte();
+		if (tag == SERIALIZED_MESSAGE) {
+			return (Message) readSerialized();
+		}
+		final MessageCodec<?> codec = getCodec(tag);
+		final AgentAddress sender = readAgentAddress();
+		final AgentAddress receiver = readAgentAddress();
+		final ConversationID id = readConversationID();
+		final Message m = codec.read(this);
+		m.setSender(sender);
+		m.setReceiver(receiver);
+		m.setConversationID(id);
+		return m;
+	}
+
+	/**
+	 * @return a value written by {@link WireOutput#writeValue(Object)}
+	 * @throws IOException
+	 */
+	final Object readValue() throws IOException {
+		final int type = readByte();
+		switch (type) {
+		case NULL_VALUE:
+			return null;
+		case STRING_VALUE:
+			return readString();
+		case INT_VALUE:
+			return readSignedVarInt();
+		case LONG_VALUE:
+			return readLong();
+		case DOUBLE_VALUE:
+			return Double.longBitsToDouble(readLong());
+		case TRUE_VALUE:
+			return Boolean.TRUE;
+		case FALSE_VALUE:
+			return Boolean.FALSE;
+		case MESSAGE_VALUE:
+			return readMessage();
+		case ADDRESS_VALUE:
+			return readAgentAddress();
+		case SERIALIZED_VALUE:
+			return readSerialized();
+		default:
+			throw new StreamCorruptedException("unknown value type " + type);
+		}
+	}
+
+	/**
+	 * @return the deserialized object or <code>null</code> if its class
+	 * is not available. In that case, the exception is thrown at the end 
+	 * of the frame.
+	 */
+	private Object readSerialized() throws IOException {
+		final int length = readFixedInt();
+		require(length);
+		final int start = position;
+		position += length;
+		try (final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(buffer, start, length))) {
+			return ois.readObject();
+		} catch (ClassNotFoundException e) {
+			if (failure == null) {
+				failure = e;
+			}
+			return null;
+		}
+	}
+
+	final AgentAddress readAgentAddress() throws IOException {
+		final int kind = readByte();
+		if (kind == NULL_ADDRESS)
+			return null;
+		final int hashCode = readSignedVarInt();
+		final KernelAddress ka = readKernelAddress();
+		final Role shell = new Role(readName(), readName(), readName());
+		// a valid address records its location only when it is invalidated,
+		// possibly after having been rebound to a local role
+		final Role role = (kind & INVALID_ADDRESS) != 0 ? null : shell;
+		final Role location = role == null ? shell : null;
+		switch (kind & ~INVALID_ADDRESS) {
+		case AGENT_ADDRESS:
+			return new AgentAddress(hashCode, role, location, ka);
+		case CANDIDATE_ADDRESS:
+			return new CandidateAgentAddress(hashCode, role, location, ka);
+		case MANAGER_ADDRESS:
+			return new GroupManagerAddress(hashCode, role, location, ka, false);
+		case SECURED_MANAGER_ADDRESS:
+			return new GroupManagerAddress(hashCode, role, location, ka, true);
+		default:
+			throw new StreamCorruptedException("unknown agent address kind " + kind);
+		}
+	}
+
+	final KernelAddress readKernelAddress() throws IOException {
+		final int index = readVarInt();
+		switch (index) {
+		case 0:
+			return null;
+		case 1:
+			final long networkID = readLong();
+			final short localID = (short) ((readByte() << 8) | readByte());
+			final KernelAddress ka = new KernelAddress(networkID, localID);
+			if (kernels.size() < MAX_KERNELS) {
+				kernels.add(ka);
+			}
+			return ka;
+		default:
+			if (index - 2 >= kernels.size())
+				throw new StreamCorruptedException("unknown kernel address index " + index);
+			return kernels.get(index - 2);
+		}
+	}
+
+	final ConversationID readConversationID() throws IOException {
+		final int kind = readByte();
+		switch (kind) {
+		case 0:
+			return null;
+		case 1:
+			return new ConversationID(readSignedVarInt(), null);
+		case 2:
+			final int id = readSignedVarInt();
+			return new ConversationID(id, readKernelAddress());
+		default:
+			throw new StreamCorruptedException("unknown conversation ID kind " + kind);
+		}
+	}
+
+	/**
+	 * @return a name written by {@link WireOutput#writeName(String)}
+	 * @throws IOException
+	 */
+	final String readName() throws IOException {
+		final int index = readVarInt();
+		switch (index) {
+		case 0:
+			return null;
+		case 1:
+			final String name = readString();
+			if (names.size() < MAX_NAMES) {
+				names.add(name);
+			}
+			return name;
+		default:
+			if (index - 2 >= names.size())
+				throw new StreamCorruptedException("unknown name index " + index);
+			return names.get(index - 2);
+		}
+	}
+
+	final String readString() throws IOException {
+		final int length = readVarInt() - 1;
+		if (length < 0)
+			return null;
+		require(length);
+		final String s = new String(buffer, position, length, StandardCharsets.UTF_8);
+		position += length;
+		return s;
+	}
+
+	/**
+	 * @return the next byte as an unsigned value
+	 */
+	final int readByte() throws StreamCorruptedException {
+		require(1);
+		return buffer[position++] & 0xFF;
+	}
+
+	final int readVarInt() throws StreamCorruptedException {
+		int result = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			final int b = readByte();
+			result |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+				return result;
+		}
+		throw new StreamCorruptedException("malformed var int");
+	}
+
+	final int readSignedVarInt() throws StreamCorruptedException {
+		final int i = readVarInt();
+		return (i >>> 1) ^ -(i & 1);
+	}
+
+	final long readLong() throws StreamCorruptedException {
+		require(8);
+		long l = 0;
+		for (int i = 0; i < 8; i++) {
+			l = (l << 8) | (buffer[position++] & 0xFF);
+		}
+		return l;
+	}
+
+	private int readFixedInt() throws StreamCorruptedException {
+		require(4);
+		return (buffer[position++] & 0xFF) << 24 | (buffer[position++] & 0xFF) << 16 | (buffer[position++] & 0xFF) << 8 | (buffer[position++] & 0xFF);
+	}
+
+	private void require(final int length) throws StreamCorruptedException {
+		if (length < 0 || position + length > limit)
+			throw new StreamCorruptedException("truncated frame");
+	}
+
+}
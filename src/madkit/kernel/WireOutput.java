@@ -0,0 +1,498 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import static madkit.kernel.WireProtocol.*;
+
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The sending side of the {@link WireProtocol}. 
+ * <p>
+ * A frame is encoded in a buffer which is reused and then written 
+ * in one call, so that a frame is never partially sent when one of its parts
+ * could not be encoded. In that case, the kernel addresses and names which
+ * have been indexed for this frame are forgotten, since the distant side will 
+ * never see them. Several messages could be sent in one frame, using 
+ * {@link #queueMessage(Message)} and {@link #flush()}. This class is not thread safe.
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+final class WireOutput {
+
+	private final OutputStream						out;
+	private byte[]										buffer	= new byte[256];
+	private int											position;
+
+	private final Map<KernelAddress, Integer>	kernels	= new HashMap<>();
+	private final Map<String, Integer>			names		= new HashMap<>();
+	/**
+	 * the kernel addresses and names indexed by the current frame 
+	 */
+	private final List<Object>						indexed	= new ArrayList<>();
+	private boolean										batchOpened;
+
+	/**
+	 * Java serialization writes directly into the frame
+	 */
+	private final OutputStream						frameStream	= new OutputStream() {
+
+		@Override
+		public void write(int b) {
+			writeByte(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			writeBytes(b, off, len);
+		}
+	};
+
+	/**
+	 * @param out the stream of the socket
+	 */
+	WireOutput(final OutputStream out) {
+		this.out = out;
+	}
+
+	/**
+	 * Writes the magic number and the version of the protocol.
+	 * 
+	 * @throws IOException
+	 */
+	void writeProtocolHeader() throws IOException {
+		position = 0;
+		writeFixedInt(MAGIC);
+		writeByte(VERSION);
+		out.write(buffer, 0, position);
+		out.flush();
+	}
+
+	/**
+	 * @param ka the address of the local kernel
+	 * @throws IOException
+	 */
+	void sendKernelAddress(final KernelAddress ka) throws IOException {
+		beginFrame();
+		writeKernelAddress(ka);
+		endFrame();
+	}
+
+	/**
+	 * @param org an organization snapshot
+	 * @throws IOException
+	 */
+	void sendOrganization(final Map<String, Map<String, Map<String, Set<AgentAddress>>>> org) throws IOException {
+		beginFrame();
+		try {
+			writeSize(org);
+			if (org != null) {
+				for (final Map.Entry<String, Map<String, Map<String, Set<AgentAddress>>>> community : org.entrySet()) {
+					writeName(community.getKey());
+					writeSize(community.getValue());
+					if (community.getValue() == null)
+						continue;
+					for (final Map.Entry<String, Map<String, Set<AgentAddress>>> group : community.getValue().entrySet()) {
+						writeName(group.getKey());
+						writeSize(group.getValue());
+						if (group.getValue() == null)
+							continue;
+						for (final Map.Entry<String, Set<AgentAddress>> role : group.getValue().entrySet()) {
+							writeName(role.getKey());
+							final Set<AgentAddress> addresses = role.getValue();
+							writeVarInt(addresses == null ? 0 : addresses.size() + 1);
+							if (addresses != null) {
+								for (final AgentAddress aa : addresses) {
+									writeAgentAddress(aa);
+								}
+							}
+						}
+					}
+				}
+			}
+		} catch (RuntimeException e) {
+			abortFrame();
+			throw e;
+		}
+		endFrame();
+	}
+
+	/**
+	 * @param m the message to send
+	 * @throws IOException if the message, or a part of it, could not be serialized.
+	 * In that case, nothing is sent.
+	 */
+	void sendMessage(final Message m) throws IOException {
+		queueMessage(m);
+		flush();
+	}
+
+	/**
+	 * Adds a message to the current batch, i.e. to a frame which 
+	 * will contain all the messages queued until {@link #flush()} is called.
+	 * 
+	 * @param m the message to queue
+	 * @throws IOException if the message, or a part of it, could not be serialized.
+	 * In that case, the batch is left as it was.
+	 */
+	void queueMessage(final Message m) throws IOException {
+		if (! batchOpened) {
+			beginFrame();
+			batchOpened = true;
+		}
+		final int mark = position;
+		final int indexedMark = indexed.size();
+		try {
+			writeMessage(m);
+		} catch (IOException | RuntimeException e) {
+			rollback(mark, indexedMark);
+			batchOpened = position > 4;
+			throw e;
+		}
+	}
+
+	/**
+	 * @return the number of bytes queued in the current batch
+	 */
+	int getBatchSize() {
+		return batchOpened ? position - 4 : 0;
+	}
+
+	/**
+	 * Sends the current batch, if any.
+	 * 
+	 * @throws IOException
+	 */
+	void flush() throws IOException {
+		if (batchOpened) {
+			batchOpened = false;
+			endFrame();
+		}
+	}
+
+	void close() throws IOException {
+		out.close();
+	}
+
+	private void beginFrame() {
+		position = 4;
+		indexed.clear();
+	}
+
+	private void endFrame() throws IOException {
+		final int length = position - 4;
+		position = 0;
+		writeFixedInt(length);
+		out.write(buffer, 0, length + 4);
+		out.flush();
+	}
+
+	private void abortFrame() {
+		rollback(4, 0);
+	}
+
+	/**
+	 * Forgets what has been written in the frame since a given position.
+	 * 
+	 * @param mark the position to go back to
+	 * @param indexedMark the number of entries indexed by the frame at this position
+	 */
+	private void rollback(final int mark, final int indexedMark) {
+		for (int i = indexed.size() - 1; i >= indexedMark; i--) {
+			final Object o = indexed.remove(i);
+			if (o instanceof KernelAddress) {
+				kernels.remove(o);
+			}
+			else {
+				names.remove(o);
+			}
+		}
+		position = mark;
+	}
+
+	final void writeMessage(final Message m) throws IOException {
+		@SuppressWarnings("unchecked")
+		final MessageCodec<Message> codec = (MessageCodec<Message>) getCodec(m.getClass());
+		if (codec == null) {
+			writeByte(SERIALIZED_MESSAGE);
+			writeSerialized(m);
+		}
+		else {
+			writeByte(codec.getTag());
+			writeAgentAddress(m.getSender());
+			writeAgentAddress(m.getReceiver());
+			writeConversationID(m.getConversationID());
+			codec.write(this, m);
+		}
+	}
+
+	/**
+	 * Writes a message content: the common immutable types, 
+	 * messages and addresses are encoded, other objects are serialized.
+	 * 
+	 * @param o the value to write
+	 * @throws IOException if the object could not be serialized
+	 */
+	final void writeValue(final Object o) throws IOException {
+		if (o == null) {
+			writeByte(NULL_VALUE);
+		}
+		else if (o instanceof String) {
+			writeByte(STRING_VALUE);
+			writeString((String) o);
+		}
+		else if (o instanceof Integer) {
+			writeByte(INT_VALUE);
+			writeSignedVarInt((Integer) o);
+		}
+		else if (o instanceof Long) {
+			writeByte(LONG_VALUE);
+			writeLong((Long) o);
+		}
+		else if (o instanceof Double) {
+			writeByte(DOUBLE_VALUE);
+			writeLong(Double.doubleToRawLongBits((Double) o));
+		}
+		else if (o instanceof Boolean) {
+			writeByte((Boolean) o ? TRUE_VALUE : FALSE_VALUE);
+		}
+		else if (o instanceof Message) {
+			writeByte(MESSAGE_VALUE);
+			writeMessage((Message) o);
+		}
+		else if (o instanceof AgentAddress) {
+			writeByte(ADDRESS_VALUE);
+			writeAgentAddress((AgentAddress) o);
+		}
+		else {
+			writeByte(SERIALIZED_VALUE);
+			writeSerialized(o);
+		}
+	}
+
+	/**
+	 * Serializes an object with its own stream, so that the
+	 * object is not retained once written.
+	 */
+	private void writeSerialized(final Object o) throws IOException {
+		ensureCapacity(4);
+		final int lengthPosition = position;
+		position += 4;
+		try (final ObjectOutputStream oos = new ObjectOutputStream(frameStream)) {
+			oos.writeObject(o);
+		}
+		final int end = position;
+		position = lengthPosition;
+		writeFixedInt(end - lengthPosition - 4);
+		position = end;
+	}
+
+	final void writeAgentAddress(final AgentAddress aa) {
+		if (aa == null) {
+			writeByte(NULL_ADDRESS);
+			return;
+		}
+		int kind = AGENT_ADDRESS;
+		if (aa instanceof CandidateAgentAddress) {
+			kind = CANDIDATE_ADDRESS;
+		}
+		else if (aa instanceof GroupManagerAddress) {
+			kind = ((GroupManagerAddress) aa).isGroupSecured() ? SECURED_MANAGER_ADDRESS : MANAGER_ADDRESS;
+		}
+		Role role = aa.getRoleObject();// read once: the address could be invalidated meanwhile
+		writeByte(role == null ? kind | INVALID_ADDRESS : kind);
+		writeSignedVarInt(aa.hashCode());
+		writeKernelAddress(aa.getKernelAddress());
+		if (role == null) {
+			role = aa.getLocation();
+		}
+		writeName(role.getCommunityName());
+		writeName(role.getGroupName());
+		writeName(role.getRoleName());
+	}
+
+	final void writeKernelAddress(final KernelAddress ka) {
+		if (ka == null) {
+			writeVarInt(0);
+			return;
+		}
+		final Integer index = kernels.get(ka);
+		if (index != null) {
+			writeVarInt(index + 2);
+			return;
+		}
+		writeVarInt(1);
+		writeLong(ka.getNetworkPart());
+		writeByte(ka.getLocalPart() >> 8);
+		writeByte(ka.getLocalPart());
+		if (kernels.size() < MAX_KERNELS) {
+			kernels.put(ka, kernels.size());
+			indexed.add(ka);
+		}
+	}
+
+	final void writeConversationID(final ConversationID id) {
+		if (id == null) {
+			writeByte(0);
+			return;
+		}
+		final KernelAddress origin = id.getOrigin();
+		writeByte(origin == null ? 1 : 2);
+		writeSignedVarInt(id.getID());
+		if (origin != null) {
+			writeKernelAddress(origin);
+		}
+	}
+
+	/**
+	 * Writes a CGR name, which is indexed for the next frames.
+	 * 
+	 * @param name the name, may be <code>null</code>
+	 */
+	final void writeName(final String name) {
+		if (name == null) {
+			writeVarInt(0);
+			return;
+		}
+		final Integer index = names.get(name);
+		if (index != null) {
+			writeVarInt(index + 2);
+			return;
+		}
+		writeVarInt(1);
+		writeString(name);
+		if (names.size() < MAX_NAMES) {
+			names.put(name, names.size());
+			indexed.add(name);
+		}
+	}
+
+	/**
+	 * @param s the string, may be <code>null</code>
+	 */
+	final void writeString(final String s) {
+		if (s == null) {
+			writeVarInt(0);
+			return;
+		}
+		final int length = s.length();
+		int i = 0;
+		while (i < length && s.charAt(i) < 0x80) {
+			i++;
+		}
+		if (i == length) {// ASCII only: one byte per char
+			writeVarInt(length + 1);
+			ensureCapacity(length);
+			for (i = 0; i < length; i++) {
+				buffer[position++] = (byte) s.charAt(i);
+			}
+		}
+		else {
+			final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			writeVarInt(bytes.length + 1);
+			writeBytes(bytes, 0, bytes.length);
+		}
+	}
+
+	private void writeSize(final Map<?, ?> map) {
+		writeVarInt(map == null ? 0 : map.size() + 1);
+	}
+
+	private void writeBytes(final byte[] b, final int off, final int len) {
+		ensureCapacity(len);
+		System.arraycopy(b, off, buffer, position, len);
+		position += len;
+	}
+
+	final void writeByte(final int b) {
+		ensureCapacity(1);
+		buffer[position++] = (byte) b;
+	}
+
+	/**
+	 * Writes a positive int on 1 to 5 bytes
+	 */
+	final void writeVarInt(int i) {
+		ensureCapacity(5);
+		while ((i & ~0x7F) != 0) {
+			buffer[position++] = (byte) ((i & 0x7F) | 0x80);
+			i >>>= 7;
+		}
+		buffer[position++] = (byte) i;
+	}
+
+	/**
+	 * Writes an int so that small negative values also take few bytes
+	 */
+	final void writeSignedVarInt(final int i) {
+		writeVarInt((i << 1) ^ (i >> 31));
+	}
+
+	final void writeLong(final long l) {
+		ensureCapacity(8);
+		for (int shift = 56; shift >= 0; shift -= 8) {
+			buffer[position++] = (byte) (l >>> shift);
+		}
+	}
+
+	private void writeFixedInt(final int i) {
+		ensureCapacity(4);
+		buffer[position++] = (byte) (i >>> 24);
+		buffer[position++] = (byte) (i >>> 16);
+		buffer[position++] = (byte) (i >>> 8);
+		buffer[position++] = (byte) i;
+	}
+
+	private void ensureCapacity(final int length) {
+		if (position + length > buffer.length) {
+			final byte[] tmp = new byte[Math.max(buffer.length << 1, position + length)];
+			System.arraycopy(buffer, 0, tmp, 0, position);
+			buffer = tmp;
+		}
+	}
+
+}
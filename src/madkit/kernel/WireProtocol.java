@@ -0,0 +1,268 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import madkit.kernel.CGRSynchro.Code;
+import madkit.message.BooleanMessage;
+import madkit.message.IntegerMessage;
+import madkit.message.ObjectMessage;
+import madkit.message.StringMessage;
+
+/**
+ * The binary protocol used between two {@link KernelConnection}s.
+ * <p>
+ * Once the connection is opened, each side writes {@link #MAGIC} and 
+ * {@link #VERSION}. Everything else is sent as frames: a 4 bytes length
+ * followed by the encoded kernel address, organization or messages: 
+ * a frame may contain a batch of messages, which are decoded one after the other.
+ * Kernel addresses and CGR names are sent once per connection and then 
+ * referenced by their index, so that agent addresses and conversation IDs
+ * only take a few bytes. 
+ * <p>
+ * The messages of the types registered here are encoded field by field.
+ * Any other message, or any other content, is written with Java serialization, 
+ * using a new stream for each object so that nothing is retained
+ * from one frame to another.
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+final class WireProtocol {
+
+	/**
+	 * "MDKW"
+	 */
+	static final int	MAGIC						= 0x4D444B57;
+	/**
+	 * To be increased when an encoding or a codec tag changes
+	 */
+	static final byte	VERSION					= 3;
+
+	/**
+	 * The maximum number of kernel addresses indexed per connection
+	 */
+	static final int	MAX_KERNELS				= 1 << 10;
+	/**
+	 * The maximum number of CGR names indexed per connection
+	 */
+	static final int	MAX_NAMES				= 1 << 12;
+
+	/**
+	 * The message tag for serialized messages
+	 */
+	static final byte	SERIALIZED_MESSAGE	= 0;
+
+	// agent address kinds
+	static final byte	NULL_ADDRESS			= 0;
+	static final byte	AGENT_ADDRESS			= 1;
+	static final byte	CANDIDATE_ADDRESS		= 2;
+	static final byte	MANAGER_ADDRESS		= 3;
+	static final byte	SECURED_MANAGER_ADDRESS	= 4;
+	/**
+	 * Set on the kind of an address which was no longer valid when sent: 
+	 * its CGR string is written instead of the role names.
+	 */
+	static final byte	INVALID_ADDRESS		= 0x10;
+
+	// value types
+	static final byte	NULL_VALUE				= 0;
+	static final byte	STRING_VALUE			= 1;
+	static final byte	INT_VALUE				= 2;
+	static final byte	LONG_VALUE				= 3;
+	static final byte	DOUBLE_VALUE			= 4;
+	static final byte	TRUE_VALUE				= 5;
+	static final byte	FALSE_VALUE				= 6;
+	static final byte	MESSAGE_VALUE			= 7;
+	static final byte	ADDRESS_VALUE			= 8;
+	static final byte	SERIALIZED_VALUE		= 9;
+
+	private static final Map<Class<?>, MessageCodec<?>>	CODECS	= new HashMap<>();
+	private static final MessageCodec<?>[]					BY_TAG	= new MessageCodec<?>[9];
+
+	static {
+		register(new MessageCodec<Message>(1, Message.class) {
+			@Override
+			void write(WireOutput out, Message m) {
+			}
+
+			@Override
+			Message read(WireInput in) {
+				return new Message();
+			}
+		});
+		register(new MessageCodec<ObjectMessage<Object>>(2, objectMessageClass()) {
+			@Override
+			void write(WireOutput out, ObjectMessage<Object> m) throws IOException {
+				out.writeValue(m.getContent());
+			}
+
+			@Override
+			ObjectMessage<Object> read(WireInput in) throws IOException {
+				return new ObjectMessage<>(in.readValue());
+			}
+		});
+		register(new MessageCodec<StringMessage>(3, StringMessage.class) {
+			@Override
+			void write(WireOutput out, StringMessage m) {
+				out.writeString(m.getContent());
+			}
+
+			@Override
+			StringMessage read(WireInput in) throws IOException {
+				return new StringMessage(in.readString());
+			}
+		});
+		register(new MessageCodec<IntegerMessage>(4, IntegerMessage.class) {
+			@Override
+			void write(WireOutput out, IntegerMessage m) throws IOException {
+				out.writeValue(m.getContent());
+			}
+
+			@Override
+			IntegerMessage read(WireInput in) throws IOException {
+				return new IntegerMessage((Integer) in.readValue());
+			}
+		});
+		register(new MessageCodec<BooleanMessage>(5, BooleanMessage.class) {
+			@Override
+			void write(WireOutput out, BooleanMessage m) throws IOException {
+				out.writeValue(m.getContent());
+			}
+
+			@Override
+			BooleanMessage read(WireInput in) throws IOException {
+				return new BooleanMessage((Boolean) in.readValue());
+			}
+		});
+		register(new MessageCodec<CGRSynchro>(6, CGRSynchro.class) {
+			private final Code[]	codes	= Code.values();
+
+			@Override
+			void write(WireOutput out, CGRSynchro m) {
+				out.writeByte(m.getCode().ordinal());
+				out.writeAgentAddress(m.getContent());
+			}
+
+			@Override
+			CGRSynchro read(WireInput in) throws IOException {
+				final int code = in.readByte();
+				if (code < 0 || code >= codes.length)
+					throw new StreamCorruptedException("unknown CGR code " + code);
+				return new CGRSynchro(codes[code], in.readAgentAddress());
+			}
+		});
+		register(new MessageCodec<RequestRoleSecure>(7, RequestRoleSecure.class) {
+			@Override
+			void write(WireOutput out, RequestRoleSecure m) throws IOException {
+				out.writeAgentAddress(m.getRequester());
+				out.writeName(m.getRoleName());
+				out.writeValue(m.getContent());
+			}
+
+			@Override
+			RequestRoleSecure read(WireInput in) throws IOException {
+				final AgentAddress requester = in.readAgentAddress();
+				final String roleName = in.readName();
+				return new RequestRoleSecure(requester, roleName, in.readValue());
+			}
+		});
+		register(new MessageCodec<DistantBroadcast>(8, DistantBroadcast.class) {
+			@Override
+			void write(WireOutput out, DistantBroadcast m) throws IOException {
+				final List<AgentAddress> receivers = m.getReceivers();
+				out.writeVarInt(receivers.size());
+				for (final AgentAddress aa : receivers) {
+					out.writeAgentAddress(aa);
+				}
+				out.writeMessage(m.getContent());
+			}
+
+			@Override
+			DistantBroadcast read(WireInput in) throws IOException {
+				final int size = in.readVarInt();
+				final List<AgentAddress> receivers = new ArrayList<>(Math.min(size, 1024));
+				for (int i = 0; i < size; i++) {
+					receivers.add(in.readAgentAddress());
+				}
+				return new DistantBroadcast(in.readMessage(), receivers);
+			}
+		});
+	}
+
+	private WireProtocol() {
+	}
+
+	private static void register(final MessageCodec<?> codec) {
+		CODECS.put(codec.getType(), codec);
+		BY_TAG[codec.getTag()] = codec;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Class<ObjectMessage<Object>> objectMessageClass() {
+		return (Class<ObjectMessage<Object>>) (Class<?>) ObjectMessage.class;
+	}
+
+	/**
+	 * @param type a message class
+	 * @return the codec registered for this exact class, or <code>null</code>
+	 * if messages of this type have to be serialized
+	 */
+	@SuppressWarnings("unchecked")
+	static <M extends Message> MessageCodec<M> getCodec(final Class<M> type) {
+		return (MessageCodec<M>) CODECS.get(type);
+	}
+
+	/**
+	 * @param tag a tag read from a frame
+	 * @return the corresponding codec
+	 * @throws StreamCorruptedException if no codec has this tag
+	 */
+	static MessageCodec<?> getCodec(final int tag) throws StreamCorruptedException {
+		if (tag > 0 && tag < BY_TAG.length && BY_TAG[tag] != null)
+			return BY_TAG[tag];
+		throw new StreamCorruptedException("unknown message tag " + tag);
+	}
+
+}
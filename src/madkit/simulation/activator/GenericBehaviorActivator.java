@@ -36,11 +36,18 @@ knowledge of the CeCILL-C license and that you accept its terms.
  */
 package madkit.simulation.activator;
 
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
-import java.util.HashMap;
+import java.lang.reflect.Modifier;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import madkit.kernel.AbstractAgent;
 import madkit.kernel.Activator;
@@ -55,17 +62,24 @@ import madkit.simulation.SimulationException;
  * as they extend {@link AbstractAgent}. 
  * This has to be used by {@link Scheduler} subclasses to 
  * create simulation applications.
+ * <p>
+ * By default, the method is compiled once per agent class into a 
+ * functional object which is then directly called on the agents,
+ * avoiding the cost of reflection at each step. See {@link #useCompiledMode(boolean)}.
  * 
  * @author Fabien Michel
  * @since MaDKit 5.0.0.1
- * @version 1.0
+ * @version 1.1
  * 
  */
 public class GenericBehaviorActivator<A extends AbstractAgent> extends Activator<A>
 {     
 	/** methods maps an agent class to its corresponding Method object for runtime invocation*/
 	private final Map<Class<? extends A>,Method> methods;
+	/** behaviors maps an agent class to the compiled form of its corresponding Method */
+	private final Map<Class<? extends A>,Consumer<A>> behaviors;
 	private final String methodName;
+	private boolean compiledMode = true;
 //	private Class<? extends A> cachedClass = null;
 
 	/**
@@ -82,13 +96,34 @@ public class GenericBehaviorActivator<A extends AbstractAgent> extends Activator
 	public GenericBehaviorActivator(final String community, final String group, final String role,final String theBehaviorToActivate)
 	{
 		super(community, group, role);
-		methods = new HashMap<>();
+		methods = new ConcurrentHashMap<>();
+		behaviors = new ConcurrentHashMap<>();
 		methodName = theBehaviorToActivate;
 	}
 
 	public String getBehaviorName()	{
 		return methodName;
 	}
+
+	/**
+	 * Sets if the behavior is compiled, which is the default, or invoked using
+	 * {@link Method#invoke(Object, Object...)} on each agent.
+	 * 
+	 * @param compiled <code>true</code> to use the compiled mode
+	 * @since MaDKit 5.2
+	 */
+	public void useCompiledMode(boolean compiled) {
+		compiledMode = compiled;
+	}
+
+	/**
+	 * @return <code>true</code> if the behavior is compiled once per agent class
+	 * and directly called on the agents, <code>false</code> if it is invoked using reflection.
+	 * @since MaDKit 5.2
+	 */
+	public boolean isCompiledModeOn() {
+		return compiledMode;
+	}
 	
 	/**
 	 * Triggers the corresponding behavior on all the agents
@@ -96,29 +131,47 @@ public class GenericBehaviorActivator<A extends AbstractAgent> extends Activator
 	 * 
 	 * @see madkit.kernel.Activator#execute(List, Object...)
 	 */
-	@SuppressWarnings("null")
 	@Override
 	public void execute(final List<A> agents, Object... args){
-		//local cache for multicore execute and avoiding adding collision
+		if (compiledMode) {
+			executeCompiled(agents);
+		}
+		else {
+			executeReflectively(agents);
+		}
+	}
+
+	private void executeCompiled(final List<A> agents) {
+		//local cache for avoiding map lookups
+		Consumer<A> cachedB = null;
+		Class<?> cachedC = null;
+		for (final A a : agents) {
+			if (a.isAlive()) {
+				final Class<?> agentClass = a.getClass();
+				if (agentClass != cachedC) {
+					cachedC = agentClass;
+					cachedB = behaviors.computeIfAbsent(getAgentClass(a), this::compile);
+				}
+				try {
+					cachedB.accept(a);
+				} catch (Throwable e) {
+					throw new SimulationException(toString()+" on "+methods.get(agentClass)+" "+a,e);
+				}
+			}
+		}
+	}
+
+	@SuppressWarnings("null")
+	private void executeReflectively(final List<A> agents) {
+		//local cache for multicore execute and avoiding map lookups
 		Method cachedM = null;
 		Class<? extends A> cachedC = null;
 		for (final A a : agents) {
 			if (a.isAlive()) {
-				@SuppressWarnings("unchecked")
-				final Class<? extends A> agentClass = (Class<? extends A>) a.getClass();
+				final Class<? extends A> agentClass = getAgentClass(a);
 				if (agentClass != cachedC) {
 					cachedC = agentClass;
-					cachedM = methods.get(agentClass);
-					if(cachedM == null){
-						try {
-							cachedM = findMethodOn(agentClass,methodName);
-						} catch (NoSuchMethodException e) {
-							throw new SimulationException(toString(),e);
-						}
-						synchronized (methods) {
-							methods.put(agentClass, cachedM);
-						}
-					}
+					cachedM = getMethod(agentClass);
 				}
 				try {
 					cachedM.invoke(a);
@@ -130,6 +183,65 @@ public class GenericBehaviorActivator<A extends AbstractAgent> extends Activator
 			}
 		}
 	}
+
+	@SuppressWarnings("unchecked")
+	private Class<? extends A> getAgentClass(final A a) {
+		return (Class<? extends A>) a.getClass();
+	}
+
+	private Method getMethod(final Class<? extends A> agentClass) {
+		return methods.computeIfAbsent(agentClass, c -> {
+			try {
+				return findMethodOn(c, methodName);
+			} catch (NoSuchMethodException e) {
+				throw new SimulationException(toString(), e);
+			}
+		});
+	}
+
+	/**
+	 * Compiles the behavior of an agent class into a {@link Consumer}
+	 * using {@link LambdaMetafactory}, so that calling it costs the same
+	 * as a regular method call. If this is not possible, e.g. when the
+	 * agent class is not accessible from here, a method handle is used instead.
+	 * 
+	 * @param agentClass
+	 * @return the compiled behavior
+	 */
+	@SuppressWarnings("unchecked")
+	private Consumer<A> compile(final Class<? extends A> agentClass) {
+		final Method m = getMethod(agentClass);
+		final MethodHandle handle;
+		final MethodHandles.Lookup lookup;
+		try {
+			lookup = MethodHandles.privateLookupIn(m.getDeclaringClass(), MethodHandles.lookup());
+			handle = Modifier.isStatic(m.getModifiers()) ? 
+					MethodHandles.dropArguments(lookup.unreflect(m), 0, m.getDeclaringClass()) : 
+						lookup.unreflect(m);
+		} catch (IllegalAccessException e) {
+			throw new SimulationException(toString(), e);
+		}
+		try {
+			final CallSite site = LambdaMetafactory.metafactory(lookup, 
+					"accept", 
+					MethodType.methodType(Consumer.class), 
+					MethodType.methodType(void.class, Object.class), 
+					handle, 
+					MethodType.methodType(void.class, agentClass));
+			return (Consumer<A>) site.getTarget().invokeExact();
+		} catch (Throwable e) {
+			final MethodHandle generic = handle.asType(MethodType.methodType(void.class, AbstractAgent.class));
+			return a -> {
+				try {
+					generic.invokeExact((AbstractAgent) a);
+				} catch (RuntimeException | Error ex) {
+					throw ex;
+				} catch (Throwable ex) {
+					throw new SimulationException(toString()+" on "+m+" "+a, ex);
+				}
+			};
+		}
+	}
 }
 
 
@@ -0,0 +1,150 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation.probe;
+
+import java.lang.invoke.MethodHandle;
+import java.util.List;
+
+import madkit.kernel.AbstractAgent;
+import madkit.simulation.SimulationException;
+
+/**
+ * This probe inspects a field of type <code>long</code> on agents of type A and its subclasses,
+ * without boxing the values.
+ * The minimum, the maximum and the sum are kept exact by the statistics,
+ * see {@link PropertyStatistics#getLongSum()}, whereas the mean and the
+ * variance are computed using <code>double</code> values.
+ * 
+ * <pre>
+ * LongPropertyProbe&lt;AbstractAgent&gt; probe = new LongPropertyProbe&lt;&gt;(community, group, role, "age");
+ * addProbe(probe);
+ * PropertyStatistics stats = probe.getStatistics();
+ * </pre>
+ * 
+ * @param <A>
+ *            the most common class type expected in this group (e.g.
+ *            AbstractAgent)
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * @see PropertyProbe
+ * 
+ */
+public class LongPropertyProbe<A extends AbstractAgent> extends PrimitivePropertyProbe<A> {
+
+	/**
+	 * Builds a new LongPropertyProbe considering a CGR location and the name of the class's field.
+	 * 
+	 * @param community
+	 * @param group
+	 * @param role
+	 * @param fieldName the name of a <code>long</code> field which is encapsulated in the type &lt;A&gt;
+	 */
+	public LongPropertyProbe(String community, String group, String role, String fieldName) {
+		super(community, group, role, fieldName, long.class);
+	}
+
+	/**
+	 * Returns the current value of the agent's field
+	 * 
+	 * @param agent
+	 *            the agent to probe
+	 * @return the actual value of the agent's field
+	 */
+	public long getPropertyValue(final A agent) {
+		final MethodHandle getter = getterOf(agent.getClass());
+		try {
+			return (long) getter.invokeExact((AbstractAgent) agent);
+		} catch (Throwable e) {
+			throw new SimulationException(toString() + " on " + agent, e);
+		}
+	}
+
+	/**
+	 * Sets the value of the agent's field
+	 * 
+	 * @param agent
+	 * @param value
+	 */
+	public void setPropertyValue(final A agent, final long value) {
+		final MethodHandle setter = setterOf(agent.getClass());
+		try {
+			setter.invokeExact((AbstractAgent) agent, value);
+		} catch (Throwable e) {
+			throw new SimulationException(toString() + " on " + agent, e);
+		}
+	}
+
+	@Override
+	void accumulate(final List<A> agents, final PropertyStatistics statistics) {
+		Class<?> cachedClass = null;
+		MethodHandle getter = null;
+		for (final A a : agents) {
+			if (a.getClass() != cachedClass) {
+				cachedClass = a.getClass();
+				getter = getterOf(cachedClass);
+			}
+			final long value;
+			try {
+				value = (long) getter.invokeExact((AbstractAgent) a);
+			} catch (Throwable e) {
+				throw new SimulationException(toString() + " on " + a, e);
+			}
+			statistics.add(value);
+		}
+	}
+
+	@Override
+	void fillHistogram(final List<A> agents, final double min, final double binWidth, final int[] bins) {
+		Class<?> cachedClass = null;
+		MethodHandle getter = null;
+		for (final A a : agents) {
+			if (a.getClass() != cachedClass) {
+				cachedClass = a.getClass();
+				getter = getterOf(cachedClass);
+			}
+			final long value;
+			try {
+				value = (long) getter.invokeExact((AbstractAgent) a);
+			} catch (Throwable e) {
+				throw new SimulationException(toString() + " on " + a, e);
+			}
+			bins[binIndex(value, min, binWidth, bins.length)]++;
+		}
+	}
+
+}
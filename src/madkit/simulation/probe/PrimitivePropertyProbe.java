@@ -0,0 +1,310 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation.probe;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.invoke.VarHandle;
+import java.lang.invoke.VarHandle.AccessMode;
+import java.lang.reflect.Field;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.Probe;
+import madkit.simulation.SimulationException;
+
+/**
+ * The common part of the probes which inspect a primitive field on agents of type A
+ * and its subclasses, without boxing: see {@link IntPropertyProbe}, 
+ * {@link LongPropertyProbe} and {@link DoublePropertyProbe}.
+ * <p>
+ * The field is accessed through a {@link VarHandle} which is built once per agent class
+ * and kept in a thread safe cache. The aggregations, i.e. {@link #getStatistics()} 
+ * and {@link #getHistogram(double, double, int)}, are done in a single pass
+ * over {@link #getCurrentAgentsList()}, which can be done in parallel
+ * for large populations, see {@link #useParallelAggregation(boolean)}.
+ * 
+ * @param <A>
+ *            the most common class type expected in this group (e.g.
+ *            AbstractAgent)
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public abstract class PrimitivePropertyProbe<A extends AbstractAgent> extends Probe<A> {
+
+	/**
+	 * below this number of agents, a parallel aggregation is done sequentially
+	 */
+	static final int											PARALLEL_THRESHOLD	= 1 << 14;
+
+	private final String										fieldName;
+	private final Class<?>									fieldType;
+	private final Map<Class<?>, MethodHandle[]>		accessors				= new ConcurrentHashMap<>();
+	private boolean											parallel					= false;
+
+	PrimitivePropertyProbe(String community, String group, String role, String fieldName, Class<?> fieldType) {
+		super(community, group, role);
+		this.fieldName = fieldName;
+		this.fieldType = fieldType;
+	}
+
+	/**
+	 * @return the name of the probed field
+	 */
+	public String getFieldName() {
+		return fieldName;
+	}
+
+	/**
+	 * Sets if aggregations should be done in parallel when there are
+	 * a lot of agents. Default is <code>false</code>.
+	 * 
+	 * @param parallelAggregation
+	 */
+	public void useParallelAggregation(boolean parallelAggregation) {
+		parallel = parallelAggregation;
+	}
+
+	/**
+	 * @return <code>true</code> if aggregations are done in parallel
+	 * when there are a lot of agents.
+	 */
+	public boolean isParallelAggregationOn() {
+		return parallel;
+	}
+
+	/**
+	 * Returns the getter of the field for this agent class, 
+	 * typed as <code>(AbstractAgent)fieldType</code>
+	 * 
+	 * @param agentClass
+	 * @return the getter of the field
+	 */
+	final MethodHandle getterOf(final Class<?> agentClass) {
+		return accessorsOf(agentClass)[0];
+	}
+
+	/**
+	 * Returns the setter of the field for this agent class, 
+	 * typed as <code>(AbstractAgent,fieldType)void</code>
+	 * 
+	 * @param agentClass
+	 * @return the setter of the field
+	 */
+	final MethodHandle setterOf(final Class<?> agentClass) {
+		return accessorsOf(agentClass)[1];
+	}
+
+	private MethodHandle[] accessorsOf(final Class<?> agentClass) {
+		MethodHandle[] a = accessors.get(agentClass);
+		if (a == null) {
+			a = accessors.computeIfAbsent(agentClass, this::buildAccessors);
+		}
+		return a;
+	}
+
+	@SuppressWarnings("unchecked")
+	private MethodHandle[] buildAccessors(final Class<?> agentClass) {
+		try {
+			final Field f = findFieldOn((Class<? extends AbstractAgent>) agentClass, fieldName);
+			if (f.getType() != fieldType) {
+				throw new SimulationException(toString() + " on " + agentClass.getName(), 
+						new IllegalArgumentException(f + " is not of type " + fieldType));
+			}
+			final VarHandle vh = MethodHandles.privateLookupIn(f.getDeclaringClass(), MethodHandles.lookup()).unreflectVarHandle(f);
+			return new MethodHandle[] { 
+					vh.toMethodHandle(AccessMode.GET).asType(MethodType.methodType(fieldType, AbstractAgent.class)),
+					vh.toMethodHandle(AccessMode.SET).asType(MethodType.methodType(void.class, AbstractAgent.class, fieldType)) };
+		} catch (NoSuchFieldException | IllegalAccessException e) {
+			throw new SimulationException(toString() + " on " + agentClass.getName(), e);
+		}
+	}
+
+	/**
+	 * Adds the values of the agents to the statistics, in a single pass
+	 * 
+	 * @param agents
+	 * @param statistics
+	 */
+	abstract void accumulate(final List<A> agents, final PropertyStatistics statistics);
+
+	/**
+	 * Counts the values of the agents in the bins
+	 * 
+	 * @param agents
+	 * @param min
+	 * @param binWidth
+	 * @param bins
+	 */
+	abstract void fillHistogram(final List<A> agents, final double min, final double binWidth, final int[] bins);
+
+	/**
+	 * Returns the index of the bin for this value, values out of the
+	 * range being counted in the first or in the last bin.
+	 */
+	static int binIndex(final double value, final double min, final double binWidth, final int nbOfBins) {
+		final int i = (int) ((value - min) / binWidth);
+		return i < 0 ? 0 : (i >= nbOfBins ? nbOfBins - 1 : i);
+	}
+
+	/**
+	 * Computes, in a single pass over the agents, the minimum, maximum, sum, 
+	 * mean and variance of the property.
+	 * 
+	 * @return the statistics of the property over all the agents
+	 */
+	public PropertyStatistics getStatistics() {
+		return aggregate(l -> {
+			final PropertyStatistics s = new PropertyStatistics(fieldType != double.class);
+			accumulate(l, s);
+			return s;
+		}, PropertyStatistics::combine);
+	}
+
+	/**
+	 * Returns the histogram of the property over all the agents.
+	 * Values which are lower than <code>min</code> are counted in the first bin,
+	 * and values which are greater than or equal to <code>max</code> in the last bin.
+	 * 
+	 * @param min the lower bound of the first bin
+	 * @param max the upper bound of the last bin
+	 * @param nbOfBins the number of bins, which have the same width
+	 * @return an array containing the number of agents in each bin
+	 */
+	public int[] getHistogram(final double min, final double max, final int nbOfBins) {
+		if (nbOfBins < 1 || !(max > min))
+			throw new IllegalArgumentException("wrong histogram definition: [" + min + "," + max + "[ / " + nbOfBins);
+		final double binWidth = (max - min) / nbOfBins;
+		return aggregate(l -> {
+			final int[] bins = new int[nbOfBins];
+			fillHistogram(l, min, binWidth, bins);
+			return bins;
+		}, (b1, b2) -> {
+			for (int i = 0; i < b1.length; i++) {
+				b1[i] += b2[i];
+			}
+			return b1;
+		});
+	}
+
+	/**
+	 * @return the minimum value of the property over all the agents,
+	 * or {@link Double#NaN} if there is no agent.
+	 * @see #getStatistics()
+	 */
+	public double getMin() {
+		return getStatistics().getMin();
+	}
+
+	/**
+	 * @return the maximum value of the property over all the agents,
+	 * or {@link Double#NaN} if there is no agent.
+	 * @see #getStatistics()
+	 */
+	public double getMax() {
+		return getStatistics().getMax();
+	}
+
+	/**
+	 * @return the sum of the property over all the agents
+	 * @see #getStatistics()
+	 */
+	public double getSum() {
+		return getStatistics().getSum();
+	}
+
+	/**
+	 * @return the mean value of the property over all the agents,
+	 * or {@link Double#NaN} if there is no agent.
+	 * @see #getStatistics()
+	 */
+	public double getMean() {
+		return getStatistics().getMean();
+	}
+
+	/**
+	 * @return the population variance of the property over all the agents,
+	 * or {@link Double#NaN} if there is no agent.
+	 * @see #getStatistics()
+	 */
+	public double getVariance() {
+		return getStatistics().getVariance();
+	}
+
+	private <R> R aggregate(final Function<List<A>, R> leaf, final BinaryOperator<R> combiner) {
+		final List<A> agents = getCurrentAgentsList();
+		if (parallel && agents.size() > PARALLEL_THRESHOLD) {
+			return getParallelPool().invoke(new AggregationTask<>(agents, leaf, combiner));
+		}
+		return leaf.apply(agents);
+	}
+
+	@SuppressWarnings("serial")
+	private final class AggregationTask<R> extends RecursiveTask<R> {
+
+		private final List<A>						agents;
+		private final Function<List<A>, R>		leaf;
+		private final BinaryOperator<R>			combiner;
+
+		AggregationTask(final List<A> agents, final Function<List<A>, R> leaf, final BinaryOperator<R> combiner) {
+			this.agents = agents;
+			this.leaf = leaf;
+			this.combiner = combiner;
+		}
+
+		@Override
+		protected R compute() {
+			final int size = agents.size();
+			if (size <= PARALLEL_THRESHOLD) {
+				return leaf.apply(agents);
+			}
+			final AggregationTask<R> right = new AggregationTask<>(agents.subList(size / 2, size), leaf, combiner);
+			right.fork();
+			final R left = new AggregationTask<>(agents.subList(0, size / 2), leaf, combiner).compute();
+			return combiner.apply(left, right.join());
+		}
+	}
+
+}
@@ -0,0 +1,240 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation.probe;
+
+/**
+ * Statistics computed in a single pass by the primitive property probes:
+ * see {@link PrimitivePropertyProbe#getStatistics()}.
+ * The mean and the variance are computed using Welford's algorithm, 
+ * so that they remain accurate on large populations.
+ * For <code>int</code> and <code>long</code> fields, the minimum, the maximum
+ * and the sum are also accumulated as <code>long</code> values, so that
+ * they are exact above 2<sup>53</sup>: see {@link #getLongSum()}.
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public final class PropertyStatistics {
+
+	private long	count;
+	private double	min	= Double.NaN;
+	private double	max	= Double.NaN;
+	private double	sum;
+	private double	mean	= Double.NaN;
+	private double	m2;
+	private final boolean	integral;
+	private long	longMin;
+	private long	longMax;
+	private long	longSum;
+	private boolean	sumOverflow;
+
+	/**
+	 * @param integral <code>true</code> if the values are <code>int</code> or <code>long</code>
+	 */
+	PropertyStatistics(final boolean integral) {
+		this.integral = integral;
+	}
+
+	final void add(final long value) {
+		if (count == 0) {
+			longMin = longMax = value;
+		}
+		else if (value < longMin) {
+			longMin = value;
+		}
+		else if (value > longMax) {
+			longMax = value;
+		}
+		addToLongSum(value);
+		add((double) value);
+	}
+
+	private void addToLongSum(final long value) {
+		final long s = longSum + value;
+		if (((longSum ^ s) & (value ^ s)) < 0) {// both operands have the sign that the result lost
+			sumOverflow = true;
+		}
+		longSum = s;
+	}
+
+	final void add(final double value) {
+		if (count++ == 0) {
+			min = max = mean = value;
+		}
+		else {
+			if (value < min)
+				min = value;
+			if (value > max)
+				max = value;
+			final double delta = value - mean;
+			mean += delta / count;
+			m2 += delta * (value - mean);
+		}
+		sum += value;
+	}
+
+	/**
+	 * Merges the statistics of another part of the population into this one.
+	 * 
+	 * @param other
+	 * @return this object
+	 */
+	final PropertyStatistics combine(final PropertyStatistics other) {
+		if (other.count == 0)
+			return this;
+		if (count == 0) {
+			count = other.count;
+			min = other.min;
+			max = other.max;
+			sum = other.sum;
+			mean = other.mean;
+			m2 = other.m2;
+			longMin = other.longMin;
+			longMax = other.longMax;
+			longSum = other.longSum;
+			sumOverflow = other.sumOverflow;
+			return this;
+		}
+		final long n = count + other.count;
+		final double delta = other.mean - mean;
+		m2 += other.m2 + delta * delta * ((double) count * other.count / n);
+		mean += delta * other.count / n;
+		count = n;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+		if (integral) {
+			longMin = Math.min(longMin, other.longMin);
+			longMax = Math.max(longMax, other.longMax);
+			sumOverflow |= other.sumOverflow;
+			addToLongSum(other.longSum);
+		}
+		return this;
+	}
+
+	/**
+	 * @return the number of probed agents
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	/**
+	 * @return the minimum value, or {@link Double#NaN} if there is no agent
+	 */
+	public double getMin() {
+		return integral && count != 0 ? longMin : min;
+	}
+
+	/**
+	 * @return the maximum value, or {@link Double#NaN} if there is no agent
+	 */
+	public double getMax() {
+		return integral && count != 0 ? longMax : max;
+	}
+
+	/**
+	 * @return the sum of the values
+	 */
+	public double getSum() {
+		return integral && !sumOverflow ? longSum : sum;
+	}
+
+	/**
+	 * @return the exact minimum value of an <code>int</code> or <code>long</code> field
+	 * @throws IllegalStateException if there is no agent or if the field is a <code>double</code>
+	 */
+	public long getLongMin() {
+		checkIntegral();
+		return longMin;
+	}
+
+	/**
+	 * @return the exact maximum value of an <code>int</code> or <code>long</code> field
+	 * @throws IllegalStateException if there is no agent or if the field is a <code>double</code>
+	 */
+	public long getLongMax() {
+		checkIntegral();
+		return longMax;
+	}
+
+	/**
+	 * @return the exact sum of the values of an <code>int</code> or <code>long</code> field
+	 * @throws IllegalStateException if there is no agent or if the field is a <code>double</code>
+	 * @throws ArithmeticException if the sum overflows a <code>long</code>
+	 */
+	public long getLongSum() {
+		checkIntegral();
+		if (sumOverflow)
+			throw new ArithmeticException("long overflow");
+		return longSum;
+	}
+
+	private void checkIntegral() {
+		if (!integral || count == 0)
+			throw new IllegalStateException(integral ? "no agent" : "not an integral property");
+	}
+
+	/**
+	 * @return the mean value, or {@link Double#NaN} if there is no agent
+	 */
+	public double getMean() {
+		return mean;
+	}
+
+	/**
+	 * @return the population variance, or {@link Double#NaN} if there is no agent
+	 */
+	public double getVariance() {
+		return count == 0 ? Double.NaN : m2 / count;
+	}
+
+	/**
+	 * @return the population standard deviation, or {@link Double#NaN} if there is no agent
+	 */
+	public double getStandardDeviation() {
+		return Math.sqrt(getVariance());
+	}
+
+	@Override
+	public String toString() {
+		return getClass().getSimpleName() + " [count=" + count + ", min=" + min + ", max=" + max + ", sum=" + sum + ", mean=" + mean + ", variance="
+				+ getVariance() + "]";
+	}
+
+}
@@ -36,6 +36,7 @@ knowledge of the CeCILL-C license and that you accept its terms.
  */
 package madkit.api.abstractAgent;
 
+import static madkit.kernel.AbstractAgent.ReturnCode.MAILBOX_FULL;
 import static madkit.kernel.AbstractAgent.ReturnCode.NOT_COMMUNITY;
 import static madkit.kernel.AbstractAgent.ReturnCode.NOT_GROUP;
 import static madkit.kernel.AbstractAgent.ReturnCode.NOT_IN_GROUP;
@@ -46,9 +47,17 @@ import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+
 import madkit.kernel.AbstractAgent;
+import madkit.kernel.ArrayMailbox;
 import madkit.kernel.JunitMadkit;
+import madkit.kernel.Mailbox.OverflowPolicy;
 import madkit.kernel.Message;
+import madkit.message.SharedMessage;
 import madkit.message.StringMessage;
 
 import org.junit.Test;
@@ -108,6 +117,53 @@ public class BroadcastMessageTest extends JunitMadkit {
 		});
 	}
 
+	static class SharedStringMessage extends StringMessage implements SharedMessage {
+
+		private static final long	serialVersionUID	= 1L;
+
+		SharedStringMessage(String content) {
+			super(content);
+		}
+	}
+
+	@Test
+	public void sharedMessageIsNotCloned() {
+		launchTest(new AbstractAgent() {
+			protected void activate() {
+				assertEquals(SUCCESS, launchAgent(target));
+				assertEquals(SUCCESS, launchAgent(target2));
+				assertEquals(SUCCESS, requestRole(COMMUNITY, GROUP, ROLE));
+				final Message sent = new SharedStringMessage("test");
+				assertEquals(SUCCESS, broadcastMessage(COMMUNITY, GROUP, ROLE, sent));
+				final Message m = target.nextMessage();
+				assertSame(sent, m);
+				assertSame(sent, target2.nextMessage());
+				assertNull(m.getReceiver());
+				assertEquals(ROLE, m.getSender().getRole());
+				assertEquals(SUCCESS, target.sendReply(m, new Message()));
+				assertNotNull(nextMessage());
+			}
+		});
+	}
+
+	@Test
+	public void largeBroadcast() {
+		launchTest(new AbstractAgent() {
+			protected void activate() {
+				assertEquals(SUCCESS, launchAgent(target));
+				assertEquals(SUCCESS, requestRole(COMMUNITY, GROUP, ROLE2));
+				final List<AbstractAgent> l = launchAgentBucket(AbstractAgent.class.getName(), 50_000, COMMUNITY + "," + GROUP + "," + ROLE);
+				assertEquals(SUCCESS, broadcastMessage(COMMUNITY, GROUP, ROLE, new Message()));
+				assertEquals(SUCCESS, broadcastMessage(COMMUNITY, GROUP, ROLE, new SharedStringMessage("test")));
+				for (AbstractAgent a : l) {
+					assertEquals(a.hashCode(), a.nextMessage().getReceiver().hashCode());
+					assertNotNull(a.nextMessage());
+					assertNull(a.nextMessage());
+				}
+			}
+		});
+	}
+
 	@Test
 	public void returnNotInGroup() {
 		launchTest(new AbstractAgent() {
@@ -163,6 +219,25 @@ public class BroadcastMessageTest extends JunitMadkit {
 		});
 	}
 
+	@Test
+	public void returnMailboxFull() {
+		launchTest(new AbstractAgent() {
+			protected void activate() {
+				target2.setMailbox(new ArrayMailbox(1, OverflowPolicy.REJECT));
+				assertEquals(SUCCESS, launchAgent(target));
+				assertEquals(SUCCESS, launchAgent(target2));
+				assertEquals(SUCCESS, requestRole(COMMUNITY, GROUP, ROLE));
+				assertEquals(SUCCESS, broadcastMessage(COMMUNITY, GROUP, ROLE, new Message()));
+				assertEquals(MAILBOX_FULL, broadcastMessage(COMMUNITY, GROUP, ROLE, new Message()));
+				assertEquals(MAILBOX_FULL, broadcastMessageWithRole(COMMUNITY, GROUP, ROLE, new SharedStringMessage("test"), ROLE));
+				// the other receivers got them
+				assertEquals(3, target.nextMessages(null).size());
+				assertNotNull(target2.nextMessage());
+				assertEquals(SUCCESS, broadcastMessage(COMMUNITY, GROUP, ROLE, new Message()));
+			}
+		});
+	}
+
 	@Test
 	public void nullArgs() {
 		launchTest(new AbstractAgent() {
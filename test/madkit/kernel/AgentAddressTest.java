@@ -39,6 +39,7 @@ package madkit.kernel;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import madkit.kernel.Madkit.BooleanOption;
 
@@ -111,6 +112,26 @@ public class AgentAddressTest {
 		assertEquals("r", aa.getRole());
 	}
 
+	/**
+	 * Addresses invalidated from the same role share its location
+	 */
+	@Test
+	public void invalidAddressesShareTheLocation() {
+		final AbstractAgent b = new AbstractAgent();
+		b.setKernel(mk);
+		assertTrue(r.addMember(b));
+		final AgentAddress bb = r.getAgentAddressOf(b);
+		final String role = aa.getRole();
+		assertEquals(AbstractAgent.ReturnCode.SUCCESS, r.removeMember(a));
+		assertEquals(AbstractAgent.ReturnCode.SUCCESS, r.removeMember(b));
+		assertNotNull(aa.getLocation());
+		assertSame(aa.getLocation(), bb.getLocation());
+		assertSame(r.getLocation(), aa.getLocation());
+		assertSame(role, aa.getRole());
+		assertFalse(aa.equals(bb));
+		assertTrue(aa.equals(new AgentAddress(a.hashCode(), null, new Role("c", "g", "r"), aa.getKernelAddress())));
+	}
+
 	/**
 	 * Test method for {@link madkit.kernel.AgentAddress#getRoleObject()}.
 	 */
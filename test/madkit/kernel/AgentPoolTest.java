@@ -0,0 +1,143 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import static madkit.kernel.AbstractAgent.ReturnCode.INVALID_AGENT_ADDRESS;
+import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
+import static madkit.kernel.AbstractAgent.State.NOT_LAUNCHED;
+import static madkit.kernel.AbstractAgent.State.TERMINATED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class AgentPoolTest extends JunitMadkit {
+
+	static class Counter extends AbstractAgent {
+
+		int	activations;
+		int	recycles;
+
+		@Override
+		protected void activate() {
+			activations++;
+		}
+
+		@Override
+		protected void recycle() {
+			activations = 0;
+			recycles++;
+		}
+	}
+
+	@Test
+	public void killedAgentsAreRelaunched() {
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				createGroup(COMMUNITY, GROUP);
+				requestRole(COMMUNITY, GROUP, ROLE2);
+				final AgentPool<Counter> pool = new AgentPool<>(Counter::new);
+				final List<Counter> bucket = pool.launchAgentBucket(this, 10, COMMUNITY + "," + GROUP + "," + ROLE);
+				assertEquals(10, getAgentsWithRole(COMMUNITY, GROUP, ROLE).size());
+				final Counter c = bucket.get(0);
+				final int hashCode = c.hashCode();
+				final AgentAddress oldAddress = c.getAgentAddressIn(COMMUNITY, GROUP, ROLE);
+				assertEquals(SUCCESS, sendMessage(oldAddress, new Message()));
+				assertEquals(SUCCESS, pool.killAgent(this, c));
+				assertEquals(1, pool.size());
+				assertEquals(NOT_LAUNCHED, c.getState());
+				assertEquals(1, c.recycles);
+				assertNotEquals(hashCode, c.hashCode());
+				assertTrue(c.isMessageBoxEmpty());
+
+				final List<Counter> relaunched = pool.launchAgentBucket(this, 2, COMMUNITY + "," + GROUP + "," + ROLE);
+				assertEquals(0, pool.size());
+				assertSame(c, relaunched.get(0));
+				assertTrue(c.isAlive());
+				assertEquals(1, c.activations);
+				assertEquals(11, getAgentsWithRole(COMMUNITY, GROUP, ROLE).size());
+				// the addresses of the previous life remain invalid
+				assertEquals(INVALID_AGENT_ADDRESS, sendMessage(oldAddress, new Message()));
+				assertNull(c.nextMessage());
+			}
+		});
+	}
+
+	@Test
+	public void onlyTerminatedAgentsAreRecycled() {
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				final AgentPool<AbstractAgent> pool = new AgentPool<>(AbstractAgent::new, 1);
+				final AbstractAgent a = new AbstractAgent();
+				assertFalse(pool.release(a));
+				launchAgent(a);
+				assertFalse(pool.release(a));
+				killAgent(a);
+				assertTrue(pool.release(a));
+				assertFalse(pool.release(a));
+				final AbstractAgent b = new AbstractAgent();
+				launchAgent(b);
+				killAgent(b);
+				final int hashCode = b.hashCode();
+				assertFalse(pool.release(b));
+				// a full pool leaves the agent as it is
+				assertEquals(TERMINATED, b.getState());
+				assertEquals(hashCode, b.hashCode());
+				assertEquals(1, pool.size());
+				final Agent threaded = new Agent();
+				launchAgent(threaded);
+				killAgent(threaded);
+				assertFalse(new AgentPool<>(Agent::new).release(threaded));
+				assertSame(a, pool.take(1).get(0));
+			}
+		});
+	}
+
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+
+import madkit.kernel.Madkit.BooleanOption;
+import madkit.kernel.Madkit.LevelOption;
+
+import org.junit.Test;
+
+/**
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class AsyncLogWriterTest extends JunitMadkit {
+
+	private static File newLogDir(String name) throws IOException {
+		final File dir = Files.createTempDirectory(name).toFile();
+		dir.deleteOnExit();
+		return dir;
+	}
+
+	private static LogRecord record(String agent, String msg) {
+		final LogRecord r = new LogRecord(Level.INFO, msg);
+		r.setLoggerName("[" + agent + "]");
+		return r;
+	}
+
+	@Test
+	public void concurrentAgentsShareOneFile() throws Exception {
+		final File dir = newLogDir("sharedLog");
+		final ByteArrayOutputStream console = new ByteArrayOutputStream();
+		final AsyncLogWriter w = new AsyncLogWriter("test", dir, console, 1 << 16, Long.MAX_VALUE, 1);
+		final Handler both = w.getHandler(true, true);
+		final Handler fileOnly = w.getHandler(false, true);
+		final Thread[] threads = new Thread[4];
+		for (int i = 0; i < threads.length; i++) {
+			final String agent = "a" + i;
+			final Handler h = i == 0 ? both : fileOnly;
+			threads[i] = new Thread(() -> {
+				for (int j = 0; j < 1000; j++) {
+					h.publish(record(agent, "m" + j));
+				}
+			});
+			threads[i].start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+		w.close();
+		assertEquals(0, w.getDroppedCount());
+		final List<String> lines = Files.readAllLines(new File(dir, AsyncLogWriter.LOG_FILE_NAME).toPath());
+		assertEquals(4000, lines.size());
+		for (int i = 0; i < threads.length; i++) {
+			final String prefix = "[a" + i + "]";
+			assertEquals(1000, lines.stream().filter(l -> l.startsWith(prefix)).count());
+		}
+		assertEquals(1000, console.toString().split("\n").length);
+		assertTrue(lines.contains("[a3] INFO : m999"));
+	}
+
+	@Test
+	public void logFileIsRotated() throws Exception {
+		final File dir = newLogDir("rotatedLog");
+		final AsyncLogWriter w = new AsyncLogWriter("test", dir, new ByteArrayOutputStream(), 1 << 12, 1000, 3);
+		final Handler h = w.getHandler(false, true);
+		for (int j = 0; j < 1000; j++) {
+			h.publish(record("a", "message number " + j));
+		}
+		w.close();
+		assertTrue(new File(dir, AsyncLogWriter.LOG_FILE_NAME).length() <= 1100);
+		assertTrue(new File(dir, AsyncLogWriter.LOG_FILE_NAME + ".1").exists());
+		assertTrue(new File(dir, AsyncLogWriter.LOG_FILE_NAME + ".2").exists());
+		assertFalse(new File(dir, AsyncLogWriter.LOG_FILE_NAME + ".3").exists());
+	}
+
+	@Test
+	public void fullBufferDropsRecords() throws Exception {
+		final CountDownLatch stuck = new CountDownLatch(1);
+		final CountDownLatch release = new CountDownLatch(1);
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final OutputStream slowConsole = new OutputStream() {
+
+			@Override
+			public void write(int b) {
+				write(new byte[] { (byte) b }, 0, 1);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) {
+				stuck.countDown();
+				try {
+					release.await();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				out.write(b, off, len);
+			}
+		};
+		final AsyncLogWriter w = new AsyncLogWriter("test", newLogDir("droppedLog"), slowConsole, 8, Long.MAX_VALUE, 1);
+		final Handler h = w.getHandler(true, false);
+		h.publish(record("a", "first"));
+		h.flush();
+		// the writer is now blocked on the console
+		stuck.await();
+		final long start = System.nanoTime();
+		for (int j = 0; j < 10_000; j++) {
+			h.publish(record("a", "m" + j));
+		}
+		assertTrue(System.nanoTime() - start < 1_000_000_000L);
+		assertEquals(10_000 - 8, w.getDroppedCount());
+		release.countDown();
+		w.close();
+		final String logged = new String(out.toByteArray(), StandardCharsets.UTF_8);
+		assertTrue(logged, logged.contains("9992 log records dropped"));
+		assertTrue(logged.contains("[a] INFO : m7\n"));
+		assertFalse(logged.contains("[a] INFO : m8\n"));
+	}
+
+	@Test
+	public void agentsLogInTheSharedFile() {
+		addMadkitArgs(BooleanOption.asyncLogging.toString(), BooleanOption.createLogFiles.toString(),
+				LevelOption.agentLogLevel.toString(), "ALL");
+		launchTest(new AbstractAgent() {
+
+			@Override
+			protected void activate() {
+				final AbstractAgent other = new AbstractAgent();
+				launchAgent(other);
+				getLogger().info("from me");
+				other.getLogger().info("from other");
+				final File f = new File(getMadkitProperty(Madkit.Option.logDirectory), AsyncLogWriter.LOG_FILE_NAME);
+				pause(500);
+				try {
+					final List<String> lines = Files.readAllLines(f.toPath());
+					assertTrue(lines.contains(getLogger().getName() + " INFO : from me"));
+					assertTrue(lines.contains(other.getLogger().getName() + " INFO : from other"));
+				} catch (IOException e) {
+					throw new AssertionError(e);
+				}
+				assertFalse(new File(getMadkitProperty(Madkit.Option.logDirectory), getLogger().getName()).exists());
+			}
+		});
+	}
+
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class AsyncReplyTest extends JunitMadkit {
+
+	@Test
+	public void replyCompletesTheFuture() {
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				createGroup(COMMUNITY, GROUP);
+				requestRole(COMMUNITY, GROUP, ROLE);
+				final AbstractAgent a = new AbstractAgent();
+				launchAgent(a);
+				a.requestRole(COMMUNITY, GROUP, ROLE2);
+				final Message other = new Message();
+				assertEquals(SUCCESS, a.sendMessage(COMMUNITY, GROUP, ROLE, other));
+
+				final CompletableFuture<Message> future = sendMessageAsync(COMMUNITY, GROUP, ROLE2, new Message(), null);
+				assertFalse(future.isDone());
+				final Message request = a.nextMessage();
+				assertNotNull(request);
+				final Message reply = new Message();
+				assertEquals(SUCCESS, a.sendReply(request, reply));
+				assertTrue(future.isDone());
+				assertSame(reply, future.join());
+				// the reply does not go to the mailbox, which keeps the other messages
+				assertSame(other, nextMessage());
+				assertNull(nextMessage());
+
+				// a second reply is not expected anymore
+				assertEquals(SUCCESS, a.sendReply(request, new Message()));
+				assertNotNull(nextMessage());
+			}
+		});
+	}
+
+	@Test
+	public void timeOutAndFailure() {
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				createGroup(COMMUNITY, GROUP);
+				requestRole(COMMUNITY, GROUP, ROLE);
+				assertNull(sendMessageAsync(COMMUNITY, GROUP, ROLE2, new Message(), null).join());
+				final AbstractAgent a = new AbstractAgent();
+				launchAgent(a);
+				a.requestRole(COMMUNITY, GROUP, ROLE2);
+				final CompletableFuture<Message> future = sendMessageAsync(COMMUNITY, GROUP, ROLE2, new Message(), 100);
+				try {
+					assertNull(future.get(10, TimeUnit.SECONDS));
+				} catch (Exception e) {
+					throw new AssertionError(e);
+				}
+				// a late reply goes to the mailbox
+				assertEquals(SUCCESS, a.sendReply(a.nextMessage(), new Message()));
+				assertNotNull(nextMessage());
+			}
+		});
+	}
+
+	@Test
+	public void broadcastReplies() {
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				createGroup(COMMUNITY, GROUP);
+				requestRole(COMMUNITY, GROUP, ROLE);
+				final List<AbstractAgent> bucket = launchAgentBucket(AbstractAgent.class.getName(), 10, COMMUNITY + "," + GROUP + "," + ROLE2);
+				CompletableFuture<List<Message>> future = broadcastMessageAsync(COMMUNITY, GROUP, ROLE2, new Message(), null);
+				for (final AbstractAgent a : bucket) {
+					assertFalse(future.isDone());
+					assertEquals(SUCCESS, a.sendReply(a.nextMessage(), new Message()));
+				}
+				assertEquals(bucket.size(), future.join().size());
+				assertNull(nextMessage());
+
+				// partial replies on time out
+				future = broadcastMessageAsync(COMMUNITY, GROUP, ROLE2, new Message(), 200);
+				for (final AbstractAgent a : bucket.subList(0, 3)) {
+					assertEquals(SUCCESS, a.sendReply(a.nextMessage(), new Message()));
+				}
+				assertEquals(3, future.join().size());
+				assertNull(broadcastMessageAsync(COMMUNITY, GROUP, ROLE, new Message(), 200).join());
+			}
+		});
+	}
+
+	@Test
+	public void refusedRequestsAreNotWaitedFor() {
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				createGroup(COMMUNITY, GROUP);
+				requestRole(COMMUNITY, GROUP, ROLE);
+				final AbstractAgent a = new AbstractAgent(), full = new AbstractAgent();
+				full.setMailbox(new ArrayMailbox(1, Mailbox.OverflowPolicy.REJECT));
+				launchAgent(a);
+				launchAgent(full);
+				a.requestRole(COMMUNITY, GROUP, ROLE2);
+				full.requestRole(COMMUNITY, GROUP, ROLE2);
+				assertEquals(SUCCESS, sendMessage(full.getAgentAddressIn(COMMUNITY, GROUP, ROLE2), new Message()));
+				final CompletableFuture<List<Message>> future = broadcastMessageAsync(COMMUNITY, GROUP, ROLE2, new Message(), null);
+				assertFalse(future.isDone());
+				assertEquals(SUCCESS, a.sendReply(a.nextMessage(), new Message()));
+				assertEquals(1, future.join().size());
+			}
+		});
+	}
+
+}
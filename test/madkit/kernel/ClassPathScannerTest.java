@@ -0,0 +1,169 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+import madkit.kernel.ClassPathScanner.ClassHeader;
+import madkit.testing.util.agent.NormalAgent;
+
+import org.junit.Test;
+
+/**
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class ClassPathScannerTest {
+
+	public static abstract class AbstractTestAgent extends AbstractAgent {
+	}
+
+	protected static class ProtectedTestAgent extends AbstractAgent {
+	}
+
+	public static class NoDefaultConstructorAgent extends AbstractAgent {
+
+		public NoDefaultConstructorAgent(int i) {
+		}
+	}
+
+	public static class MainAgent extends AbstractTestAgent {
+
+		public static void main(String[] args) {
+		}
+	}
+
+	private static String fileName(Class<?> c) {
+		return c.getName().substring(c.getName().lastIndexOf('.') + 1) + ".class";
+	}
+
+	private static ClassHeader header(Class<?> c) throws IOException {
+		try (InputStream is = c.getResourceAsStream(fileName(c))) {
+			return ClassPathScanner.readHeader(is);
+		}
+	}
+
+	@Test
+	public void headersMatchReflection() throws IOException {
+		for (Class<?> c : Arrays.asList(AbstractAgent.class, Agent.class, MadkitKernel.class, NormalAgent.class, AbstractTestAgent.class,
+				ProtectedTestAgent.class, NoDefaultConstructorAgent.class, MainAgent.class, Role.class, Object.class)) {
+			final ClassHeader h = header(c);
+			assertEquals(c.getName(), c.getModifiers(), h.access & c.getModifiers());
+			assertEquals(c.getName(), c.getModifiers() & 0x0601, h.access & 0x0601);
+			assertEquals(c.getName(), c.getSuperclass() == null ? null : c.getSuperclass().getName().replace('.', '/'), h.superName);
+			boolean publicConstructor;
+			try {
+				c.getConstructor();
+				publicConstructor = true;
+			} catch (NoSuchMethodException e) {
+				publicConstructor = false;
+			}
+			assertEquals(c.getName(), publicConstructor, h.publicConstructor);
+		}
+		assertTrue(header(MainAgent.class).main);
+		assertFalse(header(AbstractTestAgent.class).main);
+	}
+
+	@Test
+	public void scanAndIndex() throws IOException {
+		final File dir = Files.createTempDirectory("scanned").toFile();
+		final File pck = new File(dir, "madkit/kernel");
+		pck.mkdirs();
+		for (Class<?> c : Arrays.asList(AbstractTestAgent.class, ProtectedTestAgent.class, NoDefaultConstructorAgent.class,
+				MainAgent.class, ClassPathScannerTest.class)) {
+			try (InputStream is = c.getResourceAsStream(fileName(c))) {
+				Files.copy(is, new File(pck, fileName(c)).toPath());
+			}
+		}
+		Files.write(new File(dir, "config.xml").toPath(), "<?xml version=\"1.0\"?>\n<!-- c -->\n<MDK><Agent class=\"a.B\"/></MDK>"
+				.getBytes(StandardCharsets.UTF_8));
+		Files.write(new File(pck, "other.xml").toPath(), "<project><MDK/></project>".getBytes(StandardCharsets.UTF_8));
+		Files.write(new File(pck, "broken.xml").toPath(), "<MD".getBytes(StandardCharsets.UTF_8));
+		Files.write(new File(pck, "test.mdk").toPath(), new byte[0]);
+
+		final Set<String> agents = new TreeSet<>(), mains = new HashSet<>(), mdk = new HashSet<>(), xml = new HashSet<>();
+		ClassPathScanner scanner = new ClassPathScanner(getClass().getClassLoader());
+		scanner.scanDirectory(dir, dir.getPath(), agents, mains, mdk, xml);
+		scanner.saveIndex();
+		assertEquals(new TreeSet<>(Arrays.asList(MainAgent.class.getName())), agents);
+		assertEquals(agents, mains);
+		assertEquals(new HashSet<>(Arrays.asList(File.separator + "config.xml")), xml);
+		assertEquals(new HashSet<>(Arrays.asList(File.separator + "madkit" + File.separator + "kernel" + File.separator + "test.mdk")),
+				mdk);
+
+		// now from the index, even if the classes cannot be read
+		final String stamp = ClassPathScanner.stamp(dir);
+		for (File f : pck.listFiles()) {
+			if (f.getName().endsWith(".class")) {
+				final long lastModified = f.lastModified();
+				Files.write(f.toPath(), new byte[0]);
+				f.setLastModified(lastModified);
+			}
+		}
+		assertEquals(stamp, ClassPathScanner.stamp(dir));
+		final Set<String> agents2 = new TreeSet<>(), mains2 = new HashSet<>(), mdk2 = new HashSet<>(), xml2 = new HashSet<>();
+		scanner = new ClassPathScanner(getClass().getClassLoader());
+		scanner.scanDirectory(dir, dir.getPath(), agents2, mains2, mdk2, xml2);
+		assertEquals(agents, agents2);
+		assertEquals(mains, mains2);
+		assertEquals(mdk, mdk2);
+		assertEquals(xml, xml2);
+
+		// a new file: scanned again
+		Files.write(new File(dir, "new.mdk").toPath(), new byte[0]);
+		final Set<String> agents3 = new TreeSet<>(), mdk3 = new HashSet<>();
+		scanner = new ClassPathScanner(getClass().getClassLoader());
+		scanner.scanDirectory(dir, dir.getPath(), agents3, new HashSet<String>(), mdk3, new HashSet<String>());
+		assertTrue(agents3.isEmpty());
+		assertEquals(2, mdk3.size());
+		scanner.saveIndex();
+	}
+
+}
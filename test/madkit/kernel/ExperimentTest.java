@@ -0,0 +1,148 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import madkit.kernel.Experiment.Run;
+
+import org.junit.Test;
+
+/**
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class ExperimentTest {
+
+	static class Counter extends Scheduler {
+
+		final int	increment;
+		long			total;
+		String		option;
+
+		Counter(final Run r) {
+			super(10);
+			increment = r.getParameter("increment");
+		}
+
+		@Override
+		protected void activate() {
+			option = getMadkitProperty("increment");
+		}
+
+		@Override
+		public void doSimulationStep() {
+			total += increment;
+			setGVT(getGVT() + 1);
+		}
+	}
+
+	private static Experiment<Counter> counters() {
+		final Experiment<Counter> e = new Experiment<>(Counter::new);
+		e.addParameter("increment", 1, 2, 3);
+		e.addParameter("name", "a", "b");
+		e.addMeasure("total", s -> s.total);
+		e.addMeasure("option", s -> s.option);
+		e.setReplications(2);
+		e.setParallelism(3);
+		return e;
+	}
+
+	@Test
+	public void sweepAndReplications() throws InterruptedException {
+		final List<Run> runs = counters().run();
+		assertEquals(12, runs.size());
+		final Set<Long> seeds = new HashSet<>();
+		for (final Run r : runs) {
+			assertNull(r.getFailure());
+			final int increment = r.getParameter("increment");
+			assertEquals(1 + r.getIndex() / 4, increment);
+			assertEquals(r.getIndex() / 2 % 2 == 0 ? "a" : "b", r.getParameter("name"));
+			assertEquals(r.getIndex() % 2, r.getReplication());
+			assertEquals(11L * increment, r.getResults().get("total"));
+			assertEquals(String.valueOf(increment), r.getResults().get("option"));
+			seeds.add(r.getSeed());
+		}
+		assertEquals(12, seeds.size());
+	}
+
+	@Test
+	public void seedsAreReproducible() throws InterruptedException {
+		final Experiment<Counter> e = counters();
+		e.setSeed(42);
+		final List<Run> first = e.run();
+		final List<Run> second = e.run();
+		assertEquals(first.get(5).getSeed(), second.get(5).getSeed());
+		e.setSeed(43);
+		assertNotEquals(first.get(5).getSeed(), e.run().get(5).getSeed());
+	}
+
+	@Test
+	public void failuresAreReported() throws InterruptedException, IOException {
+		final Experiment<Counter> e = new Experiment<>(r -> {
+			if (r.getIndex() == 1)
+				throw new IllegalStateException("bad run");
+			return new Counter(r);
+		});
+		e.addParameter("increment", 1, 2);
+		e.addMeasure("total", s -> s.total);
+		final List<Run> runs = e.run();
+		assertNull(runs.get(0).getFailure());
+		assertNotNull(runs.get(1).getFailure());
+		assertTrue(runs.get(1).getResults().isEmpty());
+		final StringBuilder csv = new StringBuilder();
+		e.writeCSV(csv);
+		final List<String> lines = Arrays.asList(csv.toString().split("\n"));
+		assertEquals("run,replication,seed,increment,total,failure", lines.get(0));
+		assertEquals(3, lines.size());
+		assertTrue(lines.get(1).endsWith(",1,11,"));
+		assertTrue(lines.get(2).endsWith(",2,,java.lang.IllegalStateException: bad run"));
+	}
+
+}
@@ -44,6 +44,8 @@ import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -238,6 +240,35 @@ public class JunitMadkit {
 		assertFalse(a.isAlive());
 	}
 
+	/**
+	 * @return the number of bytes allocated so far by the current thread, or
+	 *         -1 if the JVM cannot tell
+	 */
+	public static long allocatedBytes() {
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * @return the number of bytes allocated so far by all the live threads, or
+	 *         -1 if the JVM cannot tell
+	 */
+	public static long allocatedBytesOfAllThreads() {
+		final ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			long total = 0;
+			for (final long bytes : ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(bean.getAllThreadIds())) {
+				if (bytes > 0)// the thread died meanwhile
+					total += bytes;
+			}
+			return total;
+		}
+		return -1;
+	}
+
 	static public void printMemoryUsage() {
 		// System.gc();
 		Long mem = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
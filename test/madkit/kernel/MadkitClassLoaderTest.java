@@ -39,12 +39,22 @@ package madkit.kernel;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.io.File;
+import java.io.IOException;
 import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.tools.ToolProvider;
 
 import madkit.kernel.AbstractAgent.ReturnCode;
 import madkit.kernel.Madkit.LevelOption;
@@ -141,4 +151,50 @@ public class MadkitClassLoaderTest extends JunitMadkit {
 		}, ReturnCode.AGENT_CRASH);
 	}
 
+	private static void compile(File dir, String version) throws IOException {
+		final File source = new File(dir, "Reloaded.java");
+		Files.write(source.toPath(), ("package reloadtest; public class Reloaded { public String toString() { return \"" + version + "\"; } }")
+				.getBytes(StandardCharsets.UTF_8));
+		assertEquals(0, ToolProvider.getSystemJavaCompiler().run(null, null, null, "-d", dir.getPath(), source.getPath()));
+	}
+
+	@Test
+	public void reloadWhileLoadingConcurrently() throws Exception {
+		final File dir = Files.createTempDirectory("reload").toFile();
+		compile(dir, "v1");
+		MadkitClassLoader.loadUrl(dir.toURI().toURL());
+		final Class<?> first = MadkitClassLoader.getLoader().loadClass("reloadtest.Reloaded");
+		assertEquals("v1", first.getConstructor().newInstance().toString());
+
+		final AtomicBoolean done = new AtomicBoolean();
+		final AtomicInteger loaded = new AtomicInteger();
+		final List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < 4; i++) {
+			final Thread t = new Thread(() -> {
+				while (! done.get()) {
+					try {
+						MadkitClassLoader.getLoader().loadClass(Agent.class.getName());
+						MadkitClassLoader.getLoader().loadClass(MadkitClassLoaderTest.class.getName());
+						loaded.incrementAndGet();
+					} catch (ClassNotFoundException e) {
+						throw new AssertionError(e);
+					}
+				}
+			});
+			threads.add(t);
+			t.start();
+		}
+		compile(dir, "v2");
+		MadkitClassLoader.reloadClass("reloadtest.Reloaded");
+		final Class<?> second = MadkitClassLoader.getLoader().loadClass("reloadtest.Reloaded");
+		done.set(true);
+		for (Thread t : threads) {
+			t.join();
+		}
+		assertTrue(loaded.get() > 0);
+		assertNotSame(first, second);
+		assertEquals("v2", second.getConstructor().newInstance().toString());
+		assertEquals(second, MadkitClassLoader.getLoader().loadClass("reloadtest.Reloaded"));
+	}
+
 }
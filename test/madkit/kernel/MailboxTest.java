@@ -0,0 +1,303 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import madkit.kernel.Mailbox.OverflowPolicy;
+import madkit.message.IntegerMessage;
+import madkit.message.MessageFilter;
+import madkit.message.StringMessage;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.junit.runners.Parameterized.Parameters;
+
+/**
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+@RunWith(Parameterized.class)
+public class MailboxTest {
+
+	private final boolean	arrayBased;
+
+	@Parameters(name = "{0}")
+	public static List<Object[]> implementations() {
+		return Arrays.asList(new Object[][] { { ArrayMailbox.class.getSimpleName() }, { DequeMailbox.class.getSimpleName() } });
+	}
+
+	public MailboxTest(String implementation) {
+		arrayBased = implementation.equals(ArrayMailbox.class.getSimpleName());
+	}
+
+	private Mailbox newMailbox() {
+		return arrayBased ? new ArrayMailbox() : new DequeMailbox();
+	}
+
+	private Mailbox newMailbox(int capacity, OverflowPolicy policy) {
+		return arrayBased ? new ArrayMailbox(capacity, policy) : new DequeMailbox(capacity, policy);
+	}
+
+	private static final MessageFilter	STRINGS	= new MessageFilter() {
+																		@Override
+																		public boolean accept(Message m) {
+																			return m instanceof StringMessage;
+																		}
+																	};
+
+	@Test
+	public void fifoOrderOverManyChunks() {
+		final Mailbox mb = newMailbox();
+		assertTrue(mb.isEmpty());
+		assertNull(mb.poll());
+		for (int i = 0; i < 10_000; i++) {
+			assertTrue(mb.offer(new IntegerMessage(i)));
+		}
+		assertEquals(10_000, mb.size());
+		for (int i = 0; i < 10_000; i++) {
+			assertEquals(i, ((IntegerMessage) mb.poll()).getContent().intValue());
+		}
+		assertTrue(mb.isEmpty());
+		assertNull(mb.poll());
+	}
+
+	@Test
+	public void floodsAndDrainsKeepOrder() {
+		final Mailbox mb = newMailbox();
+		int sent = 0, received = 0;
+		for (int round = 0; round < 30; round++) {
+			for (int i = round % 3 == 0 ? 3000 : round; i > 0; i--) {
+				assertTrue(mb.offer(new IntegerMessage(sent++)));
+			}
+			if (round % 2 == 0) {
+				assertNull(mb.removeFirst(STRINGS));// buffers everything
+			}
+			for (Message m; (m = mb.poll()) != null;) {
+				assertEquals(received++, ((IntegerMessage) m).getContent().intValue());
+			}
+			assertTrue(mb.isEmpty());
+		}
+		assertEquals(sent, received);
+	}
+
+	@Test
+	public void filtersKeepOrder() {
+		final Mailbox mb = newMailbox();
+		final Message m1 = new Message(), s1 = new StringMessage("1"), m2 = new Message(), s2 = new StringMessage("2");
+		mb.offer(m1);
+		mb.offer(s1);
+		mb.offer(m2);
+		mb.offer(s2);
+		assertSame(s2, mb.removeLast(STRINGS));
+		assertSame(s1, mb.removeFirst(STRINGS));
+		assertNull(mb.removeFirst(STRINGS));
+		final Message s3 = new StringMessage("3");
+		mb.offer(s3);
+		assertFalse(mb.isEmpty());
+		assertSame(m1, mb.poll());
+		assertEquals(Arrays.asList(s3), mb.removeAll(STRINGS));
+		assertSame(m2, mb.poll());
+		assertTrue(mb.isEmpty());
+	}
+
+	@Test
+	public void lastAndPurge() {
+		final Mailbox mb = newMailbox();
+		assertNull(mb.purge());
+		final Message m1 = new Message(), m2 = new Message(), m3 = new Message();
+		mb.offer(m1);
+		mb.offer(m2);
+		assertSame(m2, mb.pollLast());
+		mb.offer(m3);
+		assertSame(m3, mb.purge());
+		assertTrue(mb.isEmpty());
+		assertEquals(0, mb.removeAll(null).size());
+	}
+
+	@Test
+	public void addAllFirstRestoresOrder() {
+		final Mailbox mb = newMailbox();
+		final Message m1 = new Message(), m2 = new Message(), m3 = new Message();
+		mb.offer(m1);
+		mb.offer(m2);
+		mb.offer(m3);
+		final List<Message> taken = new ArrayList<>();
+		taken.add(mb.poll());
+		taken.add(mb.poll());
+		mb.addAllFirst(taken);
+		assertEquals(Arrays.asList(m1, m2, m3), mb.removeAll(null));
+	}
+
+	@Test
+	public void rejectWhenFull() {
+		final Mailbox mb = newMailbox(2, OverflowPolicy.REJECT);
+		assertTrue(mb.offer(new Message()));
+		assertTrue(mb.offer(new Message()));
+		assertFalse(mb.offer(new Message()));
+		mb.poll();
+		assertTrue(mb.offer(new Message()));
+		assertEquals(2, mb.size());
+	}
+
+	@Test
+	public void dropOldestWhenFull() {
+		final Mailbox mb = newMailbox(2, OverflowPolicy.DROP_OLDEST);
+		final Message m1 = new Message(), m2 = new Message(), m3 = new Message();
+		assertTrue(mb.offer(m1));
+		assertTrue(mb.offer(m2));
+		assertTrue(mb.offer(m3));
+		assertEquals(Arrays.asList(m2, m3), mb.removeAll(null));
+	}
+
+	@Test
+	public void slotOfAStoppedSenderIsGivenUp() throws ReflectiveOperationException {
+		assumeTrue(arrayBased);
+		final Mailbox mb = newMailbox(2, OverflowPolicy.REJECT);
+		final Message m1 = new Message(), m2 = new Message();
+		assertTrue(mb.offer(m1));
+		// a sender stopped right after having reserved and claimed its slot
+		final Field count = ArrayMailbox.class.getDeclaredField("count");
+		count.setAccessible(true);
+		count.setInt(mb, count.getInt(mb) + 1);
+		final Field tail = ArrayMailbox.class.getDeclaredField("tail");
+		tail.setAccessible(true);
+		final Object chunk = tail.get(mb);
+		final Field claimed = chunk.getClass().getDeclaredField("claimed");
+		claimed.setAccessible(true);
+		claimed.setInt(chunk, claimed.getInt(chunk) + 1);
+		assertFalse(mb.offer(m2));
+		assertSame(m1, mb.poll());
+		assertNull(mb.poll());
+		assertTrue(mb.offer(m2));
+		assertTrue(mb.offer(new Message()));
+		assertSame(m2, mb.poll());
+	}
+
+	@Test
+	public void blockWhenFull() throws InterruptedException {
+		final Mailbox mb = newMailbox(1, OverflowPolicy.BLOCK);
+		mb.offer(new Message());
+		final CountDownLatch done = new CountDownLatch(1);
+		final Message m2 = new Message();
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				mb.offer(m2);
+				done.countDown();
+			}
+		}).start();
+		assertFalse(done.await(100, TimeUnit.MILLISECONDS));
+		mb.poll();
+		assertTrue(done.await(5, TimeUnit.SECONDS));
+		assertSame(m2, mb.poll());
+	}
+
+	@Test
+	public void takeIsWokenUp() throws InterruptedException {
+		final Mailbox mb = newMailbox();
+		assertNull(mb.poll(10, TimeUnit.MILLISECONDS));
+		final Message m = new Message();
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				JunitMadkit.pause(50);
+				mb.offer(m);
+			}
+		}).start();
+		assertSame(m, mb.take());
+	}
+
+	@Test
+	public void concurrentSenders() throws InterruptedException {
+		sendConcurrently(newMailbox());
+	}
+
+	@Test
+	public void concurrentBlockedSenders() throws InterruptedException {
+		sendConcurrently(newMailbox(1000, OverflowPolicy.BLOCK));
+	}
+
+	private static void sendConcurrently(final Mailbox mb) throws InterruptedException {
+		final int senders = 8, nb = 20_000;
+		final List<Thread> threads = new ArrayList<>();
+		for (int i = 0; i < senders; i++) {
+			final int id = i;
+			final Thread t = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					for (int j = 0; j < nb; j++) {
+						mb.offer(new IntegerMessage(id * nb + j));
+					}
+				}
+			});
+			threads.add(t);
+			t.start();
+		}
+		final Set<Integer> received = new HashSet<>();
+		final int[] lastPerSender = new int[senders];
+		Arrays.fill(lastPerSender, -1);
+		for (int i = 0; i < senders * nb; i++) {
+			final int v = ((IntegerMessage) mb.take()).getContent();
+			assertTrue(received.add(v));
+			// each sender's messages are received in order
+			assertTrue(v % nb > lastPerSender[v / nb]);
+			lastPerSender[v / nb] = v % nb;
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		assertTrue(mb.isEmpty());
+	}
+
+}
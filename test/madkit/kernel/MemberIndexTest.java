@@ -0,0 +1,209 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class MemberIndexTest {
+
+	@Test
+	public void addGetRemove() {
+		final MemberIndex<String> index = new MemberIndex<>();
+		assertTrue(index.isEmpty());
+		assertTrue(index.add(1, "a"));
+		assertFalse(index.add(1, "b"));
+		assertEquals("a", index.get(1));
+		assertTrue(index.containsKey(1));
+		assertNull(index.get(2));
+		assertEquals("a", index.remove(1));
+		assertNull(index.remove(1));
+		assertFalse(index.containsKey(1));
+		assertTrue(index.isEmpty());
+	}
+
+	@Test
+	public void insertionOrderIsKept() {
+		final MemberIndex<Integer> index = new MemberIndex<>();
+		for (int i = 0; i < 1000; i++) {
+			index.add(i, i);
+		}
+		for (int i = 0; i < 1000; i += 3) {
+			index.remove(i);
+		}
+		index.add(0, 0);
+		final ArrayList<Integer> expected = new ArrayList<>();
+		for (int i = 0; i < 1000; i++) {
+			if (i % 3 != 0)
+				expected.add(i);
+		}
+		expected.add(0);
+		assertEquals(expected, index.toList());
+	}
+
+	@Test
+	public void bucketAddition() {
+		final MemberIndex<Integer> index = new MemberIndex<>();
+		index.ensureCapacity(100_000);
+		for (int i = 0; i < 100_000; i++) {
+			assertTrue(index.add(i, i));
+		}
+		assertEquals(100_000, index.size());
+		assertEquals(99_999, (int) index.get(99_999));
+		index.clear();
+		assertTrue(index.isEmpty());
+		assertNull(index.get(1));
+		assertTrue(index.add(1, 1));
+	}
+
+	@Test
+	public void behavesLikeALinkedHashMap() {
+		final Random r = new Random(0);
+		final MemberIndex<Integer> index = new MemberIndex<>();
+		final Map<Integer, Integer> reference = new LinkedHashMap<>();
+		for (int i = 0; i < 200_000; i++) {
+			final int key = r.nextInt(5_000) - 100;
+			if (r.nextInt(3) == 0) {
+				assertSame(reference.remove(key), index.remove(key));
+			}
+			else {
+				final Integer value = i;
+				assertEquals(reference.putIfAbsent(key, value) == null, index.add(key, value));
+			}
+			assertEquals(reference.size(), index.size());
+		}
+		assertEquals(new ArrayList<>(reference.values()), index.toList());
+		for (Integer key : reference.keySet()) {
+			assertSame(reference.get(key), index.get(key));
+		}
+	}
+
+	@Test
+	public void snapshotIsStable() {
+		final MemberIndex<Integer> index = new MemberIndex<>();
+		for (int i = 0; i < 10_000; i++) {
+			index.add(i, i);
+		}
+		final List<Integer> snapshot = index.snapshot();
+		final List<Integer> expected = index.toList();
+		assertEquals(expected, snapshot);
+		index.remove(5_000);
+		index.add(10_000, 10_000);
+		assertEquals(expected, snapshot);
+		assertEquals(index.toList(), index.snapshot());
+	}
+
+	@Test
+	public void snapshotsFollowChurn() {
+		final Random r = new Random(0);
+		final MemberIndex<Integer> index = new MemberIndex<>();
+		for (int i = 0; i < 5_000; i++) {
+			index.add(i, i);
+		}
+		for (int step = 0; step < 300; step++) {
+			for (int i = 0; i < 20; i++) {
+				final int key = r.nextInt(10_000);
+				if (r.nextBoolean())
+					index.remove(key);
+				else
+					index.add(key, key);
+			}
+			if (step % 50 == 0) {
+				for (int i = 0; i < 3_000; i++) {
+					index.remove(r.nextInt(10_000));
+				}
+			}
+			final List<Integer> snapshot = index.snapshot();
+			assertEquals(index.toList(), snapshot);
+			assertEquals(index.size(), snapshot.size());
+		}
+	}
+
+	@Test
+	public void snapshotCanBeShuffled() {
+		final MemberIndex<Integer> index = new MemberIndex<>();
+		for (int i = 0; i < 5_000; i++) {
+			index.add(i, i);
+		}
+		final List<Integer> snapshot = index.snapshot();
+		Collections.shuffle(snapshot);
+		assertEquals(new HashSet<>(index.toList()), new HashSet<>(snapshot));
+		assertEquals(index.toList(), index.snapshot());
+	}
+
+	@Test
+	public void snapshotIterators() {
+		final MemberIndex<Integer> index = new MemberIndex<>();
+		for (int i = 0; i < 3_000; i++) {
+			index.add(i, i);
+		}
+		for (int i = 1_000; i < 2_100; i++) {
+			index.remove(i);
+		}
+		final List<Integer> expected = index.toList();
+		final List<Integer> snapshot = index.snapshot();
+		assertEquals(expected.subList(500, 1_500), snapshot.subList(500, 1_500));
+		final ListIterator<Integer> it = snapshot.listIterator(snapshot.size());
+		for (int i = expected.size() - 1; i >= 0; i--) {
+			assertEquals(expected.get(i), it.previous());
+		}
+		assertFalse(it.hasPrevious());
+		assertTrue(index.snapshot().isEmpty() == index.isEmpty());
+		index.clear();
+		assertTrue(index.snapshot().isEmpty());
+	}
+
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import static madkit.agr.Organization.GROUP_MANAGER_ROLE;
+import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+/**
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class MembershipsTest extends JunitMadkit {
+
+	static class Member extends AbstractAgent {
+
+		@Override
+		protected void activate() {
+			createGroupIfAbsent(COMMUNITY, GROUP);
+			createGroupIfAbsent(COMMUNITY, GROUP2);
+			createGroupIfAbsent(COMMUNITY2, GROUP);
+			requestRole(COMMUNITY, GROUP, ROLE);
+			requestRole(COMMUNITY, GROUP, ROLE2);
+			requestRole(COMMUNITY, GROUP2, ROLE);
+			requestRole(COMMUNITY2, GROUP, ROLE);
+		}
+	}
+
+	@Test
+	public void queriesFollowTheIndex() {
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				final Member m = new Member();
+				assertEquals(SUCCESS, launchAgent(m));
+				assertEquals(3, m.memberships.getGroups().size());
+				assertEquals(new TreeSet<>(Arrays.asList(GROUP, GROUP2)), m.getMyGroups(COMMUNITY));
+				assertEquals(new TreeSet<>(Arrays.asList(ROLE, ROLE2, GROUP_MANAGER_ROLE)), m.getMyRoles(COMMUNITY, GROUP));
+				assertNull(m.getMyGroups("unknown"));
+				assertEquals(SUCCESS, m.leaveRole(COMMUNITY, GROUP, ROLE2));
+				assertFalse(m.getMyRoles(COMMUNITY, GROUP).contains(ROLE2));
+				assertEquals(SUCCESS, m.leaveGroup(COMMUNITY, GROUP));
+				assertEquals(new TreeSet<>(Arrays.asList(GROUP2)), m.getMyGroups(COMMUNITY));
+				assertEquals(2, m.memberships.getGroups().size());
+			}
+		});
+	}
+
+	@Test
+	public void killRemovesAllMemberships() {
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				final Member m = new Member();
+				assertEquals(SUCCESS, launchAgent(m));
+				requestRole(COMMUNITY, GROUP, ROLE);
+				assertEquals(SUCCESS, killAgent(m));
+				assertTrue(m.memberships.getGroups().isEmpty());
+				assertFalse(isCommunity(COMMUNITY2));
+				assertFalse(isGroup(COMMUNITY, GROUP2));
+				assertEquals(new TreeSet<>(Arrays.asList(ROLE, GROUP_MANAGER_ROLE)), getMyRoles(COMMUNITY, GROUP));
+			}
+		});
+	}
+
+	@Test
+	public void bucketMembershipsAreIndexed() {
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				createGroup(COMMUNITY, GROUP);
+				final List<AbstractAgent> bucket = launchAgentBucket(AbstractAgent.class.getName(), 1000, COMMUNITY + "," + GROUP + "," + ROLE);
+				for (final AbstractAgent a : bucket) {
+					assertEquals(new TreeSet<>(Arrays.asList(GROUP)), a.getMyGroups(COMMUNITY));
+				}
+				for (final AbstractAgent a : bucket.subList(0, 500)) {
+					assertEquals(SUCCESS, killAgent(a));
+					assertTrue(a.memberships.getGroups().isEmpty());
+				}
+				assertEquals(500, getAgentsWithRole(COMMUNITY, GROUP, ROLE).size());
+			}
+		});
+	}
+
+}
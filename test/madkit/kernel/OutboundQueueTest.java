@@ -0,0 +1,189 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.GatheringByteChannel;
+
+import org.junit.Test;
+
+/**
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class OutboundQueueTest {
+
+	/**
+	 * Accepts a limited number of bytes per write, as a full socket would
+	 */
+	static class LimitedChannel implements GatheringByteChannel {
+
+		final ByteArrayOutputStream	written	= new ByteArrayOutputStream();
+		int									limitPerWrite;
+		int									writes;
+
+		LimitedChannel(int limitPerWrite) {
+			this.limitPerWrite = limitPerWrite;
+		}
+
+		@Override
+		public int write(ByteBuffer src) {
+			final int n = Math.min(limitPerWrite, src.remaining());
+			for (int i = 0; i < n; i++) {
+				written.write(src.get());
+			}
+			return n;
+		}
+
+		@Override
+		public long write(ByteBuffer[] srcs, int offset, int length) {
+			writes++;
+			long total = 0;
+			final int limit = limitPerWrite;
+			for (int i = offset; i < offset + length && total < limit; i++) {
+				final int n = Math.min(limit - (int) total, srcs[i].remaining());
+				for (int j = 0; j < n; j++) {
+					written.write(srcs[i].get());
+				}
+				total += n;
+			}
+			return total;
+		}
+
+		@Override
+		public long write(ByteBuffer[] srcs) {
+			return write(srcs, 0, srcs.length);
+		}
+
+		@Override
+		public boolean isOpen() {
+			return true;
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private static byte[] frame(int length, int seed) {
+		final byte[] b = new byte[length];
+		for (int i = 0; i < length; i++) {
+			b[i] = (byte) (seed + i);
+		}
+		return b;
+	}
+
+	@Test
+	public void framesAreCoalesced() throws IOException {
+		final OutboundQueue q = new OutboundQueue(1 << 20);
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		assertTrue(q.offer(frame(10, 0), 0, 10));
+		expected.write(frame(10, 0));
+		for (int i = 1; i < 1000; i++) {
+			final byte[] f = frame(10, i);
+			assertFalse(q.offer(f, 0, f.length));
+			expected.write(f);
+		}
+		final LimitedChannel channel = new LimitedChannel(Integer.MAX_VALUE);
+		assertTrue(q.writeTo(channel));
+		assertEquals(1, channel.writes);
+		assertArrayEquals(expected.toByteArray(), channel.written.toByteArray());
+		assertTrue(q.isEmpty());
+	}
+
+	@Test
+	public void partialWritesAndLargeFrames() throws IOException {
+		final OutboundQueue q = new OutboundQueue(1 << 22);
+		final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		final byte[] buffer = frame(OutboundQueue.CHUNK_SIZE * 3, 7);
+		q.offer(frame(100, 1), 0, 100);
+		expected.write(frame(100, 1));
+		q.offer(buffer, 5, buffer.length - 5);
+		expected.write(buffer, 5, buffer.length - 5);
+		buffer[10] = 0;// the queue has its own copy
+		q.offer(frame(100, 2), 0, 100);
+		expected.write(frame(100, 2));
+		final LimitedChannel channel = new LimitedChannel(10_000);
+		while (!q.writeTo(channel)) {
+			q.offer(frame(3, 3), 0, 3);
+			expected.write(frame(3, 3));
+		}
+		assertArrayEquals(expected.toByteArray(), channel.written.toByteArray());
+	}
+
+	@Test
+	public void offerFailsWhenFull() throws IOException {
+		final OutboundQueue q = new OutboundQueue(100);
+		q.offer(frame(100, 0), 0, 100);
+		try {
+			q.offer(frame(10, 0), 0, 10);
+			fail();
+		} catch (ClosedChannelException e) {
+			fail();
+		} catch (IOException e) {
+		}
+		// what has been queued is still sent
+		final LimitedChannel channel = new LimitedChannel(Integer.MAX_VALUE);
+		assertTrue(q.writeTo(channel));
+		assertArrayEquals(frame(100, 0), channel.written.toByteArray());
+		assertTrue(q.offer(frame(10, 0), 0, 10));
+	}
+
+	@Test
+	public void offerFailsWhenClosed() throws IOException {
+		final OutboundQueue q = new OutboundQueue(10);
+		q.offer(frame(10, 0), 0, 10);
+		q.close();
+		assertTrue(q.isEmpty());
+		try {
+			q.offer(frame(1, 0), 0, 1);
+			fail();
+		} catch (ClosedChannelException e) {
+		}
+	}
+
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import madkit.message.IntegerMessage;
+
+import org.junit.Test;
+
+/**
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class ReactiveAgentTest extends JunitMadkit {
+
+	static class Counter extends ReactiveAgent {
+
+		final AtomicInteger	handled	= new AtomicInteger();
+		final AtomicInteger	errors	= new AtomicInteger();
+		private final AtomicInteger	inside	= new AtomicInteger();
+		private int						next;
+
+		Counter() {
+			super(8);
+		}
+
+		@Override
+		protected void activate() {
+			createGroupIfAbsent(COMMUNITY, GROUP);
+			requestRole(COMMUNITY, GROUP, ROLE);
+		}
+
+		@Override
+		protected void onMessage(Message m) {
+			if (inside.incrementAndGet() != 1)
+				errors.incrementAndGet();
+			if (m instanceof IntegerMessage && ((IntegerMessage) m).getContent() != next++)
+				errors.incrementAndGet();
+			handled.incrementAndGet();
+			inside.decrementAndGet();
+		}
+	}
+
+	private static void waitFor(final AtomicInteger counter, final int expected) {
+		for (int i = 0; i < 1000 && counter.get() < expected; i++) {
+			pause(10);
+		}
+		assertEquals(expected, counter.get());
+	}
+
+	@Test
+	public void messagesAreHandledInOrderOneAtATime() {
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				final Counter c = new Counter();
+				assertEquals(SUCCESS, launchAgent(c));
+				requestRole(COMMUNITY, GROUP, ROLE);
+				final AgentAddress aa = c.getAgentAddressIn(COMMUNITY, GROUP, ROLE);
+				assertNotNull(aa);
+				final int nb = 100_000;
+				for (int i = 0; i < nb; i++) {
+					sendMessage(aa, new IntegerMessage(i));
+				}
+				waitFor(c.handled, nb);
+				assertEquals(0, c.errors.get());
+				assertTrue(c.isMessageBoxEmpty());
+			}
+		});
+	}
+
+	@Test
+	public void messagesReceivedDuringActivateAreHandledAfter() {
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				final AtomicInteger activated = new AtomicInteger();
+				final AtomicInteger handled = new AtomicInteger();
+				assertEquals(SUCCESS, launchAgent(new ReactiveAgent() {
+
+					@Override
+					protected void activate() {
+						receiveMessage(new Message());
+						pause(50);
+						activated.set(1);
+					}
+
+					@Override
+					protected void onMessage(Message m) {
+						handled.set(activated.get() + 1);
+					}
+				}));
+				waitFor(handled, 2);
+			}
+		});
+	}
+
+	@Test
+	public void crashKillsTheAgent() {
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				final ReactiveAgent a = new ReactiveAgent() {
+
+					@Override
+					protected void onMessage(Message m) {
+						throw new IllegalStateException("test");
+					}
+				};
+				assertEquals(SUCCESS, launchAgent(a));
+				a.receiveMessage(new Message());
+				for (int i = 0; i < 100 && a.getState() != State.TERMINATED; i++) {
+					pause(10);
+				}
+				assertEquals(State.TERMINATED, a.getState());
+			}
+		});
+	}
+
+	@Test
+	public void bucketOfReactiveAgents() {
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				final List<AbstractAgent> bucket = launchAgentBucket(Counter.class.getName(), 10_000, COMMUNITY + "," + GROUP + "," + ROLE);
+				requestRole(COMMUNITY, GROUP, ROLE);
+				for (int i = 0; i < 10; i++) {
+					broadcastMessage(COMMUNITY, GROUP, ROLE, new IntegerMessage(i));
+				}
+				for (final AbstractAgent a : bucket) {
+					waitFor(((Counter) a).handled, 10);
+					assertEquals(0, ((Counter) a).errors.get());
+				}
+			}
+		});
+	}
+
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import static madkit.kernel.AbstractAgent.ReturnCode.NOT_COMMUNITY;
+import static madkit.kernel.AbstractAgent.ReturnCode.NOT_IN_GROUP;
+import static madkit.kernel.AbstractAgent.ReturnCode.NOT_ROLE;
+import static madkit.kernel.AbstractAgent.ReturnCode.NO_RECIPIENT_FOUND;
+import static madkit.kernel.AbstractAgent.ReturnCode.ROLE_NOT_HANDLED;
+import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+/**
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class RoleHandleTest extends JunitMadkit {
+
+	@Test
+	public void followsTheOrganization() {
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				final RoleHandle h = getRoleHandle(COMMUNITY, GROUP, ROLE);
+				assertEquals(NOT_COMMUNITY, h.sendMessage(new Message()));
+				createGroup(COMMUNITY, GROUP);
+				assertEquals(NOT_ROLE, h.sendMessage(new Message()));
+				final AbstractAgent a = new AbstractAgent();
+				launchAgent(a);
+				a.requestRole(COMMUNITY, GROUP, ROLE);
+				assertEquals(SUCCESS, h.sendMessage(new Message()));
+				assertNotNull(a.nextMessage());
+
+				final AbstractAgent b = new AbstractAgent();
+				launchAgent(b);
+				b.requestRole(COMMUNITY, GROUP, ROLE);
+				assertEquals(SUCCESS, a.leaveRole(COMMUNITY, GROUP, ROLE));
+				for (int i = 0; i < 10; i++) {
+					assertEquals(SUCCESS, h.sendMessage(new Message()));
+					assertNotNull(b.nextMessage());
+				}
+				assertNull(a.nextMessage());
+
+				// the role is removed and created again
+				assertEquals(SUCCESS, b.leaveRole(COMMUNITY, GROUP, ROLE));
+				assertEquals(NOT_ROLE, h.sendMessage(new Message()));
+				a.requestRole(COMMUNITY, GROUP, ROLE);
+				assertEquals(SUCCESS, h.sendMessage(new Message()));
+				assertNotNull(a.nextMessage());
+			}
+		});
+	}
+
+	@Test
+	public void senderAndReturnCodes() {
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				final AbstractAgent a = new AbstractAgent();
+				launchAgent(a);
+				a.createGroup(COMMUNITY, GROUP);
+				a.requestRole(COMMUNITY, GROUP, ROLE);
+				final RoleHandle h = getRoleHandle(COMMUNITY, GROUP, ROLE);
+				assertEquals(NOT_IN_GROUP, h.sendMessage(new Message()));
+				requestRole(COMMUNITY, GROUP, ROLE2);
+				assertEquals(SUCCESS, h.sendMessage(new Message()));
+				assertSame(getAgentAddressIn(COMMUNITY, GROUP, ROLE2), a.nextMessage().getSender());
+				requestRole(COMMUNITY, GROUP, ROLE);
+				assertEquals(SUCCESS, h.sendMessage(new Message()));
+				assertSame(getAgentAddressIn(COMMUNITY, GROUP, ROLE), a.nextMessage().getSender());
+				leaveRole(COMMUNITY, GROUP, ROLE);
+				assertEquals(SUCCESS, h.sendMessage(new Message()));
+				assertSame(getAgentAddressIn(COMMUNITY, GROUP, ROLE2), a.nextMessage().getSender());
+
+				final RoleHandle withRole = getRoleHandle(COMMUNITY, GROUP, ROLE, ROLE);
+				assertEquals(ROLE_NOT_HANDLED, withRole.sendMessage(new Message()));
+				assertEquals(ROLE_NOT_HANDLED, withRole.broadcastMessage(new Message()));
+				a.leaveRole(COMMUNITY, GROUP, ROLE);
+				assertEquals(NOT_ROLE, h.sendMessage(new Message()));
+				requestRole(COMMUNITY, GROUP, ROLE);
+				assertEquals(NO_RECIPIENT_FOUND, h.sendMessage(new Message()));
+				assertEquals(NO_RECIPIENT_FOUND, h.broadcastMessage(new Message()));
+			}
+		});
+	}
+
+	@Test
+	public void broadcastExcludesTheOwner() {
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				createGroup(COMMUNITY, GROUP);
+				requestRole(COMMUNITY, GROUP, ROLE);
+				final RoleHandle h = getRoleHandle(COMMUNITY, GROUP, ROLE);
+				assertEquals(NO_RECIPIENT_FOUND, h.broadcastMessage(new Message()));
+				final java.util.List<AbstractAgent> bucket = launchAgentBucket(AbstractAgent.class.getName(), 100, COMMUNITY + "," + GROUP + "," + ROLE);
+				assertEquals(SUCCESS, h.broadcastMessage(new Message()));
+				for (final AbstractAgent a : bucket) {
+					assertNotNull(a.nextMessage());
+				}
+				assertNull(nextMessage());
+				for (final AbstractAgent a : bucket.subList(0, 50)) {
+					a.leaveRole(COMMUNITY, GROUP, ROLE);
+				}
+				assertEquals(SUCCESS, h.broadcastMessage(new Message()));
+				for (int i = 0; i < bucket.size(); i++) {
+					assertEquals(i >= 50, bucket.get(i).nextMessage() != null);
+				}
+			}
+		});
+	}
+
+}
@@ -54,4 +54,14 @@ public class SchedulerTest {
 		assertEquals(400, name.getDelay());
 	}
 
+	@Test
+	public final void testSetDelayWithGUI() {
+		Scheduler name = new Scheduler();
+		name.setDelay(100);
+		name.getSchedulerToolBar();
+		assertEquals(100, name.getDelay());
+		name.setDelay(500);
+		assertEquals(400, name.getDelay());
+	}
+
 }
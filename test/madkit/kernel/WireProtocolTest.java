@@ -0,0 +1,307 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.kernel;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.NotSerializableException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import madkit.agr.Organization;
+import madkit.message.BooleanMessage;
+import madkit.message.IntegerMessage;
+import madkit.message.ObjectMessage;
+import madkit.message.StringMessage;
+
+import org.junit.Test;
+
+/**
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class WireProtocolTest {
+
+	private final KernelAddress			ka			= new KernelAddress(0x0123456789ABCDEFL, (short) -3);
+	private final KernelAddress			other		= new KernelAddress(42, (short) 7);
+	private final AgentAddress				sender	= new AgentAddress(12, new Role("c", "g", "r"), null, ka);
+	private final AgentAddress				receiver	= new AgentAddress(-5, new Role("c", "g", "r2"), null, other);
+
+	private final ByteArrayOutputStream	bytes		= new ByteArrayOutputStream();
+	private final WireOutput				out		= new WireOutput(bytes);
+	/**
+	 * reads what has been written in bytes so far
+	 */
+	private final WireInput					in			= new WireInput(new InputStream() {
+
+		private int	read;
+
+		@Override
+		public int read() {
+			final byte[] b = new byte[1];
+			return read(b, 0, 1) == 1 ? b[0] & 0xFF : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			final byte[] available = bytes.toByteArray();
+			if (read == available.length)
+				return -1;
+			len = Math.min(len, available.length - read);
+			System.arraycopy(available, read, b, off, len);
+			read += len;
+			return len;
+		}
+	});
+
+	private <M extends Message> M prepare(M m) {
+		m.setSender(sender);
+		m.setReceiver(receiver);
+		m.getConversationID().setOrigin(ka);
+		return m;
+	}
+
+	@SuppressWarnings("unchecked")
+	private <M extends Message> M roundTrip(M m) throws IOException, ClassNotFoundException {
+		out.sendMessage(m);
+		final Message received = receiveOne();
+		assertSame(m.getClass(), received.getClass());
+		assertEquals(m.getConversationID(), received.getConversationID());
+		assertAddressEquals(m.getSender(), received.getSender());
+		assertAddressEquals(m.getReceiver(), received.getReceiver());
+		return (M) received;
+	}
+
+	private Message receiveOne() throws IOException, ClassNotFoundException {
+		final List<Message> received = new ArrayList<>();
+		in.receiveMessages(received);
+		assertEquals(1, received.size());
+		return received.get(0);
+	}
+
+	private static void assertAddressEquals(AgentAddress expected, AgentAddress actual) {
+		if (expected == null) {
+			assertNull(actual);
+			return;
+		}
+		assertSame(expected.getClass(), actual.getClass());
+		assertEquals(expected, actual);
+		assertEquals(expected.getKernelAddress(), actual.getKernelAddress());
+	}
+
+	@Test
+	public void connectionInfo() throws IOException {
+		final Map<String, Map<String, Map<String, Set<AgentAddress>>>> org = new TreeMap<>();
+		final Map<String, Map<String, Set<AgentAddress>>> community = new TreeMap<>();
+		final Map<String, Set<AgentAddress>> group = new TreeMap<>();
+		group.put("r", new HashSet<>(Arrays.asList(sender)));
+		group.put("r2", new HashSet<>(Arrays.asList(receiver)));
+		group.put(Organization.GROUP_MANAGER_ROLE,
+				new HashSet<AgentAddress>(Arrays.asList(new GroupManagerAddress(1, new Role("c", "g", Organization.GROUP_MANAGER_ROLE), null, ka, true))));
+		community.put("g", group);
+		org.put("c", community);
+		out.writeProtocolHeader();
+		out.sendKernelAddress(ka);
+		out.sendOrganization(org);
+		in.readProtocolHeader();
+		assertEquals(ka, in.receiveKernelAddress());
+		final Map<String, Map<String, Map<String, Set<AgentAddress>>>> received = in.receiveOrganization();
+		assertEquals(org, received);
+		final AgentAddress manager = received.get("c").get("g").get(Organization.GROUP_MANAGER_ROLE).iterator().next();
+		assertTrue(((GroupManagerAddress) manager).isGroupSecured());
+	}
+
+	@Test
+	public void wrongVersion() throws IOException {
+		bytes.write(new byte[] { 0x4D, 0x44, 0x4B, 0x57, WireProtocol.VERSION + 1 });
+		try {
+			in.readProtocolHeader();
+			fail();
+		} catch (StreamCorruptedException e) {
+		}
+	}
+
+	@Test
+	public void registeredTypes() throws IOException, ClassNotFoundException {
+		roundTrip(prepare(new Message()));
+		assertEquals("é;;x", roundTrip(prepare(new StringMessage("é;;x"))).getContent());
+		assertEquals(Integer.valueOf(-100_000), roundTrip(prepare(new IntegerMessage(-100_000))).getContent());
+		assertEquals(Boolean.TRUE, roundTrip(prepare(new BooleanMessage(true))).getContent());
+		assertNull(roundTrip(prepare(new StringMessage(null))).getContent());
+		final CGRSynchro synchro = roundTrip(prepare(new CGRSynchro(CGRSynchro.Code.REQUEST_ROLE, sender)));
+		assertEquals(CGRSynchro.Code.REQUEST_ROLE, synchro.getCode());
+		assertAddressEquals(sender, synchro.getContent());
+	}
+
+	@Test
+	public void objectMessageContent() throws IOException, ClassNotFoundException {
+		final Object[] values = { null, "s", 3, Long.MAX_VALUE, 2.5, false, sender, new int[] { 1, 2 } };
+		for (Object value : values) {
+			final Object received = roundTrip(prepare(new ObjectMessage<>(value))).getContent();
+			if (value instanceof int[]) {
+				assertArrayEquals((int[]) value, (int[]) received);
+			}
+			else {
+				assertEquals(value, received);
+			}
+		}
+	}
+
+	@Test
+	public void encapsulatedMessage() throws IOException, ClassNotFoundException {
+		final StringMessage toSend = prepare(new StringMessage("hello"));
+		final ObjectMessage<Message> m = roundTrip(prepare(new ObjectMessage<Message>(toSend)));
+		final StringMessage received = (StringMessage) m.getContent();
+		assertEquals("hello", received.getContent());
+		assertEquals(toSend.getConversationID(), received.getConversationID());
+		assertAddressEquals(receiver, received.getReceiver());
+	}
+
+	@Test
+	public void invalidAndCandidateAddresses() throws IOException, ClassNotFoundException {
+		final AgentAddress invalid = new AgentAddress(3, new Role("c", "g", "r"), null, ka);
+		invalid.setRoleObject(null);
+		final AgentAddress candidate = new CandidateAgentAddress(4, new Role("c", "g", Organization.GROUP_MANAGER_ROLE), null, ka);
+		final ObjectMessage<AgentAddress> m = roundTrip(prepare(new ObjectMessage<>(invalid)));
+		assertNull(m.getContent().getRoleObject());
+		assertEquals("c", m.getContent().getCommunity());
+		assertEquals("g", m.getContent().getGroup());
+		assertEquals("r", m.getContent().getRole());
+		assertEquals(invalid, m.getContent());
+		assertEquals(Organization.GROUP_CANDIDATE_ROLE, roundTrip(prepare(new ObjectMessage<>(candidate))).getContent().getRole());
+	}
+
+	@Test
+	public void validAddressKeepsTheRoleItIsReboundTo() throws IOException, ClassNotFoundException {
+		final AgentAddress received = roundTrip(prepare(new ObjectMessage<>(sender))).getContent();
+		received.setRoleObject(new Role("c", "g", Organization.GROUP_MANAGER_ROLE));
+		received.setRoleObject(null);
+		assertEquals(Organization.GROUP_MANAGER_ROLE, received.getRole());
+	}
+
+	@Test
+	public void addressesAreIndexed() throws IOException, ClassNotFoundException {
+		roundTrip(prepare(new Message()));
+		final int first = bytes.size();
+		roundTrip(prepare(new Message()));
+		final int second = bytes.size() - first;
+		assertTrue(second < first / 2);
+	}
+
+	@Test
+	public void userTypesAreSerialized() throws IOException, ClassNotFoundException {
+		final UserMessage m = roundTrip(prepare(new UserMessage(12)));
+		assertEquals(12, m.value);
+	}
+
+	@Test
+	public void nothingIsSentWhenNotSerializable() throws IOException, ClassNotFoundException {
+		try {
+			out.sendMessage(prepare(new ObjectMessage<>(new Object())));
+			fail();
+		} catch (NotSerializableException e) {
+		}
+		assertEquals(0, bytes.size());
+		// the addresses indexed by the failed frame should not be referenced
+		final StringMessage m = roundTrip(prepare(new StringMessage("next")));
+		assertEquals("next", m.getContent());
+	}
+
+	@Test
+	public void batch() throws IOException, ClassNotFoundException {
+		out.queueMessage(prepare(new StringMessage("first")));
+		try {
+			out.queueMessage(prepare(new ObjectMessage<>(new Object())));
+			fail();
+		} catch (NotSerializableException e) {
+		}
+		final int size = out.getBatchSize();
+		out.queueMessage(prepare(new IntegerMessage(2)));
+		assertTrue(out.getBatchSize() > size);
+		assertEquals(0, bytes.size());
+		out.flush();
+		assertEquals(0, out.getBatchSize());
+		final List<Message> received = new ArrayList<>();
+		in.receiveMessages(received);
+		assertEquals(2, received.size());
+		assertEquals("first", ((StringMessage) received.get(0)).getContent());
+		assertEquals(Integer.valueOf(2), ((IntegerMessage) received.get(1)).getContent());
+		assertAddressEquals(receiver, received.get(1).getReceiver());
+	}
+
+	@Test
+	public void distantBroadcast() throws IOException, ClassNotFoundException {
+		final AgentAddress second = new AgentAddress(8, new Role("c", "g", "r2"), null, other);
+		final Message content = new StringMessage("all");
+		content.setSender(sender);
+		content.getConversationID().setOrigin(ka);
+		final DistantBroadcast m = roundTrip(prepare(new DistantBroadcast(content, Arrays.asList(receiver, second))));
+		assertEquals(other, m.getReceiversKernel());
+		assertEquals(2, m.getReceivers().size());
+		assertAddressEquals(receiver, m.getReceivers().get(0));
+		assertAddressEquals(second, m.getReceivers().get(1));
+		assertEquals("all", ((StringMessage) m.getContent()).getContent());
+		assertNull(m.getContent().getReceiver());
+		assertEquals(content.getConversationID(), m.getContent().getConversationID());
+	}
+
+	static class UserMessage extends Message {
+
+		private static final long	serialVersionUID	= 1L;
+		final int						value;
+
+		UserMessage(int value) {
+			this.value = value;
+		}
+	}
+
+}
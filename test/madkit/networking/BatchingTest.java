@@ -0,0 +1,110 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.networking;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import madkit.action.KernelAction;
+import madkit.kernel.AgentAddress;
+import madkit.kernel.JunitMadkit;
+import madkit.kernel.Madkit;
+import madkit.kernel.Madkit.BooleanOption;
+import madkit.kernel.Madkit.Option;
+import madkit.kernel.Message;
+import madkit.message.StringMessage;
+import madkit.networking.NioNetworkTest.Echo;
+import madkit.testing.util.agent.NormalAgent;
+
+import org.junit.Test;
+
+/**
+ * Batched sends and broadcasts to the agents of a distant kernel.
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class BatchingTest extends JunitMadkit {
+
+	private static final int	ECHOES	= 3;
+
+	@Test
+	public void lingerAndBroadcast() {
+		addMadkitArgs(BooleanOption.network.toString(), Option.networkBatchLinger.toString(), "20");
+		launchTest(new NormalAgent() {
+
+			@Override
+			protected void activate() {
+				createGroupIfAbsent(COMMUNITY, GROUP, true, null);
+				requestRole(COMMUNITY, GROUP, ROLE, null);
+				final Madkit m = new Madkit("--network", "--networkBatchLinger", "20", "--launchAgents", Echo.class.getName() + ",false," + ECHOES);
+				for (int i = 0; i < 100 && getAgentsWithRole(COMMUNITY, GROUP, "echo") == null || getAgentsWithRole(COMMUNITY, GROUP, "echo").size() < ECHOES; i++) {
+					pause(100);
+				}
+				final AgentAddress echo = getAgentWithRole(COMMUNITY, GROUP, "echo");
+				assertNotNull(echo);
+				// sent in a few frames
+				final int nb = 1000;
+				for (int i = 0; i < nb; i++) {
+					sendMessage(echo, new StringMessage(Integer.toString(i)));
+				}
+				for (int i = 0; i < nb; i++) {
+					final Message reply = waitNextMessage(10000);
+					assertNotNull(reply);
+					assertEquals(Integer.toString(i), ((StringMessage) reply).getContent());
+				}
+				// sent once and copied by the distant kernel
+				broadcastMessage(COMMUNITY, GROUP, "echo", new StringMessage("all"));
+				final Set<AgentAddress> senders = new HashSet<>();
+				for (int i = 0; i < ECHOES; i++) {
+					final Message reply = waitNextMessage(10000);
+					assertNotNull(reply);
+					assertEquals("all", ((StringMessage) reply).getContent());
+					senders.add(reply.getSender());
+				}
+				assertEquals(ECHOES, senders.size());
+				m.doAction(KernelAction.EXIT);
+				KernelAction.STOP_NETWORK.getActionFor(this).actionPerformed(null);
+			}
+		});
+	}
+
+}
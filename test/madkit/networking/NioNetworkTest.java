@@ -0,0 +1,130 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.networking;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.util.Arrays;
+
+import madkit.action.KernelAction;
+import madkit.kernel.Agent;
+import madkit.kernel.AgentAddress;
+import madkit.kernel.JunitMadkit;
+import madkit.kernel.Madkit;
+import madkit.kernel.Madkit.BooleanOption;
+import madkit.kernel.Message;
+import madkit.message.StringMessage;
+import madkit.testing.util.agent.NormalAgent;
+
+import org.junit.Test;
+
+/**
+ * Exchanges with a kernel using selectors, from a kernel using 
+ * selectors or one thread per connection.
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class NioNetworkTest extends JunitMadkit {
+
+	private static final String	ECHO	= "echo";
+
+	@Test
+	public void withNioPeer() {
+		exchangeWith("--network", "--nioNetwork", "--launchAgents", Echo.class.getName());
+	}
+
+	@Test
+	public void withThreadedPeer() {
+		exchangeWith("--network", "--launchAgents", Echo.class.getName());
+	}
+
+	private void exchangeWith(final String... peerArgs) {
+		addMadkitArgs(BooleanOption.network.toString(), BooleanOption.nioNetwork.toString());
+		launchTest(new NormalAgent() {
+
+			@Override
+			protected void activate() {
+				createGroupIfAbsent(COMMUNITY, GROUP, true, null);
+				requestRole(COMMUNITY, GROUP, ROLE, null);
+				final Madkit m = new Madkit(peerArgs);
+				AgentAddress echo = null;
+				for (int i = 0; i < 100 && (echo = getAgentWithRole(COMMUNITY, GROUP, ECHO)) == null; i++) {
+					pause(100);
+				}
+				assertNotNull(echo);
+				final int nb = 1000;
+				for (int i = 0; i < nb; i++) {
+					sendMessage(echo, new StringMessage(Integer.toString(i)));
+				}
+				final char[] large = new char[200_000];// more than one chunk
+				Arrays.fill(large, 'x');
+				sendMessage(echo, new StringMessage(new String(large)));
+				for (int i = 0; i < nb; i++) {
+					final Message reply = waitNextMessage(10000);
+					assertNotNull(reply);
+					assertEquals(Integer.toString(i), ((StringMessage) reply).getContent());
+				}
+				final Message reply = waitNextMessage(10000);
+				assertNotNull(reply);
+				assertEquals(large.length, ((StringMessage) reply).getContent().length());
+				m.doAction(KernelAction.EXIT);
+				KernelAction.STOP_NETWORK.getActionFor(this).actionPerformed(null);
+			}
+		});
+	}
+
+	public static class Echo extends Agent {
+
+		@Override
+		protected void activate() {
+			createGroupIfAbsent(COMMUNITY, GROUP, true, null);
+			requestRole(COMMUNITY, GROUP, ECHO, null);
+		}
+
+		@Override
+		protected void live() {
+			while (true) {
+				final Message m = waitNextMessage();
+				sendReply(m, new StringMessage(((StringMessage) m).getContent()));
+			}
+		}
+	}
+
+}
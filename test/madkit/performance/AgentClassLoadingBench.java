@@ -0,0 +1,122 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.performance;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.Madkit;
+import madkit.kernel.Madkit.LevelOption;
+import madkit.kernel.MadkitClassLoader;
+
+/**
+ * Reports the time taken to create a first instance of every agent class
+ * which is on the class path, the classes being loaded concurrently by
+ * several threads, as when buckets of different classes are created at
+ * startup. This has to be run in a new JVM for each measure, e.g. with 1 and 4
+ * threads:
+ * 
+ * <pre>
+ * java madkit.performance.AgentClassLoadingBench 1
+ * java madkit.performance.AgentClassLoadingBench 4
+ * </pre>
+ * 
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class AgentClassLoadingBench extends AbstractAgent {
+
+	private static int	threads	= Runtime.getRuntime().availableProcessors();
+
+	@Override
+	protected void activate() {
+		final List<String> classes = new ArrayList<>(MadkitClassLoader.getAllAgentClasses());// not loaded
+		classes.remove(getClass().getName());
+		final Iterator<String> next = classes.iterator();
+		final AtomicInteger created = new AtomicInteger();
+		final List<Thread> launchers = new ArrayList<>();
+		final long start = System.nanoTime();
+		for (int i = 0; i < threads; i++) {
+			final Thread t = new Thread(() -> {
+				for (;;) {
+					final String name;
+					synchronized (next) {
+						if (! next.hasNext())
+							return;
+						name = next.next();
+					}
+					try {
+						MadkitClassLoader.getLoader().loadClass(name).getConstructor().newInstance();
+						created.incrementAndGet();
+					} catch (Throwable e) {// not all the test agents can be built this way
+					}
+				}
+			});
+			t.setDaemon(true);
+			launchers.add(t);
+			t.start();
+		}
+		for (Thread t : launchers) {
+			try {
+				t.join();
+			} catch (InterruptedException e) {
+				return;
+			}
+		}
+		System.err.println(threads + " threads: " + created + " agent classes of " + classes.size() + " loaded and instantiated in "
+				+ (System.nanoTime() - start) / 1_000_000 + " ms");
+	}
+
+	/**
+	 * @param args
+	 *           the number of threads, available processors by default
+	 */
+	public static void main(String[] args) {
+		if (args.length > 0) {
+			threads = Integer.parseInt(args[0]);
+		}
+		String[] argss = { "--agentLogLevel", "OFF", "--" + LevelOption.madkitLogLevel, "OFF", "--orgLogLevel", "OFF",
+				"--launchAgents", AgentClassLoadingBench.class.getName(), ",false" };
+		Madkit.main(argss);
+	}
+
+}
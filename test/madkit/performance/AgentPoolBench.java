@@ -0,0 +1,147 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.performance;
+
+import static madkit.kernel.JunitMadkit.allocatedBytesOfAllThreads;
+import static org.junit.Assert.assertEquals;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.logging.Level;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.AgentPool;
+import madkit.kernel.JunitMadkit;
+import madkit.kernel.Madkit.LevelOption;
+
+import org.junit.Test;
+
+/**
+ * Births and deaths of short-lived agents, with and without an
+ * {@link AgentPool}. The allocated bytes and the GC activity are reported
+ * along with the time.
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class AgentPoolBench extends JunitMadkit {
+
+	private static final int	AGENTS		= 1000;
+	private static final int	GENERATIONS	= 50;
+
+	@Test
+	public void birthsAndDeathsWithoutPool() {
+		addMadkitArgs(LevelOption.agentLogLevel.toString(), "OFF");
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				setLogLevel(Level.INFO);
+				createGroup(COMMUNITY, GROUP);
+				final Metrics m = new Metrics();
+				for (int i = 0; i < GENERATIONS; i++) {
+					final List<AbstractAgent> bucket = launchAgentBucket(MiniAgent.class.getName(), AGENTS);
+					for (final AbstractAgent a : bucket) {
+						killAgent(a);
+					}
+				}
+				m.print(GENERATIONS * AGENTS + " births and deaths without pool: ");
+				assertEquals(false, isRole(COMMUNITY, GROUP, ROLE));
+			}
+		});
+	}
+
+	@Test
+	public void birthsAndDeathsWithPool() {
+		addMadkitArgs(LevelOption.agentLogLevel.toString(), "OFF");
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				setLogLevel(Level.INFO);
+				createGroup(COMMUNITY, GROUP);
+				final AgentPool<MiniAgent> pool = new AgentPool<>(MiniAgent::new);
+				final Metrics m = new Metrics();
+				for (int i = 0; i < GENERATIONS; i++) {
+					final List<MiniAgent> bucket = pool.launchAgentBucket(this, AGENTS);
+					for (final MiniAgent a : bucket) {
+						pool.killAgent(this, a);
+					}
+				}
+				m.print(GENERATIONS * AGENTS + " births and deaths with pool: ");
+				assertEquals(false, isRole(COMMUNITY, GROUP, ROLE));
+				assertEquals(AGENTS, pool.size());
+			}
+		});
+	}
+
+	/**
+	 * Time, bytes allocated by all the live threads, and GC count and time
+	 * since construction
+	 */
+	static final class Metrics {
+
+		private final long	startTime		= System.nanoTime();
+		private final long	startAllocated	= allocatedBytesOfAllThreads();
+		private final long	startGCs			= gcCount();
+		private final long	startGCTime		= gcTime();
+
+		void print(final String message) {
+			final long ms = (System.nanoTime() - startTime) / 1_000_000;
+			final long allocated = (allocatedBytesOfAllThreads() - startAllocated) / (1024 * 1024);
+			System.err.println(message + ms + " ms, " + allocated + " MB allocated (" + (ms == 0 ? allocated : allocated * 1000 / ms)
+					+ " MB/s), " + (gcCount() - startGCs) + " GCs, " + (gcTime() - startGCTime) + " ms in GC");
+		}
+
+		private static long gcCount() {
+			long count = 0;
+			for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+				count += Math.max(0, gc.getCollectionCount());
+			}
+			return count;
+		}
+
+		private static long gcTime() {
+			long time = 0;
+			for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+				time += Math.max(0, gc.getCollectionTime());
+			}
+			return time;
+		}
+	}
+
+}
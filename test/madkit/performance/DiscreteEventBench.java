@@ -0,0 +1,133 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.performance;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.Activator;
+import madkit.kernel.Madkit;
+import madkit.kernel.Madkit.LevelOption;
+import madkit.kernel.Scheduler;
+
+/**
+ * Compares the time-stepped and the discrete-event modes of the scheduler
+ * when each agent only acts once in a while: in the discrete-event mode, an
+ * agent reschedules itself at a random time and only its own activation is
+ * executed, instead of visiting all the agents at each step.
+ * 
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 1.0
+ * 
+ */
+public class DiscreteEventBench extends Scheduler {
+
+	private static final int	AGENTS	= 100_000;
+	/**
+	 * mean delay between two actions of an agent
+	 */
+	private static final int	PERIOD	= 1_000;
+	private static final int	STEPS		= 10_000;
+
+	private long					actions;
+
+	@Override
+	protected void activate() {
+		createGroup("comm", "group");
+		launchAgentBucket(AbstractAgent.class.getName(), AGENTS, "comm,group,role");
+		final Activator<AbstractAgent> timeStepped = new Activator<AbstractAgent>("comm", "group", "role") {
+
+			@Override
+			public void execute(final List<AbstractAgent> agents, final Object... args) {
+				final ThreadLocalRandom r = ThreadLocalRandom.current();
+				for (int i = agents.size() - 1; i >= 0; i--) {
+					if (r.nextInt(PERIOD) == 0) {
+						actions++;
+					}
+				}
+			}
+		};
+		addActivator(timeStepped);
+		report("time-stepped");
+		removeActivator(timeStepped);
+		setGVT(0);
+
+		final Activator<AbstractAgent> discrete = new Activator<AbstractAgent>("comm", "group", "role") {
+
+			@Override
+			public void execute(final List<AbstractAgent> agents, final Object... args) {
+				final ThreadLocalRandom r = ThreadLocalRandom.current();
+				for (final AbstractAgent a : agents) {
+					actions++;
+					scheduleAgent(a, getGVT() + 1 + r.nextInt(2 * PERIOD));
+				}
+			}
+		};
+		useDiscreteEvents(true);
+		addActivator(discrete);
+		discrete.setNextActivationTime(Double.POSITIVE_INFINITY);
+		final ThreadLocalRandom r = ThreadLocalRandom.current();
+		for (final AbstractAgent a : discrete.getCurrentAgentsList()) {
+			discrete.scheduleAgent(a, r.nextInt(2 * PERIOD));
+		}
+		report("discrete-event");
+		killAgent(this);
+	}
+
+	private void report(final String mode) {
+		actions = 0;
+		final long start = System.nanoTime();
+		while (getGVT() < STEPS) {
+			doSimulationStep();
+		}
+		final double seconds = (System.nanoTime() - start) / 1e9;
+		System.err.println(mode + ": " + actions + " actions in " + String.format("%.2f", seconds) + " s, "
+				+ (long) (actions / seconds) + " actions/s");
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		String[] argss = { "--agentLogLevel", "OFF", "--" + LevelOption.madkitLogLevel, "OFF", "--orgLogLevel", "OFF",
+				"--launchAgents", DiscreteEventBench.class.getName(), ",false" };
+		Madkit.main(argss);
+	}
+
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.performance;
+
+import java.util.List;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.Activator;
+import madkit.kernel.Experiment;
+import madkit.kernel.Experiment.Run;
+import madkit.kernel.Scheduler;
+
+/**
+ * Reports the number of runs per second of an {@link Experiment} when the
+ * runs are done one at a time and when they are done in parallel.
+ * Each run has its own population of agents doing some computation at each
+ * step.
+ * 
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 1.0
+ * 
+ */
+public class ExperimentBench extends Scheduler {
+
+	private static final int	RUNS		= 32;
+	private static final int	STEPS		= 200;
+
+	private final int				population;
+	private double					sum;
+
+	public ExperimentBench(final Run r) {
+		super(STEPS);
+		population = r.getParameter("population");
+	}
+
+	@Override
+	protected void activate() {
+		createGroup("comm", "group");
+		launchAgentBucket(AbstractAgent.class.getName(), population, "comm,group,role");
+		addActivator(new Activator<AbstractAgent>("comm", "group", "role") {
+
+			@Override
+			public void execute(final List<AbstractAgent> agents, final Object... args) {
+				for (final AbstractAgent a : agents) {
+					sum += Math.sqrt(a.hashCode() + getGVT());
+				}
+			}
+		});
+	}
+
+	private static void report(final int parallelism) throws InterruptedException {
+		final Experiment<ExperimentBench> e = new Experiment<>(ExperimentBench::new);
+		e.addParameter("population", 5_000, 10_000);
+		e.addMeasure("sum", s -> s.sum);
+		e.setReplications(RUNS / 2);
+		e.setParallelism(parallelism);
+		final long start = System.nanoTime();
+		e.run();
+		final double seconds = (System.nanoTime() - start) / 1e9;
+		System.err.println("parallelism " + parallelism + ": " + RUNS + " runs in " + String.format("%.2f", seconds) + " s, "
+				+ String.format("%.1f", RUNS / seconds) + " runs/s");
+	}
+
+	/**
+	 * @param args
+	 *           the parallelism of the second experiment, default is the
+	 *           number of available processors
+	 * @throws InterruptedException
+	 */
+	public static void main(String[] args) throws InterruptedException {
+		report(1);// warm up
+		report(1);
+		report(args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors());
+	}
+
+}
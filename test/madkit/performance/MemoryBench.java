@@ -36,18 +36,26 @@ knowledge of the CeCILL-C license and that you accept its terms.
  */
 package madkit.performance;
 
+import java.util.List;
+
 import madkit.kernel.AbstractAgent;
 import madkit.kernel.Madkit;
 import madkit.kernel.Madkit.LevelOption;
 
 /**
+ * Reports the memory used by each agent, without any role and with one role.
+ * The list holding the bucket counts for 4 bytes per agent with compressed
+ * oops.
+ * 
  * @author Fabien Michel
  * @since MaDKit 5.0.0.4
- * @version 0.9
+ * @version 1.0
  * 
  */
 public class MemoryBench extends AbstractAgent {
 
+	private static final int	AGENTS	= 1_000_000;
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -55,10 +63,24 @@ public class MemoryBench extends AbstractAgent {
 	 */
 	@Override
 	protected void activate() {
-		System.err.println(Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
 		createGroup("comm", "group");
-		launchAgentBucket("madkit.kernel.AbstractAgent", 4000000, "comm", "group", "role");
-		System.err.println(Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory());
+		System.err.println("bytes per agent without role: " + bytesPerAgent());
+		System.err.println("bytes per agent with one role: " + bytesPerAgent("comm,group,role"));
+	}
+
+	private long bytesPerAgent(final String... roles) {
+		final long before = usedMemory();
+		final List<AbstractAgent> bucket = launchAgentBucket(AbstractAgent.class.getName(), AGENTS, roles);
+		final long used = usedMemory() - before;
+		return bucket.size() == AGENTS ? used / AGENTS : -1;
+	}
+
+	private static long usedMemory() {
+		final Runtime r = Runtime.getRuntime();
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+		return r.totalMemory() - r.freeMemory();
 	}
 
 	/**
@@ -70,4 +92,4 @@ public class MemoryBench extends AbstractAgent {
 		Madkit.main(argss);
 	}
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,164 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.performance;
+
+import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.JunitMadkit;
+import madkit.kernel.Madkit.LevelOption;
+
+import org.junit.Test;
+
+/**
+ * Many agents taking and leaving roles at the same time, each from its own
+ * thread, so that organization changes are done concurrently.
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class OrganizationContentionBench extends JunitMadkit {
+
+	private static final int	THREADS	= Runtime.getRuntime().availableProcessors() * 2;
+	private static final int	AGENTS	= 1000;
+	private static final int	TURNS		= 100;
+
+	@Test
+	public void requestAndLeaveRolesFromManyThreads() {
+		addMadkitArgs(LevelOption.agentLogLevel.toString(), "OFF");
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				setLogLevel(Level.INFO);
+				createGroup(COMMUNITY, GROUP);
+				final List<AbstractAgent> agents = new ArrayList<>(AGENTS * THREADS);
+				for (int i = 0; i < AGENTS * THREADS; i++) {
+					final AbstractAgent a = new AbstractAgent();
+					launchAgent(a);
+					agents.add(a);
+				}
+				startTimer();
+				runInParallel(t -> {
+					final List<AbstractAgent> mine = agents.subList(t * AGENTS, (t + 1) * AGENTS);
+					for (int i = 0; i < TURNS; i++) {
+						for (final AbstractAgent a : mine) {
+							assertEquals(SUCCESS, a.requestRole(COMMUNITY, GROUP, ROLE));
+							// a role and a group which are created and removed over and over
+							a.createGroupIfAbsent(COMMUNITY, GROUP2 + t);
+							a.requestRole(COMMUNITY, GROUP2 + t, ROLE2);
+						}
+						for (final AbstractAgent a : mine) {
+							assertEquals(SUCCESS, a.leaveRole(COMMUNITY, GROUP, ROLE));
+							a.leaveGroup(COMMUNITY, GROUP2 + t);
+						}
+					}
+					for (final AbstractAgent a : mine) {
+						assertEquals(SUCCESS, a.requestRole(COMMUNITY, GROUP, ROLE));
+					}
+				});
+				stopTimer(AGENTS * THREADS * TURNS + " role requests and leaves from " + THREADS + " threads done in ");
+				assertEquals(AGENTS * THREADS, getAgentsWithRole(COMMUNITY, GROUP, ROLE).size());
+				for (int t = 0; t < THREADS; t++) {
+					assertEquals(false, isGroup(COMMUNITY, GROUP2 + t));
+				}
+			}
+		});
+	}
+
+	@Test
+	public void bucketsWithRolesFromManyThreads() {
+		addMadkitArgs(LevelOption.agentLogLevel.toString(), "OFF");
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				setLogLevel(Level.INFO);
+				startTimer();
+				runInParallel(t -> {
+					for (int i = 0; i < 10; i++) {
+						launchAgentBucket(AbstractAgent.class.getName(), AGENTS, 1, COMMUNITY + "," + GROUP + "," + ROLE);
+					}
+				});
+				stopTimer(10 * AGENTS * THREADS + " agents launched by buckets from " + THREADS + " threads in ");
+				assertEquals(10 * AGENTS * THREADS, getAgentsWithRole(COMMUNITY, GROUP, ROLE).size());
+			}
+		});
+	}
+
+	interface Job {
+		void run(int thread);
+	}
+
+	static void runInParallel(final Job job) {
+		final CountDownLatch start = new CountDownLatch(1);
+		final List<Thread> threads = new ArrayList<>(THREADS);
+		final List<Throwable> failures = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++) {
+			final int id = t;
+			final Thread thread = new Thread(() -> {
+				try {
+					start.await();
+					job.run(id);
+				} catch (Throwable e) {
+					synchronized (failures) {
+						failures.add(e);
+					}
+				}
+			});
+			thread.start();
+			threads.add(thread);
+		}
+		start.countDown();
+		for (final Thread thread : threads) {
+			try {
+				thread.join();
+			} catch (InterruptedException e) {
+				throw new AssertionError(e);
+			}
+		}
+		if (! failures.isEmpty()) {
+			throw new AssertionError(failures.get(0));
+		}
+	}
+
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.performance;
+
+import java.util.List;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.Activator;
+import madkit.kernel.Madkit;
+import madkit.kernel.Madkit.LevelOption;
+import madkit.kernel.Scheduler;
+
+/**
+ * Reports the number of simulation steps per second done by
+ * {@link Scheduler#live()} with trivial activators, with and without the turbo
+ * mode. The GVT label is set up as it would be with the default GUI.
+ * 
+ * @author Fabien Michel
+ * @since MaDKit 5.2
+ * @version 1.0
+ * 
+ */
+public class SchedulerTurboBench extends Scheduler {
+
+	private static final int	STEPS			= 2_000_000;
+	private static final int	ACTIVATORS	= 3;
+
+	private long					executions;
+
+	@Override
+	protected void activate() {
+		createGroup("comm", "group");
+		requestRole("comm", "group", "role");
+		for (int i = 0; i < ACTIVATORS; i++) {
+			addActivator(new Activator<AbstractAgent>("comm", "group", "role") {
+
+				@Override
+				public void execute(final List<AbstractAgent> agents, final Object... args) {
+					executions += agents.size();
+				}
+			});
+		}
+		getGVTLabel();
+		setDelay(0);
+	}
+
+	@Override
+	protected void live() {
+		report("default");
+		setTurboMode(true);
+		report("turbo");
+	}
+
+	private void report(final String mode) {
+		setGVT(0);
+		setSimulationDuration(STEPS);
+		setSimulationState(SimulationState.RUNNING);
+		final long start = System.nanoTime();
+		super.live();
+		final double seconds = (System.nanoTime() - start) / 1e9;
+		System.err.println(mode + ": " + (long) getGVT() + " steps in " + String.format("%.2f", seconds) + " s, "
+				+ (long) (getGVT() / seconds) + " steps/s");
+	}
+
+	/**
+	 * @param args
+	 */
+	public static void main(String[] args) {
+		String[] argss = { "--agentLogLevel", "OFF", "--" + LevelOption.madkitLogLevel, "OFF", "--orgLogLevel", "OFF",
+				"--launchAgents", SchedulerTurboBench.class.getName(), ",false" };
+		Madkit.main(argss);
+	}
+
+}
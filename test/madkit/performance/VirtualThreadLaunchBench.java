@@ -0,0 +1,115 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.performance;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.Agent;
+import madkit.kernel.JunitMadkit;
+import madkit.kernel.Madkit.BooleanOption;
+import madkit.kernel.Madkit.LevelOption;
+import madkit.kernel.Message;
+
+import org.junit.Test;
+
+/**
+ * Launches many threaded agents which wait for a message, 
+ * with one platform thread per agent or with virtual threads.
+ * 
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class VirtualThreadLaunchBench extends JunitMadkit {
+
+	private static final int	AGENTS	= 10_000;
+
+	@Test
+	public void massLaunchOnPlatformThreads() {
+		massLaunch();
+	}
+
+	@Test
+	public void massLaunchOnVirtualThreads() {
+		addMadkitArgs(BooleanOption.virtualThreads.toString());
+		massLaunch();
+	}
+
+	private void massLaunch() {
+		addMadkitArgs(LevelOption.agentLogLevel.toString(), "OFF");
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				setLogLevel(Level.INFO);
+				createGroup(COMMUNITY, GROUP);
+				final List<AbstractAgent> agents = new ArrayList<>(AGENTS);
+				startTimer();
+				for (int i = 0; i < AGENTS; i++) {
+					final Waiter a = new Waiter();
+					launchAgent(a);
+					agents.add(a);
+				}
+				stopTimer(AGENTS + " threaded agents launched in ");
+				startTimer();
+				broadcastMessage(COMMUNITY, GROUP, ROLE, new Message());
+				for (final AbstractAgent a : agents) {
+					while (a.getState() != State.TERMINATED) {
+						Thread.yield();
+					}
+				}
+				stopTimer(AGENTS + " threaded agents woken up and terminated in ");
+			}
+		});
+	}
+
+	public static class Waiter extends Agent {
+
+		@Override
+		protected void activate() {
+			requestRole(COMMUNITY, GROUP, ROLE);
+		}
+
+		@Override
+		protected void live() {
+			waitNextMessage();
+		}
+	}
+
+}
@@ -43,6 +43,11 @@ import static org.junit.Assert.fail;
 
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
 import madkit.kernel.AbstractAgent;
 import madkit.kernel.Activator;
@@ -121,4 +126,103 @@ public class ActivatorTest {
 		assertEquals(2, a.nbOfParallelTasks());
 	}
 
+	/**
+	 * An activator working on a given list and counting
+	 * the activations of each agent
+	 */
+	static class CountingActivator extends Activator<AbstractAgent> {
+
+		final List<AbstractAgent>	agents	= new ArrayList<>();
+		final AtomicIntegerArray	counts;
+		final Set<String>				threads	= ConcurrentHashMap.newKeySet();
+
+		CountingActivator(int nbOfAgents) {
+			super("t", "t", "t");
+			counts = new AtomicIntegerArray(nbOfAgents);
+			for (int i = 0; i < nbOfAgents; i++) {
+				agents.add(new AbstractAgent());
+			}
+		}
+
+		@Override
+		public List<AbstractAgent> getCurrentAgentsList() {
+			return agents;
+		}
+
+		@Override
+		public void execute(List<AbstractAgent> agentsList, Object... args) {
+			assertEquals("arg", args[0]);
+			threads.add(Thread.currentThread().getName());
+			for (AbstractAgent agent : agentsList) {
+				counts.incrementAndGet(agent.hashCode() - agents.get(0).hashCode());
+			}
+		}
+
+		void assertAllActivated(int times) {
+			for (int i = 0; i < counts.length(); i++) {
+				assertEquals(times, counts.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void multicoreExecuteActivatesEachAgentOnce() {
+		CountingActivator ca = new CountingActivator(1_003);
+		ca.useMulticore(4);
+		for (int i = 1; i < 4; i++) {
+			ca.execute("arg");
+			ca.assertAllActivated(i);
+		}
+		ca.useMulticore(3);
+		ca.execute("arg");
+		ca.assertAllActivated(4);
+	}
+
+	@Test
+	public void multicoreExecuteOnSmallLists() {
+		for (int size = 0; size < 10; size++) {
+			CountingActivator ca = new CountingActivator(size);
+			ca.useMulticore(8);
+			ca.execute("arg");
+			ca.assertAllActivated(1);
+		}
+	}
+
+	@Test
+	public void dedicatedPool() {
+		CountingActivator ca = new CountingActivator(10_000);
+		assertFalse(ca.isDedicatedPoolUsed());
+		ca.useMulticore(2);
+		ca.useDedicatedPool(true);
+		assertTrue(ca.isDedicatedPoolUsed());
+		ca.execute("arg");
+		ca.assertAllActivated(1);
+		for (String name : ca.threads) {
+			assertTrue(name, name.startsWith("MK_ACTIVATOR-CountingActivator-"));
+		}
+		ca.useDedicatedPool(false);
+		ca.execute("arg");
+		ca.assertAllActivated(2);
+	}
+
+	@Test
+	public void multicoreExceptionIsPropagated() {
+		CountingActivator ca = new CountingActivator(1_000) {
+			@Override
+			public void execute(List<AbstractAgent> agentsList, Object... args) {
+				for (AbstractAgent agent : agentsList) {
+					if (agent == agents.get(500))
+						throw new SimulationException("failure", null);
+				}
+			}
+		};
+		ca.useMulticore(4);
+		try {
+			ca.execute("arg");
+			fail("no exception");
+		}
+		catch (SimulationException e) {
+		}
+	}
+
 }
@@ -39,11 +39,16 @@ package madkit.simulation;
 import static madkit.kernel.AbstractAgent.ReturnCode.ALREADY_GROUP;
 import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import madkit.action.SchedulingAction;
 import madkit.kernel.AbstractAgent;
 import madkit.kernel.AbstractAgent.ReturnCode;
 import madkit.kernel.Activator;
 import madkit.kernel.JunitMadkit;
 import madkit.kernel.Scheduler;
+import madkit.kernel.Scheduler.SimulationState;
+import madkit.message.SchedulingMessage;
 
 import org.junit.Test;
 
@@ -182,6 +187,46 @@ public class BasicSchedulerTest extends JunitMadkit {
 			}
 		});
 	}
-	
+
+	@Test
+	public void turboModeIsControlledByMessages() {
+		launchTest(new AbstractAgent() {
+			protected void activate() {
+				createDefaultCGR(this);
+				Scheduler s = new Scheduler();
+				s.setTurboMode(true);
+				s.setDelay(400);
+				assertEquals(SUCCESS, launchAgent(s));
+				s.addActivator(new EmptyActivator(COMMUNITY, GROUP, ROLE));
+				s.receiveMessage(new SchedulingMessage(SchedulingAction.RUN));
+				pause(500);
+				assertTrue(s.getGVT() > 1000);
+				s.receiveMessage(new SchedulingMessage(SchedulingAction.PAUSE));
+				pause(200);
+				assertEquals(SimulationState.PAUSED, s.getSimulationState());
+				final double gvt = s.getGVT();
+				pause(200);
+				assertEquals(gvt, s.getGVT(), 0);
+				killAgent(s);
+			}
+		});
+	}
+
+	@Test
+	public void turboModeStopsAtEndTime() {
+		launchTest(new AbstractAgent() {
+			protected void activate() {
+				Scheduler s = new Scheduler(100_000);
+				s.setTurboMode(true);
+				assertEquals(SUCCESS, launchAgent(s));
+				s.receiveMessage(new SchedulingMessage(SchedulingAction.RUN));
+				for (int i = 0; i < 100 && s.isAlive(); i++) {
+					pause(100);
+				}
+				assertFalse(s.isAlive());
+				assertEquals(100_001, s.getGVT(), 0);
+			}
+		});
+	}
 
 }
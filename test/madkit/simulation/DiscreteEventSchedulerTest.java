@@ -0,0 +1,197 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation;
+
+import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import madkit.action.SchedulingAction;
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.Activator;
+import madkit.kernel.JunitMadkit;
+import madkit.kernel.Scheduler;
+import madkit.message.SchedulingMessage;
+
+import org.junit.Test;
+
+/**
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class DiscreteEventSchedulerTest extends JunitMadkit {
+
+	static class PeriodicActivator extends Activator<AbstractAgent> {
+
+		final List<Double>	times	= new ArrayList<>();
+		final Scheduler		scheduler;
+		final double			period;
+
+		PeriodicActivator(Scheduler scheduler, double period) {
+			super(COMMUNITY, GROUP, ROLE);
+			this.scheduler = scheduler;
+			this.period = period;
+		}
+
+		@Override
+		public void execute(List<AbstractAgent> agents, Object... args) {
+			times.add(scheduler.getGVT());
+			if (period > 0) {
+				setNextActivationTime(scheduler.getGVT() + period);
+			}
+		}
+	}
+
+	private static Scheduler idleScheduler() {
+		return new Scheduler() {
+
+			protected void live() {
+				pause(10000);
+			}
+		};
+	}
+
+	@Test
+	public void activatorsAtTheirOwnRate() {
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				createDefaultCGR(this);
+				final Scheduler s = idleScheduler();
+				assertEquals(SUCCESS, launchAgent(s));
+				s.useDiscreteEvents(true);
+				assertTrue(s.isDiscreteEventModeOn());
+				final PeriodicActivator a = new PeriodicActivator(s, 3);
+				final PeriodicActivator b = new PeriodicActivator(s, 5);
+				final PeriodicActivator everyStep = new PeriodicActivator(s, 0);
+				everyStep.setNextActivationTime(2);
+				s.addActivator(a);
+				s.addActivator(b);
+				s.addActivator(everyStep);
+				final List<Double> gvts = new ArrayList<>();
+				for (int i = 0; i < 8; i++) {
+					s.doSimulationStep();
+					gvts.add(s.getGVT());
+				}
+				assertEquals(Arrays.asList(0d, 2d, 3d, 4d, 5d, 6d, 7d, 8d), gvts);
+				assertEquals(Arrays.asList(0d, 3d, 6d), a.times);
+				assertEquals(Arrays.asList(0d, 5d), b.times);
+				assertEquals(Arrays.asList(2d, 3d, 4d, 5d, 6d, 7d, 8d), everyStep.times);
+
+				everyStep.setNextActivationTime(Double.POSITIVE_INFINITY);
+				s.removeActivator(a);
+				s.doSimulationStep();
+				assertEquals(10, s.getGVT(), 0);
+				assertEquals(Arrays.asList(0d, 5d, 10d), b.times);
+				assertEquals(3, a.times.size());
+				assertEquals(7, everyStep.times.size());
+			}
+		});
+	}
+
+	@Test
+	public void agentEvents() {
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				createDefaultCGR(this);
+				final Scheduler s = idleScheduler();
+				assertEquals(SUCCESS, launchAgent(s));
+				final List<String> trace = new ArrayList<>();
+				final Activator<AbstractAgent> a = new Activator<AbstractAgent>(COMMUNITY, GROUP, ROLE) {
+
+					@Override
+					public void execute(List<AbstractAgent> agents, Object... args) {
+						for (AbstractAgent ag : agents) {
+							trace.add(ag.getName() + "@" + s.getGVT());
+							scheduleAgent(ag, s.getGVT() + ag.getName().length());
+						}
+					}
+				};
+				a.setNextActivationTime(Double.POSITIVE_INFINITY);
+				s.addActivator(a);
+				final AbstractAgent a1 = new AbstractAgent();
+				a1.setName("a");
+				final AbstractAgent a3 = new AbstractAgent();
+				a3.setName("aaa");
+				assertEquals(SUCCESS, launchAgent(a1));
+				assertEquals(SUCCESS, launchAgent(a3));
+				try {
+					a.scheduleAgent(a1, 0);
+					fail("not in the discrete-event mode");
+				} catch (IllegalStateException e) {
+				}
+				s.useDiscreteEvents(true);
+				a.scheduleAgent(a3, 0);
+				a.scheduleAgent(a1, 0.5);
+				while (s.getGVT() < 4) {
+					s.doSimulationStep();
+				}
+				assertEquals(Arrays.asList("aaa@0.0", "a@0.5", "a@1.5", "a@2.5", "aaa@3.0", "a@3.5", "a@4.5"), trace);
+			}
+		});
+	}
+
+	@Test
+	public void pausedWhenNothingIsScheduled() {
+		launchTest(new AbstractAgent() {
+
+			protected void activate() {
+				createDefaultCGR(this);
+				final Scheduler s = new Scheduler();
+				s.useDiscreteEvents(true);
+				assertEquals(SUCCESS, launchAgent(s));
+				final PeriodicActivator a = new PeriodicActivator(s, 10);
+				s.addActivator(a);
+				s.setSimulationDuration(35);
+				s.receiveMessage(new SchedulingMessage(SchedulingAction.RUN));
+				pause(500);
+				assertEquals(Arrays.asList(0d, 10d, 20d, 30d), a.times);
+				assertFalse(s.isAlive());
+				assertEquals(40, s.getGVT(), 0);
+			}
+		});
+	}
+
+}
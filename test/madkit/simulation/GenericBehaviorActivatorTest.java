@@ -36,8 +36,18 @@ knowledge of the CeCILL-C license and that you accept its terms.
  */
 package madkit.simulation;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
 import madkit.kernel.AbstractAgent;
 import madkit.kernel.AbstractAgent.ReturnCode;
+import madkit.kernel.Activator;
 import madkit.kernel.JunitMadkit;
 import madkit.kernel.Scheduler;
 import madkit.simulation.activator.GenericBehaviorActivator;
@@ -103,4 +113,110 @@ public class GenericBehaviorActivatorTest extends JunitMadkit {
 		}, ReturnCode.AGENT_CRASH);
 	}
 
+	public static class Counter extends AbstractAgent {
+		int count;
+
+		@Override
+		protected void activate() {
+			createDefaultCGR(this);
+		}
+
+		@SuppressWarnings("unused")
+		private void doIt() {
+			count++;
+		}
+	}
+
+	public static class SubCounter extends Counter {
+	}
+
+	public static class StaticCounter extends AbstractAgent {
+		static int count;
+
+		@Override
+		protected void activate() {
+			createDefaultCGR(this);
+		}
+
+		static int doIt() {
+			return count++;
+		}
+	}
+
+	@Test
+	public void compiledAndReflectiveModes() {
+		launchTest(new Scheduler() {
+			protected void activate() {
+				final List<Counter> agents = new ArrayList<>();
+				for (int i = 0; i < 100; i++) {
+					final Counter c = i % 2 == 0 ? new Counter() : new SubCounter();
+					launchAgent(c);
+					agents.add(c);
+				}
+				final GenericBehaviorActivator<AbstractAgent> activator = new GenericBehaviorActivator<>(COMMUNITY, GROUP, ROLE, "doIt");
+				addActivator(activator);
+				assertTrue(activator.isCompiledModeOn());
+				activator.execute();
+				activator.useCompiledMode(false);
+				assertFalse(activator.isCompiledModeOn());
+				activator.execute();
+				activator.useCompiledMode(true);
+				activator.useMulticore(4);
+				activator.execute();
+				for (Counter c : agents) {
+					assertEquals(3, c.count);
+				}
+			}
+		});
+	}
+
+	@Test
+	public void staticBehavior() {
+		launchTest(new Scheduler() {
+			protected void activate() {
+				launchAgent(new StaticCounter());
+				final GenericBehaviorActivator<AbstractAgent> activator = new GenericBehaviorActivator<>(COMMUNITY, GROUP, ROLE, "doIt");
+				addActivator(activator);
+				activator.execute();
+				activator.useCompiledMode(false);
+				activator.execute();
+				assertEquals(2, StaticCounter.count);
+			}
+		});
+	}
+
+	@Test
+	public void multicoreRunsOnTheKernelPool() {
+		launchTest(new Scheduler() {
+			protected void activate() {
+				final Set<String> threads = ConcurrentHashMap.newKeySet();
+				final Activator<AbstractAgent> activator = new Activator<AbstractAgent>(COMMUNITY, GROUP, ROLE) {
+					@Override
+					public void execute(List<AbstractAgent> agentsList, Object... args) {
+						for (AbstractAgent a : agentsList) {
+							((Counter) a).count++;
+							threads.add(Thread.currentThread().getName());
+						}
+					}
+				};
+				activator.useMulticore(2);
+				activator.execute();// not added yet
+				final List<Counter> agents = new ArrayList<>();
+				for (int i = 0; i < 1_000; i++) {
+					final Counter c = new Counter();
+					launchAgent(c);
+					agents.add(c);
+				}
+				addActivator(activator);
+				activator.execute();
+				for (Counter c : agents) {
+					assertEquals(1, c.count);
+				}
+				for (String name : threads) {
+					assertTrue(name, name.startsWith("MK_PARALLEL-"));
+				}
+			}
+		});
+	}
+
 }
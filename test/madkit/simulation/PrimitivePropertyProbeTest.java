@@ -0,0 +1,214 @@
+/*
+ * Copyright or © or Copr. Fabien Michel, Olivier Gutknecht, Jacques Ferber (1997)
+
+fmichel@lirmm.fr
+olg@no-distance.net
+ferber@lirmm.fr
+
+This software is a computer program whose purpose is to 
+provide a lightweight Java library for designing and simulating Multi-Agent Systems (MAS).
+
+This software is governed by the CeCILL-C license under French law and
+abiding by the rules of distribution of free software.  You can  use, 
+modify and/ or redistribute the software under the terms of the CeCILL-C
+license as circulated by CEA, CNRS and INRIA at the following URL
+"http://www.cecill.info". 
+
+As a counterpart to the access to the source code and  rights to copy,
+modify and redistribute granted by the license, users are provided only
+with a limited warranty  and the software's author,  the holder of the
+economic rights,  and the successive licensors  have only  limited
+liability. 
+
+In this respect, the user's attention is drawn to the risks associated
+with loading,  using,  modifying and/or developing or reproducing the
+software by the user in light of its specific status of free software,
+that may mean  that it is complicated to manipulate,  and  that  also
+therefore means  that it is reserved for developers  and  experienced
+professionals having in-depth computer knowledge. Users are therefore
+encouraged to load and test the software's suitability as regards their
+requirements in conditions enabling the security of their systems and/or 
+data to be ensured and,  more generally, to use and operate it in the 
+same conditions as regards security. 
+
+The fact that you are presently reading this means that you have had
+knowledge of the CeCILL-C license and that you accept its terms.
+ */
+package madkit.simulation;
+
+import static madkit.kernel.AbstractAgent.ReturnCode.SUCCESS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+
+import madkit.kernel.AbstractAgent;
+import madkit.kernel.AbstractAgent.ReturnCode;
+import madkit.kernel.JunitMadkit;
+import madkit.kernel.Watcher;
+import madkit.simulation.probe.DoublePropertyProbe;
+import madkit.simulation.probe.IntPropertyProbe;
+import madkit.simulation.probe.LongPropertyProbe;
+import madkit.simulation.probe.PropertyStatistics;
+import madkit.testing.util.agent.SimulatedAgent;
+
+import org.junit.Test;
+
+/**
+ * @since MaDKit 5.2
+ * @version 0.9
+ * 
+ */
+public class PrimitivePropertyProbeTest extends JunitMadkit {
+
+	public static class LongAgent extends SimulatedAgent {
+		long	age	= 3;
+	}
+
+	@Test
+	public void getAndSet() {
+		launchTest(new Watcher() {
+
+			protected void activate() {
+				SimulatedAgent agent;
+				LongAgent longAgent;
+				assertEquals(SUCCESS, launchAgent(agent = new SimulatedAgent()));
+				assertEquals(SUCCESS, launchAgent(longAgent = new LongAgent()));
+				IntPropertyProbe<AbstractAgent> ip = new IntPropertyProbe<>(COMMUNITY, GROUP, ROLE, "privatePrimitiveField");
+				DoublePropertyProbe<AbstractAgent> dp = new DoublePropertyProbe<>(COMMUNITY, GROUP, ROLE, "publicPrimitiveField");
+				LongPropertyProbe<LongAgent> lp = new LongPropertyProbe<>(COMMUNITY, GROUP, ROLE, "age");
+				addProbe(ip);
+				addProbe(dp);
+				assertEquals(1, ip.getPropertyValue(agent));
+				assertEquals(1, ip.getPropertyValue(longAgent));
+				assertEquals(2d, dp.getPropertyValue(agent), 0);
+				assertEquals(3L, lp.getPropertyValue(longAgent));
+				ip.setPropertyValue(agent, 10);
+				dp.setPropertyValue(agent, 20.5);
+				lp.setPropertyValue(longAgent, Long.MAX_VALUE);
+				assertEquals(10, ip.getPropertyValue(agent));
+				assertEquals(20.5, agent.publicPrimitiveField, 0);
+				assertEquals(Long.MAX_VALUE, longAgent.age);
+			}
+		});
+	}
+
+	@Test
+	public void wrongType() {
+		launchTest(new Watcher() {
+
+			protected void activate() {
+				SimulatedAgent agent;
+				assertEquals(SUCCESS, launchAgent(agent = new SimulatedAgent()));
+				IntPropertyProbe<AbstractAgent> ip = new IntPropertyProbe<>(COMMUNITY, GROUP, ROLE, "publicPrimitiveField");
+				addProbe(ip);
+				ip.getPropertyValue(agent);
+				noExceptionFailure();
+			}
+		}, ReturnCode.AGENT_CRASH);
+	}
+
+	@Test
+	public void noSuchField() {
+		launchTest(new Watcher() {
+
+			protected void activate() {
+				SimulatedAgent agent;
+				assertEquals(SUCCESS, launchAgent(agent = new SimulatedAgent()));
+				IntPropertyProbe<AbstractAgent> ip = new IntPropertyProbe<>(COMMUNITY, GROUP, ROLE, "notThere");
+				addProbe(ip);
+				ip.getStatistics();
+				noExceptionFailure();
+			}
+		}, ReturnCode.AGENT_CRASH);
+	}
+
+	@Test
+	public void statisticsAndHistogram() {
+		launchTest(new Watcher() {
+
+			protected void activate() {
+				DoublePropertyProbe<AbstractAgent> dp = new DoublePropertyProbe<>(COMMUNITY, GROUP, ROLE, "publicPrimitiveField");
+				addProbe(dp);
+				assertTrue(Double.isNaN(dp.getMean()));
+				assertEquals(0, dp.getStatistics().getCount());
+				for (int i = 0; i < 10; i++) {
+					SimulatedAgent agent;
+					assertEquals(SUCCESS, launchAgent(agent = new SimulatedAgent()));
+					agent.publicPrimitiveField = i;
+				}
+				final PropertyStatistics s = dp.getStatistics();
+				assertEquals(10, s.getCount());
+				assertEquals(0, s.getMin(), 0);
+				assertEquals(9, s.getMax(), 0);
+				assertEquals(45, s.getSum(), 0);
+				assertEquals(4.5, s.getMean(), 0);
+				assertEquals(8.25, s.getVariance(), 1e-12);
+				assertEquals(4.5, dp.getMean(), 0);
+				assertArrayEquals(new int[] { 2, 2, 2, 2, 2 }, dp.getHistogram(0, 10, 5));
+				assertArrayEquals(new int[] { 5, 5 }, dp.getHistogram(2, 7, 2));
+			}
+		});
+	}
+
+	@Test
+	public void parallelAggregation() {
+		launchTest(new Watcher() {
+
+			protected void activate() {
+				IntPropertyProbe<SimulatedAgent> ip = new IntPropertyProbe<>(COMMUNITY, GROUP, ROLE, "privatePrimitiveField");
+				addProbe(ip);
+				@SuppressWarnings("unchecked")
+				final List<SimulatedAgent> agents = (List<SimulatedAgent>) (List<?>) launchAgentBucket(SimulatedAgent.class.getName(), 100_000);
+				for (int i = 0; i < agents.size(); i++) {
+					ip.setPropertyValue(agents.get(i), i % 1_000);
+				}
+				assertFalse(ip.isParallelAggregationOn());
+				final PropertyStatistics sequential = ip.getStatistics();
+				final int[] histogram = ip.getHistogram(0, 1_000, 10);
+				ip.useParallelAggregation(true);
+				assertTrue(ip.isParallelAggregationOn());
+				final PropertyStatistics parallel = ip.getStatistics();
+				assertEquals(100_000, parallel.getCount());
+				assertEquals(sequential.getMin(), parallel.getMin(), 0);
+				assertEquals(999, parallel.getMax(), 0);
+				assertEquals(sequential.getSum(), parallel.getSum(), 0);
+				assertEquals(sequential.getMean(), parallel.getMean(), 1e-9);
+				assertEquals(sequential.getVariance(), parallel.getVariance(), 1e-6);
+				assertArrayEquals(histogram, ip.getHistogram(0, 1_000, 10));
+				assertEquals(10_000, histogram[0]);
+			}
+		});
+	}
+
+	@Test
+	public void exactLongStatistics() {
+		launchTest(new Watcher() {
+
+			protected void activate() {
+				LongPropertyProbe<LongAgent> lp = new LongPropertyProbe<>(COMMUNITY, GROUP, ROLE, "age");
+				addProbe(lp);
+				final long big = (1L << 60) + 1;
+				for (int i = 0; i < 3; i++) {
+					LongAgent agent;
+					assertEquals(SUCCESS, launchAgent(agent = new LongAgent()));
+					agent.age = big + i;
+				}
+				final PropertyStatistics s = lp.getStatistics();
+				assertEquals(big, s.getLongMin());
+				assertEquals(big + 2, s.getLongMax());
+				assertEquals(3 * big + 3, s.getLongSum());
+				lp.setPropertyValue(lp.getCurrentAgentsList().get(0), Long.MAX_VALUE);
+				try {
+					lp.getStatistics().getLongSum();
+					noExceptionFailure();
+				} catch (ArithmeticException e) {
+				}
+				assertEquals(Long.MAX_VALUE, lp.getStatistics().getLongMax());
+			}
+		});
+	}
+
+}